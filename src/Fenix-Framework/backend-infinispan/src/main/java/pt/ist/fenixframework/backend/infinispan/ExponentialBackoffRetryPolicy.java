@@ -0,0 +1,73 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+import java.util.Random;
+
+/**
+ * Waits a random time before each retry, up to a limit that doubles on every retry of the same
+ * transaction (exponential backoff with full jitter).  The random time spreads the retries of
+ * transactions that aborted each other, so that they do not conflict again.
+ *
+ * The transactions that abort too many times can also be serialized (see {@link
+ * RetryPolicy#isSerialized(int)}).
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    /**
+     * The default limit of the first backoff, in milliseconds.
+     */
+    public static final long DEFAULT_BASE_BACKOFF = 1;
+    /**
+     * The default maximum backoff, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_BACKOFF = 100;
+
+    private final Random random = new Random();
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final int serializeAfterRetries;
+
+    /**
+     * Uses the default backoffs and never serializes the transactions.
+     */
+    public ExponentialBackoffRetryPolicy() {
+        this(DEFAULT_BASE_BACKOFF, DEFAULT_MAX_BACKOFF, 0);
+    }
+
+    /**
+     * @param baseBackoff The limit of the first backoff, in milliseconds.  No backoff is done if
+     * it is <code>0</code>
+     * @param maxBackoff The maximum backoff, in milliseconds
+     * @param serializeAfterRetries The number of retries after which a transaction is serialized,
+     * or <code>0</code> to never serialize
+     */
+    public ExponentialBackoffRetryPolicy(long baseBackoff, long maxBackoff, int serializeAfterRetries) {
+        if (baseBackoff < 0 || maxBackoff < baseBackoff || serializeAfterRetries < 0) {
+            throw new IllegalArgumentException("Invalid backoff: base=" + baseBackoff + ", max=" + maxBackoff
+                                               + ", serializeAfterRetries=" + serializeAfterRetries);
+        }
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.serializeAfterRetries = serializeAfterRetries;
+    }
+
+    @Override
+    public long getBackoffTime(int retry) {
+        if (baseBackoff == 0) {
+            return 0;
+        }
+        // the shift is bounded to avoid the overflow
+        long limit = Math.min(maxBackoff, baseBackoff << Math.min(retry - 1, 30));
+        return (long)(random.nextDouble() * (limit + 1));
+    }
+
+    @Override
+    public boolean isSerialized(int retry) {
+        return serializeAfterRetries > 0 && retry > serializeAfterRetries;
+    }
+
+    @Override
+    public String toString() {
+        return "ExponentialBackoffRetryPolicy{base=" + baseBackoff + "ms, max=" + maxBackoff
+            + "ms, serializeAfterRetries=" + serializeAfterRetries + "}";
+    }
+}
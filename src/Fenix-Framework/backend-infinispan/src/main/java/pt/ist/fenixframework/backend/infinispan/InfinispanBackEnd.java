@@ -11,9 +11,12 @@ import java.util.Date;
 import java.util.TimeZone;
 
 import org.infinispan.Cache;
+import org.infinispan.configuration.parsing.ConfigurationBuilderHolder;
+import org.infinispan.configuration.parsing.Parser;
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.util.FileLookupFactory;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.DomainRoot;
@@ -35,7 +38,7 @@ public class InfinispanBackEnd implements BackEnd {
     private static final InfinispanBackEnd instance = new InfinispanBackEnd();
 
     protected final InfinispanTransactionManager transactionManager;
-    protected Cache<String, Object> domainCache;
+    protected Cache<Object, Object> domainCache;
 
     private InfinispanBackEnd() {
         this.transactionManager = new InfinispanTransactionManager();
@@ -95,6 +98,9 @@ public class InfinispanBackEnd implements BackEnd {
     public void shutdown() {
         // not sure whether is still safe, after a stop() to getCacheManager(), so I get it first
         EmbeddedCacheManager manager = domainCache.getCacheManager();
+        if (logger.isInfoEnabled()) {
+            logger.info(transactionManager.getRetryStatistics().getReport());
+        }
         domainCache.stop();
         manager.stop();
     }
@@ -110,7 +116,11 @@ public class InfinispanBackEnd implements BackEnd {
         long start = System.currentTimeMillis();
         CacheContainer cc = null;
         try {
-            cc = new DefaultCacheManager(config.getIspnConfigFile());
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            ConfigurationBuilderHolder holder = new Parser(classLoader).parse(
+                FileLookupFactory.newInstance().lookupFileStrict(config.getIspnConfigFile(), classLoader));
+            holder.getGlobalConfigurationBuilder().serialization().addAdvancedExternalizer(new SlotKey.Externalizer());
+            cc = new DefaultCacheManager(holder, true);
         } catch (java.io.IOException ioe) {
             String message = "Error creating Infinispan cache manager with configuration file: "
                 + config.getIspnConfigFile();
@@ -128,6 +138,7 @@ public class InfinispanBackEnd implements BackEnd {
 
     private void setupTxManager(InfinispanConfig config) {
         transactionManager.setDelegateTxManager(domainCache.getAdvancedCache().getTransactionManager());
+        transactionManager.setRetryPolicy(config.getRetryPolicy());
     }
 
     protected IdentityMap getIdentityMap() {
@@ -138,7 +149,7 @@ public class InfinispanBackEnd implements BackEnd {
      * Store in Infinispan.  This method supports null values.  This method is used by the code
      * generated in the Domain Objects.
      */
-    public final void cachePut(String key, Object value) {
+    public final void cachePut(Object key, Object value) {
         domainCache.put(key, (value != null) ? value : Externalization.NULL_OBJECT);
     }
 
@@ -146,11 +157,30 @@ public class InfinispanBackEnd implements BackEnd {
      * Reads from Infinispan a value with a given key.  This method is used by the code generated in
      * the Domain Objects.
      */
-    public final <T> T cacheGet(String key) {
+    public final <T> T cacheGet(Object key) {
         Object obj = domainCache.get(key);
         return (T)(obj instanceof Externalization.NullClass ? null : obj);
     }
 
+    /**
+     * Store in Infinispan the slot in the given position of the record with the given key.  This
+     * method supports null values.  This method is used by the code generated in the Domain Objects
+     * with the per-object layout.
+     */
+    public final void cachePutSlot(Object key, int index, Object value) {
+        domainCache.put(key, ObjectRecord.withSlot(domainCache.get(key), index,
+                                                   (value != null) ? value : Externalization.NULL_OBJECT));
+    }
+
+    /**
+     * Reads from Infinispan the slot in the given position of the record with the given key.  This
+     * method is used by the code generated in the Domain Objects with the per-object layout.
+     */
+    public final <T> T cacheGetSlot(Object key, int index) {
+        Object obj = ObjectRecord.getSlot(domainCache.get(key), index);
+        return (T)(obj instanceof Externalization.NullClass ? null : obj);
+    }
+
     /**
      * WARNING: This is a backend-specific method.  It was added as an hack to enable some tests by
      * Algorithmica and will be removed later.  The programmer should not use this method directly,
@@ -7,6 +7,7 @@ import pt.ist.fenixframework.atomic.DefaultContextFactory;
 import pt.ist.fenixframework.dml.CompilerArgs;
 import pt.ist.fenixframework.dml.DAPCodeGenerator;
 import pt.ist.fenixframework.dml.DomainClass;
+import pt.ist.fenixframework.dml.DomainEntity;
 import pt.ist.fenixframework.dml.DomainModel;
 import pt.ist.fenixframework.dml.IndexesCodeGenerator;
 import pt.ist.fenixframework.dml.Role;
@@ -16,6 +17,22 @@ import pt.ist.fenixframework.dml.ValueTypeSerializationGenerator;
 
 public class InfinispanCodeGenerator extends IndexesCodeGenerator {
 
+    /**
+     * Selects how the value slots of the domain objects are stored in Infinispan.  By default
+     * (<code>slot</code>), each slot is stored under its own key.  With <code>object</code>, all the
+     * value slots of an object are stored in a single record, which reduces the number of keys,
+     * remote lookups and version chains per object, at the cost of having concurrent writes to
+     * different slots of the same object conflict.  Relation slots are always stored under their
+     * own key.  You can select the per-object layout by adding
+     * <params>
+     *     <ptIstIspnObjectLayout>object</ptIstIspnObjectLayout>
+     * </params>
+     * to the configuration section of the dml-maven-plugin plugin in your pom.xml.
+     */
+    public static final String OBJECT_LAYOUT_CONFIG_KEY = "ptIstIspnObjectLayout";
+    public static final String OBJECT_LAYOUT_PER_SLOT = "slot";
+    public static final String OBJECT_LAYOUT_PER_OBJECT = "object";
+
     protected static final String VT_SERIALIZER =
         ValueTypeSerializationGenerator.SERIALIZER_CLASS_SIMPLE_NAME + "." +
         ValueTypeSerializationGenerator.SERIALIZATION_METHOD_PREFIX;
@@ -24,12 +41,16 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
         ValueTypeSerializationGenerator.SERIALIZER_CLASS_SIMPLE_NAME + "." +
         ValueTypeSerializationGenerator.DESERIALIZATION_METHOD_PREFIX;
 
+    protected final boolean perObjectLayout;
+
     public InfinispanCodeGenerator(CompilerArgs compArgs, DomainModel domainModel) {
         super(compArgs, domainModel);
         String collectionName = compArgs.getParams().get(COLLECTION_CLASS_NAME_KEY);
         if (collectionName == null || collectionName.isEmpty()) {
             setCollectionToUse("pt.ist.fenixframework.core.adt.bplustree.BPlusTree");
         }
+        String layout = compArgs.getParams().get(OBJECT_LAYOUT_CONFIG_KEY);
+        perObjectLayout = (layout != null) && layout.trim().equalsIgnoreCase(OBJECT_LAYOUT_PER_OBJECT);
      }
 
     @Override
@@ -159,7 +180,13 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
     protected void generateInfinispanGetterBody(DomainClass domainClass, Slot slot, PrintWriter out) {
         generateGetterDAPStatement(domainClass, slot.getName(), slot.getTypeName(), out);//DAP read stats update statement
 
-        println(out, "Object obj = InfinispanBackEnd.getInstance().cacheGet(getOid().getFullId() + \":" + slot.getName() + "\");");
+        if (perObjectLayout) {
+            println(out, "Object obj = InfinispanBackEnd.getInstance().cacheGetSlot(getRecordKey(), "
+                    + getSlotIndex(domainClass, slot) + ");");
+        } else {
+            println(out, "Object obj = InfinispanBackEnd.getInstance().cacheGet("
+                    + getSlotKeyExpression(domainClass, slot.getName()) + ");");
+        }
         
         String defaultValue;
         PrimitiveToWrapperEntry wrapperEntry = findWrapperEntry(slot.getTypeName());
@@ -206,8 +233,71 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
         }
 
 
-        print(out, "InfinispanBackEnd.getInstance().cachePut(getOid().getFullId() + \":" + slotName
-              + "\", " + setterExpression + ");");
+        if (perObjectLayout) {
+            print(out, "InfinispanBackEnd.getInstance().cachePutSlot(getRecordKey(), "
+                  + getSlotIndex(domainClass, slot) + ", " + setterExpression + ");");
+        } else {
+            print(out, "InfinispanBackEnd.getInstance().cachePut(" + getSlotKeyExpression(domainClass, slotName)
+                  + ", " + setterExpression + ");");
+        }
+    }
+
+    /**
+     * Returns the expression that obtains the key of the slot (or role slot) with the given name.
+     * The key is identified by the position of the slot in the class hierarchy: the value slots and
+     * then the role slots of each class, placed after the ones of its superclasses.
+     */
+    protected String getSlotKeyExpression(DomainClass domainClass, String slotName) {
+        int index = indexOfSlot(domainClass, slotName);
+        if (index < 0) {
+            throw new Error("Unknown slot " + slotName + " in class " + domainClass.getFullName());
+        }
+        DomainEntity superclass = domainClass.getSuperclass();
+        while (superclass instanceof DomainClass) {
+            DomainClass superDomainClass = (DomainClass)superclass;
+            index += superDomainClass.getSlotsList().size() + superDomainClass.getRoleSlotsList().size();
+            superclass = superDomainClass.getSuperclass();
+        }
+        return "getSlotKey(" + index + " /* " + slotName + " */)";
+    }
+
+    /**
+     * Returns the position of the slot (or role slot) with the given name among the value slots
+     * and then the role slots declared by the class, or -1 if the class does not declare it.
+     */
+    private static int indexOfSlot(DomainClass domainClass, String slotName) {
+        int index = 0;
+        for (Slot slot : domainClass.getSlotsList()) {
+            if (slot.getName().equals(slotName)) {
+                return index;
+            }
+            index++;
+        }
+        for (Role role : domainClass.getRoleSlotsList()) {
+            if (slotName.equals(role.getName())) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the slot in the record of the per-object layout.  The slots of a
+     * class are placed after the slots of all its superclasses, so that each slot of an object has
+     * a distinct position.
+     */
+    protected int getSlotIndex(DomainClass domainClass, Slot slot) {
+        int index = domainClass.getSlotsList().indexOf(slot);
+        if (index < 0) {
+            throw new Error("Unknown slot " + slot.getName() + " in class " + domainClass.getFullName());
+        }
+        DomainEntity superclass = domainClass.getSuperclass();
+        while (superclass instanceof DomainClass) {
+            index += ((DomainClass)superclass).getSlotsList().size();
+            superclass = ((DomainClass)superclass).getSuperclass();
+        }
+        return index;
     }
 
     @Override
@@ -229,8 +319,8 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
         printMethod(out, methodModifiers, "void", setterName + "$unidirectional", makeArg(typeName,
                                                                                           slotName));
         startMethodBody(out);
-        print(out, "InfinispanBackEnd.getInstance().cachePut(getOid().getFullId() + \":" + slotName +
-              "\", (" + slotName + " == null ? Externalization.NULL_OBJECT : " + slotName +
+        print(out, "InfinispanBackEnd.getInstance().cachePut(" + getSlotKeyExpression(dC, slotName) +
+              ", (" + slotName + " == null ? Externalization.NULL_OBJECT : " + slotName +
               ".getOid()));");
         endMethodBody(out);
     }
@@ -243,7 +333,7 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
         
         generateGetterDAPStatement(dC, slotName, typeName, out);//DAP read stats update statement
         
-        println(out, "Object oid = InfinispanBackEnd.getInstance().cacheGet(getOid().getFullId() + \":" + slotName + "\");");
+        println(out, "Object oid = InfinispanBackEnd.getInstance().cacheGet(" + getSlotKeyExpression(dC, slotName) + ");");
         print(out, "return (oid == null || oid instanceof Externalization.NullClass ? null : (" + typeName + ")InfinispanBackEnd.getInstance().fromOid(oid));");
         endMethodBody(out);
     }
@@ -275,11 +365,11 @@ public class InfinispanCodeGenerator extends IndexesCodeGenerator {
 
         String collectionType = getDefaultCollectionFor(role.getType().getFullName());
         println(out, collectionType + " internalSet;");
-        println(out, "Object oid = InfinispanBackEnd.getInstance().cacheGet(getOid().getFullId() + \":" + role.getName() + "\");");
+        println(out, "Object oid = InfinispanBackEnd.getInstance().cacheGet(" + getSlotKeyExpression(dC, role.getName()) + ");");
         print(out, "if (oid == null || oid instanceof Externalization.NullClass)");
         newBlock(out);
         println(out, "internalSet = new " + collectionType + "();");
-        print(out, "InfinispanBackEnd.getInstance().cachePut(getOid().getFullId() + \":" + role.getName() + "\", internalSet.getOid());");
+        print(out, "InfinispanBackEnd.getInstance().cachePut(" + getSlotKeyExpression(dC, role.getName()) + ", internalSet.getOid());");
         closeBlock(out, false);
         print(out, " else");
         newBlock(out);
@@ -53,6 +53,36 @@ public class InfinispanConfig extends IndexesConfig {
      */
     protected String ispnConfigFile = null;
 
+    /**
+     * This <strong>optional</strong> parameter specifies the name of the class of the {@link
+     * RetryPolicy} used to retry the aborted transactions.  When it is not set, an {@link
+     * ExponentialBackoffRetryPolicy} is used, with the parameters <code>retryBaseBackoff</code>,
+     * <code>retryMaxBackoff</code> and <code>serializeAfterRetries</code>.
+     */
+    protected RetryPolicy retryPolicy = null;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the limit (in milliseconds) of the wait
+     * before the first retry of a transaction.  The limit doubles on each retry.  The value
+     * <code>0</code> disables the wait.  The default value for this parameter is
+     * <code>1</code>.
+     */
+    protected long retryBaseBackoff = ExponentialBackoffRetryPolicy.DEFAULT_BASE_BACKOFF;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the maximum wait (in milliseconds) before
+     * a retry of a transaction.  The default value for this parameter is <code>100</code>.
+     */
+    protected long retryMaxBackoff = ExponentialBackoffRetryPolicy.DEFAULT_MAX_BACKOFF;
+
+    /**
+     * This <strong>optional</strong> parameter specifies the number of retries of a transaction
+     * after which its next retries are executed one at a time with the other serialized retries of
+     * the same @Atomic method, in this node.  The default value for this parameter is
+     * <code>0</code>, which never serializes the retries.
+     */
+    protected int serializeAfterRetries = 0;
+
     protected final InfinispanBackEnd backEnd;
 
 
@@ -77,6 +107,47 @@ public class InfinispanConfig extends IndexesConfig {
         return this.ispnConfigFile;
     }
 
+    protected void retryPolicyFromString(String value) {
+        try {
+            retryPolicy = (RetryPolicy)Class.forName(value.trim()).newInstance();
+        } catch (Exception e) {
+            String message = "Could not create the retry policy: " + value;
+            logger.error(message);
+            throw new ConfigError(message, e);
+        }
+    }
+
+    protected void retryBaseBackoffFromString(String value) {
+        try {
+            retryBaseBackoff = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    protected void retryMaxBackoffFromString(String value) {
+        try {
+            retryMaxBackoff = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    protected void serializeAfterRetriesFromString(String value) {
+        try {
+            serializeAfterRetries = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        if (retryPolicy == null) {
+            retryPolicy = new ExponentialBackoffRetryPolicy(retryBaseBackoff, retryMaxBackoff, serializeAfterRetries);
+        }
+        return retryPolicy;
+    }
+
     @Override
     protected void init() {
         try {
@@ -18,9 +18,15 @@ import pt.ist.fenixframework.core.IdentityMap;
 public class InfinispanDomainObject extends AbstractDomainObjectAdapter {
     private static final Logger logger = LoggerFactory.getLogger(InfinispanDomainObject.class);
 
+    private static final SlotKey[] NO_SLOT_KEYS = new SlotKey[0];
+
     // this should be final, but the ensureOid and restoreOid methods prevent it
     private OID oid;
 
+    // the keys of the slots of this object, created on first use
+    private SlotKey[] slotKeys = NO_SLOT_KEYS;
+    private SlotKey recordKey;
+
     // We need to have the default constructor, because we've added the allocate-instance constructor
     protected InfinispanDomainObject() {
         super();
@@ -62,5 +68,39 @@ public class InfinispanDomainObject extends AbstractDomainObjectAdapter {
 	return oid.toExternalId();
     }
 
+    /**
+     * Returns the key of the slot in the given position.  This method is used by the code
+     * generated in the Domain Objects.  Concurrent calls may create the same key more than once,
+     * which is harmless because the keys are equal.
+     */
+    protected final SlotKey getSlotKey(int slot) {
+        SlotKey[] keys = this.slotKeys;
+        if (slot < keys.length && keys[slot] != null) {
+            return keys[slot];
+        }
+        if (slot >= keys.length) {
+            SlotKey[] newKeys = new SlotKey[slot + 1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            keys = newKeys;
+        }
+        SlotKey key = new SlotKey(oid.getFullId(), slot);
+        keys[slot] = key;
+        this.slotKeys = keys;
+        return key;
+    }
+
+    /**
+     * Returns the key of the record with all the value slots of this object, in the per-object
+     * layout.  This method is used by the code generated in the Domain Objects.
+     */
+    protected final SlotKey getRecordKey() {
+        SlotKey key = this.recordKey;
+        if (key == null) {
+            key = new SlotKey(oid.getFullId(), SlotKey.OBJECT_RECORD);
+            this.recordKey = key;
+        }
+        return key;
+    }
+
 }
 
@@ -2,6 +2,7 @@ package pt.ist.fenixframework.backend.infinispan;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -28,10 +29,26 @@ public class InfinispanTransactionManager implements TransactionManager {
 
     private final ConcurrentLinkedQueue<CommitListener> listeners = new ConcurrentLinkedQueue<CommitListener>();
 
+    private final TransactionRetryStatistics retryStatistics = new TransactionRetryStatistics();
+
+    private volatile RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy();
+
     void setDelegateTxManager(javax.transaction.TransactionManager delegate) {
 	delegateTxManager = delegate;
     }
 
+    void setRetryPolicy(RetryPolicy retryPolicy) {
+	logger.debug("Retry policy: " + retryPolicy);
+	this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns the commits and the retries of the transactions, for each @Atomic method.
+     */
+    public TransactionRetryStatistics getRetryStatistics() {
+	return retryStatistics;
+    }
+
     @Override
     public void begin() throws NotSupportedException, SystemException {
 	begin(false);
@@ -104,21 +121,31 @@ public class InfinispanTransactionManager implements TransactionManager {
     }
 
     /**
-     * For now, it ignores the value of the atomic parameter.
+     * For now, it ignores the value of the atomic parameter.  The aborted transactions are retried
+     * as decided by the {@link RetryPolicy}.
      */
     @Override
     public <T> T withTransaction(Callable<T> command, Atomic atomic) throws Exception {
+	TransactionRetryStatistics.MethodStatistics stats = retryStatistics.get(command);
+	RetryPolicy policy = retryPolicy;
+	int retries = 0;
 	T result = null;
 	boolean txFinished = false;
 	while (!txFinished) {
+	    // the purpose of this test is to enable reuse of the existing
+	    // transaction
+	    boolean inTopLevelTransaction = getTransaction() == null;
+	    // only the top-level transactions are serialized, as the lock is held until they finish
+	    ReentrantLock serializationLock = null;
+	    if (retries > 0 && inTopLevelTransaction && policy.isSerialized(retries)) {
+		serializationLock = stats.getSerializationLock();
+		serializationLock.lock();
+		stats.serialized();
+	    }
 	    try {
-		boolean inTopLevelTransaction = false;
-		// the purpose of this test is to enable reuse of the existing
-		// transaction
-		if (getTransaction() == null) {
+		if (inTopLevelTransaction) {
 		    logger.trace("No previous transaction.  Will begin a new one.");
 		    begin();
-		    inTopLevelTransaction = true;
 		} else {
 		    logger.trace("Already inside a transaction. Not nesting.");
 		}
@@ -131,6 +158,9 @@ public class InfinispanTransactionManager implements TransactionManager {
 		    logger.trace("Leaving an inner transaction.");
 		}
 		txFinished = true;
+		if (inTopLevelTransaction) {
+		    stats.committed(retries);
+		}
 		return result;
 	    } catch (CacheException ce) {
 		// If the execution fails
@@ -168,9 +198,17 @@ public class InfinispanTransactionManager implements TransactionManager {
 			ex.printStackTrace();
 		    }
 		}
+		if (serializationLock != null) {
+		    serializationLock.unlock();
+		}
+	    }
+	    retries++;
+	    // spread the retries of the transactions that aborted each other
+	    long backoff = policy.getBackoffTime(retries);
+	    if (inTopLevelTransaction) {
+		stats.retried(backoff);
 	    }
-	    // Pedro had this wait here. Why?
-	    // waitingBeforeRetry();
+	    waitingBeforeRetry(backoff);
 
 	    logger.debug("Retrying transaction: " + command);
 	}
@@ -178,15 +216,11 @@ public class InfinispanTransactionManager implements TransactionManager {
 	throw new RuntimeException("code never reached");
     }
 
-    // private static final Random rand = new Random();
-    // private void waitingBeforeRetry() {
-    // try {
-    // //smf: why so long?!
-    // Thread.sleep(rand.nextInt(10000));
-    // } catch(InterruptedException ie) {
-    // //do nothing
-    // }
-    // }
+    private void waitingBeforeRetry(long backoff) throws InterruptedException {
+	if (backoff > 0) {
+	    Thread.sleep(backoff);
+	}
+    }
 
     private void logException(Exception e) {
 	logger.info("Exception caught in transaction: " + e.getLocalizedMessage());
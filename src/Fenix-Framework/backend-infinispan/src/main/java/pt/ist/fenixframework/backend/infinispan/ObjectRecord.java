@@ -0,0 +1,41 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+/**
+ * Helper methods for the per-object layout of the domain objects (see {@link
+ * InfinispanCodeGenerator#OBJECT_LAYOUT_CONFIG_KEY}).  In this layout, all the value slots of a
+ * domain object are stored in a single <code>Object[]</code>, indexed by the position of the slot
+ * in the class hierarchy.  Records are never changed in place: each write creates a new copy, so
+ * that the versions kept by Infinispan are not affected.
+ */
+final class ObjectRecord {
+
+    private static final Object[] EMPTY_RECORD = new Object[0];
+
+    private ObjectRecord() {
+    }
+
+    /**
+     * Returns the slot in the given position of the record, or <code>null</code> if the record
+     * does not exist or was not written in that position yet.
+     */
+    static Object getSlot(Object record, int index) {
+        if (record == null) {
+            return null;
+        }
+        Object[] slots = (Object[])record;
+        return index < slots.length ? slots[index] : null;
+    }
+
+    /**
+     * Returns a copy of the record with the slot in the given position replaced by the new value.
+     * The record grows if needed, because subclasses append their slots to the ones of the
+     * superclass.
+     */
+    static Object[] withSlot(Object record, int index, Object value) {
+        Object[] slots = (record == null) ? EMPTY_RECORD : (Object[])record;
+        Object[] newSlots = new Object[Math.max(slots.length, index + 1)];
+        System.arraycopy(slots, 0, newSlots, 0, slots.length);
+        newSlots[index] = value;
+        return newSlots;
+    }
+}
@@ -0,0 +1,27 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+/**
+ * Decides how an aborted transaction is retried by the {@link InfinispanTransactionManager}.  The
+ * policy is set with the <code>retryPolicy</code> parameter of the {@link InfinispanConfig}, and
+ * must have a public constructor without arguments.
+ *
+ * The implementations are shared by all the threads, so they must be thread-safe.
+ */
+public interface RetryPolicy {
+
+    /**
+     * Returns the time (in milliseconds) to wait before retrying a transaction.
+     *
+     * @param retry The number of the retry, starting in <code>1</code> for the first retry
+     */
+    public long getBackoffTime(int retry);
+
+    /**
+     * Returns whether the retry must be executed alone, i.e. after the retries of the other
+     * transactions of the same {@link pt.ist.fenixframework.Atomic} method that are also executed
+     * alone in this node.
+     *
+     * @param retry The number of the retry, starting in <code>1</code> for the first retry
+     */
+    public boolean isSerialized(int retry);
+}
@@ -0,0 +1,89 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import org.infinispan.marshall.AbstractExternalizer;
+
+/**
+ * The key under which a slot of a domain object is stored in Infinispan.  It is made of the OID of
+ * the object and of the position of the slot in the class hierarchy, as assigned by the {@link
+ * InfinispanCodeGenerator}.  Each domain object keeps its slot keys (see {@link
+ * InfinispanDomainObject#getSlotKey(int)}), so that reading a slot does not need to build and hash
+ * a new key.
+ *
+ * The hash code depends only on the OID and on the position, so that it is the same in every node,
+ * as required by the consistent hash.
+ */
+public final class SlotKey {
+
+    /**
+     * Position of the key of the record with all the value slots of an object, in the per-object
+     * layout (see {@link InfinispanCodeGenerator#OBJECT_LAYOUT_CONFIG_KEY}).
+     */
+    static final int OBJECT_RECORD = -1;
+
+    /**
+     * The id of the externalizer.  It is outside of the ranges used by the Infinispan modules.
+     */
+    static final int EXTERNALIZER_ID = 2100;
+
+    private final String oid;
+    private final int slot;
+    private final int hashCode;
+
+    SlotKey(String oid, int slot) {
+        this.oid = oid;
+        this.slot = slot;
+        this.hashCode = 31 * oid.hashCode() + slot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof SlotKey) {
+            SlotKey other = (SlotKey)o;
+            return this.hashCode == other.hashCode && this.slot == other.slot && this.oid.equals(other.oid);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return oid + ":" + slot;
+    }
+
+    public static class Externalizer extends AbstractExternalizer<SlotKey> {
+        @Override
+        public void writeObject(ObjectOutput output, SlotKey key) throws IOException {
+            output.writeUTF(key.oid);
+            output.writeInt(key.slot);
+        }
+
+        @Override
+        public SlotKey readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            String oid = input.readUTF();
+            return new SlotKey(oid, input.readInt());
+        }
+
+        @Override
+        public Integer getId() {
+            return EXTERNALIZER_ID;
+        }
+
+        @Override
+        public Set<Class<? extends SlotKey>> getTypeClasses() {
+            return Collections.<Class<? extends SlotKey>>singleton(SlotKey.class);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The commits and the retries of the top-level transactions executed by the {@link
+ * InfinispanTransactionManager}, for each {@link pt.ist.fenixframework.Atomic} method.  The
+ * methods invoked inside another transaction are accounted in the outer one.
+ *
+ * The method is identified by the class of the <code>Callable</code> that executes it.  The
+ * callables generated for the <code>@Atomic</code> methods are named after the method, so the
+ * statistics are reported with the name of the method.
+ */
+public class TransactionRetryStatistics {
+
+    // see pt.ist.fenixframework.atomic.ProcessAtomicAnnotations
+    private static final String CALLABLE_INFIX = "$pt$ist$fenixframework$callable$";
+
+    private final ConcurrentMap<Class<?>, MethodStatistics> methods =
+        new ConcurrentHashMap<Class<?>, MethodStatistics>();
+
+    /**
+     * Returns the statistics of the method executed by the command, creating them if needed.
+     */
+    public MethodStatistics get(Object command) {
+        Class<?> commandClass = command.getClass();
+        MethodStatistics stats = methods.get(commandClass);
+        if (stats == null) {
+            stats = new MethodStatistics(methodName(commandClass));
+            MethodStatistics existing = methods.putIfAbsent(commandClass, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    public Collection<MethodStatistics> getMethodStatistics() {
+        return Collections.unmodifiableCollection(methods.values());
+    }
+
+    public long getCommits() {
+        long commits = 0;
+        for (MethodStatistics stats : methods.values()) {
+            commits += stats.getCommits();
+        }
+        return commits;
+    }
+
+    public long getRetries() {
+        long retries = 0;
+        for (MethodStatistics stats : methods.values()) {
+            retries += stats.getRetries();
+        }
+        return retries;
+    }
+
+    /**
+     * Returns the average number of retries of each committed transaction, of all the methods.
+     */
+    public double getRetriesPerCommit() {
+        long commits = getCommits();
+        return commits == 0 ? 0 : getRetries() / (double)commits;
+    }
+
+    public void reset() {
+        for (MethodStatistics stats : methods.values()) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * Returns a report with one line per method, sorted by the number of retries.
+     */
+    public String getReport() {
+        List<MethodStatistics> sorted = new ArrayList<MethodStatistics>(methods.values());
+        Collections.sort(sorted, new Comparator<MethodStatistics>() {
+            @Override
+            public int compare(MethodStatistics o1, MethodStatistics o2) {
+                long r1 = o1.getRetries();
+                long r2 = o2.getRetries();
+                return r1 == r2 ? 0 : (r1 > r2 ? -1 : 1);
+            }
+        });
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Transaction retries: commits=%d, retries=%d, retries per commit=%.3f",
+                                    getCommits(), getRetries(), getRetriesPerCommit()));
+        for (MethodStatistics stats : sorted) {
+            report.append('\n').append(stats);
+        }
+        return report.toString();
+    }
+
+    static String methodName(Class<?> commandClass) {
+        String name = commandClass.getName();
+        int index = name.indexOf(CALLABLE_INFIX);
+        if (index == -1) {
+            return name;
+        }
+        return name.substring(0, index) + "." + name.substring(index + CALLABLE_INFIX.length());
+    }
+
+    /**
+     * The statistics of a method.  It also keeps the lock used to serialize the retries of the
+     * method (see {@link RetryPolicy#isSerialized(int)}).
+     */
+    public static class MethodStatistics {
+        private final String methodName;
+        private final AtomicLong commits = new AtomicLong(0);
+        private final AtomicLong retries = new AtomicLong(0);
+        private final AtomicLong serializedRetries = new AtomicLong(0);
+        private final AtomicLong backoffTime = new AtomicLong(0);
+        private final AtomicLong maxRetries = new AtomicLong(0);
+        // fair, so that the serialized retries are executed in the order they aborted
+        private final ReentrantLock serializationLock = new ReentrantLock(true);
+
+        MethodStatistics(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public long getCommits() {
+            return commits.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        public long getSerializedRetries() {
+            return serializedRetries.get();
+        }
+
+        /**
+         * Returns the total time waited before the retries, in milliseconds.
+         */
+        public long getBackoffTime() {
+            return backoffTime.get();
+        }
+
+        /**
+         * Returns the highest number of retries of a single committed transaction.
+         */
+        public long getMaxRetries() {
+            return maxRetries.get();
+        }
+
+        public double getRetriesPerCommit() {
+            long c = commits.get();
+            return c == 0 ? 0 : retries.get() / (double)c;
+        }
+
+        void committed(int retriesOfTransaction) {
+            commits.incrementAndGet();
+            long max;
+            while ((max = maxRetries.get()) < retriesOfTransaction
+                   && !maxRetries.compareAndSet(max, retriesOfTransaction)) {
+                // retry
+            }
+        }
+
+        void retried(long backoff) {
+            retries.incrementAndGet();
+            backoffTime.addAndGet(backoff);
+        }
+
+        /**
+         * Invoked when a retry acquired the serialization lock.
+         */
+        void serialized() {
+            serializedRetries.incrementAndGet();
+        }
+
+        ReentrantLock getSerializationLock() {
+            return serializationLock;
+        }
+
+        void reset() {
+            commits.set(0);
+            retries.set(0);
+            serializedRetries.set(0);
+            backoffTime.set(0);
+            maxRetries.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: commits=%d, retries=%d, retries per commit=%.3f, max retries=%d, "
+                                 + "serialized retries=%d, backoff=%dms", methodName, getCommits(), getRetries(),
+                                 getRetriesPerCommit(), getMaxRetries(), getSerializedRetries(), getBackoffTime());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package pt.ist.fenixframework.backend.infinispan;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.TransactionManager;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.VersioningScheme;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.transaction.TransactionMode;
+import org.infinispan.transaction.lookup.JBossStandaloneJTAManagerLookup;
+import org.infinispan.util.concurrent.IsolationLevel;
+
+/**
+ * Compares the per-slot and the per-object layouts of the domain objects (see {@link
+ * InfinispanCodeGenerator#OBJECT_LAYOUT_CONFIG_KEY}) on a read-mostly and on a write-heavy
+ * workload.  Each transaction either reads all the slots of an object or writes one of its slots,
+ * using the same cache operations as the generated getters and setters.  The per-slot layout is
+ * also measured with the string keys built on every access, as generated before {@link SlotKey}.
+ *
+ * Usage: <code>ObjectLayoutBenchmark [ispnConfigFile [threads [seconds]]]</code>.  Without a
+ * configuration file, a local transactional cache is used.
+ */
+public class ObjectLayoutBenchmark {
+
+    private static final String CACHE_NAME = "DomainCache";
+    private static final int NUMBER_OF_OBJECTS = 10000;
+    private static final int NUMBER_OF_SLOTS = 8;
+    private static final String[] SLOT_NAMES = new String[NUMBER_OF_SLOTS];
+    private static final SlotKey[][] SLOT_KEYS = new SlotKey[NUMBER_OF_OBJECTS][NUMBER_OF_SLOTS];
+    private static final SlotKey[] RECORD_KEYS = new SlotKey[NUMBER_OF_OBJECTS];
+
+    static {
+        for (int i = 0; i < NUMBER_OF_SLOTS; i++) {
+            SLOT_NAMES[i] = "slot" + i;
+        }
+        for (int i = 0; i < NUMBER_OF_OBJECTS; i++) {
+            RECORD_KEYS[i] = new SlotKey(oid(i), SlotKey.OBJECT_RECORD);
+            for (int slot = 0; slot < NUMBER_OF_SLOTS; slot++) {
+                SLOT_KEYS[i][slot] = new SlotKey(oid(i), slot);
+            }
+        }
+    }
+
+    private static enum Layout {
+        PER_SLOT_STRING {
+            @Override
+            Object read(Cache<Object, Object> cache, int object, int slot) {
+                return cache.get(oid(object) + ":" + SLOT_NAMES[slot]);
+            }
+
+            @Override
+            void write(Cache<Object, Object> cache, int object, int slot, Object value) {
+                cache.put(oid(object) + ":" + SLOT_NAMES[slot], value);
+            }
+        },
+        PER_SLOT {
+            @Override
+            Object read(Cache<Object, Object> cache, int object, int slot) {
+                return cache.get(SLOT_KEYS[object][slot]);
+            }
+
+            @Override
+            void write(Cache<Object, Object> cache, int object, int slot, Object value) {
+                cache.put(SLOT_KEYS[object][slot], value);
+            }
+        },
+        PER_OBJECT {
+            @Override
+            Object read(Cache<Object, Object> cache, int object, int slot) {
+                return ObjectRecord.getSlot(cache.get(RECORD_KEYS[object]), slot);
+            }
+
+            @Override
+            void write(Cache<Object, Object> cache, int object, int slot, Object value) {
+                SlotKey key = RECORD_KEYS[object];
+                cache.put(key, ObjectRecord.withSlot(cache.get(key), slot, value));
+            }
+        };
+
+        abstract Object read(Cache<Object, Object> cache, int object, int slot);
+
+        abstract void write(Cache<Object, Object> cache, int object, int slot, Object value);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFile = args.length > 0 ? args[0] : null;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        EmbeddedCacheManager cacheManager = configFile == null ?
+            new DefaultCacheManager(localConfiguration()) : new DefaultCacheManager(configFile);
+        try {
+            Cache<Object, Object> cache = cacheManager.getCache(CACHE_NAME);
+            System.out.println("layout           workload      tx/s      aborts    keys");
+            for (Layout layout : Layout.values()) {
+                for (int writePercentage : new int[] { 10, 50 }) {
+                    cache.clear();
+                    populate(cache, layout);
+                    run(cache, layout, writePercentage, threads, seconds);
+                }
+            }
+        } finally {
+            cacheManager.stop();
+        }
+    }
+
+    private static org.infinispan.configuration.cache.Configuration localConfiguration() {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.transaction().transactionMode(TransactionMode.TRANSACTIONAL)
+            .transactionManagerLookup(new JBossStandaloneJTAManagerLookup());
+        builder.locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true)
+            .versioning().enable().scheme(VersioningScheme.SIMPLE);
+        return builder.build();
+    }
+
+    private static void populate(Cache<Object, Object> cache, Layout layout) throws Exception {
+        TransactionManager tm = cache.getAdvancedCache().getTransactionManager();
+        for (int i = 0; i < NUMBER_OF_OBJECTS; i++) {
+            tm.begin();
+            for (int slot = 0; slot < NUMBER_OF_SLOTS; slot++) {
+                layout.write(cache, i, slot, i);
+            }
+            tm.commit();
+        }
+    }
+
+    private static void run(final Cache<Object, Object> cache, final Layout layout, final int writePercentage,
+                            int threads, int seconds) throws Exception {
+        final TransactionManager tm = cache.getAdvancedCache().getTransactionManager();
+        final AtomicLong commits = new AtomicLong();
+        final AtomicLong aborts = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] stop = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (System.nanoTime() < stop[0]) {
+                        int object = random.nextInt(NUMBER_OF_OBJECTS);
+                        try {
+                            tm.begin();
+                            if (random.nextInt(100) < writePercentage) {
+                                layout.write(cache, object, random.nextInt(NUMBER_OF_SLOTS), random.nextInt());
+                            } else {
+                                for (int slot = 0; slot < NUMBER_OF_SLOTS; slot++) {
+                                    layout.read(cache, object, slot);
+                                }
+                            }
+                            tm.commit();
+                            commits.incrementAndGet();
+                        } catch (Exception e) {
+                            aborts.incrementAndGet();
+                            try {
+                                tm.rollback();
+                            } catch (Exception ignored) {
+                                // the transaction was already rolled back
+                            }
+                        }
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        stop[0] = System.nanoTime() + seconds * 1000000000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.println(String.format("%-16s %-12s %9d %9d %9d", layout, writePercentage + "% writes",
+                                         commits.get() / seconds, aborts.get(), cache.size()));
+    }
+
+    private static String oid(int i) {
+        return "pt.ist.fenixframework.Benchmark@" + i;
+    }
+}
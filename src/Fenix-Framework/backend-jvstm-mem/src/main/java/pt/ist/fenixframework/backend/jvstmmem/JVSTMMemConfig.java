@@ -1,5 +1,6 @@
 package pt.ist.fenixframework.backend.jvstmmem;
 
+import pt.ist.fenixframework.ConfigError;
 import pt.ist.fenixframework.FenixFramework;
 import pt.ist.fenixframework.backend.BackEnd;
 import pt.ist.fenixframework.indexes.IndexesConfig;
@@ -7,12 +8,30 @@ import pt.ist.fenixframework.indexes.IndexesConfig;
 public class JVSTMMemConfig extends IndexesConfig {
     protected final BackEnd backEnd;
 
+    /**
+     * This <strong>optional</strong> parameter specifies the number of times a transaction is
+     * executed optimistically before it is executed as an inevitable transaction, which does not
+     * abort but runs alone.  The value <code>0</code> executes all the transactions as inevitable
+     * transactions.  The default value for this parameter is {@link
+     * JVSTMMemTransactionManager#DEFAULT_MAX_OPTIMISTIC_ATTEMPTS}.
+     */
+    protected int maxOptimisticAttempts = JVSTMMemTransactionManager.DEFAULT_MAX_OPTIMISTIC_ATTEMPTS;
+
     public JVSTMMemConfig() {
 	this.backEnd = new JVSTMMemBackEnd();
     }
 
+    protected void maxOptimisticAttemptsFromString(String value) {
+	try {
+	    maxOptimisticAttempts = Integer.parseInt(value.trim());
+	} catch (NumberFormatException e) {
+	    throw new ConfigError(e);
+	}
+    }
+
     @Override
     protected void init() {
+	((JVSTMMemTransactionManager)backEnd.getTransactionManager()).setMaxOptimisticAttempts(maxOptimisticAttempts);
 	DomainClassInfo.initializeClassInfos(FenixFramework.getDomainModel(), 0);
 	super.init();
     }
@@ -16,8 +16,37 @@ import pt.ist.fenixframework.CommitListener;
 import pt.ist.fenixframework.Transaction;
 import pt.ist.fenixframework.TransactionManager;
 
+/**
+ * Executes the transactions with JVSTM.  The transactions are executed optimistically and are
+ * restarted when they conflict with a concurrent transaction.  A transaction that aborts too many
+ * times is executed as an inevitable transaction, which never aborts but runs alone.  The exceptions
+ * thrown by the transactions are propagated after the transaction is aborted.
+ */
 public class JVSTMMemTransactionManager implements TransactionManager {
 
+    /**
+     * The default number of optimistic executions of a transaction before it is executed as an
+     * inevitable transaction.
+     */
+    public static final int DEFAULT_MAX_OPTIMISTIC_ATTEMPTS = 8;
+
+    private volatile int maxOptimisticAttempts = DEFAULT_MAX_OPTIMISTIC_ATTEMPTS;
+
+    /**
+     * Sets the number of optimistic executions of a transaction before it is executed as an
+     * inevitable transaction.  With <code>0</code>, all the transactions are inevitable.
+     */
+    void setMaxOptimisticAttempts(int maxOptimisticAttempts) {
+	if (maxOptimisticAttempts < 0) {
+	    throw new IllegalArgumentException("The number of optimistic attempts must not be negative");
+	}
+	this.maxOptimisticAttempts = maxOptimisticAttempts;
+    }
+
+    int getMaxOptimisticAttempts() {
+	return maxOptimisticAttempts;
+    }
+
     @Override
     public void begin() {
         begin(false);
@@ -63,36 +92,75 @@ public class JVSTMMemTransactionManager implements TransactionManager {
     }
 
     @Override
-    public <T> T withTransaction(Callable<T> command) {
-	try {
-	    return jvstm.Transaction.doIt(command);
-	} catch (Exception e) {
-	    e.printStackTrace();
-	    System.exit(-11);
-	    return null;
+    public <T> T withTransaction(Callable<T> command) throws Exception {
+	return withTransaction(command, null);
+    }
+
+    /**
+     * Unless the <code>atomic</code> is <code>null</code>, the transaction first runs as a
+     * read-only transaction if the method is read-only or speculatively read-only, and restarts as
+     * a read-write transaction when it writes.  A transaction that is already inside another is
+     * flattened into it.
+     */
+    @Override
+    public <T> T withTransaction(Callable<T> command, Atomic atomic) throws Exception {
+	if (jvstm.Transaction.current() != null) {
+	    return command.call();
+	}
+
+	boolean readOnly = atomic != null && (atomic.readOnly() || atomic.speculativeReadOnly());
+	int attempts = 0;
+	while (attempts < maxOptimisticAttempts) {
+	    jvstm.Transaction.begin(readOnly);
+	    boolean txFinished = false;
+	    try {
+		T result = command.call();
+		jvstm.Transaction.commit();
+		txFinished = true;
+		return result;
+	    } catch (jvstm.CommitException ce) {
+		jvstm.Transaction.abort();
+		txFinished = true;
+		attempts++;
+	    } catch (jvstm.WriteOnReadException wore) {
+		jvstm.Transaction.abort();
+		txFinished = true;
+		readOnly = false;
+	    } finally {
+		if (!txFinished) {
+		    jvstm.Transaction.abort();
+		}
+	    }
 	}
+	// aborted too many times (or the optimistic execution is disabled)
+	return withInevitableTransaction(command);
     }
 
     @Override
-    public <T> T withTransaction(Callable<T> command, Atomic atomic) {
+    public <T> T withTransaction(CallableWithoutException<T> command) {
 	try {
-	    jvstm.Transaction.beginInevitable();
-	    T res = command.call();
-	    jvstm.Transaction.commit();
-	    return res;
+	    return withTransaction(command, null);
+	} catch (RuntimeException e) {
+	    throw e;
 	} catch (Exception e) {
-	    e.printStackTrace();
-	    System.exit(-11);
-	    return null;
+	    // the command does not throw checked exceptions
+	    throw new RuntimeException(e);
 	}
     }
 
-    @Override
-    public <T> T withTransaction(CallableWithoutException<T> command) {
+    private <T> T withInevitableTransaction(Callable<T> command) throws Exception {
 	jvstm.Transaction.beginInevitable();
-	T res = command.call();
-	jvstm.Transaction.commit();
-	return res;
+	boolean txFinished = false;
+	try {
+	    T res = command.call();
+	    jvstm.Transaction.commit();
+	    txFinished = true;
+	    return res;
+	} finally {
+	    if (!txFinished) {
+		jvstm.Transaction.abort();
+	    }
+	}
     }
 
     @Override
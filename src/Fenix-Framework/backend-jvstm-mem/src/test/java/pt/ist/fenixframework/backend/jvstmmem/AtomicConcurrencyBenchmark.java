@@ -0,0 +1,173 @@
+package pt.ist.fenixframework.backend.jvstmmem;
+
+import java.lang.annotation.Annotation;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.FenixFramework;
+import pt.ist.fenixframework.atomic.ContextFactory;
+import pt.ist.fenixframework.atomic.DefaultContextFactoryViaReflection;
+import pt.ist.fenixframework.core.adt.bplustree.BPlusTree;
+
+/**
+ * Compares the optimistic execution of the @Atomic methods with their execution as inevitable
+ * transactions (see {@link JVSTMMemTransactionManager#setMaxOptimisticAttempts(int)}), on a
+ * read-mostly (10% writes) and on a write-heavy (50% writes) workload.  Each transaction either
+ * looks up some elements of a B+Tree, or removes an element of a B+Tree or inserts it back.  The
+ * elements are themselves empty B+Trees, the only domain objects available in this backend.
+ *
+ * Usage: <code>AtomicConcurrencyBenchmark [threads [seconds [trees]]]</code>.  The number of trees
+ * controls the contention.
+ */
+public class AtomicConcurrencyBenchmark {
+
+    private static final String APP_NAME = "fenix-framework-backend-jvstm-mem";
+    private static final int ELEMENTS_PER_TREE = 1000;
+    private static final int LOOKUPS_PER_TRANSACTION = 10;
+
+    private static final Atomic READ = new AtomicAnnotation(false, true);
+    private static final Atomic WRITE = new AtomicAnnotation(false, false);
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int numberOfTrees = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        FenixFramework.initialize(new JVSTMMemConfig() {
+            {
+                appNameFromString(APP_NAME);
+            }
+        });
+        try {
+            JVSTMMemTransactionManager tm = (JVSTMMemTransactionManager)FenixFramework.getTransactionManager();
+            BPlusTree<BPlusTree>[] trees = new BPlusTree[numberOfTrees];
+            BPlusTree[][] elements = new BPlusTree[numberOfTrees][ELEMENTS_PER_TREE];
+            populate(tm, trees, elements);
+
+            System.out.println("execution        workload      tx/s");
+            for (int writePercentage : new int[] { 10, 50 }) {
+                tm.setMaxOptimisticAttempts(0);
+                run(tm, "inevitable", trees, elements, writePercentage, threads, seconds);
+                tm.setMaxOptimisticAttempts(JVSTMMemTransactionManager.DEFAULT_MAX_OPTIMISTIC_ATTEMPTS);
+                run(tm, "optimistic", trees, elements, writePercentage, threads, seconds);
+            }
+        } finally {
+            FenixFramework.shutdown();
+        }
+    }
+
+    private static void populate(JVSTMMemTransactionManager tm, final BPlusTree<BPlusTree>[] trees,
+                                 final BPlusTree[][] elements) throws Exception {
+        tm.withTransaction(new Callable<Object>() {
+            @Override
+            public Object call() {
+                for (int i = 0; i < trees.length; i++) {
+                    trees[i] = new BPlusTree<BPlusTree>();
+                    for (int j = 0; j < ELEMENTS_PER_TREE; j++) {
+                        elements[i][j] = new BPlusTree();
+                        trees[i].insert(elements[i][j]);
+                    }
+                }
+                return null;
+            }
+        }, WRITE);
+    }
+
+    private static void run(final JVSTMMemTransactionManager tm, String execution, final BPlusTree<BPlusTree>[] trees,
+                            final BPlusTree[][] elements, final int writePercentage, int threads, int seconds)
+        throws Exception {
+        final AtomicLong commits = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] stop = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        while (System.nanoTime() < stop[0]) {
+                            final int tree = random.nextInt(trees.length);
+                            if (random.nextInt(100) < writePercentage) {
+                                final BPlusTree element = elements[tree][random.nextInt(ELEMENTS_PER_TREE)];
+                                tm.withTransaction(new Callable<Object>() {
+                                    @Override
+                                    public Object call() {
+                                        if (!trees[tree].remove(element)) {
+                                            trees[tree].insert(element);
+                                        }
+                                        return null;
+                                    }
+                                }, WRITE);
+                            } else {
+                                final int first = random.nextInt(ELEMENTS_PER_TREE);
+                                tm.withTransaction(new Callable<Object>() {
+                                    @Override
+                                    public Object call() {
+                                        for (int i = 0; i < LOOKUPS_PER_TRANSACTION; i++) {
+                                            trees[tree].contains(elements[tree][(first + i) % ELEMENTS_PER_TREE]);
+                                        }
+                                        return null;
+                                    }
+                                }, READ);
+                            }
+                            commits.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        stop[0] = System.nanoTime() + seconds * 1000000000L;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.println(String.format("%-16s %-12s %9d", execution, writePercentage + "% writes",
+                                         commits.get() / seconds));
+    }
+
+    /**
+     * The @Atomic annotation is not kept at runtime, so the benchmark uses its own instances.
+     */
+    private static class AtomicAnnotation implements Atomic {
+        private final boolean readOnly;
+        private final boolean speculativeReadOnly;
+
+        private AtomicAnnotation(boolean readOnly, boolean speculativeReadOnly) {
+            this.readOnly = readOnly;
+            this.speculativeReadOnly = speculativeReadOnly;
+        }
+
+        @Override
+        public boolean readOnly() {
+            return readOnly;
+        }
+
+        @Override
+        public boolean canFail() {
+            return true;
+        }
+
+        @Override
+        public boolean speculativeReadOnly() {
+            return speculativeReadOnly;
+        }
+
+        @Override
+        public Class<? extends ContextFactory> contextFactory() {
+            return DefaultContextFactoryViaReflection.class;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return Atomic.class;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package pt.ist.fenixframework.backend.jvstmmem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jvstm.CommitException;
+import jvstm.VBox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.atomic.ContextFactory;
+import pt.ist.fenixframework.atomic.DefaultContextFactoryViaReflection;
+
+/**
+ * Tests the execution of the transactions by {@link JVSTMMemTransactionManager}.  The conflicts
+ * are simulated by throwing a {@link CommitException} from the transaction, as done by JVSTM when
+ * the validation fails.
+ */
+@RunWith(JUnit4.class)
+public class JVSTMMemTransactionManagerTest {
+
+    private static final Atomic SPECULATIVE_READ_ONLY = new AtomicAnnotation(false, true);
+
+    private JVSTMMemTransactionManager tm;
+    private VBox<Integer> box;
+
+    @Before
+    public void setUp() {
+	tm = new JVSTMMemTransactionManager();
+	box = new VBox<Integer>(0);
+    }
+
+    @After
+    public void tearDown() {
+	// no transaction must be left running in the test thread
+	assertNull(jvstm.Transaction.current());
+    }
+
+    @Test
+    public void testReadOnlyRestartsAsReadWrite() throws Exception {
+	final AtomicInteger executions = new AtomicInteger();
+	Integer result = tm.withTransaction(new Callable<Integer>() {
+	    @Override
+	    public Integer call() {
+		executions.incrementAndGet();
+		// throws WriteOnReadException in the read-only execution
+		box.put(box.get() + 1);
+		return box.get();
+	    }
+	}, SPECULATIVE_READ_ONLY);
+
+	assertEquals(Integer.valueOf(1), result);
+	assertEquals(2, executions.get());
+	assertEquals(Integer.valueOf(1), readBox());
+    }
+
+    @Test
+    public void testInevitableAfterMaxOptimisticAttempts() throws Exception {
+	tm.setMaxOptimisticAttempts(3);
+	final AtomicInteger executions = new AtomicInteger();
+	Integer result = tm.withTransaction(new Callable<Integer>() {
+	    @Override
+	    public Integer call() {
+		if (executions.incrementAndGet() <= 3) {
+		    box.put(-1);
+		    throw new CommitException();
+		}
+		box.put(1);
+		return executions.get();
+	    }
+	});
+
+	// the fourth execution is the inevitable one
+	assertEquals(Integer.valueOf(4), result);
+	assertEquals(Integer.valueOf(1), readBox());
+    }
+
+    @Test
+    public void testInevitableExecutionIsNotRestarted() throws Exception {
+	tm.setMaxOptimisticAttempts(2);
+	final AtomicInteger executions = new AtomicInteger();
+	try {
+	    tm.withTransaction(new Callable<Object>() {
+		@Override
+		public Object call() {
+		    executions.incrementAndGet();
+		    throw new CommitException();
+		}
+	    });
+	    fail("The inevitable transaction should not be restarted");
+	} catch (CommitException expected) {
+	    // the two optimistic executions and the inevitable one
+	    assertEquals(3, executions.get());
+	}
+    }
+
+    @Test
+    public void testZeroOptimisticAttemptsRunsInevitable() throws Exception {
+	tm.setMaxOptimisticAttempts(0);
+	final AtomicInteger executions = new AtomicInteger();
+	try {
+	    tm.withTransaction(new Callable<Object>() {
+		@Override
+		public Object call() {
+		    executions.incrementAndGet();
+		    throw new CommitException();
+		}
+	    }, SPECULATIVE_READ_ONLY);
+	    fail("The inevitable transaction should not be restarted");
+	} catch (CommitException expected) {
+	    assertEquals(1, executions.get());
+	}
+
+	// the inevitable transaction is never read-only
+	Integer result = tm.withTransaction(new Callable<Integer>() {
+	    @Override
+	    public Integer call() {
+		box.put(7);
+		return box.get();
+	    }
+	}, SPECULATIVE_READ_ONLY);
+	assertEquals(Integer.valueOf(7), result);
+	assertEquals(Integer.valueOf(7), readBox());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOptimisticAttempts() {
+	tm.setMaxOptimisticAttempts(-1);
+    }
+
+    @Test
+    public void testNestedTransactionIsFlattened() throws Exception {
+	final AtomicInteger innerExecutions = new AtomicInteger();
+	tm.withTransaction(new Callable<Object>() {
+	    @Override
+	    public Object call() throws Exception {
+		final jvstm.Transaction outer = jvstm.Transaction.current();
+		box.put(1);
+		tm.withTransaction(new Callable<Object>() {
+		    @Override
+		    public Object call() {
+			innerExecutions.incrementAndGet();
+			assertSame(outer, jvstm.Transaction.current());
+			assertEquals(Integer.valueOf(1), box.get());
+			box.put(2);
+			return null;
+		    }
+		}, SPECULATIVE_READ_ONLY);
+		// the inner transaction did not commit by itself
+		assertSame(outer, jvstm.Transaction.current());
+		assertEquals(Integer.valueOf(2), box.get());
+		return null;
+	    }
+	});
+
+	assertEquals(1, innerExecutions.get());
+	assertEquals(Integer.valueOf(2), readBox());
+    }
+
+    @Test
+    public void testUserExceptionIsPropagatedAfterAbort() throws Exception {
+	final Exception failure = new Exception("user failure");
+	final AtomicInteger executions = new AtomicInteger();
+	try {
+	    tm.withTransaction(new Callable<Object>() {
+		@Override
+		public Object call() throws Exception {
+		    executions.incrementAndGet();
+		    box.put(1);
+		    throw failure;
+		}
+	    });
+	    fail("The exception of the transaction should be propagated");
+	} catch (Exception e) {
+	    assertSame(failure, e);
+	}
+
+	assertEquals(1, executions.get());
+	// the write was discarded
+	assertEquals(Integer.valueOf(0), readBox());
+    }
+
+    @Test
+    public void testUserExceptionIsPropagatedFromInevitable() throws Exception {
+	tm.setMaxOptimisticAttempts(0);
+	final RuntimeException failure = new IllegalStateException("user failure");
+	try {
+	    tm.withTransaction(new Callable<Object>() {
+		@Override
+		public Object call() {
+		    box.put(1);
+		    throw failure;
+		}
+	    });
+	    fail("The exception of the transaction should be propagated");
+	} catch (IllegalStateException e) {
+	    assertSame(failure, e);
+	}
+
+	assertEquals(Integer.valueOf(0), readBox());
+    }
+
+    private Integer readBox() throws Exception {
+	return tm.withTransaction(new Callable<Integer>() {
+	    @Override
+	    public Integer call() {
+		return box.get();
+	    }
+	}, SPECULATIVE_READ_ONLY);
+    }
+
+    /**
+     * The @Atomic annotation is not kept at runtime, so the test uses its own instances.
+     */
+    private static class AtomicAnnotation implements Atomic {
+	private final boolean readOnly;
+	private final boolean speculativeReadOnly;
+
+	private AtomicAnnotation(boolean readOnly, boolean speculativeReadOnly) {
+	    this.readOnly = readOnly;
+	    this.speculativeReadOnly = speculativeReadOnly;
+	}
+
+	@Override
+	public boolean readOnly() {
+	    return readOnly;
+	}
+
+	@Override
+	public boolean canFail() {
+	    return true;
+	}
+
+	@Override
+	public boolean speculativeReadOnly() {
+	    return speculativeReadOnly;
+	}
+
+	@Override
+	public Class<? extends ContextFactory> contextFactory() {
+	    return DefaultContextFactoryViaReflection.class;
+	}
+
+	@Override
+	public Class<? extends Annotation> annotationType() {
+	    return Atomic.class;
+	}
+    }
+}
@@ -52,6 +52,15 @@ public interface GridDialect extends Service {
 	 */
 	Tuple getTuple(EntityKey key, TupleContext tupleContext);
 
+	/**
+	 * Return the tuples for the given keys, in the order of the keys.
+	 * The element of a key is null if the tuple is not present.
+	 *
+	 * Dialects able to fetch several keys in a single round trip should do so,
+	 * the others can simply delegate to {@link #getTuple(EntityKey, TupleContext)}
+	 */
+	Tuple[] getTuples(EntityKey[] keys, TupleContext tupleContext);
+
 	/**
 	 * Return a new tuple for a given key
 	 * Only used if the tuple is not present
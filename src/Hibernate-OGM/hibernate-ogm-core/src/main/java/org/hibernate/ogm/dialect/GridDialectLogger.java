@@ -20,6 +20,8 @@
  */
 package org.hibernate.ogm.dialect;
 
+import java.util.Arrays;
+
 import org.hibernate.LockMode;
 import org.hibernate.dialect.lock.LockingStrategy;
 import org.hibernate.id.IntegralDataTypeHolder;
@@ -79,6 +81,12 @@ public class GridDialectLogger implements GridDialect {
 		return gridDialect.getTuple( key, tupleContext );
 	}
 
+	@Override
+	public Tuple[] getTuples(EntityKey[] keys, TupleContext tupleContext) {
+		log.tracef( "Reading %1$d Tuples with keys %2$s and context %3$s", keys.length, Arrays.toString( keys ), tupleContext.toString() );
+		return gridDialect.getTuples( keys, tupleContext );
+	}
+
 	@Override
 	public Tuple createTuple(EntityKey key) {
 		log.tracef( "Build Tuple object with key %1$s (does not trigger access to the datastore)", key );
@@ -149,6 +149,33 @@ public class OgmLoader implements UniqueEntityLoader {
 					MessageHelper.infoString( currentPersister, id, currentPersister.getIdentifierType(), session.getFactory() )
 				);
 		}
+		final Serializable[] ids = getIdsToLoad( id, session );
+		if ( ids.length == 1 ) {
+			return loadEntity( id, optionalObject, session, lockOptions, null );
+		}
+
+		//the proxies waiting in the batch fetch queue are read along with the requested entity
+		final EntityKey[] keys = new EntityKey[ids.length];
+		for ( int i = 0; i < ids.length; i++ ) {
+			keys[i] = EntityKeyBuilder.fromPersister( currentPersister, ids[i], session );
+		}
+		final Tuple[] tuples = gridDialect.getTuples( keys, currentPersister.getTupleContext() );
+
+		final Object result = loadEntity( id, optionalObject, session, lockOptions, toResultSet( tuples[0] ) );
+		for ( int i = 1; i < ids.length; i++ ) {
+			//a missing entity is reported when its own proxy is initialized
+			if ( tuples[i] != null ) {
+				loadEntity( ids[i], null, session, lockOptions, toResultSet( tuples[i] ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Load a single entity from the given result set, or from the datastore if the result set is null
+	 */
+	private Object loadEntity(Serializable id, Object optionalObject, SessionImplementor session, LockOptions lockOptions, TupleAsMapResultSet resultset) {
+		final OgmEntityPersister currentPersister = entityPersisters[0];
 		QueryParameters qp = new QueryParameters();
 		qp.setPositionalParameterTypes( new Type[] { currentPersister.getIdentifierType() } );
 		qp.setPositionalParameterValues( new Object[] { id } );
@@ -160,11 +187,44 @@ public class OgmLoader implements UniqueEntityLoader {
 		Object result = doQueryAndInitializeNonLazyCollections(
 				session,
 				qp,
-				false
+				false,
+				resultset
 			);
 		return result;
 	}
 
+	/**
+	 * Return the requested id followed by the ids of the uninitialized proxies of the same entity
+	 * waiting in the batch fetch queue, up to the batch size of the entity
+	 */
+	private Serializable[] getIdsToLoad(Serializable id, SessionImplementor session) {
+		final OgmEntityPersister persister = entityPersisters[0];
+		final int batchSize = persister.getLoadBatchSize();
+		if ( batchSize <= 1 ) {
+			return new Serializable[] { id };
+		}
+		final Serializable[] batch = session.getPersistenceContext()
+				.getBatchFetchQueue()
+				.getEntityBatch( persister, id, batchSize, persister.getEntityMode() );
+		final List<Serializable> ids = new ArrayList<Serializable>( batch.length );
+		ids.add( id );
+		for ( Serializable batchedId : batch ) {
+			//the batch is padded with nulls
+			if ( batchedId != null && !persister.getIdentifierType().isEqual( id, batchedId ) ) {
+				ids.add( batchedId );
+			}
+		}
+		return ids.toArray( new Serializable[ids.size()] );
+	}
+
+	private TupleAsMapResultSet toResultSet(Tuple tuple) {
+		final TupleAsMapResultSet resultset = new TupleAsMapResultSet();
+		if ( tuple != null ) {
+			resultset.addTuple( tuple );
+		}
+		return resultset;
+	}
+
 	/**
 	 * Called by subclasses that initialize collections
 	 */
@@ -203,6 +263,18 @@ public class OgmLoader implements UniqueEntityLoader {
 			SessionImplementor session,
 			QueryParameters qp,
 			boolean returnProxies) {
+		return doQueryAndInitializeNonLazyCollections( session, qp, returnProxies, null );
+	}
+
+	/**
+	 * Load the entity activating the persistence context execution boundaries
+	 * from the tuples already read if the result set is not null
+	 */
+	private Object doQueryAndInitializeNonLazyCollections(
+			SessionImplementor session,
+			QueryParameters qp,
+			boolean returnProxies,
+			TupleAsMapResultSet prefetchedResultSet) {
 
 
 		//TODO handles the read only
@@ -215,7 +287,8 @@ public class OgmLoader implements UniqueEntityLoader {
 				result = doQuery(
 						session,
 						qp,
-						returnProxies
+						returnProxies,
+						prefetchedResultSet
 				);
 			}
 			finally {
@@ -238,14 +311,15 @@ public class OgmLoader implements UniqueEntityLoader {
 	private Object doQuery(
 			SessionImplementor session,
 			QueryParameters qp,
-			boolean returnProxies) {
+			boolean returnProxies,
+			TupleAsMapResultSet prefetchedResultSet) {
 		//TODO support lock timeout
 
 		int entitySpan = entityPersisters.length;
 		final List<Object> hydratedObjects = entitySpan == 0 ? null : new ArrayList<Object>( entitySpan * 10 );
 		//TODO yuk! Is there a cleaner way to access the id?
 		final Serializable id = qp.getOptionalId() != null ? qp.getOptionalId() : ( Serializable ) qp.getCollectionKeys()[0];
-		TupleAsMapResultSet resultset = getResultSet( id, session );
+		TupleAsMapResultSet resultset = prefetchedResultSet != null ? prefetchedResultSet : getResultSet( id, session );
 
 		//Todo implement lockmode
 		//final LockMode[] lockModesArray = getLockModes( queryParameters.getLockOptions() );
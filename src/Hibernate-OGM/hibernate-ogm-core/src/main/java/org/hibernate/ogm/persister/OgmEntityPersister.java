@@ -105,6 +105,7 @@ public class OgmEntityPersister extends AbstractEntityPersister implements Entit
 	private final String jpaEntityName;
 	private Object discriminatorValue;
 	private final TupleContext tupleContext;
+	private final int loadBatchSize;
 
 	//service references
 	private final GridDialect gridDialect;
@@ -132,6 +133,12 @@ public class OgmEntityPersister extends AbstractEntityPersister implements Entit
 		discriminatorValue = persistentClass.getSubclassId();
 		discriminatorSQLValue = String.valueOf( persistentClass.getSubclassId() );
 
+		int batchSize = persistentClass.getBatchSize();
+		if ( batchSize == -1 ) {
+			batchSize = factory.getSettings().getDefaultBatchFetchSize();
+		}
+		loadBatchSize = batchSize;
+
 		// SUBCLASSES
 
 		//We do not need a discriminator as each entity type will be in its own key "space" roughly like a
@@ -1147,6 +1154,14 @@ public class OgmEntityPersister extends AbstractEntityPersister implements Entit
 		return this.tupleContext;
 	}
 
+	/**
+	 * Maximum number of entities read from the datastore at once when an uninitialized
+	 * proxy of this entity is loaded (see {@code @BatchSize})
+	 */
+	public int getLoadBatchSize() {
+		return loadBatchSize;
+	}
+
 	public String getJpaEntityName() {
 		return jpaEntityName;
 	}
@@ -98,6 +98,11 @@ public class DatastoreProviderGeneratingSchema implements DatastoreProvider, Sta
 			return null;  //To change body of implemented methods use File | Settings | File Templates.
 		}
 
+		@Override
+		public Tuple[] getTuples(EntityKey[] keys, TupleContext tupleContext) {
+			return new Tuple[keys.length];
+		}
+
 		@Override
 		public Tuple createTuple(EntityKey key) {
 			return null;  //To change body of implemented methods use File | Settings | File Templates.
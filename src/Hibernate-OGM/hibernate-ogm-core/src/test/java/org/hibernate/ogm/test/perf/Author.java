@@ -23,10 +23,13 @@ package org.hibernate.ogm.test.perf;
 import javax.persistence.*;
 import java.util.Date;
 
+import org.hibernate.annotations.BatchSize;
+
 /**
  * @author Emmanuel Bernard <emmanuel@hibernate.org>
  */
 @Entity
+@BatchSize(size = 50)
 public class Author {
 	String fname;
 	String lname;
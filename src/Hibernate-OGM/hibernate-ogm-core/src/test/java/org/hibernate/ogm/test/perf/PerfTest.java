@@ -44,6 +44,7 @@ public class PerfTest extends JpaTestCase {
 			perfTest.createFactory();
 			//perfTest.testSimpleEntityInserts();
 			//perfTest.testManyToOneAssociations();
+			//perfTest.testBatchedEntityLoads();
 			perfTest.testCollectionAssociations();
 			perfTest.closeFactory();
 		}
@@ -170,6 +171,57 @@ public class PerfTest extends JpaTestCase {
 
 
 
+	/**
+	 * Compares loading Authors one by one with loading them through proxies:
+	 * Author has a batch size so the proxies are read from the datastore in batches.
+	 * The loads run within a transaction, so with Infinispan the batches are read
+	 * sequentially and only the per-entity loader overhead is saved.
+	 */
+	public void testBatchedEntityLoads() throws Exception {
+		getTransactionManager().begin();
+		EntityManager em = getFactory().createEntityManager();
+		int authors = 20000;
+		System.out.printf("Saving %s authors\n", authors);
+		for (int j = 0 ; j < authors/200; j++) {
+			save200AuthorsAndCommit(em, 200);
+		}
+		em.close();
+		getTransactionManager().commit();
+
+		int nbr_of_loads = 10000;
+		int[] primaryKeys = new int[nbr_of_loads];
+		for (int i = 0 ; i < nbr_of_loads; i++) {
+			primaryKeys[i] = randId(authors);
+		}
+
+		getTransactionManager().begin();
+		em = getFactory().createEntityManager();
+		long start = System.nanoTime();
+		for (int primaryKey : primaryKeys) {
+			Author author = em.find(Author.class, primaryKey);
+			assertThat(author.getBio()).isNotEmpty();
+		}
+		long duration = System.nanoTime() - start;
+		System.out.printf("Loading %s authors one by one took %sms ie %sns/entry\n", nbr_of_loads, duration / 1000000, duration / nbr_of_loads);
+		em.close();
+		getTransactionManager().commit();
+
+		getTransactionManager().begin();
+		em = getFactory().createEntityManager();
+		start = System.nanoTime();
+		Author[] proxies = new Author[nbr_of_loads];
+		for (int i = 0 ; i < nbr_of_loads; i++) {
+			proxies[i] = em.getReference(Author.class, primaryKeys[i]);
+		}
+		for (Author author : proxies) {
+			assertThat(author.getBio()).isNotEmpty();
+		}
+		duration = System.nanoTime() - start;
+		System.out.printf("Loading %s authors in batches took %sms ie %sns/entry\n", nbr_of_loads, duration / 1000000, duration / nbr_of_loads);
+		em.close();
+		getTransactionManager().commit();
+	}
+
 	public void testSimpleEntityInserts() throws Exception {
 		getTransactionManager().begin();
 		EntityManager em = getFactory().createEntityManager();
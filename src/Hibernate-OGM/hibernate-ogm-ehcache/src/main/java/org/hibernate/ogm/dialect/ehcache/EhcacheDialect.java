@@ -94,6 +94,15 @@ public class EhcacheDialect implements GridDialect {
 		}
 	}
 
+	@Override
+	public Tuple[] getTuples(EntityKey[] keys, TupleContext tupleContext) {
+		Tuple[] tuples = new Tuple[keys.length];
+		for ( int i = 0; i < keys.length; i++ ) {
+			tuples[i] = getTuple( keys[i], tupleContext );
+		}
+		return tuples;
+	}
+
 	@Override
 	public Tuple createTuple(EntityKey key) {
 		final Cache entityCache = getEntityCache();
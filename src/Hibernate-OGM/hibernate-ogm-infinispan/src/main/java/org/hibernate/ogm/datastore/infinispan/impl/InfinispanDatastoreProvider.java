@@ -24,6 +24,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hibernate.HibernateException;
 import org.hibernate.ogm.datastore.spi.DatastoreProvider;
@@ -82,12 +86,22 @@ public class InfinispanDatastoreProvider implements DatastoreProvider, Startable
 	 */
 	public static final String CACHE_MANAGER_RESOURCE_PROP = "hibernate.ogm.infinispan.cachemanager_jndiname";
 	
+	/**
+	 * The key for the configuration property to define the number of threads used to read
+	 * the entities owned by different nodes in parallel when several entities are loaded at once
+	 * outside of a transaction. The loads within a transaction are never parallel.
+	 * Defaults to the number of available processors; 0 disables the parallel reads.
+	 */
+	public static final String BULK_LOAD_THREADS_PROP = "hibernate.ogm.infinispan.bulk_load_threads";
+
 	public static final String INFINISPAN_DEFAULT_CONFIG = "org/hibernate/ogm/datastore/infinispan/default-config.xml";
 	
 	private static final Log log = LoggerFactory.make();
 	
 	private EmbeddedCacheManager cacheManager;
 
+	private ExecutorService bulkLoadExecutor;
+
 	public void start() {
 		if ( started ) {
 			// ServiceRegistry might invoke start multiple times, but always from the same initialization thread.
@@ -115,6 +129,7 @@ public class InfinispanDatastoreProvider implements DatastoreProvider, Startable
 			throw log.unableToInitializeInfinispan( e );
 		}
 		eagerlyInitializeCaches(cacheManager);
+		bulkLoadExecutor = createBulkLoadExecutor( cfg.get( BULK_LOAD_THREADS_PROP ) );
 		//clear resources
 		this.jtaPlatform = null;
 		this.jndiService = null;
@@ -142,6 +157,32 @@ public class InfinispanDatastoreProvider implements DatastoreProvider, Startable
 		);
 	}
 
+	private ExecutorService createBulkLoadExecutor(Object threadsProperty) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if ( threadsProperty != null && !StringHelper.isEmpty( threadsProperty.toString() ) ) {
+			try {
+				threads = Integer.parseInt( threadsProperty.toString().trim() );
+			}
+			catch (NumberFormatException e) {
+				throw new HibernateException( "Invalid value for " + BULK_LOAD_THREADS_PROP + ": " + threadsProperty, e );
+			}
+		}
+		if ( threads <= 0 ) {
+			return null;
+		}
+		log.tracef( "Reading the entities of different owners with %1$d threads", threads );
+		return Executors.newFixedThreadPool( threads, new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread( runnable, "OGM-Infinispan-BulkLoad-" + counter.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+	}
+
 	private EmbeddedCacheManager createCustomCacheManager(String cfgName, JtaPlatform platform) {
 		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 		TransactionManagerLookupDelegator transactionManagerLookupDelegator = new TransactionManagerLookupDelegator( platform );
@@ -185,7 +226,18 @@ public class InfinispanDatastoreProvider implements DatastoreProvider, Startable
 		return caches.get(name);
 	}
 
+	/**
+	 * Executor used to read the entities owned by different nodes in parallel,
+	 * or null if the parallel reads are disabled
+	 */
+	public ExecutorService getBulkLoadExecutor() {
+		return bulkLoadExecutor;
+	}
+
 	public void stop() {
+		if ( bulkLoadExecutor != null ) {
+			bulkLoadExecutor.shutdownNow();
+		}
 		if ( !isCacheProvided && cacheManager != null ) {
 			cacheManager.stop();
 		}
@@ -24,8 +24,18 @@ import static org.hibernate.ogm.datastore.spi.DefaultDatastoreNames.ASSOCIATION_
 import static org.hibernate.ogm.datastore.spi.DefaultDatastoreNames.ENTITY_STORE;
 import static org.hibernate.ogm.datastore.spi.DefaultDatastoreNames.IDENTIFIER_STORE;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+
+import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.dialect.lock.LockingStrategy;
 import org.hibernate.dialect.lock.OptimisticForceIncrementLockingStrategy;
@@ -52,6 +62,8 @@ import org.infinispan.Cache;
 import org.infinispan.atomic.AtomicMapLookup;
 import org.infinispan.atomic.FineGrainedAtomicMap;
 import org.infinispan.context.Flag;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.remoting.transport.Address;
 
 /**
  * @author Emmanuel Bernard
@@ -106,6 +118,106 @@ public class InfinispanDialect implements GridDialect {
 		}
 	}
 
+	/**
+	 * The keys are grouped by primary owner: the keys owned by this node are read first, then each group
+	 * of keys owned by another node is read in a row. Only the loads executed outside of a transaction
+	 * read the groups of the other nodes in parallel. Within a transaction the invocation context of the
+	 * transaction is bound to the calling thread, and a read done outside of it would neither see the
+	 * snapshot of the transaction nor be validated at commit time, so the groups are read one after the
+	 * other, with one lookup per key, as {@link #getTuple(EntityKey, TupleContext)} would do.
+	 */
+	@Override
+	public Tuple[] getTuples(final EntityKey[] keys, TupleContext tupleContext) {
+		final Cache<EntityKey, Map<String, Object>> cache = provider.getCache( ENTITY_STORE );
+		final Tuple[] tuples = new Tuple[keys.length];
+		Map<Address, List<Integer>> keysByOwner = groupByPrimaryOwner( cache, keys );
+		List<Integer> localKeys = keysByOwner.remove( null );
+		List<Future<?>> remoteReads = new ArrayList<Future<?>>( keysByOwner.size() );
+		ExecutorService executor = provider.getBulkLoadExecutor();
+		int groups = keysByOwner.size() + ( localKeys == null ? 0 : 1 );
+		if ( executor != null && groups > 1 && !keysByOwner.isEmpty() && !isTransactionInProgress( cache ) ) {
+			for ( final List<Integer> ownerKeys : keysByOwner.values() ) {
+				remoteReads.add( executor.submit( new Runnable() {
+					@Override
+					public void run() {
+						readTuples( cache, keys, ownerKeys, tuples );
+					}
+				} ) );
+			}
+			keysByOwner.clear();
+		}
+		if ( localKeys != null ) {
+			readTuples( cache, keys, localKeys, tuples );
+		}
+		for ( List<Integer> ownerKeys : keysByOwner.values() ) {
+			readTuples( cache, keys, ownerKeys, tuples );
+		}
+		for ( Future<?> remoteRead : remoteReads ) {
+			waitFor( remoteRead );
+		}
+		return tuples;
+	}
+
+	private void readTuples(Cache<EntityKey, Map<String, Object>> cache, EntityKey[] keys, List<Integer> positions, Tuple[] tuples) {
+		for ( Integer position : positions ) {
+			FineGrainedAtomicMap<String, Object> atomicMap = AtomicMapLookup.getFineGrainedAtomicMap( cache, keys[position], false );
+			if ( atomicMap != null ) {
+				tuples[position] = new Tuple( new InfinispanTupleSnapshot( atomicMap ) );
+			}
+		}
+	}
+
+	/**
+	 * Positions of the keys grouped by the address of their primary owner, in the order of the keys.
+	 * The keys stored locally (all of them if the cache is not distributed) are under the null address.
+	 */
+	private Map<Address, List<Integer>> groupByPrimaryOwner(Cache<EntityKey, ?> cache, EntityKey[] keys) {
+		DistributionManager distributionManager = cache.getAdvancedCache().getDistributionManager();
+		Map<Address, List<Integer>> keysByOwner = new LinkedHashMap<Address, List<Integer>>();
+		for ( int i = 0; i < keys.length; i++ ) {
+			Address owner = null;
+			if ( distributionManager != null && !distributionManager.getLocality( keys[i] ).isLocal() ) {
+				owner = distributionManager.getPrimaryLocation( keys[i] );
+			}
+			List<Integer> ownerKeys = keysByOwner.get( owner );
+			if ( ownerKeys == null ) {
+				ownerKeys = new ArrayList<Integer>();
+				keysByOwner.put( owner, ownerKeys );
+			}
+			ownerKeys.add( i );
+		}
+		return keysByOwner;
+	}
+
+	private boolean isTransactionInProgress(Cache<?, ?> cache) {
+		TransactionManager transactionManager = cache.getAdvancedCache().getTransactionManager();
+		if ( transactionManager == null ) {
+			return false;
+		}
+		try {
+			return transactionManager.getTransaction() != null;
+		}
+		catch (SystemException e) {
+			throw new HibernateException( "Unable to check the status of the current transaction", e );
+		}
+	}
+
+	private void waitFor(Future<?> read) {
+		try {
+			read.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HibernateException( "Interrupted while reading the tuples", e );
+		}
+		catch (ExecutionException e) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new HibernateException( "Unable to read the tuples", e.getCause() );
+		}
+	}
+
 	@Override
 	public Tuple createTuple(EntityKey key) {
 		//TODO we don't verify that it does not yet exist assuming that this has been done before by the calling code
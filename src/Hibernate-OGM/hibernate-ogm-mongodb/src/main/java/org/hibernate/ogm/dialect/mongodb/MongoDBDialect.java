@@ -113,6 +113,15 @@ public class MongoDBDialect implements GridDialect {
 		return found != null ? new Tuple( new MongoDBTupleSnapshot( found, key ) ) : null;
 	}
 
+	@Override
+	public Tuple[] getTuples(EntityKey[] keys, TupleContext tupleContext) {
+		Tuple[] tuples = new Tuple[keys.length];
+		for ( int i = 0; i < keys.length; i++ ) {
+			tuples[i] = getTuple( keys[i], tupleContext );
+		}
+		return tuples;
+	}
+
 	@Override
 	public Tuple createTuple(EntityKey key) {
 		DBObject toSave = this.prepareIdObject( key );
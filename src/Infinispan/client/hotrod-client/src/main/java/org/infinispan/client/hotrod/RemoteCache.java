@@ -46,9 +46,10 @@ import org.infinispan.util.concurrent.NotifyingFuture;
  * supplied key. In case of RemoteCache, this returns null.
  * <p/>
  * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. E.g. all
- * the {@link java.util.Map#putAll(java.util.Map)} is implemented through multiple individual puts. This means that the
- * these operations are not atomic and that they are costly, e.g. as the number of network round-trips is not one, but
- * the size of the added map. All these synthetic operations are documented as such.
+ * the {@link java.util.Map#putAll(java.util.Map)} is implemented through multiple individual puts, unless version 1.2
+ * of the protocol is used. This means that the these operations are not atomic and that they are costly, e.g. as the
+ * number of network round-trips is not one, but the size of the added map. All these synthetic operations are
+ * documented as such.
  * <p/>
  * <b>changing default behavior through {@link org.infinispan.client.hotrod.Flag}s</b>: it is possible to change the
  * default cache behaviour by using flags on an per invocation basis. E.g.
@@ -349,4 +350,15 @@ public interface RemoteCache<K, V> extends BasicCache<K, V> {
     * guarantee that "size" elements are returned( e.g. if the number of elements in the back-end server is smaller that "size")
     */
    Map<K, V> getBulk(int size);
+
+   /**
+    * Returns the entries of the given keys. The keys are grouped by the server that owns them and a single request is
+    * sent to each server, instead of one request per key. The keys that do not exist are not present in the returned
+    * Map, which is unmodifiable.
+    * <p/>
+    * The get all operation was added in version 1.2 of the Hot Rod protocol (see
+    * {@link org.infinispan.client.hotrod.impl.ConfigurationProperties#PROTOCOL_VERSION}). With older versions, this is a
+    * synthetic operation that sends a get per key.
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
 }
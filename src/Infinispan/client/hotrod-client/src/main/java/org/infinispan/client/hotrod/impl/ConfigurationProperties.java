@@ -57,6 +57,7 @@ public class ConfigurationProperties {
    public static final String SO_TIMEOUT = "infinispan.client.hotrod.socket_timeout";
    public static final String CONNECT_TIMEOUT = "infinispan.client.hotrod.connect_timeout";
    public static final String PROTOCOL_VERSION = "infinispan.client.hotrod.protocol_version";
+   public static final String CONNECTIONS_PER_SERVER = "infinispan.client.hotrod.connections_per_server";
 
    // defaults
 
@@ -65,6 +66,8 @@ public class ConfigurationProperties {
    private static final int DEFAULT_HOTROD_PORT = 11222;
    private static final int DEFAULT_SO_TIMEOUT = 60000;
    private static final int DEFAULT_CONNECT_TIMEOUT = 60000;
+   private static final int DEFAULT_CONNECTIONS_PER_SERVER = 2;
+   public static final String PROTOCOL_VERSION_12 = "1.2";
    public static final String PROTOCOL_VERSION_11 = "1.1";
    public static final String PROTOCOL_VERSION_10 = "1.0";
    private static final String DEFAULT_PROTOCOL_VERSION = PROTOCOL_VERSION_11;
@@ -161,4 +164,8 @@ public class ConfigurationProperties {
       return props.getIntProperty(CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
    }
 
+   public int getConnectionsPerServer() {
+      return props.getIntProperty(CONNECTIONS_PER_SERVER, DEFAULT_CONNECTIONS_PER_SERVER);
+   }
+
 }
@@ -25,13 +25,17 @@ package org.infinispan.client.hotrod.impl;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.RemoteCache;
@@ -42,19 +46,24 @@ import org.infinispan.client.hotrod.VersionedValue;
 import org.infinispan.client.hotrod.exceptions.RemoteCacheManagerNotStartedException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
 import org.infinispan.client.hotrod.impl.async.NotifyingFutureImpl;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.async.ResponseListener;
 import org.infinispan.client.hotrod.impl.operations.BulkGetOperation;
 import org.infinispan.client.hotrod.impl.operations.ClearOperation;
 import org.infinispan.client.hotrod.impl.operations.ContainsKeyOperation;
+import org.infinispan.client.hotrod.impl.operations.GetAllOperation;
 import org.infinispan.client.hotrod.impl.operations.GetOperation;
 import org.infinispan.client.hotrod.impl.operations.GetWithVersionOperation;
 import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
 import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.operations.PutAllOperation;
 import org.infinispan.client.hotrod.impl.operations.PutIfAbsentOperation;
 import org.infinispan.client.hotrod.impl.operations.PutOperation;
 import org.infinispan.client.hotrod.impl.operations.RemoveIfUnmodifiedOperation;
 import org.infinispan.client.hotrod.impl.operations.RemoveOperation;
 import org.infinispan.client.hotrod.impl.operations.ReplaceIfUnmodifiedOperation;
 import org.infinispan.client.hotrod.impl.operations.ReplaceOperation;
+import org.infinispan.client.hotrod.impl.operations.RetryOnFailureOperation;
 import org.infinispan.client.hotrod.impl.operations.StatsOperation;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.logging.Log;
@@ -111,6 +120,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> removeWithVersionAsync(final K key, final long version) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeVersionedAsync(operationsFactory.newRemoveIfUnmodifiedOperation(obj2bytes(key, true), version));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
          @Override
@@ -135,6 +147,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> replaceWithVersionAsync(final K key, final V newValue, final long version, final int lifespanSeconds, final int maxIdleSeconds) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeVersionedAsync(operationsFactory.newReplaceIfUnmodifiedOperation(obj2bytes(key, true), obj2bytes(newValue, false), lifespanSeconds, maxIdleSeconds, version));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
          @Override
@@ -159,14 +174,31 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
       assertRemoteCacheManagerIsStarted();
-      for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
-         put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+      if (map.isEmpty()) {
+         return;
+      }
+      int lifespanSecs = toSeconds(lifespan, lifespanUnit);
+      int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
+      if (log.isTraceEnabled()) {
+         log.tracef("About to add %d entries lifespanSecs:%d, maxIdleSecs:%d", map.size(), lifespanSecs, maxIdleSecs);
+      }
+      if (!operationsFactory.isMultiKeyOperationSupported()) {
+         for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+         }
+         return;
+      }
+      for (PutAllOperation op : newPutAllOperations(map, lifespanSecs, maxIdleSecs)) {
+         op.execute();
       }
    }
 
    @Override
    public NotifyingFuture<Void> putAllAsync(final Map<? extends K, ? extends V> data, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return putAllMultiplexed(data, toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future<Void> future = executorService.submit(new Callable<Void>() {
          @Override
@@ -247,6 +279,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putAsync(final K key, final V value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeAsync(operationsFactory.newPutKeyValueOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future<V> future = executorService.submit(new Callable<V>() {
          @Override
@@ -263,6 +298,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Void> clearAsync() {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         ResponseFuture<Void> result = new ResponseFuture<Void>();
+         operationsFactory.newClearOperation().executeAsync(result);
+         return result;
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future<Void> future = executorService.submit(new Callable<Void>() {
          @Override
@@ -279,6 +319,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putIfAbsentAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeAsync(operationsFactory.newPutIfAbsentOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future<V> future = executorService.submit(new Callable<V>() {
          @Override
@@ -295,6 +338,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> removeAsync(final Object key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeAsync(operationsFactory.newRemoveOperation(obj2bytes(key, true)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future<V> future = executorService.submit(new Callable<V>() {
          @Override
@@ -311,6 +357,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> replaceAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeAsync(operationsFactory.newReplaceOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future<V> future = executorService.submit(new Callable<V>() {
          @Override
@@ -365,6 +414,37 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return Collections.unmodifiableMap(toReturn);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Map<K, V> getAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      if (keys.isEmpty()) {
+         return Collections.emptyMap();
+      }
+      Map<K,V> toReturn = new HashMap<K,V>();
+      if (!operationsFactory.isMultiKeyOperationSupported()) {
+         for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+               toReturn.put(key, value);
+            }
+         }
+         return Collections.unmodifiableMap(toReturn);
+      }
+      List<byte[]> binaryKeys = new ArrayList<byte[]>(keys.size());
+      for (K key : keys) {
+         binaryKeys.add(obj2bytes(key, true));
+      }
+      for (GetAllOperation op : operationsFactory.newGetAllOperations(binaryKeys)) {
+         for (Map.Entry<byte[], byte[]> entry : op.execute().entrySet()) {
+            V value = (V) bytes2obj(entry.getValue());
+            K key = (K) bytes2obj(entry.getKey());
+            toReturn.put(key, value);
+         }
+      }
+      return Collections.unmodifiableMap(toReturn);
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public V remove(Object key) {
@@ -414,6 +494,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> getAsync(final K key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isMultiplexedTransport()) {
+         return executeAsync(operationsFactory.newGetKeyOperation(obj2bytes(key, true)));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future<V> future = executorService.submit(new Callable<V>() {
          @Override
@@ -442,6 +525,118 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       }
    }
 
+   /**
+    * Executes an operation that returns a value without blocking, see
+    * {@link RetryOnFailureOperation#executeAsync(ResponseListener)}. The value is unmarshalled by the thread that
+    * completes the operation.
+    */
+   private NotifyingFuture<V> executeAsync(RetryOnFailureOperation<byte[]> op) {
+      final ResponseFuture<V> result = new ResponseFuture<V>();
+      op.executeAsync(new ResponseListener<byte[]>() {
+         @Override
+         @SuppressWarnings("unchecked")
+         public void responseReceived(byte[] response) {
+            V value;
+            try {
+               value = (V) bytes2obj(response);
+            } catch (RuntimeException e) {
+               // the response was read, so the operation must not be retried
+               result.operationFailed(e);
+               return;
+            }
+            result.responseReceived(value);
+         }
+
+         @Override
+         public void operationFailed(Throwable cause) {
+            result.operationFailed(cause);
+         }
+      });
+      return result;
+   }
+
+   private NotifyingFuture<Boolean> executeVersionedAsync(RetryOnFailureOperation<VersionedOperationResponse> op) {
+      final ResponseFuture<Boolean> result = new ResponseFuture<Boolean>();
+      op.executeAsync(new ResponseListener<VersionedOperationResponse>() {
+         @Override
+         public void responseReceived(VersionedOperationResponse response) {
+            result.responseReceived(response.getCode().isUpdated());
+         }
+
+         @Override
+         public void operationFailed(Throwable cause) {
+            result.operationFailed(cause);
+         }
+      });
+      return result;
+   }
+
+   /**
+    * Sends the put all request of each server, or the put of each entry when the protocol version has no put all,
+    * without waiting for any response. The future completes when all the responses are received, or when the first
+    * request fails.
+    */
+   private NotifyingFuture<Void> putAllMultiplexed(Map<? extends K, ? extends V> data, int lifespanSecs, int maxIdleSecs) {
+      final ResponseFuture<Void> result = new ResponseFuture<Void>();
+      if (data.isEmpty()) {
+         result.responseReceived(null);
+         return result;
+      }
+      if (!operationsFactory.isMultiKeyOperationSupported()) {
+         return putEachMultiplexed(data, lifespanSecs, maxIdleSecs);
+      }
+      List<PutAllOperation> ops = newPutAllOperations(data, lifespanSecs, maxIdleSecs);
+      final AtomicInteger pendingResponses = new AtomicInteger(ops.size());
+      ResponseListener<Void> listener = new ResponseListener<Void>() {
+         @Override
+         public void responseReceived(Void response) {
+            if (pendingResponses.decrementAndGet() == 0) {
+               result.responseReceived(null);
+            }
+         }
+
+         @Override
+         public void operationFailed(Throwable cause) {
+            result.operationFailed(cause);
+         }
+      };
+      for (PutAllOperation op : ops) {
+         op.executeAsync(listener);
+      }
+      return result;
+   }
+
+   private NotifyingFuture<Void> putEachMultiplexed(Map<? extends K, ? extends V> data, int lifespanSecs, int maxIdleSecs) {
+      final ResponseFuture<Void> result = new ResponseFuture<Void>();
+      final AtomicInteger pendingResponses = new AtomicInteger(data.size());
+      ResponseListener<byte[]> listener = new ResponseListener<byte[]>() {
+         @Override
+         public void responseReceived(byte[] response) {
+            if (pendingResponses.decrementAndGet() == 0) {
+               result.responseReceived(null);
+            }
+         }
+
+         @Override
+         public void operationFailed(Throwable cause) {
+            result.operationFailed(cause);
+         }
+      };
+      for (Entry<? extends K, ? extends V> entry : data.entrySet()) {
+         PutOperation op = operationsFactory.newPutKeyValueOperation(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false), lifespanSecs, maxIdleSecs);
+         op.executeAsync(listener);
+      }
+      return result;
+   }
+
+   private List<PutAllOperation> newPutAllOperations(Map<? extends K, ? extends V> data, int lifespanSecs, int maxIdleSecs) {
+      Map<byte[], byte[]> entries = new HashMap<byte[], byte[]>();
+      for (Entry<? extends K, ? extends V> entry : data.entrySet()) {
+         entries.put(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false));
+      }
+      return operationsFactory.newPutAllOperations(entries, lifespanSecs, maxIdleSecs);
+   }
+
    private Object bytes2obj(byte[] bytes) {
       if (bytes == null) return null;
       try {
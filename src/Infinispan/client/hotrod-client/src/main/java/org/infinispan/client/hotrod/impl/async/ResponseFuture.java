@@ -0,0 +1,178 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.infinispan.client.hotrod.exceptions.HotRodClientException;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.client.hotrod.logging.LogFactory;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+/**
+ * A future completed when the response of an operation is read, instead of by a task submitted to the async executor
+ * as {@link NotifyingFutureImpl}.
+ * <p/>
+ * The listeners are notified in the thread that completes the future, which is a completion thread of the
+ * {@link org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory}, so they may execute other operations.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class ResponseFuture<T> implements NotifyingFuture<T>, ResponseListener<T> {
+
+   private static final Log log = LogFactory.getLog(ResponseFuture.class, Log.class);
+
+   private final CopyOnWriteArraySet<FutureListener<T>> listeners = new CopyOnWriteArraySet<FutureListener<T>>();
+   private T response;
+   private Throwable failure;
+   private boolean done;
+   private boolean cancelled;
+
+   @Override
+   public void responseReceived(T response) {
+      complete(response, null, false);
+   }
+
+   @Override
+   public void operationFailed(Throwable cause) {
+      complete(null, cause, false);
+   }
+
+   /**
+    * The request can't be taken back once sent, so cancelling only stops waiting for the response.
+    */
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      return complete(null, null, true);
+   }
+
+   @Override
+   public NotifyingFuture<T> attachListener(FutureListener<T> futureListener) {
+      listeners.add(futureListener);
+      boolean notify;
+      synchronized (this) {
+         notify = done;
+      }
+      //whoever removes the listener notifies it, so it is notified once even if the future completes concurrently
+      if (notify && listeners.remove(futureListener)) {
+         notifyListener(futureListener);
+      }
+      return this;
+   }
+
+   @Override
+   public synchronized boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public synchronized boolean isDone() {
+      return done;
+   }
+
+   @Override
+   public synchronized T get() throws InterruptedException, ExecutionException {
+      while (!done) {
+         wait();
+      }
+      return result();
+   }
+
+   @Override
+   public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      long remaining = unit.toNanos(timeout);
+      long deadline = System.nanoTime() + remaining;
+      while (!done) {
+         if (remaining <= 0) {
+            throw new TimeoutException();
+         }
+         TimeUnit.NANOSECONDS.timedWait(this, remaining);
+         remaining = deadline - System.nanoTime();
+      }
+      return result();
+   }
+
+   /**
+    * Waits for the response, rethrowing the exceptions of the operation as they are, as if it was executed
+    * synchronously.
+    */
+   public synchronized T await() throws InterruptedException {
+      while (!done) {
+         wait();
+      }
+      if (cancelled) {
+         throw new CancellationException();
+      }
+      if (failure instanceof RuntimeException) {
+         throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+         throw (Error) failure;
+      } else if (failure != null) {
+         throw new HotRodClientException(failure);
+      }
+      return response;
+   }
+
+   private T result() throws ExecutionException {
+      if (cancelled) {
+         throw new CancellationException();
+      }
+      if (failure != null) {
+         throw new ExecutionException(failure);
+      }
+      return response;
+   }
+
+   private boolean complete(T response, Throwable failure, boolean cancelled) {
+      synchronized (this) {
+         if (done) {
+            return false;
+         }
+         this.response = response;
+         this.failure = failure;
+         this.cancelled = cancelled;
+         this.done = true;
+         notifyAll();
+      }
+      for (FutureListener<T> listener : listeners) {
+         if (listeners.remove(listener)) {
+            notifyListener(listener);
+         }
+      }
+      return true;
+   }
+
+   private void notifyListener(FutureListener<T> listener) {
+      try {
+         listener.futureDone(this);
+      } catch (Throwable t) {
+         log.debugf(t, "Exception thrown by the listener %s", listener);
+      }
+   }
+}
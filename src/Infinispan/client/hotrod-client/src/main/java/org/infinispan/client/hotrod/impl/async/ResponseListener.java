@@ -0,0 +1,39 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.async;
+
+/**
+ * Receives the outcome of an operation executed asynchronously, see
+ * {@link org.infinispan.client.hotrod.impl.operations.RetryOnFailureOperation#executeAsync(ResponseListener)}.
+ * Exactly one of the methods is invoked, by a thread of the transport factory. It may block, or execute other
+ * operations.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public interface ResponseListener<T> {
+
+   void responseReceived(T response);
+
+   void operationFailed(Throwable cause);
+}
@@ -51,10 +51,12 @@ public class ClearOperation extends RetryOnFailureOperation<Void> {
    }
 
    @Override
-   protected Void executeOperation(Transport transport) {
-      HeaderParams params = writeHeader(transport, CLEAR_REQUEST);
-      transport.flush();
+   protected HeaderParams writeRequest(Transport transport) {
+      return writeHeader(transport, CLEAR_REQUEST);
+   }
 
+   @Override
+   protected Void readResponse(Transport transport, HeaderParams params) {
       readHeaderAndValidate(transport, params);
       return null;
    }
@@ -25,6 +25,7 @@ package org.infinispan.client.hotrod.impl.operations;
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 
@@ -45,9 +46,14 @@ public class ContainsKeyOperation extends AbstractKeyOperation<Boolean> {
    }
 
    @Override
-   protected Boolean executeOperation(Transport transport) {
+   protected HeaderParams writeRequest(Transport transport) {
+      return writeKeyRequest(transport, CONTAINS_KEY_REQUEST);
+   }
+
+   @Override
+   protected Boolean readResponse(Transport transport, HeaderParams params) {
       boolean containsKey = false;
-      short status = sendKeyOperation(key, transport, CONTAINS_KEY_REQUEST, CONTAINS_KEY_RESPONSE);
+      short status = readHeaderAndValidate(transport, params);
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          containsKey = false;
       } else if (status == NO_ERROR_STATUS) {
@@ -0,0 +1,85 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads several keys with a single request. The keys are expected to be owned by the same server (see {@link
+ * OperationsFactory#newGetAllOperations(java.util.Collection)}), so the request is sent to the owner of the first key.
+ * The keys not found are not present in the returned map.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Immutable
+public class GetAllOperation extends RetryOnFailureOperation<Map<byte[], byte[]>> {
+
+   private final Collection<byte[]> keys;
+
+   public GetAllOperation(Codec codec, TransportFactory transportFactory, byte[] cacheName, AtomicInteger topologyId,
+                          Flag[] flags, Collection<byte[]> keys) {
+      super(codec, transportFactory, cacheName, topologyId, flags);
+      this.keys = keys;
+   }
+
+   @Override
+   protected Transport getTransport(int retryCount) {
+      if (retryCount == 0) {
+         return transportFactory.getTransport(keys.iterator().next());
+      } else {
+         return transportFactory.getTransport();
+      }
+   }
+
+   //[header][key count]([key length][key])*
+   @Override
+   protected HeaderParams writeRequest(Transport transport) {
+      HeaderParams params = writeHeader(transport, GET_ALL_REQUEST);
+      transport.writeVInt(keys.size());
+      for (byte[] key : keys) {
+         transport.writeArray(key);
+      }
+      return params;
+   }
+
+   @Override
+   protected Map<byte[], byte[]> readResponse(Transport transport, HeaderParams params) {
+      readHeaderAndValidate(transport, params);
+      Map<byte[], byte[]> result = new HashMap<byte[], byte[]>();
+      while (transport.readByte() == 1) { //there's more!
+         result.put(transport.readArray(), transport.readArray());
+      }
+      return result;
+   }
+}
@@ -25,6 +25,7 @@ package org.infinispan.client.hotrod.impl.operations;
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 
@@ -45,9 +46,14 @@ public class GetOperation extends AbstractKeyOperation<byte[]> {
    }
 
    @Override
-   public byte[] executeOperation(Transport transport) {
+   protected HeaderParams writeRequest(Transport transport) {
+      return writeKeyRequest(transport, GET_REQUEST);
+   }
+
+   @Override
+   protected byte[] readResponse(Transport transport, HeaderParams params) {
       byte[] result = null;
-      short status = sendKeyOperation(key, transport, GET_REQUEST, GET_RESPONSE);
+      short status = readHeaderAndValidate(transport, params);
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          result = null;
       } else {
@@ -27,10 +27,18 @@ import net.jcip.annotations.Immutable;
 import org.infinispan.api.BasicCacheContainer;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.Codec12;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
-
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -134,10 +142,72 @@ public class OperationsFactory implements HotRodConstants {
             codec, transportFactory, cacheNameBytes, topologyId, flags(), size);
    }
 
+   /**
+    * Groups the entries by the server that owns their key, so that a single request is sent to each server.
+    */
+   public List<PutAllOperation> newPutAllOperations(Map<byte[], byte[]> entries, int lifespanSecs, int maxIdleSecs) {
+      Flag[] flags = flags();
+      Map<SocketAddress, Map<byte[], byte[]>> entriesByServer = new HashMap<SocketAddress, Map<byte[], byte[]>>();
+      for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+         SocketAddress server = transportFactory.getServer(entry.getKey());
+         Map<byte[], byte[]> serverEntries = entriesByServer.get(server);
+         if (serverEntries == null) {
+            serverEntries = new HashMap<byte[], byte[]>();
+            entriesByServer.put(server, serverEntries);
+         }
+         serverEntries.put(entry.getKey(), entry.getValue());
+      }
+      List<PutAllOperation> operations = new ArrayList<PutAllOperation>(entriesByServer.size());
+      for (Map<byte[], byte[]> serverEntries : entriesByServer.values()) {
+         operations.add(new PutAllOperation(
+               codec, transportFactory, cacheNameBytes, topologyId, flags, serverEntries, lifespanSecs, maxIdleSecs));
+      }
+      return operations;
+   }
+
+   /**
+    * Groups the keys by the server that owns them, so that a single request is sent to each server.
+    */
+   public List<GetAllOperation> newGetAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      Map<SocketAddress, Collection<byte[]>> keysByServer = new HashMap<SocketAddress, Collection<byte[]>>();
+      for (byte[] key : keys) {
+         SocketAddress server = transportFactory.getServer(key);
+         Collection<byte[]> serverKeys = keysByServer.get(server);
+         if (serverKeys == null) {
+            serverKeys = new ArrayList<byte[]>();
+            keysByServer.put(server, serverKeys);
+         }
+         serverKeys.add(key);
+      }
+      List<GetAllOperation> operations = new ArrayList<GetAllOperation>(keysByServer.size());
+      for (Collection<byte[]> serverKeys : keysByServer.values()) {
+         operations.add(new GetAllOperation(
+               codec, transportFactory, cacheNameBytes, topologyId, flags, serverKeys));
+      }
+      return operations;
+   }
+
    public PingOperation newPingOperation(Transport transport) {
       return new PingOperation(codec, topologyId, transport, cacheNameBytes);
    }
 
+   /**
+    * @return true if the operations can be executed asynchronously without blocking a thread while waiting for the
+    *         response, see {@link RetryOnFailureOperation#executeAsync(org.infinispan.client.hotrod.impl.async.ResponseListener)}
+    */
+   public boolean isMultiplexedTransport() {
+      return transportFactory instanceof NioTransportFactory;
+   }
+
+   /**
+    * @return true if the protocol version has the put all and get all operations, see
+    *         {@link #newPutAllOperations(Map, int, int)} and {@link #newGetAllOperations(Collection)}
+    */
+   public boolean isMultiKeyOperationSupported() {
+      return codec instanceof Codec12;
+   }
+
    private Flag[] flags() {
       Flag[] flags = this.flagsMap.get();
       this.flagsMap.remove();
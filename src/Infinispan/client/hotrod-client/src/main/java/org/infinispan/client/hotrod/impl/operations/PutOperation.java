@@ -29,6 +29,7 @@ import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 
@@ -48,8 +49,14 @@ public class PutOperation extends AbstractKeyValueOperation<byte[]> {
    }
 
    @Override
-   protected byte[] executeOperation(Transport transport) {
-      short status = sendPutOperation(transport, PUT_REQUEST, PUT_RESPONSE);
+   protected HeaderParams writeRequest(Transport transport) {
+      return writePutRequest(transport, PUT_REQUEST);
+   }
+
+   @Override
+   protected byte[] readResponse(Transport transport, HeaderParams params) {
+      //return status (not error status for sure)
+      short status = readHeaderAndValidate(transport, params);
       if (status != NO_ERROR_STATUS) {
          throw new InvalidResponseException("Unexpected response status: " + Integer.toHexString(status));
       }
@@ -51,15 +51,18 @@ public class RemoveIfUnmodifiedOperation extends AbstractKeyOperation<VersionedO
    }
 
    @Override
-   protected VersionedOperationResponse executeOperation(Transport transport) {
+   protected HeaderParams writeRequest(Transport transport) {
       // 1) write header
       HeaderParams params = writeHeader(transport, REMOVE_IF_UNMODIFIED_REQUEST);
 
       //2) write message body
       transport.writeArray(key);
       transport.writeLong(version);
-      transport.flush();
+      return params;
+   }
 
+   @Override
+   protected VersionedOperationResponse readResponse(Transport transport, HeaderParams params) {
       //process response and return
       return returnVersionedOperationResponse(transport, params);
    }
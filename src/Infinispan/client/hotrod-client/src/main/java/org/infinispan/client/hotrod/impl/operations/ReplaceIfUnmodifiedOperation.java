@@ -49,7 +49,7 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation<Vers
    }
 
    @Override
-   protected VersionedOperationResponse executeOperation(Transport transport) {
+   protected HeaderParams writeRequest(Transport transport) {
       // 1) write header
       HeaderParams params = writeHeader(transport, REPLACE_IF_UNMODIFIED_REQUEST);
 
@@ -59,8 +59,11 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation<Vers
       transport.writeVInt(maxIdle);
       transport.writeLong(version);
       transport.writeArray(value);
-      transport.flush();
+      return params;
+   }
 
+   @Override
+   protected VersionedOperationResponse readResponse(Transport transport, HeaderParams params) {
       return returnVersionedOperationResponse(transport, params);
    }
 }
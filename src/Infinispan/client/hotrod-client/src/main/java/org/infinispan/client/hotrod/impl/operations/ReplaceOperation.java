@@ -25,6 +25,7 @@ package org.infinispan.client.hotrod.impl.operations;
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 
@@ -47,9 +48,14 @@ public class ReplaceOperation extends AbstractKeyValueOperation<byte[]> {
    }
 
    @Override
-   protected byte[] executeOperation(Transport transport) {
+   protected HeaderParams writeRequest(Transport transport) {
+      return writePutRequest(transport, REPLACE_REQUEST);
+   }
+
+   @Override
+   protected byte[] readResponse(Transport transport, HeaderParams params) {
       byte[] result = null;
-      short status = sendPutOperation(transport, REPLACE_REQUEST, REPLACE_RESPONSE);
+      short status = readHeaderAndValidate(transport, params);
       if (status == NO_ERROR_STATUS || status == NOT_PUT_REMOVED_REPLACED_STATUS) {
          result = returnPossiblePrevValue(transport);
       }
@@ -27,7 +27,12 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.async.ResponseListener;
 import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.protocol.HeaderParams;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseHandler;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.client.hotrod.logging.Log;
@@ -39,6 +44,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Base class for all the operations that need retry logic: if the operation fails due to connection problems, try with 
  * another available connection.
+ * <p/>
+ * The operations are split in {@link #writeRequest(Transport)} and {@link #readResponse(Transport, HeaderParams)}, so
+ * that, with a {@link MultiplexedTransport}, the response can be read by another thread and the operation can be
+ * executed asynchronously (see {@link #executeAsync(ResponseListener)}).
  *
  * @author Mircea.Markus@jboss.com
  * @since 4.1
@@ -100,5 +109,112 @@ public abstract class RetryOnFailureOperation<T> extends HotRodOperation {
 
    protected abstract Transport getTransport(int retryCount);
 
-   protected abstract T executeOperation(Transport transport);
+   /**
+    * Sends the request and reads its response. With a {@link MultiplexedTransport}, the response is read by the reader
+    * thread of the connection while this thread waits for it.
+    */
+   protected T executeOperation(Transport transport) {
+      HeaderParams params = writeRequest(transport);
+      if (transport instanceof MultiplexedTransport) {
+         ResponseFuture<T> response = new ResponseFuture<T>();
+         ((MultiplexedTransport) transport).flush(new OperationResponseHandler(params, response, -1));
+         try {
+            return response.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException("Interrupted while waiting for the response", e);
+         }
+      }
+      transport.flush();
+      return readResponse(transport, params);
+   }
+
+   /**
+    * Executes the operation without waiting for the response, which is passed to the listener by a thread of the
+    * transport factory, never by the thread that reads it. As in {@link #execute()}, the operation is retried if it fails due to connection problems. It needs a
+    * transport factory whose transports are {@link MultiplexedTransport}s.
+    */
+   public void executeAsync(ResponseListener<T> listener) {
+      executeAsync(listener, 0);
+   }
+
+   private void executeAsync(ResponseListener<T> listener, int retryCount) {
+      Transport transport = null;
+      try {
+         transport = getTransport(retryCount);
+         if (!(transport instanceof MultiplexedTransport)) {
+            throw new IllegalStateException("Asynchronous operations need a multiplexed transport: " + transport);
+         }
+         HeaderParams params = writeRequest(transport);
+         ((MultiplexedTransport) transport).flush(new OperationResponseHandler(params, listener, retryCount));
+      } catch (TransportException te) {
+         retryAsync(listener, retryCount, te);
+      } finally {
+         releaseTransport(transport);
+      }
+   }
+
+   private void retryAsync(ResponseListener<T> listener, int retryCount, HotRodClientException e) {
+      try {
+         logErrorAndThrowExceptionIfNeeded(retryCount, e);
+      } catch (HotRodClientException noRetriesLeft) {
+         listener.operationFailed(noRetriesLeft);
+         return;
+      }
+      executeAsync(listener, retryCount + 1);
+   }
+
+   /**
+    * Writes the request, without flushing it.
+    *
+    * @return the header parameters needed to read the response
+    */
+   protected abstract HeaderParams writeRequest(Transport transport);
+
+   /**
+    * Reads the whole response to the request written by {@link #writeRequest(Transport)}.
+    */
+   protected abstract T readResponse(Transport transport, HeaderParams params);
+
+   /**
+    * Reads the response of an operation sent through a {@link MultiplexedTransport}.
+    */
+   private class OperationResponseHandler implements ResponseHandler {
+
+      private final HeaderParams params;
+      private final ResponseListener<T> listener;
+      // negative when the operation is retried by the thread that executes it
+      private final int retryCount;
+
+      private OperationResponseHandler(HeaderParams params, ResponseListener<T> listener, int retryCount) {
+         this.params = params;
+         this.listener = listener;
+         this.retryCount = retryCount;
+      }
+
+      @Override
+      public Runnable handleResponse(Transport transport) {
+         final T response = readResponse(transport, params);
+         if (retryCount < 0) {
+            //the thread that executes the operation is waiting for the response, so there is no listener to run
+            listener.responseReceived(response);
+            return null;
+         }
+         return new Runnable() {
+            @Override
+            public void run() {
+               listener.responseReceived(response);
+            }
+         };
+      }
+
+      @Override
+      public void handleFailure(Throwable cause) {
+         if (retryCount >= 0 && (cause instanceof TransportException || cause instanceof RemoteNodeSuspecException)) {
+            retryAsync(listener, retryCount, (HotRodClientException) cause);
+         } else {
+            listener.operationFailed(cause);
+         }
+      }
+   }
 }
@@ -104,6 +104,10 @@ public class HeaderParams {
             return HotRodConstants.PING_RESPONSE;
          case HotRodConstants.BULK_GET_REQUEST:
             return HotRodConstants.BULK_GET_RESPONSE;
+         case HotRodConstants.PUT_ALL_REQUEST:
+            return HotRodConstants.PUT_ALL_RESPONSE;
+         case HotRodConstants.GET_ALL_REQUEST:
+            return HotRodConstants.GET_ALL_RESPONSE;
          default:
             throw new IllegalStateException("Unknown operation code: " + opCode);
       }
@@ -0,0 +1,40 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+/**
+ * A transport that shares its connection with other transports: the requests of several threads are sent through the
+ * same connection without waiting for the responses of the previous ones, and the responses are matched to the
+ * requests by their order.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public interface MultiplexedTransport extends Transport {
+
+   /**
+    * Sends the request written so far and returns without waiting for the response, which is passed to the handler
+    * when it arrives. Failures, including the failure to send the request, are reported to the handler only.
+    */
+   void flush(ResponseHandler handler);
+}
@@ -0,0 +1,50 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+/**
+ * Reads the response to a request sent through a {@link MultiplexedTransport}. The responses of a connection are read
+ * by a single thread, in the same order as the requests were sent, so the handlers only decode them: the request is
+ * completed by another thread, which may block or send other requests through the same connection.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public interface ResponseHandler {
+
+   /**
+    * Reads the response from the transport, which is positioned at the beginning of the response. It must read the
+    * whole response, otherwise the following responses in the connection can't be read.
+    *
+    * @return the completion of the request, run by another thread once the response is read, or null if the request
+    *         is already completed
+    */
+   Runnable handleResponse(Transport transport);
+
+   /**
+    * Invoked instead of {@link #handleResponse(Transport)} when the response can't be received, or when
+    * {@link #handleResponse(Transport)} throws an exception. It is never invoked after the response was read, even if
+    * its completion fails.
+    */
+   void handleFailure(Throwable cause);
+}
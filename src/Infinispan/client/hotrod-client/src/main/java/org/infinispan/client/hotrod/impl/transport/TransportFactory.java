@@ -56,6 +56,12 @@ public interface TransportFactory {
 
    Transport getTransport(byte[] key);
 
+   /**
+    * @return the server that {@link #getTransport(byte[])} connects to for the given key, or null if the key owners
+    *         are not known (i.e. the client is not hash-distribution aware)
+    */
+   SocketAddress getServer(byte[] key);
+
    boolean isTcpNoDelay();
 
    int getTransportCount();
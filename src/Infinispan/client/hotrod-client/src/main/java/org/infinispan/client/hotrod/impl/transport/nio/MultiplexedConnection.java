@@ -0,0 +1,469 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseHandler;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.client.hotrod.logging.LogFactory;
+import org.infinispan.util.Util;
+
+/**
+ * A non-blocking connection to a Hot Rod server, shared by all the requests sent to one of its slots in the
+ * {@link NioTransportFactory}.
+ * <p/>
+ * The requests are written by the threads that send them, one at a time, without waiting for the responses of the
+ * previous requests. Hot Rod responses are not framed, so they can't be split before being decoded: the server
+ * answers the requests of a connection in order, and a dedicated reader thread passes the connection to the
+ * {@link ResponseHandler} of each request in turn, which decodes its response. The message id of each response is
+ * still validated by the codec. The requests are completed, or failed, by the completion executor of the
+ * {@link NioTransportFactory}, so that a listener that blocks or sends another request through the same connection
+ * doesn't stop the reader thread.
+ * <p/>
+ * When an I/O error happens, or when a response can't be decoded, the connection is closed and the requests waiting
+ * for a response are failed, so that they can be retried in another connection.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@ThreadSafe
+class MultiplexedConnection {
+
+   private static final Log log = LogFactory.getLog(MultiplexedConnection.class, Log.class);
+   private static final boolean trace = log.isTraceEnabled();
+   private static final String THREAD_NAME = "HotRod-client-reader";
+   private static final AtomicLong ID_COUNTER = new AtomicLong(0);
+
+   /**
+    * Queued after the last request of a retired or closed connection, to stop the reader thread.
+    */
+   private static final ResponseHandler END_OF_REQUESTS = new ResponseHandler() {
+      @Override
+      public Runnable handleResponse(Transport transport) {
+         return null;
+      }
+
+      @Override
+      public void handleFailure(Throwable cause) {
+      }
+   };
+
+   private final long id = ID_COUNTER.incrementAndGet();
+   private final InetSocketAddress serverAddress;
+   private final int soTimeout;
+   private final SocketChannel channel;
+   private final Selector readSelector;
+   private final Selector writeSelector;
+   private final ByteBuffer inbound;
+   private final ResponseTransport responseTransport;
+   private final Executor completionExecutor;
+   private final BlockingQueue<ResponseHandler> pendingResponses = new LinkedBlockingQueue<ResponseHandler>();
+   private final Object writeLock = new Object();
+   private final Thread reader;
+
+   //the fields below are only changed while holding the writeLock
+   private volatile Throwable failure;
+   private volatile boolean retired;
+
+   MultiplexedConnection(InetSocketAddress serverAddress, NioTransportFactory transportFactory) {
+      this.serverAddress = serverAddress;
+      this.soTimeout = transportFactory.getSoTimeout();
+      SocketChannel socketChannel = null;
+      Selector selectorForReads = null;
+      Selector selectorForWrites = null;
+      try {
+         socketChannel = SocketChannel.open();
+         socketChannel.socket().connect(serverAddress, transportFactory.getConnectTimeout());
+         socketChannel.socket().setTcpNoDelay(transportFactory.isTcpNoDelay());
+         socketChannel.configureBlocking(false);
+         selectorForReads = Selector.open();
+         socketChannel.register(selectorForReads, SelectionKey.OP_READ);
+         selectorForWrites = Selector.open();
+         socketChannel.register(selectorForWrites, SelectionKey.OP_WRITE);
+         this.inbound = ByteBuffer.allocate(socketChannel.socket().getReceiveBufferSize());
+      } catch (IOException e) {
+         Util.close(socketChannel);
+         closeSelector(selectorForReads);
+         closeSelector(selectorForWrites);
+         String message = String.format("Could not connect to server: %s", serverAddress);
+         log.couldNotConnectToServer(serverAddress, e);
+         throw new TransportException(message, e);
+      }
+      this.channel = socketChannel;
+      this.readSelector = selectorForReads;
+      this.writeSelector = selectorForWrites;
+      this.inbound.flip();
+      this.responseTransport = new ResponseTransport(transportFactory);
+      this.completionExecutor = transportFactory.getCompletionExecutor();
+      this.reader = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            readResponses();
+         }
+      }, THREAD_NAME + "-" + id);
+      this.reader.setDaemon(true);
+      this.reader.start();
+   }
+
+   /**
+    * Sends a request and queues its handler to read the response. It does not wait for the response.
+    */
+   void send(ByteBuffer request, ResponseHandler handler) {
+      TransportException error = null;
+      boolean queued = false;
+      synchronized (writeLock) {
+         if (failure != null || retired) {
+            error = new TransportException("Connection is closed: " + this, failure);
+         } else {
+            pendingResponses.add(handler);
+            queued = true;
+            try {
+               write(request);
+               if (trace) {
+                  log.tracef("Wrote request with %d bytes to %s", request.limit(), this);
+               }
+            } catch (IOException e) {
+               error = new TransportException("Problems writing data to stream", e);
+            } catch (ClosedSelectorException e) {
+               error = new TransportException("Connection is closed: " + this, failure);
+            }
+         }
+      }
+      //the handlers are never invoked while holding the lock, as they may retry in another connection
+      if (error == null) {
+         return;
+      }
+      if (queued) {
+         close(error);
+      } else {
+         handler.handleFailure(error);
+      }
+   }
+
+   /**
+    * Stops accepting requests. The connection is closed after the responses of the requests already sent are read.
+    */
+   void retire() {
+      synchronized (writeLock) {
+         if (failure != null || retired) {
+            return;
+         }
+         retired = true;
+         pendingResponses.add(END_OF_REQUESTS);
+      }
+   }
+
+   /**
+    * Closes the connection, failing the requests waiting for a response with the given cause.
+    */
+   void close(Throwable cause) {
+      synchronized (writeLock) {
+         if (failure != null) {
+            return;
+         }
+         failure = cause;
+      }
+      if (trace) {
+         log.tracef(cause, "Closing %s", this);
+      }
+      Util.close(channel);
+      closeSelector(readSelector);
+      closeSelector(writeSelector);
+      ResponseHandler handler;
+      while ((handler = pendingResponses.poll()) != null) {
+         if (handler != END_OF_REQUESTS) {
+            failResponse(handler, cause);
+         }
+      }
+      //the reader thread may be retrying the failed requests, so it is woken up instead of interrupted
+      pendingResponses.add(END_OF_REQUESTS);
+   }
+
+   boolean isOpen() {
+      return failure == null && !retired;
+   }
+
+   int getPendingResponses() {
+      return pendingResponses.size();
+   }
+
+   InetSocketAddress getServerAddress() {
+      return serverAddress;
+   }
+
+   /**
+    * The transport that reads the response at the head of the connection. It must be used only by the
+    * {@link ResponseHandler} whose response is being read.
+    */
+   Transport getResponseTransport() {
+      return responseTransport;
+   }
+
+   private void readResponses() {
+      while (true) {
+         ResponseHandler handler;
+         try {
+            handler = pendingResponses.take();
+         } catch (InterruptedException e) {
+            close(new TransportException("Interrupted while reading the responses from " + serverAddress, e));
+            return;
+         }
+         if (handler == END_OF_REQUESTS) {
+            close(new TransportException("Connection was retired: " + this));
+            return;
+         }
+         Runnable completion;
+         try {
+            completion = handler.handleResponse(responseTransport);
+         } catch (Throwable t) {
+            if (t instanceof TransportException || t instanceof InvalidResponseException
+                  || !(t instanceof RuntimeException)) {
+               //the response was not fully read, so the following responses can't be read either
+               close(t);
+            }
+            failResponse(handler, t);
+            continue;
+         }
+         //the response was read, so the handler is never failed after this point
+         if (completion != null) {
+            complete(completion);
+         }
+      }
+   }
+
+   private void failResponse(final ResponseHandler handler, final Throwable cause) {
+      complete(new Runnable() {
+         @Override
+         public void run() {
+            handler.handleFailure(cause);
+         }
+      });
+   }
+
+   private void complete(final Runnable completion) {
+      Runnable task = new Runnable() {
+         @Override
+         public void run() {
+            try {
+               completion.run();
+            } catch (Throwable t) {
+               log.debugf(t, "Exception while completing a request sent through %s", MultiplexedConnection.this);
+            }
+         }
+      };
+      try {
+         completionExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+         //the transport factory was stopped
+         task.run();
+      }
+   }
+
+   private void write(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         if (channel.write(buffer) == 0) {
+            //the socket send buffer is full
+            if (writeSelector.select(soTimeout) == 0) {
+               throw new SocketTimeoutException("Timed out writing to " + serverAddress);
+            }
+            writeSelector.selectedKeys().clear();
+         }
+      }
+   }
+
+   private void fill() throws IOException {
+      inbound.clear();
+      int read;
+      try {
+         while ((read = channel.read(inbound)) == 0) {
+            if (readSelector.select(soTimeout) == 0) {
+               if (Thread.currentThread().isInterrupted()) {
+                  throw new InterruptedIOException("Interrupted while reading from " + serverAddress);
+               }
+               throw new SocketTimeoutException("Timed out reading from " + serverAddress);
+            }
+            readSelector.selectedKeys().clear();
+         }
+      } catch (ClosedSelectorException e) {
+         throw new ClosedChannelException();
+      } finally {
+         inbound.flip();
+      }
+      if (read < 0) {
+         throw new EOFException("End of stream reached!");
+      }
+      if (trace) {
+         log.tracef("Read %d bytes from %s", read, this);
+      }
+   }
+
+   private static void closeSelector(Selector selector) {
+      if (selector != null) {
+         try {
+            selector.close();
+         } catch (IOException e) {
+            // Ignore
+         }
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "MultiplexedConnection{" +
+            "serverAddress=" + serverAddress +
+            ", id=" + id +
+            ", pendingResponses=" + pendingResponses.size() +
+            ", open=" + isOpen() +
+            "}";
+   }
+
+   /**
+    * Reads from the inbound buffer of the connection, filling it from the socket when it is empty.
+    */
+   private class ResponseTransport extends AbstractTransport {
+
+      private ResponseTransport(NioTransportFactory transportFactory) {
+         super(transportFactory);
+      }
+
+      @Override
+      public short readByte() {
+         if (!inbound.hasRemaining()) {
+            try {
+               fill();
+            } catch (IOException e) {
+               throw new TransportException(e);
+            }
+         }
+         return (short) (inbound.get() & 0xFF);
+      }
+
+      @Override
+      public byte[] readByteArray(int size) {
+         byte[] result = new byte[size];
+         int offset = 0;
+         while (offset < size) {
+            if (!inbound.hasRemaining()) {
+               try {
+                  fill();
+               } catch (IOException e) {
+                  throw new TransportException(e);
+               }
+            }
+            int length = Math.min(size - offset, inbound.remaining());
+            inbound.get(result, offset, length);
+            offset += length;
+         }
+         if (trace) {
+            log.tracef("Successfully read array with size: %d", size);
+         }
+         return result;
+      }
+
+      @Override
+      public int readVInt() {
+         short b = readByte();
+         int i = b & 0x7F;
+         for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            i |= (b & 0x7F) << shift;
+         }
+         return i;
+      }
+
+      @Override
+      public long readVLong() {
+         short b = readByte();
+         long i = b & 0x7F;
+         for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            i |= (b & 0x7FL) << shift;
+         }
+         return i;
+      }
+
+      @Override
+      public byte[] dumpStream() {
+         byte[] remaining = new byte[inbound.remaining()];
+         inbound.get(remaining);
+         return remaining;
+      }
+
+      @Override
+      public void release() {
+         // Nothing to release: the connection is owned by the factory
+      }
+
+      @Override
+      public void writeByte(short toWrite) {
+         throw new UnsupportedOperationException("Responses are read only");
+      }
+
+      @Override
+      public void writeVInt(int vint) {
+         throw new UnsupportedOperationException("Responses are read only");
+      }
+
+      @Override
+      public void writeVLong(long l) {
+         throw new UnsupportedOperationException("Responses are read only");
+      }
+
+      @Override
+      protected void writeBytes(byte[] toAppend) {
+         throw new UnsupportedOperationException("Responses are read only");
+      }
+
+      @Override
+      public void flush() {
+         throw new UnsupportedOperationException("Responses are read only");
+      }
+
+      @Override
+      public String toString() {
+         return "ResponseTransport{connection=" + MultiplexedConnection.this + "}";
+      }
+   }
+}
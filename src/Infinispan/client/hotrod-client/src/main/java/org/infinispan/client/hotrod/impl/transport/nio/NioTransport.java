@@ -0,0 +1,223 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import static org.infinispan.io.UnsignedNumeric.writeUnsignedInt;
+import static org.infinispan.io.UnsignedNumeric.writeUnsignedLong;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.MultiplexedTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseHandler;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+
+/**
+ * The transport handed out by the {@link NioTransportFactory} for a single operation. The request is written to a
+ * local buffer and sent through the shared {@link MultiplexedConnection} when flushed.
+ * <p/>
+ * The response is either passed to a {@link ResponseHandler} by the reader thread of the connection (see
+ * {@link #flush(ResponseHandler)}), or read by the thread that sent the request: after {@link #flush()}, the first
+ * read waits until all the responses before this one were read, and the reader thread waits until this transport is
+ * released.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@NotThreadSafe
+public class NioTransport extends AbstractTransport implements MultiplexedTransport {
+
+   private static final int INITIAL_REQUEST_SIZE = 128;
+
+   private final MultiplexedConnection connection;
+   private final ExposedByteArrayOutputStream request = new ExposedByteArrayOutputStream(INITIAL_REQUEST_SIZE);
+   private Turn turn;
+
+   NioTransport(MultiplexedConnection connection, NioTransportFactory transportFactory) {
+      super(transportFactory);
+      this.connection = connection;
+   }
+
+   @Override
+   public void writeByte(short toWrite) {
+      request.write(toWrite);
+   }
+
+   @Override
+   public void writeVInt(int vint) {
+      try {
+         writeUnsignedInt(request, vint);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void writeVLong(long l) {
+      try {
+         writeUnsignedLong(request, l);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   protected void writeBytes(byte[] toAppend) {
+      request.write(toAppend, 0, toAppend.length);
+   }
+
+   @Override
+   public void flush() {
+      endTurn();
+      turn = new Turn();
+      connection.send(takeRequest(), turn);
+   }
+
+   @Override
+   public void flush(ResponseHandler handler) {
+      connection.send(takeRequest(), handler);
+   }
+
+   @Override
+   public short readByte() {
+      return response().readByte();
+   }
+
+   @Override
+   public byte[] readByteArray(int size) {
+      return response().readByteArray(size);
+   }
+
+   @Override
+   public long readVLong() {
+      return response().readVLong();
+   }
+
+   @Override
+   public int readVInt() {
+      return response().readVInt();
+   }
+
+   @Override
+   public byte[] dumpStream() {
+      return response().dumpStream();
+   }
+
+   /**
+    * Ends the reading of the last response, letting the reader thread of the connection continue with the next one.
+    */
+   @Override
+   public void release() {
+      endTurn();
+   }
+
+   MultiplexedConnection getConnection() {
+      return connection;
+   }
+
+   private ByteBuffer takeRequest() {
+      ByteBuffer buffer = ByteBuffer.wrap(request.getRawBuffer(), 0, request.size());
+      request.reset();
+      return buffer;
+   }
+
+   private Transport response() {
+      if (turn == null) {
+         throw new IllegalStateException("No request was sent through " + this);
+      }
+      return turn.await();
+   }
+
+   private void endTurn() {
+      if (turn != null) {
+         turn.end();
+         turn = null;
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "NioTransport{connection=" + connection + "}";
+   }
+
+   /**
+    * Hands the connection over from its reader thread to the thread that sent the request, and back.
+    */
+   private static class Turn implements ResponseHandler {
+
+      private Transport transport;
+      private Throwable failure;
+      private boolean ended;
+
+      @Override
+      public synchronized Runnable handleResponse(Transport transport) {
+         if (ended) {
+            throw new TransportException("The response was not read by the thread that sent the request");
+         }
+         this.transport = transport;
+         notifyAll();
+         while (!ended) {
+            try {
+               wait();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new TransportException("Interrupted while the response was being read", e);
+            }
+         }
+         return null;
+      }
+
+      @Override
+      public synchronized void handleFailure(Throwable cause) {
+         if (failure == null) {
+            failure = cause;
+         }
+         notifyAll();
+      }
+
+      synchronized Transport await() {
+         while (transport == null && failure == null) {
+            try {
+               wait();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new TransportException("Interrupted while waiting for the response", e);
+            }
+         }
+         if (failure != null) {
+            throw failure instanceof TransportException ? (TransportException) failure : new TransportException(failure);
+         }
+         return transport;
+      }
+
+      synchronized void end() {
+         ended = true;
+         notifyAll();
+      }
+   }
+}
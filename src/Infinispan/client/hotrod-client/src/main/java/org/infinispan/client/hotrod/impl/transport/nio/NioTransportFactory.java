@@ -0,0 +1,390 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHashFactory;
+import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.protocol.Codec;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.RequestBalancingStrategy;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.client.hotrod.logging.LogFactory;
+import org.infinispan.util.Util;
+
+/**
+ * Transport factory that multiplexes the requests of all the threads over a few connections per server, instead of
+ * borrowing a connection from a pool for each request as the
+ * {@link org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory} does. A request is sent without
+ * waiting for the responses of the requests sent before it through the same connection (see
+ * {@link MultiplexedConnection}), so that a single connection can keep many requests in flight.
+ * <p/>
+ * The transports returned are {@link org.infinispan.client.hotrod.impl.transport.MultiplexedTransport}s, which allows
+ * the operations to be executed asynchronously without blocking a thread while waiting for the response.
+ * <p/>
+ * The number of connections per server is set with
+ * {@link ConfigurationProperties#CONNECTIONS_PER_SERVER}. The connections are opened on the first request to each
+ * server and reopened when they fail.
+ * <p/>
+ * The requests are completed by a pool of {@link ConfigurationProperties#DEFAULT_EXECUTOR_FACTORY_POOL_SIZE} threads
+ * (see {@link #getCompletionExecutor()}), never by the threads that read the responses.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class NioTransportFactory implements TransportFactory {
+
+   private static final Log log = LogFactory.getLog(NioTransportFactory.class, Log.class);
+   private static final String COMPLETION_THREAD_NAME = "HotRod-client-completion";
+   private static final AtomicInteger COMPLETION_THREAD_COUNTER = new AtomicInteger(0);
+
+   /**
+    * Same synchronization as in the {@link org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory}: the
+    * thread that starts the factory is likely different from the threads that use it.
+    */
+   private final Object lock = new Object();
+   private final ConcurrentMap<SocketAddress, AtomicReferenceArray<MultiplexedConnection>> connections =
+         new ConcurrentHashMap<SocketAddress, AtomicReferenceArray<MultiplexedConnection>>();
+   private final AtomicInteger nextConnection = new AtomicInteger(0);
+   private RequestBalancingStrategy balancer;
+   private Collection<SocketAddress> servers;
+   private ConsistentHash consistentHash;
+   private final ConsistentHashFactory hashFactory = new ConsistentHashFactory();
+   private volatile ExecutorService completionExecutor;
+
+   // the primitive fields are often accessed separately from the rest so it makes sense not to require synchronization for them
+   private volatile boolean tcpNoDelay;
+   private volatile int soTimeout;
+   private volatile int connectTimeout;
+   private volatile int connectionsPerServer;
+
+   @Override
+   public void start(Codec codec, ConfigurationProperties cfg,
+                     Collection<SocketAddress> staticConfiguredServers,
+                     AtomicInteger topologyId, ClassLoader classLoader) {
+      synchronized (lock) {
+         hashFactory.init(cfg, classLoader);
+         servers = Collections.unmodifiableCollection(new ArrayList<SocketAddress>(staticConfiguredServers));
+         String balancerClass = cfg.getRequestBalancingStrategy();
+         balancer = (RequestBalancingStrategy) Util.getInstance(balancerClass, classLoader);
+         tcpNoDelay = cfg.getTcpNoDelay();
+         soTimeout = cfg.getSoTimeout();
+         connectTimeout = cfg.getConnectTimeout();
+         connectionsPerServer = cfg.getConnectionsPerServer();
+         if (connectionsPerServer <= 0) {
+            throw new IllegalArgumentException("The number of connections per server must be positive, but it is " +
+                                                     connectionsPerServer);
+         }
+         if (log.isDebugEnabled()) {
+            log.debugf("Statically configured servers: %s", staticConfiguredServers);
+            log.debugf("Load balancer class: %s", balancerClass);
+            log.debugf("Tcp no delay = %b; client socket timeout = %d ms; connect timeout = %d ms; connections per server = %d",
+                       tcpNoDelay, soTimeout, connectTimeout, connectionsPerServer);
+         }
+         balancer.setServers(servers);
+         completionExecutor = newCompletionExecutor(cfg.getDefaultExecutorFactoryPoolSize());
+      }
+      if (cfg.getPingOnStartup()) {
+         pingOnStartup(codec, topologyId);
+      }
+   }
+
+   @Override
+   public void destroy() {
+      synchronized (lock) {
+         for (AtomicReferenceArray<MultiplexedConnection> serverConnections : connections.values()) {
+            closeAll(serverConnections, new TransportException("The transport factory was stopped"));
+         }
+         connections.clear();
+         if (completionExecutor != null) {
+            //the requests failed above are still completed
+            completionExecutor.shutdown();
+         }
+      }
+   }
+
+   @Override
+   public void updateHashFunction(Map<SocketAddress, Set<Integer>> servers2Hash, int numKeyOwners, short hashFunctionVersion, int hashSpace) {
+      synchronized (lock) {
+         ConsistentHash hash = hashFactory.newConsistentHash(hashFunctionVersion);
+         if (hash == null) {
+            log.noHasHFunctionConfigured(hashFunctionVersion);
+         } else {
+            hash.init(servers2Hash, numKeyOwners, hashSpace);
+         }
+         consistentHash = hash;
+      }
+   }
+
+   @Override
+   public Transport getTransport() {
+      SocketAddress server;
+      synchronized (lock) {
+         server = balancer.nextServer();
+      }
+      return new NioTransport(getConnection(server), this);
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      SocketAddress server;
+      synchronized (lock) {
+         if (consistentHash != null) {
+            server = consistentHash.getServer(key);
+            if (log.isTraceEnabled()) {
+               log.tracef("Using consistent hash for determining the server: %s", server);
+            }
+         } else {
+            server = balancer.nextServer();
+            if (log.isTraceEnabled()) {
+               log.tracef("Using the balancer for determining the server: %s", server);
+            }
+         }
+      }
+      return new NioTransport(getConnection(server), this);
+   }
+
+   @Override
+   public SocketAddress getServer(byte[] key) {
+      synchronized (lock) {
+         return consistentHash == null ? null : consistentHash.getServer(key);
+      }
+   }
+
+   @Override
+   public void releaseTransport(Transport transport) {
+      transport.release();
+   }
+
+   @Override
+   public void updateServers(Collection<SocketAddress> newServers) {
+      synchronized (lock) {
+         Set<SocketAddress> addedServers = new HashSet<SocketAddress>(newServers);
+         addedServers.removeAll(servers);
+         Set<SocketAddress> failedServers = new HashSet<SocketAddress>(servers);
+         failedServers.removeAll(newServers);
+         if (log.isTraceEnabled()) {
+            log.tracef("Current list: %s", servers);
+            log.tracef("New list: %s", newServers);
+            log.tracef("Added servers: %s", addedServers);
+            log.tracef("Removed servers: %s", failedServers);
+         }
+         if (addedServers.isEmpty() && failedServers.isEmpty()) {
+            log.debug("Same list of servers, not changing the connections");
+            return;
+         }
+
+         //1. the connections to the new servers are opened by the first request sent to them
+         for (SocketAddress server : addedServers) {
+            log.newServerAdded(server);
+         }
+
+         //2. after this, no new requests are sent to the failed servers
+         balancer.setServers(newServers);
+
+         //3. the requests already sent to the failed servers are still answered before their connections are closed
+         for (SocketAddress server : failedServers) {
+            log.removingServer(server);
+            AtomicReferenceArray<MultiplexedConnection> serverConnections = connections.remove(server);
+            if (serverConnections != null) {
+               retireAll(serverConnections);
+            }
+         }
+
+         servers = Collections.unmodifiableList(new ArrayList<SocketAddress>(newServers));
+      }
+   }
+
+   public Collection<SocketAddress> getServers() {
+      synchronized (lock) {
+         return servers;
+      }
+   }
+
+   /**
+    * Note that the returned <code>ConsistentHash</code> may not be thread-safe.
+    */
+   public ConsistentHash getConsistentHash() {
+      synchronized (lock) {
+         return consistentHash;
+      }
+   }
+
+   @Override
+   public ConsistentHashFactory getConsistentHashFactory() {
+      return hashFactory;
+   }
+
+   @Override
+   public boolean isTcpNoDelay() {
+      return tcpNoDelay;
+   }
+
+   @Override
+   public int getTransportCount() {
+      if (Thread.currentThread().isInterrupted()) {
+         return -1;
+      }
+      synchronized (lock) {
+         // a failed connection is replaced by a new one, so allow as many retries as the unbounded TcpTransportFactory
+         return Math.max(connectionsPerServer, 10) * servers.size();
+      }
+   }
+
+   /**
+    * The executor that completes the requests sent through the connections, once their responses are read. Its queue
+    * is not bounded, as a response that was read can't be pushed back to the server.
+    */
+   ExecutorService getCompletionExecutor() {
+      return completionExecutor;
+   }
+
+   @Override
+   public int getSoTimeout() {
+      return soTimeout;
+   }
+
+   @Override
+   public int getConnectTimeout() {
+      return connectTimeout;
+   }
+
+   public int getConnectionsPerServer() {
+      return connectionsPerServer;
+   }
+
+   /**
+    * @return the number of open connections to the server
+    */
+   public int getOpenConnections(SocketAddress server) {
+      AtomicReferenceArray<MultiplexedConnection> serverConnections = connections.get(server);
+      int open = 0;
+      if (serverConnections != null) {
+         for (int i = 0; i < serverConnections.length(); i++) {
+            MultiplexedConnection connection = serverConnections.get(i);
+            if (connection != null && connection.isOpen()) {
+               open++;
+            }
+         }
+      }
+      return open;
+   }
+
+   /**
+    * Returns one of the connections to the server, in round robin, opening it if it is not open yet.
+    */
+   private MultiplexedConnection getConnection(SocketAddress server) {
+      AtomicReferenceArray<MultiplexedConnection> serverConnections = connections.get(server);
+      if (serverConnections == null) {
+         serverConnections = new AtomicReferenceArray<MultiplexedConnection>(connectionsPerServer);
+         AtomicReferenceArray<MultiplexedConnection> existing = connections.putIfAbsent(server, serverConnections);
+         if (existing != null) {
+            serverConnections = existing;
+         }
+      }
+      int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % serverConnections.length();
+      MultiplexedConnection connection = serverConnections.get(index);
+      if (connection != null && connection.isOpen()) {
+         return connection;
+      }
+      // only one thread opens each connection, the others wait for it
+      synchronized (serverConnections) {
+         connection = serverConnections.get(index);
+         if (connection == null || !connection.isOpen()) {
+            connection = new MultiplexedConnection((InetSocketAddress) server, this);
+            if (log.isTraceEnabled()) {
+               log.tracef("Created connection: %s", connection);
+            }
+            serverConnections.set(index, connection);
+         }
+      }
+      return connection;
+   }
+
+   private void pingOnStartup(Codec codec, AtomicInteger topologyId) {
+      log.trace("Executing first ping!");
+      Transport transport = null;
+      try {
+         transport = getTransport();
+         new PingOperation(codec, topologyId, transport).execute();
+      } catch (Exception e) {
+         log.tracef("Ignoring ping request failure during ping on startup: %s", e.getMessage());
+      } finally {
+         if (transport != null) {
+            releaseTransport(transport);
+         }
+      }
+   }
+
+   private static void retireAll(AtomicReferenceArray<MultiplexedConnection> serverConnections) {
+      for (int i = 0; i < serverConnections.length(); i++) {
+         MultiplexedConnection connection = serverConnections.get(i);
+         if (connection != null) {
+            connection.retire();
+         }
+      }
+   }
+
+   private static void closeAll(AtomicReferenceArray<MultiplexedConnection> serverConnections, Throwable cause) {
+      for (int i = 0; i < serverConnections.length(); i++) {
+         MultiplexedConnection connection = serverConnections.get(i);
+         if (connection != null) {
+            connection.close(cause);
+         }
+      }
+   }
+
+   private static ExecutorService newCompletionExecutor(int poolSize) {
+      ThreadFactory threadFactory = new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, COMPLETION_THREAD_NAME + "-" + COMPLETION_THREAD_COUNTER.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+         }
+      };
+      return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+   }
+}
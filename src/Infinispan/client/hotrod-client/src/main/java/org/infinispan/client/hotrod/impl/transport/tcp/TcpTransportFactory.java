@@ -162,6 +162,13 @@ public class TcpTransportFactory implements TransportFactory {
       return borrowTransportFromPool(server);
    }
 
+   @Override
+   public SocketAddress getServer(byte[] key) {
+      synchronized (lock) {
+         return consistentHash == null ? null : consistentHash.getServer(key);
+      }
+   }
+
    @Override
    public void releaseTransport(Transport transport) {
       // The invalidateObject()/returnObject() calls could take a long time, so we hold the lock only until we get the connection pool reference
@@ -28,9 +28,12 @@ import org.infinispan.test.SingleCacheManagerTest;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.testng.AssertJUnit.assertEquals;
@@ -57,11 +60,16 @@ public class BulkGetSimpleTest extends SingleCacheManagerTest {
 
       Properties hotrodClientConf = new Properties();
       hotrodClientConf.put("infinispan.client.hotrod.server_list", "localhost:" + hotRodServer.getPort());
+      setProtocolVersion(hotrodClientConf);
       remoteCacheManager = new RemoteCacheManager(hotrodClientConf);
       remoteCache = remoteCacheManager.getCache();
       return cacheManager;
    }
 
+   protected void setProtocolVersion(Properties props) {
+      // the default version, where put all and get all are synthetic operations
+   }
+
    private void populateCacheManager() {
       for (int i = 0; i < 100; i++) {
          remoteCache.put(i, i);
@@ -89,6 +97,32 @@ public class BulkGetSimpleTest extends SingleCacheManagerTest {
       }
    }
 
+   public void testGetAll() {
+      populateCacheManager();
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 100; i += 2) {
+         keys.add(i);
+      }
+      keys.add("missing");
+      Map<Object,Object> map = remoteCache.getAll(keys);
+      assertEquals(50, map.size());
+      for (int i = 0; i < 100; i += 2) {
+         assertEquals(i, map.get(i));
+      }
+      assert !map.containsKey("missing");
+      assert remoteCache.getAll(Collections.emptySet()).isEmpty();
+   }
+
+   public void testPutAll() {
+      Map<Object,Object> dataIn = new HashMap<Object,Object>();
+      for (int i = 0; i < 100; i++) {
+         dataIn.put(i, "v" + i);
+      }
+      remoteCache.putAll(dataIn);
+      assertEquals(100, cache.size());
+      assertEquals(dataIn, remoteCache.getAll(dataIn.keySet()));
+   }
+
    public void testBulkGetAfterLifespanExpire() throws InterruptedException {
       Map dataIn = new HashMap();
       dataIn.put("aKey", "aValue");
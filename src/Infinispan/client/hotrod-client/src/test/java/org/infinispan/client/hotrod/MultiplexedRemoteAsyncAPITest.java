@@ -0,0 +1,98 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.concurrent.FutureListener;
+import org.testng.annotations.Test;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Runs the asynchronous API tests over the {@link NioTransportFactory}, where the asynchronous
+ * operations are pipelined over a few shared connections instead of borrowing a socket each.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "client.hotrod.MultiplexedRemoteAsyncAPITest")
+public class MultiplexedRemoteAsyncAPITest extends RemoteAsyncAPITest {
+
+   private static final int CONNECTIONS_PER_SERVER = 2;
+
+   @Override
+   protected void setTransportFactory(Properties props) {
+      props.setProperty(ConfigurationProperties.TRANSPORT_FACTORY, NioTransportFactory.class.getName());
+      props.setProperty(ConfigurationProperties.CONNECTIONS_PER_SERVER, String.valueOf(CONNECTIONS_PER_SERVER));
+   }
+
+   public void testPipelinedOperations() throws Exception {
+      List<Future<String>> puts = new ArrayList<Future<String>>();
+      for (int i = 0; i < 1000; i++) {
+         puts.add(c.putAsync("pk" + i, "pv" + i));
+      }
+      for (Future<String> f : puts) {
+         assertEquals(null, f.get());
+      }
+
+      List<Future<String>> gets = new ArrayList<Future<String>>();
+      for (int i = 0; i < 1000; i++) {
+         gets.add(c.getAsync("pk" + i));
+      }
+      for (int i = 0; i < 1000; i++) {
+         assertEquals("pv" + i, gets.get(i).get());
+      }
+
+      NioTransportFactory transportFactory = (NioTransportFactory) TestingUtil.extractField(rcm, "transportFactory");
+      for (SocketAddress server : transportFactory.getServers()) {
+         assert transportFactory.getOpenConnections(server) <= CONNECTIONS_PER_SERVER;
+      }
+   }
+
+   public void testListenerExecutesOperations() throws Exception {
+      c.put("lk", "lv");
+      final CountDownLatch done = new CountDownLatch(1);
+      final AtomicReference<String> value = new AtomicReference<String>();
+      c.getAsync("lk").attachListener(new FutureListener<String>() {
+         @Override
+         public void futureDone(Future<String> future) {
+            //the response of this get may be read by the same connection that notifies the listener
+            value.set(c.get("lk"));
+            done.countDown();
+         }
+      });
+      assert done.await(10, TimeUnit.SECONDS) : "The listener is blocked";
+      assertEquals("lv", value.get());
+   }
+}
@@ -0,0 +1,164 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of the Hot Rod client with the pooled {@link TcpTransportFactory} and with the
+ * {@link NioTransportFactory} for an increasing number of connections per server. The synchronous workload runs put
+ * and get operations from several threads. The asynchronous workload pipelines the operations from a single thread,
+ * keeping a bounded number of requests in flight.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "stress", testName = "client.hotrod.MultiplexedTransportStressTest", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class MultiplexedTransportStressTest extends SingleCacheManagerTest {
+
+   private static final int[] CONNECTIONS_PER_SERVER = {1, 2, 4, 8};
+   private static final int THREADS = 16;
+   private static final int OPERATIONS_PER_THREAD = 20000;
+   private static final int ASYNC_OPERATIONS = 200000;
+   private static final int ASYNC_WINDOW = 256;
+   private static final int NUMBER_OF_KEYS = 1000;
+
+   private HotRodServer hotrodServer;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createLocalCacheManager(false);
+      hotrodServer = TestHelper.startHotRodServer(cm);
+      return cm;
+   }
+
+   @AfterClass
+   @Override
+   protected void destroyAfterClass() {
+      super.destroyAfterClass();
+      hotrodServer.stop();
+   }
+
+   public void testThroughput() throws Exception {
+      run("tcp (pooled)", TcpTransportFactory.class, 0);
+      for (int connections : CONNECTIONS_PER_SERVER) {
+         run("nio", NioTransportFactory.class, connections);
+      }
+   }
+
+   private void run(String name, Class<?> transportFactory, int connections) throws Exception {
+      Properties props = new Properties();
+      props.setProperty(ConfigurationProperties.SERVER_LIST, "127.0.0.1:" + hotrodServer.getPort());
+      props.setProperty(ConfigurationProperties.TRANSPORT_FACTORY, transportFactory.getName());
+      if (connections > 0) {
+         props.setProperty(ConfigurationProperties.CONNECTIONS_PER_SERVER, String.valueOf(connections));
+      }
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(props);
+      try {
+         RemoteCache<String, String> remoteCache = remoteCacheManager.getCache();
+         for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            remoteCache.put("key" + i, "value" + i);
+         }
+         long syncThroughput = runSync(remoteCache);
+         long asyncThroughput = runAsync(remoteCache);
+         log.warnf("%s with %d connections per server: sync %d ops/s, async %d ops/s", name, connections,
+                   syncThroughput, asyncThroughput);
+      } finally {
+         remoteCacheManager.stop();
+      }
+   }
+
+   private long runSync(final RemoteCache<String, String> remoteCache) throws Exception {
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicLong errors = new AtomicLong();
+      Thread[] workers = new Thread[THREADS];
+      for (int t = 0; t < THREADS; t++) {
+         final int offset = t;
+         workers[t] = new Thread("MultiplexedTransportStressTest-" + t) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+                  for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                     String key = "key" + ((offset + i) % NUMBER_OF_KEYS);
+                     if ((i & 1) == 0) {
+                        remoteCache.get(key);
+                     } else {
+                        remoteCache.put(key, "value" + i);
+                     }
+                  }
+               } catch (Exception e) {
+                  errors.incrementAndGet();
+                  log.warn("Synchronous worker failed", e);
+               }
+            }
+         };
+         workers[t].start();
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Thread worker : workers) {
+         worker.join();
+      }
+      long duration = System.nanoTime() - begin;
+      assert errors.get() == 0 : errors.get() + " synchronous workers failed";
+      return THREADS * OPERATIONS_PER_THREAD * TimeUnit.SECONDS.toNanos(1) / duration;
+   }
+
+   private long runAsync(RemoteCache<String, String> remoteCache) throws Exception {
+      List<Future<String>> inFlight = new ArrayList<Future<String>>(ASYNC_WINDOW);
+      long begin = System.nanoTime();
+      for (int i = 0; i < ASYNC_OPERATIONS; i++) {
+         String key = "key" + (i % NUMBER_OF_KEYS);
+         inFlight.add((i & 1) == 0 ? remoteCache.getAsync(key) : remoteCache.putAsync(key, "value" + i));
+         if (inFlight.size() == ASYNC_WINDOW) {
+            for (Future<String> future : inFlight) {
+               future.get();
+            }
+            inFlight.clear();
+         }
+      }
+      for (Future<String> future : inFlight) {
+         future.get();
+      }
+      long duration = System.nanoTime() - begin;
+      return ASYNC_OPERATIONS * TimeUnit.SECONDS.toNanos(1) / duration;
+   }
+}
@@ -43,8 +43,8 @@ import static junit.framework.Assert.assertEquals;
 @Test(groups = "functional", testName = "client.hotrod.RemoteAsyncAPITest")
 public class RemoteAsyncAPITest extends SingleCacheManagerTest {
    private HotRodServer hotrodServer;
-   private RemoteCacheManager rcm;
-   private RemoteCache<String, String> c;
+   protected RemoteCacheManager rcm;
+   protected RemoteCache<String, String> c;
 
    @Override
    protected EmbeddedCacheManager createCacheManager() throws Exception {
@@ -55,11 +55,16 @@ public class RemoteAsyncAPITest extends SingleCacheManagerTest {
       props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotrodServer.getPort());
       props.put("infinispan.client.hotrod.force_return_values","true");
       props.put("testOnBorrow", "false");
+      setTransportFactory(props);
       rcm = new RemoteCacheManager(props);
       c = rcm.getCache(true);
       return cm;
    }
 
+   protected void setTransportFactory(Properties props) {
+      // No-op, use the default transport factory
+   }
+
    @AfterClass
    @Override
    protected void destroyAfterClass() {
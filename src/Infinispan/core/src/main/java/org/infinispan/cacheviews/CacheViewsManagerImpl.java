@@ -522,7 +522,13 @@ public class CacheViewsManagerImpl implements CacheViewsManager {
       if (isLocal) {
          CacheViewListener cacheViewListener = cacheViewInfo.getListener();
          if (cacheViewListener != null) {
-            cacheViewListener.prepareView(pendingView, lastCommittedView, viewHistory, replicationDegree);
+            // with the non-blocking state transfer a joiner pulls the state, so it needs the coordinator's view with the
+            // current owners of the data, as it did not commit any view yet
+            CacheView oldView = lastCommittedView;
+            if (lastCommittedView.getViewId() < 0 && getConfiguration(cacheName).clustering().stateTransfer().nonBlocking()) {
+               oldView = committedView;
+            }
+            cacheViewListener.prepareView(pendingView, oldView, viewHistory, replicationDegree);
          } else {
             throw new IllegalStateException(String.format("%s: Received cache view prepare request after the local node has already shut down", cacheName));
          }
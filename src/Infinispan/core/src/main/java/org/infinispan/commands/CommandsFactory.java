@@ -40,6 +40,7 @@ import org.infinispan.commands.remote.GarbageCollectorControlCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.ReconfigurableProtocolCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareBatchCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -276,6 +277,14 @@ public interface CommandsFactory {
     */
    SingleRpcCommand buildSingleRpcCommand(ReplicableCommand call);
 
+   /**
+    * Builds a TotalOrderPrepareBatchCommand "envelope" containing multiple prepares to be sent in a single totally
+    * ordered message
+    * @param prepareCommands PrepareCommands to include in the envelope, in the order they should be delivered
+    * @return a TotalOrderPrepareBatchCommand
+    */
+   TotalOrderPrepareBatchCommand buildTotalOrderPrepareBatchCommand(List<PrepareCommand> prepareCommands);
+
    /**
     * Builds a ClusteredGetCommand, which is a remote lookup command
     * @param key key to look up
@@ -319,6 +328,13 @@ public interface CommandsFactory {
    StateTransferControlCommand buildStateTransferCommand(StateTransferControlCommand.Type subtype, Address sender, int viewId,
                                                          Collection<InternalCacheEntry> state, Collection<LockInfo> lockInfo);
 
+   /**
+    * Builds a StateTransferControlCommand that requests the entries of a segment from the old owners, used by the
+    * non-blocking state transfer.
+    */
+   StateTransferControlCommand buildStateTransferCommand(StateTransferControlCommand.Type subtype, Address sender, int viewId,
+                                                         int segment);
+
    /**
     * Retrieves the cache name this CommandFactory is set up to construct commands for.
     * @return the name of the cache this CommandFactory is set up to construct commands for.
@@ -430,6 +446,19 @@ public interface CommandsFactory {
     */
    GarbageCollectorControlCommand buildGarbageCollectorControlCommand(GarbageCollectorControlCommand.Type type,
                                                                       int minimumVisibleViewId);
+
+   /**
+    * builds a garbage collector control command with the minimum visible version
+    *
+    * @param type                   the control type
+    * @param minimumVisibleViewId   the minimum visible view id
+    * @param minimumVisibleVersion  the minimum visible version, used when the {@param type} is
+    *                               {@code GarbageCollectorControlCommand.Type.REPORT_VERSION}
+    * @return                       the garbage collector control command
+    */
+   GarbageCollectorControlCommand buildGarbageCollectorControlCommand(GarbageCollectorControlCommand.Type type,
+                                                                      int minimumVisibleViewId,
+                                                                      EntryVersion minimumVisibleVersion);
    /**
     * Builds a SetClassCommand used to apply a specific transactional class to a transaction
     */
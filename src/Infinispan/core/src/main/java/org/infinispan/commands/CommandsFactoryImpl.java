@@ -42,6 +42,7 @@ import org.infinispan.commands.remote.GarbageCollectorControlCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.ReconfigurableProtocolCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareBatchCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -305,6 +306,11 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new SingleRpcCommand(cacheName, call);
    }
 
+   @Override
+   public TotalOrderPrepareBatchCommand buildTotalOrderPrepareBatchCommand(List<PrepareCommand> prepareCommands) {
+      return new TotalOrderPrepareBatchCommand(cacheName, prepareCommands);
+   }
+
    @Override
    public ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags, boolean acquireRemoteLock, GlobalTransaction gtx) {
       return new ClusteredGetCommand(key, cacheName, flags, acquireRemoteLock, gtx);
@@ -342,6 +348,13 @@ public class CommandsFactoryImpl implements CommandsFactory {
                initializeReplicableCommand(src.getCommand(), false);
 
             break;
+         case TotalOrderPrepareBatchCommand.COMMAND_ID:
+            TotalOrderPrepareBatchCommand topbc = (TotalOrderPrepareBatchCommand) c;
+            if (topbc.getPrepareCommands() != null)
+               for (PrepareCommand nested : topbc.getPrepareCommands()) {
+                  initializeReplicableCommand(nested, isRemote);
+               }
+            break;
          case InvalidateCommand.COMMAND_ID:
             InvalidateCommand ic = (InvalidateCommand) c;
             ic.init(notifier);
@@ -495,6 +508,12 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new StateTransferControlCommand(cacheName, type, sender, viewId, state, lockInfo);
    }
 
+   @Override
+   public StateTransferControlCommand buildStateTransferCommand(StateTransferControlCommand.Type type, Address sender,
+                                                                int viewId, int segment) {
+      return new StateTransferControlCommand(cacheName, type, sender, viewId, segment);
+   }
+
    @Override
    public String getCacheName() {
       return cacheName;
@@ -574,6 +593,13 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GarbageCollectorControlCommand(cacheName, type, minimumVisibleViewId);
    }
 
+   @Override
+   public GarbageCollectorControlCommand buildGarbageCollectorControlCommand(GarbageCollectorControlCommand.Type type,
+                                                                             int minimumVisibleViewId,
+                                                                             EntryVersion minimumVisibleVersion) {
+      return new GarbageCollectorControlCommand(cacheName, type, minimumVisibleViewId, minimumVisibleVersion);
+   }
+
    @Override
    public SetClassCommand buildSetClassCommand(String transactionalClass) {
       return new SetClassCommand(transactionalClass);
@@ -40,6 +40,7 @@ import org.infinispan.commands.remote.GarbageCollectorControlCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.ReconfigurableProtocolCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareBatchCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -248,6 +249,9 @@ public class RemoteCommandsFactory {
             case ConfigurationStateCommand.COMMAND_ID:
                command = new ConfigurationStateCommand(cacheName);
                break;
+            case TotalOrderPrepareBatchCommand.COMMAND_ID:
+               command = new TotalOrderPrepareBatchCommand(cacheName);
+               break;
             default:
                throw new CacheException("Unknown command id " + id + "!");
          }
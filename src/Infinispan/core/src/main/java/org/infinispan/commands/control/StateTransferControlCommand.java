@@ -55,7 +55,11 @@ public class StateTransferControlCommand extends BaseRpcCommand {
    public enum Type {
       // receive a map of keys and add them to the data container
       APPLY_STATE,
-      APPLY_LOCKS
+      APPLY_LOCKS,
+      // non-blocking state transfer: check if the old owners forward the writes to the new owners
+      PREPARE_STATE,
+      // non-blocking state transfer: return the entries of a segment that the sender now owns
+      REQUEST_STATE
    }
 
    Type type;
@@ -63,7 +67,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
    int viewId;
    Collection<InternalCacheEntry> state;
    Collection<LockInfo> locks;
-
+   int segment;
 
    // cache components
    StateTransferManager stateTransferManager;
@@ -96,6 +100,11 @@ public class StateTransferControlCommand extends BaseRpcCommand {
       this.viewId = viewId;
    }
 
+   public StateTransferControlCommand(String cacheName, Type type, Address sender, int viewId, int segment) {
+      this(cacheName, type, sender, viewId);
+      this.segment = segment;
+   }
+
    public void init(StateTransferManager stateTransferManager, Configuration configuration, DataContainer dataContainer,
                     CommandsFactory commandsFactory) {
       this.stateTransferManager = stateTransferManager;
@@ -118,6 +127,10 @@ public class StateTransferControlCommand extends BaseRpcCommand {
             case APPLY_LOCKS:
                stateTransferManager.applyLocks(locks, sender, viewId);
                return null;
+            case PREPARE_STATE:
+               return stateTransferManager.prepareState(sender, viewId);
+            case REQUEST_STATE:
+               return stateTransferManager.getState(sender, viewId, segment);
             default:
                throw new CacheException("Unknown rehash control command type " + type);
          }
@@ -140,7 +153,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
 
    @Override
    public Object[] getParameters() {
-      return new Object[]{(byte) type.ordinal(), sender, viewId, state, locks};
+      return new Object[]{(byte) type.ordinal(), sender, viewId, state, locks, segment};
    }
 
    @Override
@@ -151,7 +164,8 @@ public class StateTransferControlCommand extends BaseRpcCommand {
       sender = (Address) parameters[i++];
       viewId = (Integer) parameters[i++];
       state = (Collection<InternalCacheEntry>) parameters[i++];
-      locks = (Collection<LockInfo>) parameters[i];
+      locks = (Collection<LockInfo>) parameters[i++];
+      segment = (Integer) parameters[i];
    }
 
    @Override
@@ -163,6 +177,7 @@ public class StateTransferControlCommand extends BaseRpcCommand {
             ", viewId=" + viewId +
             ", state=" + (state == null ? "N/A" : state.size()) +
             ", locks=" + (locks == null ? "N/A" : locks.size()) +
+            (type == Type.REQUEST_STATE ? ", segment=" + segment : "") +
             '}';
    }
 
@@ -70,6 +70,14 @@ public abstract class BaseRpcCommand implements CacheRpcCommand {
       this.responseGenerator = responseGenerator;
    }
 
+   protected final MessageRequest getMessageRequest() {
+      return messageRequest;
+   }
+
+   protected final ResponseGenerator getResponseGenerator() {
+      return responseGenerator;
+   }
+
    @Override
    public final void sendReply(Object reply, boolean threwException) {
       sendReply(messageRequest, responseGenerator, this, reply, threwException);
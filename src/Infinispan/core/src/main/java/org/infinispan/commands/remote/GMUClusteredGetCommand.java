@@ -32,7 +32,7 @@ import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.dataplacement.ClusterSnapshot;
 import org.infinispan.executors.ConditionalExecutorService;
-import org.infinispan.executors.ConditionalRunnable;
+import org.infinispan.executors.DependencyAwareRunnable;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.gmu.CommitLog;
 import org.infinispan.transaction.gmu.VersionNotAvailableException;
@@ -55,7 +55,7 @@ import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersionGenerator;
  * @author Sebastiano Peluso
  * @since 5.2
  */
-public class GMUClusteredGetCommand extends ClusteredGetCommand implements ConditionalRunnable {
+public class GMUClusteredGetCommand extends ClusteredGetCommand implements DependencyAwareRunnable {
 
    public static final byte COMMAND_ID = 32;
    //the transaction version. from this version and with the bit set, it calculates the max and min version to read
@@ -101,6 +101,15 @@ public class GMUClusteredGetCommand extends ClusteredGetCommand implements Condi
       return minGMUVersion == null || alreadyReadOnThisNode || commitLog.tryWaitForVersion(minGMUVersion);
    }
 
+   @Override
+   public void registerDependencyListener(Runnable listener) {
+      if (isReady()) {
+         listener.run();
+      } else {
+         commitLog.addVersionListener(minGMUVersion, listener);
+      }
+   }
+
    @Override
    public void run() {
       try {
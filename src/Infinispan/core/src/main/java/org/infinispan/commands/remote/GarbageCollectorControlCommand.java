@@ -22,6 +22,7 @@
  */
 package org.infinispan.commands.remote;
 
+import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.transaction.gmu.manager.GarbageCollectorManager;
 import org.infinispan.util.Util;
@@ -37,6 +38,7 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
    public static final byte COMMAND_ID = 100;
    private Type type;
    private int minimumVisibleViewId;
+   private EntryVersion minimumVisibleVersion;
    private GarbageCollectorManager garbageCollectorManager;
 
    public GarbageCollectorControlCommand(String cacheName, Type type, int minimumVisibleViewId) {
@@ -45,6 +47,12 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
       this.minimumVisibleViewId = minimumVisibleViewId;
    }
 
+   public GarbageCollectorControlCommand(String cacheName, Type type, int minimumVisibleViewId,
+                                         EntryVersion minimumVisibleVersion) {
+      this(cacheName, type, minimumVisibleViewId);
+      this.minimumVisibleVersion = minimumVisibleVersion;
+   }
+
    public GarbageCollectorControlCommand(String cacheName) {
       super(cacheName);
    }
@@ -63,6 +71,13 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
          case SET_VIEW_ID:
             garbageCollectorManager.handleDeleteOlderViewId(minimumVisibleViewId);
             return null;
+         case REQUEST_VERSION:
+            garbageCollectorManager.handleRequestMinimumVisible(getOrigin());
+            return null;
+         case REPORT_VERSION:
+            garbageCollectorManager.handleReportMinimumVisible(getOrigin(), minimumVisibleVersion,
+                                                               minimumVisibleViewId);
+            return null;
          default:
             throw new IllegalStateException("Type not found!");
       }
@@ -78,9 +93,12 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
       switch (type) {
          case GET_VERSION:
          case GET_VIEW_ID:
+         case REQUEST_VERSION:
             return new Object[]{typeToByte()};
          case SET_VIEW_ID:
             return new Object[]{typeToByte(), minimumVisibleViewId};
+         case REPORT_VERSION:
+            return new Object[]{typeToByte(), minimumVisibleViewId, minimumVisibleVersion};
       }
       return Util.EMPTY_OBJECT_ARRAY;
    }
@@ -93,6 +111,9 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
       type = byteToType((Byte) parameters[0]);
       if (type == Type.SET_VIEW_ID) {
          minimumVisibleViewId = (Integer) parameters[1];
+      } else if (type == Type.REPORT_VERSION) {
+         minimumVisibleViewId = (Integer) parameters[1];
+         minimumVisibleVersion = (EntryVersion) parameters[2];
       }
    }
 
@@ -106,6 +127,7 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
       return "GarbageCollectorControlCommand{" +
             "type=" + type +
             ", minimumVisibleViewId=" + minimumVisibleViewId +
+            ", minimumVisibleVersion=" + minimumVisibleVersion +
             "} " + super.toString();
    }
 
@@ -131,6 +153,17 @@ public class GarbageCollectorControlCommand extends BaseRpcCommand {
       /**
        * used in view history garbage collector, it means that all view id less than *this* view id can be safe deleted
        */
-      SET_VIEW_ID
+      SET_VIEW_ID,
+
+      /**
+       * used in incremental garbage collector, it asks the receiver to report its minimum visible version and view id
+       * asynchronously (with a {@link #REPORT_VERSION} message)
+       */
+      REQUEST_VERSION,
+
+      /**
+       * used in incremental garbage collector, it contains the minimum visible version and view id of the sender
+       */
+      REPORT_VERSION
    }
 }
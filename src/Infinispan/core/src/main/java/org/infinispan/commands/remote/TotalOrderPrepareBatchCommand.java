@@ -0,0 +1,175 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.jgroups.Message;
+import org.jgroups.blocks.MessageRequest;
+import org.jgroups.blocks.RequestHandler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envelope containing multiple prepare commands sent in a single totally ordered message. When delivered, the prepares
+ * are unpacked, in order, into the normal validation.
+ * <p/>
+ * Each prepare replies independently (possibly from the validation threads) and the reply of the batch is sent when
+ * all the prepares have replied. The reply is an array with the response of each prepare, in the same order.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class TotalOrderPrepareBatchCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 106;
+
+   private static final Log log = LogFactory.getLog(TotalOrderPrepareBatchCommand.class);
+
+   private PrepareCommand[] prepareCommands;
+
+   private TotalOrderPrepareBatchCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public TotalOrderPrepareBatchCommand(String cacheName, List<PrepareCommand> prepareCommands) {
+      super(cacheName);
+      this.prepareCommands = prepareCommands.toArray(new PrepareCommand[prepareCommands.size()]);
+   }
+
+   public TotalOrderPrepareBatchCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   @Override
+   public Object perform(InvocationContext ctx) throws Throwable {
+      if (log.isTraceEnabled()) {
+         log.tracef("Unpacking a batch of %s prepares", prepareCommands.length);
+      }
+      BatchReply batchReply = new BatchReply(prepareCommands.length);
+      for (int i = 0; i < prepareCommands.length; ++i) {
+         PrepareCommand prepareCommand = prepareCommands[i];
+         prepareCommand.setOrigin(getOrigin());
+         prepareCommand.setResponseGenerator(getResponseGenerator());
+         prepareCommand.setMessageRequest(batchReply.slot(i));
+         try {
+            Object retVal = prepareCommand.perform(null);
+            if (retVal != RequestHandler.DO_NOT_REPLY) {
+               prepareCommand.sendReply(retVal, false);
+            }
+         } catch (Exception e) {
+            log.trace("Exception executing prepare command from batch", e);
+            prepareCommand.sendReply(e, true);
+         }
+      }
+      return RequestHandler.DO_NOT_REPLY;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public PrepareCommand[] getPrepareCommands() {
+      return prepareCommands;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      Object[] retVal = new Object[prepareCommands.length];
+      System.arraycopy(prepareCommands, 0, retVal, 0, prepareCommands.length);
+      return retVal;
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] parameters) {
+      prepareCommands = new PrepareCommand[parameters.length];
+      System.arraycopy(parameters, 0, prepareCommands, 0, parameters.length);
+   }
+
+   @Override
+   public boolean isReturnValueExpected() {
+      return true;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      TotalOrderPrepareBatchCommand that = (TotalOrderPrepareBatchCommand) o;
+
+      if (cacheName != null ? !cacheName.equals(that.cacheName) : that.cacheName != null) return false;
+      return Arrays.equals(prepareCommands, that.prepareCommands);
+   }
+
+   @Override
+   public int hashCode() {
+      int result = prepareCommands != null ? Arrays.hashCode(prepareCommands) : 0;
+      result = 31 * result + (cacheName != null ? cacheName.hashCode() : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "TotalOrderPrepareBatchCommand{" +
+            "prepareCommands=" + (prepareCommands == null ? null : Arrays.asList(prepareCommands)) +
+            ", cacheName='" + cacheName + '\'' +
+            '}';
+   }
+
+   /**
+    * collects the replies of the prepares in the batch and sends the batch reply when all of them have replied
+    */
+   private class BatchReply {
+      private final Object[] replies;
+      private final AtomicInteger missingReplies;
+
+      private BatchReply(int size) {
+         this.replies = new Object[size];
+         this.missingReplies = new AtomicInteger(size);
+      }
+
+      private MessageRequest slot(final int index) {
+         return new MessageRequest() {
+            @Override
+            public void sendReply(Object reply, boolean exceptionThrown) {
+               replies[index] = reply;
+               //the atomic decrement publishes the reply to the thread that sends the batch reply
+               if (missingReplies.decrementAndGet() == 0) {
+                  TotalOrderPrepareBatchCommand.this.sendReply(replies, false);
+               }
+            }
+
+            @Override
+            public Message getMessage() {
+               return getMessageRequest().getMessage();
+            }
+         };
+      }
+   }
+}
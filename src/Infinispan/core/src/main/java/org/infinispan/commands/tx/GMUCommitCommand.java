@@ -35,6 +35,9 @@ public class GMUCommitCommand extends CommitCommand {
    public static final byte COMMAND_ID = 103;   
 
    private EntryVersion commitVersion;
+   //garbage collector information piggybacked
+   private EntryVersion minimumVisibleVersion;
+   private int minimumVisibleViewId = -1;
 
    public GMUCommitCommand(String cacheName, GlobalTransaction gtx) {
       super(cacheName, gtx);
@@ -66,14 +69,29 @@ public class GMUCommitCommand extends CommitCommand {
       return commitVersion;
    }
 
+   public void setMinimumVisible(EntryVersion minimumVisibleVersion, int minimumVisibleViewId) {
+      this.minimumVisibleVersion = minimumVisibleVersion;
+      this.minimumVisibleViewId = minimumVisibleViewId;
+   }
+
+   public EntryVersion getMinimumVisibleVersion() {
+      return minimumVisibleVersion;
+   }
+
+   public int getMinimumVisibleViewId() {
+      return minimumVisibleViewId;
+   }
+
    @Override
    public Object[] getParameters() {
-      return new Object[] {globalTx, commitVersion};
+      return new Object[] {globalTx, commitVersion, minimumVisibleVersion, minimumVisibleViewId};
    }
 
    @Override
    public void setParameters(int commandId, Object[] args) {
       globalTx = (GlobalTransaction) args[0];
       commitVersion = (EntryVersion) args[1];
+      minimumVisibleVersion = (EntryVersion) args[2];
+      minimumVisibleViewId = (Integer) args[3];
    }
 }
@@ -42,6 +42,9 @@ public class GMUPrepareCommand extends PrepareCommand {
 
    private Object[] readSet;
    private EntryVersion version;
+   //garbage collector information piggybacked
+   private EntryVersion minimumVisibleVersion;
+   private int minimumVisibleViewId = -1;
 
    public GMUPrepareCommand(String cacheName, GlobalTransaction gtx, boolean onePhaseCommit, WriteCommand... modifications) {
       super(cacheName, gtx, onePhaseCommit, modifications);
@@ -70,11 +73,13 @@ public class GMUPrepareCommand extends PrepareCommand {
       int numMods = modifications == null ? 0 : modifications.length;
       int numReads = readSet == null ? 0 : readSet.length;
       int i = 0;
-      final int params = 5;
+      final int params = 7;
       Object[] retVal = new Object[numMods + numReads + params];
       retVal[i++] = globalTx;
       retVal[i++] = onePhaseCommit;
       retVal[i++] = version;
+      retVal[i++] = minimumVisibleVersion;
+      retVal[i++] = minimumVisibleViewId;
       retVal[i++] = numMods;
       retVal[i] = numReads;
       if (numMods > 0) {
@@ -93,6 +98,8 @@ public class GMUPrepareCommand extends PrepareCommand {
       globalTx = (GlobalTransaction) args[i++];
       onePhaseCommit = (Boolean) args[i++];
       version = (EntryVersion) args[i++];
+      minimumVisibleVersion = (EntryVersion) args[i++];
+      minimumVisibleViewId = (Integer) args[i++];
       int numMods = (Integer) args[i++];
       int numReads = (Integer) args[i++];
       if (numMods > 0) {
@@ -113,6 +120,8 @@ public class GMUPrepareCommand extends PrepareCommand {
       copy.onePhaseCommit = onePhaseCommit;
       copy.readSet = readSet == null ? null : readSet.clone();
       copy.version = version;
+      copy.minimumVisibleVersion = minimumVisibleVersion;
+      copy.minimumVisibleViewId = minimumVisibleViewId;
       return copy;
    }
 
@@ -143,4 +152,17 @@ public class GMUPrepareCommand extends PrepareCommand {
    public EntryVersion getPrepareVersion() {
       return version;
    }
+
+   public void setMinimumVisible(EntryVersion minimumVisibleVersion, int minimumVisibleViewId) {
+      this.minimumVisibleVersion = minimumVisibleVersion;
+      this.minimumVisibleViewId = minimumVisibleViewId;
+   }
+
+   public EntryVersion getMinimumVisibleVersion() {
+      return minimumVisibleVersion;
+   }
+
+   public int getMinimumVisibleViewId() {
+      return minimumVisibleViewId;
+   }
 }
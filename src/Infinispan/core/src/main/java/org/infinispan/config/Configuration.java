@@ -175,6 +175,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
    ConditionalExecutorServiceType conditionalExecutorService = new ConditionalExecutorServiceType().setConfiguration(this);
 
+   TotalOrderBatchingType totalOrderBatching = new TotalOrderBatchingType().setConfiguration(this);
+
    private org.infinispan.configuration.cache.Configuration newConfig;
 
    public Configuration(org.infinispan.configuration.cache.Configuration config) {
@@ -1166,6 +1168,18 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return conditionalExecutorService.keepAliveTime;
    }
 
+   public boolean isTotalOrderBatchingEnabled() {
+      return totalOrderBatching.enabled;
+   }
+
+   public int getTotalOrderMaxBatchSize() {
+      return totalOrderBatching.maxBatchSize;
+   }
+
+   public long getTotalOrderBatchWindow() {
+      return totalOrderBatching.batchWindow;
+   }
+
    public boolean isGarbageCollectorEnabled() {
       return garbageCollector.enabled;
    }
@@ -1428,6 +1442,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.stateRetrieval.chunkSize;
    }
 
+   public boolean isStateTransferNonBlocking() {
+      return clustering.stateRetrieval.nonBlocking;
+   }
+
    public long getStateRetrievalLogFlushTimeout() {
       return clustering.stateRetrieval.logFlushTimeout;
    }
@@ -1837,6 +1855,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return transaction.transactionProtocol;
    }
 
+   /**
+    * @return true if the transactions delivered in total order are validated and applied in parallel when they do not
+    *         conflict, and their outcome is replied in the delivery order
+    */
+   public boolean isTotalOrderPipelining() {
+      return transaction.totalOrderPipelining;
+   }
+
    public boolean isHashActivated() {
       return clustering.hash.activated;
    }
@@ -1915,6 +1941,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @XmlAttribute
       protected TransactionProtocol transactionProtocol = TransactionProtocol.TWO_PHASE_COMMIT;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "isTotalOrderPipelining")
+      protected Boolean totalOrderPipelining = false;
+
       public TransactionType(String transactionManagerLookupClass) {
          this.transactionManagerLookupClass = transactionManagerLookupClass;
       }
@@ -2039,6 +2068,22 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          this.transactionProtocol = transactionProtocol;
       }
 
+      @Override
+      public TransactionType totalOrderPipelining(boolean totalOrderPipelining) {
+         setTotalOrderPipelining(totalOrderPipelining);
+         return this;
+      }
+
+      @XmlAttribute
+      public Boolean isTotalOrderPipelining() {
+         return totalOrderPipelining;
+      }
+
+      public void setTotalOrderPipelining(Boolean totalOrderPipelining) {
+         testImmutability("totalOrderPipelining");
+         this.totalOrderPipelining = totalOrderPipelining;
+      }
+
       @XmlAttribute
       public Boolean isUseSynchronization() {
          return useSynchronization;
@@ -2226,6 +2271,10 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
                that.transactionProtocol != null) {
             return false;
          }
+         if (totalOrderPipelining != null ? !totalOrderPipelining.equals(that.totalOrderPipelining) :
+               that.totalOrderPipelining != null) {
+            return false;
+         }
 
          return true;
       }
@@ -3331,6 +3380,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
       protected Integer chunkSize = 10000;
 
+      protected Boolean nonBlocking = false;
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitStateRetrievalType(this);
       }
@@ -3521,6 +3572,25 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      public Boolean isNonBlocking() {
+         return nonBlocking;
+      }
+
+      /**
+       * @deprecated
+       */
+      @Deprecated
+      public void setNonBlocking(Boolean nonBlocking) {
+         testImmutability("nonBlocking");
+         this.nonBlocking = nonBlocking;
+      }
+
+      @Override
+      public StateRetrievalConfig nonBlocking(Boolean nonBlocking) {
+         setNonBlocking(nonBlocking);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -4999,6 +5069,63 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       }
    }
 
+   @Deprecated
+   public static class TotalOrderBatchingType extends AbstractFluentConfigurationBean implements TotalOrderBatchingConfig {
+
+      private boolean enabled = false;
+      private int maxBatchSize = 16;
+      private long batchWindow = 500;
+
+      @Override
+      public TotalOrderBatchingConfig enable(boolean enable) {
+         testImmutability("enabled");
+         this.enabled = enable;
+         return this;
+      }
+
+      @Override
+      public TotalOrderBatchingConfig setMaxBatchSize(int size) {
+         testImmutability("maxBatchSize");
+         this.maxBatchSize = size;
+         return this;
+      }
+
+      @Override
+      public TotalOrderBatchingConfig setBatchWindow(long window) {
+         testImmutability("batchWindow");
+         this.batchWindow = window;
+         return this;
+      }
+
+      @Override
+      protected TotalOrderBatchingType setConfiguration(Configuration config) {
+         super.setConfiguration(config);
+         return this;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (o == null || getClass() != o.getClass()) return false;
+
+         TotalOrderBatchingType that = (TotalOrderBatchingType) o;
+
+         if (enabled != that.enabled) return false;
+         if (maxBatchSize != that.maxBatchSize) return false;
+         if (batchWindow != that.batchWindow) return false;
+
+         return true;
+      }
+
+      @Override
+      public int hashCode() {
+         int result = (enabled ? 1 : 0);
+         result = 31 * result + maxBatchSize;
+         result = 31 * result + (int) (batchWindow ^ (batchWindow >>> 32));
+         return result;
+      }
+   }
+
    @XmlAccessorType(XmlAccessType.PROPERTY)
    @ConfigurationDoc(name = "dataplacement")
    @Deprecated public static class DataPlacementType extends AbstractFluentConfigurationBean implements DataPlacementConfig {
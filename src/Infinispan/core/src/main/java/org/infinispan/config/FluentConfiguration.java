@@ -285,6 +285,12 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
       Configuration.TransactionType use1PcForAutoCommitTransactions(boolean b);
 
       TransactionConfig transactionProtocol(TransactionProtocol transactionProtocol);
+
+      /**
+       * If true, the transactions delivered in total order are validated and applied in parallel when they do not
+       * conflict, and their outcome is replied in the delivery order.
+       */
+      TransactionConfig totalOrderPipelining(boolean totalOrderPipelining);
    }
 
    /**
@@ -601,6 +607,12 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * Size of a state transfer chunk, in cache entries.
        */
       StateRetrievalConfig chunkSize(Integer chunkSize);
+
+      /**
+       * If true, the distributed caches transfer the state segment by segment, pulled by the new owners, while the
+       * transactions keep running.
+       */
+      StateRetrievalConfig nonBlocking(Boolean nonBlocking);
    }
 
    /**
@@ -854,6 +866,13 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
       ConditionalExecutorServiceConfig setMaxPoolSize(int size);
       ConditionalExecutorServiceConfig setKeepAliveTime(long time);
    }
+
+   @Deprecated
+   public static interface TotalOrderBatchingConfig extends FluentTypes {
+      TotalOrderBatchingConfig enable(boolean enable);
+      TotalOrderBatchingConfig setMaxBatchSize(int size);
+      TotalOrderBatchingConfig setBatchWindow(long window);
+   }
 }
 
 @Deprecated
@@ -919,6 +938,8 @@ interface FluentTypes {
 
    FluentConfiguration.ConditionalExecutorServiceConfig conditionalExecutorService();
 
+   FluentConfiguration.TotalOrderBatchingConfig totalOrderBatching();
+
    Configuration build();
 }
 
@@ -1072,6 +1093,10 @@ abstract class AbstractFluentConfigurationBean extends AbstractNamedCacheConfigu
       return transaction().transactionProtocol(transactionProtocol);
    }
 
+   public FluentConfiguration.TransactionConfig totalOrderPipelining(boolean totalOrderPipelining) {
+      return transaction().totalOrderPipelining(totalOrderPipelining);
+   }
+
    @Override
    public Configuration build() {
       return config;
@@ -1096,6 +1121,11 @@ abstract class AbstractFluentConfigurationBean extends AbstractNamedCacheConfigu
    public FluentConfiguration.ConditionalExecutorServiceConfig conditionalExecutorService() {
       return config.conditionalExecutorService;
    }
+
+   @Override
+   public FluentConfiguration.TotalOrderBatchingConfig totalOrderBatching() {
+      return config.totalOrderBatching;
+   }
 }
 
 
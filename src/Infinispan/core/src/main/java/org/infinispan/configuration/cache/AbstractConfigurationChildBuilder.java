@@ -116,6 +116,11 @@ abstract class AbstractConfigurationChildBuilder<T> implements ConfigurationChil
       return builder.conditionalExecutorService();
    }
 
+   @Override
+   public TotalOrderBatchingConfigurationBuilder totalOrderBatching() {
+      return builder.totalOrderBatching();
+   }
+
    protected ConfigurationBuilder getBuilder() {
       return builder;
    }
@@ -39,6 +39,7 @@ public class Configuration {
    private final DataPlacementConfiguration dataPlacementConfiguration;
    private final GarbageCollectorConfiguration garbageCollectorConfiguration;
    private final ConditionalExecutorServiceConfiguration conditionalExecutorServiceConfiguration;
+   private final TotalOrderBatchingConfiguration totalOrderBatchingConfiguration;
 
    Configuration(ClusteringConfiguration clusteringConfiguration,
                  CustomInterceptorsConfiguration customInterceptorsConfiguration,
@@ -49,7 +50,8 @@ public class Configuration {
                  LoadersConfiguration loadersConfiguration,
                  LockingConfiguration lockingConfiguration, StoreAsBinaryConfiguration storeAsBinaryConfiguration,
                  TransactionConfiguration transactionConfiguration, UnsafeConfiguration unsafeConfiguration,
-                 VersioningConfiguration versioningConfiguration, ClassLoader cl, DataPlacementConfiguration dataPlacementConfiguration, GarbageCollectorConfiguration garbageCollectorConfiguration, ConditionalExecutorServiceConfiguration conditionalExecutorServiceConfiguration) {
+                 VersioningConfiguration versioningConfiguration, ClassLoader cl, DataPlacementConfiguration dataPlacementConfiguration, GarbageCollectorConfiguration garbageCollectorConfiguration, ConditionalExecutorServiceConfiguration conditionalExecutorServiceConfiguration,
+                 TotalOrderBatchingConfiguration totalOrderBatchingConfiguration) {
       this.clusteringConfiguration = clusteringConfiguration;
       this.customInterceptorsConfiguration = customInterceptorsConfiguration;
       this.dataContainerConfiguration = dataContainerConfiguration;
@@ -69,6 +71,7 @@ public class Configuration {
       this.dataPlacementConfiguration = dataPlacementConfiguration;
       this.garbageCollectorConfiguration = garbageCollectorConfiguration;
       this.conditionalExecutorServiceConfiguration = conditionalExecutorServiceConfiguration;
+      this.totalOrderBatchingConfiguration = totalOrderBatchingConfiguration;
    }
 
    /**
@@ -152,6 +155,10 @@ public class Configuration {
       return conditionalExecutorServiceConfiguration;
    }
 
+   public TotalOrderBatchingConfiguration totalOrderBatching() {
+      return totalOrderBatchingConfiguration;
+   }
+
    @Override
    public String toString() {
       return "Configuration{" +
@@ -174,6 +181,7 @@ public class Configuration {
             ", dataPlacement=" + dataPlacementConfiguration +
             ", garbageCollector=" + garbageCollectorConfiguration +
             ", conditionalExecutorServiceConfiguration=" + conditionalExecutorServiceConfiguration +
+            ", totalOrderBatching=" + totalOrderBatchingConfiguration +
             '}';
    }
 
@@ -226,6 +234,10 @@ public class Configuration {
             !conditionalExecutorServiceConfiguration.equals(that.conditionalExecutorServiceConfiguration) :
             that.conditionalExecutorServiceConfiguration != null)
          return false;
+      if (totalOrderBatchingConfiguration != null ?
+            !totalOrderBatchingConfiguration.equals(that.totalOrderBatchingConfiguration) :
+            that.totalOrderBatchingConfiguration != null)
+         return false;
 
       return true;
    }
@@ -252,6 +264,8 @@ public class Configuration {
       result = 31 * result + (garbageCollectorConfiguration != null ? garbageCollectorConfiguration.hashCode() : 0);
       result = 31 * result + (conditionalExecutorServiceConfiguration != null ?
                                     conditionalExecutorServiceConfiguration.hashCode() : 0);
+      result = 31 * result + (totalOrderBatchingConfiguration != null ?
+                                    totalOrderBatchingConfiguration.hashCode() : 0);
       return result;
    }
 
@@ -41,6 +41,7 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
    private final DataPlacementConfigurationBuilder dataPlacement;
    private final GarbageCollectorConfigurationBuilder garbageCollector;
    private final ConditionalExecutorServiceConfigurationBuilder conditionalExecutorService;
+   private final TotalOrderBatchingConfigurationBuilder totalOrderBatching;
 
    public ConfigurationBuilder() {
       this.clustering = new ClusteringConfigurationBuilder(this);
@@ -61,6 +62,7 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
       this.dataPlacement = new DataPlacementConfigurationBuilder(this);
       this.garbageCollector = new GarbageCollectorConfigurationBuilder(this);
       this.conditionalExecutorService = new ConditionalExecutorServiceConfigurationBuilder(this);
+      this.totalOrderBatching = new TotalOrderBatchingConfigurationBuilder(this);
    }
 
    public ConfigurationBuilder classLoader(ClassLoader cl) {
@@ -162,12 +164,18 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
       return conditionalExecutorService;
    }
 
+   @Override
+   public TotalOrderBatchingConfigurationBuilder totalOrderBatching() {
+      return totalOrderBatching;
+   }
+
    @SuppressWarnings("unchecked")
    public void validate() {
       for (AbstractConfigurationChildBuilder<?> validatable:
             asList(clustering, dataContainer, deadlockDetection, eviction, expiration, indexing,
                    invocationBatching, jmxStatistics, loaders, locking, storeAsBinary, transaction,
-                   versioning, unsafe, dataPlacement, garbageCollector, conditionalExecutorService)) {
+                   versioning, unsafe, dataPlacement, garbageCollector, conditionalExecutorService,
+                   totalOrderBatching)) {
          validatable.validate();
       }
 
@@ -188,7 +196,7 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
                expiration.create(), indexing.create(), invocationBatching.create(),
                jmxStatistics.create(), loaders.create(), locking.create(), storeAsBinary.create(),
                transaction.create(), unsafe.create(), versioning.create(), classLoader, dataPlacement.create(),
-               garbageCollector.create(), conditionalExecutorService.create());// TODO
+               garbageCollector.create(), conditionalExecutorService.create(), totalOrderBatching.create());// TODO
    }
 
    public ConfigurationBuilder read(Configuration template) {
@@ -210,6 +218,7 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
       this.versioning.read(template.versioning());
       this.dataPlacement.read(template.dataPlacement());
       this.garbageCollector.read(template.garbageCollector());
+      this.totalOrderBatching.read(template.totalOrderBatching());
 
       return this;
    }
@@ -235,6 +244,7 @@ public class ConfigurationBuilder implements ConfigurationChildBuilder {
             ", unsafe=" + unsafe +
             ", dataPlacement=" + dataPlacement +
             ", garbageCollector=" + garbageCollector +
+            ", totalOrderBatching=" + totalOrderBatching +
             '}';
    }
 
@@ -56,5 +56,7 @@ public interface ConfigurationChildBuilder {
 
    ConditionalExecutorServiceConfigurationBuilder conditionalExecutorService();
 
+   TotalOrderBatchingConfigurationBuilder totalOrderBatching();
+
    Configuration build();
 }
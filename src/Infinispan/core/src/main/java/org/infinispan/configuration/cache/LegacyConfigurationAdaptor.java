@@ -119,7 +119,8 @@ public class LegacyConfigurationAdaptor {
       // We have only defined the chunkSize in the legacy stateRetrieval config, but we are using it in distributed mode as well
       legacy.clustering()
             .stateRetrieval()
-            .chunkSize(config.clustering().stateTransfer().chunkSize());
+            .chunkSize(config.clustering().stateTransfer().chunkSize())
+            .nonBlocking(config.clustering().stateTransfer().nonBlocking());
 
       if (config.clustering().cacheMode().isSynchronous()) {
          legacy.clustering()
@@ -268,7 +269,8 @@ public class LegacyConfigurationAdaptor {
             .useEagerLocking(config.transaction().useEagerLocking())
             .useSynchronization(config.transaction().useSynchronization())
             .use1PcForAutoCommitTransactions(config.transaction().use1PcForAutoCommitTransactions())
-            .transactionProtocol(config.transaction().transactionProtocol());
+            .transactionProtocol(config.transaction().transactionProtocol())
+            .totalOrderPipelining(config.transaction().totalOrderPipelining());
 
       if (config.transaction().recovery().enabled()) {
          legacy.transaction().recovery().recoveryInfoCacheName(config.transaction().recovery().recoveryInfoCacheName());
@@ -302,6 +304,10 @@ public class LegacyConfigurationAdaptor {
             .setMaxPoolSize(config.conditionalExecutorService().maxPoolSize())
             .setKeepAliveTime(config.conditionalExecutorService().keepAliveTime());
 
+      legacy.totalOrderBatching().enable(config.totalOrderBatching().enabled())
+            .setMaxBatchSize(config.totalOrderBatching().maxBatchSize())
+            .setBatchWindow(config.totalOrderBatching().batchWindow());
+
       return legacy.build();
    }
 
@@ -385,7 +391,8 @@ public class LegacyConfigurationAdaptor {
       // We use the chunkSize from stateRetrieval regardless of cache mode in the legacy configuration
       builder.clustering()
             .stateTransfer()
-            .chunkSize(legacy.getStateRetrievalChunkSize());
+            .chunkSize(legacy.getStateRetrievalChunkSize())
+            .nonBlocking(legacy.isStateTransferNonBlocking());
 
       if (legacy.getCacheMode().isSynchronous()) {
          builder.clustering()
@@ -519,7 +526,8 @@ public class LegacyConfigurationAdaptor {
             .transactionSynchronizationRegistryLookup(legacy.getTransactionSynchronizationRegistryLookup())
             .useEagerLocking(legacy.isUseEagerLocking())
             .useSynchronization(legacy.isUseSynchronizationForTransactions())
-            .transactionProtocol(legacy.getTransactionProtocol());
+            .transactionProtocol(legacy.getTransactionProtocol())
+            .totalOrderPipelining(legacy.isTotalOrderPipelining());
 
       builder.transaction().recovery().enabled(legacy.isTransactionRecoveryEnabled());
 
@@ -544,6 +552,10 @@ public class LegacyConfigurationAdaptor {
             .maxPoolSize(legacy.getMaxPoolSizeForConditionalExecutorService())
             .keepAliveTime(legacy.getKeepAliveTimeForConditionalExecutorService());
 
+      builder.totalOrderBatching().enabled(legacy.isTotalOrderBatchingEnabled())
+            .maxBatchSize(legacy.getTotalOrderMaxBatchSize())
+            .batchWindow(legacy.getTotalOrderBatchWindow());
+
       return builder.build();
    }
 }
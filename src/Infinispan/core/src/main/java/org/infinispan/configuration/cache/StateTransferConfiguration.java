@@ -30,12 +30,15 @@ public class StateTransferConfiguration {
    private Boolean originalFetchInMemoryState;
    private long timeout;
    private int chunkSize;
+   private boolean nonBlocking;
 
-   StateTransferConfiguration(boolean fetchInMemoryState, Boolean originalFetchInMemoryState, long timeout, int chunkSize) {
+   StateTransferConfiguration(boolean fetchInMemoryState, Boolean originalFetchInMemoryState, long timeout, int chunkSize,
+                              boolean nonBlocking) {
       this.fetchInMemoryState = fetchInMemoryState;
       this.originalFetchInMemoryState = originalFetchInMemoryState;
       this.timeout = timeout;
       this.chunkSize = chunkSize;
+      this.nonBlocking = nonBlocking;
    }
 
    /**
@@ -82,11 +85,21 @@ public class StateTransferConfiguration {
       return chunkSize;
    }
 
+   /**
+    * If {@code true}, the distributed caches transfer the state segment by segment, pulled by the new owners, while the
+    * transactions keep running. Reads of the keys not received yet are answered by the old owners and writes are
+    * applied to both the old and the new owners.
+    */
+   public boolean nonBlocking() {
+      return nonBlocking;
+   }
+
    @Override
    public String toString() {
       return "StateTransferConfiguration{" +
             "chunkSize=" + chunkSize +
             ", fetchInMemoryState=" + fetchInMemoryState +
+            ", nonBlocking=" + nonBlocking +
             ", originalFetchInMemoryState=" + originalFetchInMemoryState +
             ", timeout=" + timeout +
             '}';
@@ -101,6 +114,7 @@ public class StateTransferConfiguration {
 
       if (chunkSize != that.chunkSize) return false;
       if (fetchInMemoryState != that.fetchInMemoryState) return false;
+      if (nonBlocking != that.nonBlocking) return false;
       if (timeout != that.timeout) return false;
       if (originalFetchInMemoryState != null ? !originalFetchInMemoryState.equals(that.originalFetchInMemoryState) : that.originalFetchInMemoryState != null)
          return false;
@@ -114,6 +128,7 @@ public class StateTransferConfiguration {
       result = 31 * result + (originalFetchInMemoryState != null ? originalFetchInMemoryState.hashCode() : 0);
       result = 31 * result + (int) (timeout ^ (timeout >>> 32));
       result = 31 * result + chunkSize;
+      result = 31 * result + (nonBlocking ? 1 : 0);
       return result;
    }
 
@@ -39,6 +39,7 @@ public class StateTransferConfigurationBuilder extends
    private Boolean fetchInMemoryState = null;
    private int chunkSize = 10000;
    private long timeout = TimeUnit.MINUTES.toMillis(4);
+   private boolean nonBlocking = false;
 
    StateTransferConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -75,6 +76,16 @@ public class StateTransferConfigurationBuilder extends
       return this;
    }
 
+   /**
+    * If {@code true}, the distributed caches transfer the state segment by segment, pulled by the new owners, while the
+    * transactions keep running. Reads of the keys not received yet are answered by the old owners and writes are
+    * applied to both the old and the new owners.
+    */
+   public StateTransferConfigurationBuilder nonBlocking(boolean b) {
+      this.nonBlocking = b;
+      return this;
+   }
+
    @Override
    void validate() {
       // certain combinations are illegal, such as state transfer + invalidation
@@ -98,7 +109,7 @@ public class StateTransferConfigurationBuilder extends
          _fetchInMemoryState = false;
       }
       return new StateTransferConfiguration(_fetchInMemoryState, fetchInMemoryState,
-            timeout, chunkSize);
+            timeout, chunkSize, nonBlocking);
    }
 
    @Override
@@ -106,6 +117,7 @@ public class StateTransferConfigurationBuilder extends
       this.fetchInMemoryState = template.originalFetchInMemoryState();
       this.timeout = template.timeout();
       this.chunkSize = template.chunkSize();
+      this.nonBlocking = template.nonBlocking();
       return this;
    }
 
@@ -114,6 +126,7 @@ public class StateTransferConfigurationBuilder extends
       return "StateTransferConfigurationBuilder{" +
             "chunkSize=" + chunkSize +
             ", fetchInMemoryState=" + fetchInMemoryState +
+            ", nonBlocking=" + nonBlocking +
             ", timeout=" + timeout +
             '}';
    }
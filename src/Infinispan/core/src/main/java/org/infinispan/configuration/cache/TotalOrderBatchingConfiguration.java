@@ -0,0 +1,90 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.configuration.cache;
+
+/**
+ * Configures the batching of the prepare messages sent in total order. When enabled, the prepares issued within the
+ * batch window are coalesced in a single totally ordered message.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class TotalOrderBatchingConfiguration {
+
+   private final boolean enabled;
+   private final int maxBatchSize;
+   private final long batchWindow;
+
+   public TotalOrderBatchingConfiguration(boolean enabled, int maxBatchSize, long batchWindow) {
+      this.enabled = enabled;
+      this.maxBatchSize = maxBatchSize;
+      this.batchWindow = batchWindow;
+   }
+
+   public boolean enabled() {
+      return enabled;
+   }
+
+   /**
+    * @return the maximum number of prepares coalesced in a single message
+    */
+   public int maxBatchSize() {
+      return maxBatchSize;
+   }
+
+   /**
+    * @return the maximum time (in microseconds) that a prepare waits for other prepares before being sent
+    */
+   public long batchWindow() {
+      return batchWindow;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      TotalOrderBatchingConfiguration that = (TotalOrderBatchingConfiguration) o;
+
+      return enabled == that.enabled &&
+            maxBatchSize == that.maxBatchSize &&
+            batchWindow == that.batchWindow;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = (enabled ? 1 : 0);
+      result = 31 * result + maxBatchSize;
+      result = 31 * result + (int) (batchWindow ^ (batchWindow >>> 32));
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "TotalOrderBatchingConfiguration{" +
+            "enabled=" + enabled +
+            ", maxBatchSize=" + maxBatchSize +
+            ", batchWindow=" + batchWindow +
+            '}';
+   }
+}
@@ -0,0 +1,96 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.configuration.cache;
+
+import org.infinispan.config.ConfigurationException;
+
+/**
+ * Configures the batching of the prepare messages sent in total order.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class TotalOrderBatchingConfigurationBuilder
+      extends AbstractConfigurationChildBuilder<TotalOrderBatchingConfiguration> {
+
+   private boolean enabled = false;
+   private int maxBatchSize = 16;
+   private long batchWindow = 500;
+
+   protected TotalOrderBatchingConfigurationBuilder(ConfigurationBuilder builder) {
+      super(builder);
+   }
+
+   public TotalOrderBatchingConfigurationBuilder enabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+   }
+
+   /**
+    * The maximum number of prepares coalesced in a single message. When the batch is full, it is sent immediately
+    */
+   public TotalOrderBatchingConfigurationBuilder maxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+   }
+
+   /**
+    * The maximum time (in microseconds) that a prepare waits for other prepares before being sent
+    */
+   public TotalOrderBatchingConfigurationBuilder batchWindow(long batchWindow) {
+      this.batchWindow = batchWindow;
+      return this;
+   }
+
+   @Override
+   public ConfigurationChildBuilder read(TotalOrderBatchingConfiguration template) {
+      this.enabled = template.enabled();
+      this.maxBatchSize = template.maxBatchSize();
+      this.batchWindow = template.batchWindow();
+      return this;
+   }
+
+   @Override
+   public String toString() {
+      return "TotalOrderBatchingConfigurationBuilder{" +
+            "enabled=" + enabled +
+            ", maxBatchSize=" + maxBatchSize +
+            ", batchWindow=" + batchWindow +
+            '}';
+   }
+
+   @Override
+   void validate() {
+      if (maxBatchSize <= 0) {
+         throw new ConfigurationException("Max Batch Size should be greater than zero");
+      }
+      if (batchWindow < 0) {
+         throw new ConfigurationException("Batch Window should be greater or equals than zero");
+      }
+   }
+
+   @Override
+   TotalOrderBatchingConfiguration create() {
+      return new TotalOrderBatchingConfiguration(enabled, maxBatchSize, batchWindow);
+   }
+}
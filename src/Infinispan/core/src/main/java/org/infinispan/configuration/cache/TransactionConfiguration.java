@@ -47,12 +47,13 @@ public class TransactionConfiguration {
    private final RecoveryConfiguration recovery;
    private final boolean use1PcForAutoCommitTransactions;
    private final TransactionProtocol transactionProtocol; //2PC or Total order protocol
+   private final boolean totalOrderPipelining;
 
    TransactionConfiguration(boolean autoCommit, long cacheStopTimeout, boolean eagerLockingSingleNode, LockingMode lockingMode,
          boolean syncCommitPhase, boolean syncRollbackPhase, TransactionManagerLookup transactionManagerLookup,
          TransactionSynchronizationRegistryLookup transactionSynchronizationRegistryLookup, TransactionMode transactionMode,
          boolean useEagerLocking, boolean useSynchronization, boolean use1PcForAutoCommitTransactions,
-         RecoveryConfiguration recovery, TransactionProtocol transactionProtocol) {
+         RecoveryConfiguration recovery, TransactionProtocol transactionProtocol, boolean totalOrderPipelining) {
       this.autoCommit = autoCommit;
       this.cacheStopTimeout = cacheStopTimeout;
       this.eagerLockingSingleNode = eagerLockingSingleNode;
@@ -67,6 +68,7 @@ public class TransactionConfiguration {
       this.recovery = recovery;
       this.use1PcForAutoCommitTransactions = use1PcForAutoCommitTransactions;
       this.transactionProtocol = transactionProtocol;
+      this.totalOrderPipelining = totalOrderPipelining;
    }
 
    /**
@@ -257,6 +259,8 @@ public class TransactionConfiguration {
             ", useSynchronization=" + useSynchronization +
             ", recovery=" + recovery +
             ", use1PcForAutoCommitTransactions=" + use1PcForAutoCommitTransactions +
+            ", transactionProtocol=" + transactionProtocol +
+            ", totalOrderPipelining=" + totalOrderPipelining +
             '}';
    }
 
@@ -287,6 +291,7 @@ public class TransactionConfiguration {
       if (transactionProtocol != that.transactionProtocol) {
          return false;
       }
+      if (totalOrderPipelining != that.totalOrderPipelining) return false;
 
       return true;
    }
@@ -307,6 +312,7 @@ public class TransactionConfiguration {
       result = 31 * result + (recovery != null ? recovery.hashCode() : 0);
       result = 31 * result + (use1PcForAutoCommitTransactions ? 1 : 0);
       result = 31 * result + (transactionProtocol != null ? transactionProtocol.hashCode() : 0);
+      result = 31 * result + (totalOrderPipelining ? 1 : 0);
       return result;
    }
 
@@ -316,4 +322,13 @@ public class TransactionConfiguration {
    public TransactionProtocol transactionProtocol() {
       return transactionProtocol;
    }
+
+   /**
+    * If true, the transactions delivered in total order are validated and applied in parallel when they do not
+    * conflict, and their outcome is replied in the delivery order. Otherwise, the transactions committed in one phase
+    * and the GMU transactions are validated one at a time, in the delivery thread.
+    */
+   public boolean totalOrderPipelining() {
+      return totalOrderPipelining;
+   }
 }
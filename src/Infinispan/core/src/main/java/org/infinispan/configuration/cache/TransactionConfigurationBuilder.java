@@ -56,6 +56,7 @@ public class TransactionConfigurationBuilder extends AbstractConfigurationChildB
    private final RecoveryConfigurationBuilder recovery;
    private boolean use1PcForAutoCommitTransactions = false;
    private TransactionProtocol transactionProtocol = TransactionProtocol.TWO_PHASE_COMMIT;
+   private boolean totalOrderPipelining = false;
 
    TransactionConfigurationBuilder(ConfigurationBuilder builder) {
       super(builder);
@@ -312,7 +313,8 @@ public class TransactionConfigurationBuilder extends AbstractConfigurationChildB
          transactionMode = TransactionMode.NON_TRANSACTIONAL;
       return new TransactionConfiguration(autoCommit, cacheStopTimeout, eagerLockingSingleNode, lockingMode, syncCommitPhase,
             syncRollbackPhase, transactionManagerLookup, transactionSynchronizationRegistryLookup, transactionMode,
-            useEagerLocking, useSynchronization, use1PcForAutoCommitTransactions, recovery.create(), transactionProtocol);
+            useEagerLocking, useSynchronization, use1PcForAutoCommitTransactions, recovery.create(), transactionProtocol,
+            totalOrderPipelining);
    }
 
    @Override
@@ -331,6 +333,7 @@ public class TransactionConfigurationBuilder extends AbstractConfigurationChildB
       this.use1PcForAutoCommitTransactions = template.use1PcForAutoCommitTransactions();
       this.recovery.read(template.recovery());
       this.transactionProtocol = template.transactionProtocol();
+      this.totalOrderPipelining = template.totalOrderPipelining();
 
       return this;
    }
@@ -351,6 +354,8 @@ public class TransactionConfigurationBuilder extends AbstractConfigurationChildB
             ", useSynchronization=" + useSynchronization +
             ", recovery=" + recovery +
             ", use1PcForAutoCommitTransactions=" + use1PcForAutoCommitTransactions +
+            ", transactionProtocol=" + transactionProtocol +
+            ", totalOrderPipelining=" + totalOrderPipelining +
             '}';
    }
 
@@ -358,4 +363,13 @@ public class TransactionConfigurationBuilder extends AbstractConfigurationChildB
       this.transactionProtocol = transactionProtocol;
       return this;
    }
+
+   /**
+    * If true, the transactions delivered in total order are validated and applied in parallel when they do not
+    * conflict, and their outcome is replied in the delivery order. Defaults to false.
+    */
+   public TransactionConfigurationBuilder totalOrderPipelining(boolean totalOrderPipelining) {
+      this.totalOrderPipelining = totalOrderPipelining;
+      return this;
+   }
 }
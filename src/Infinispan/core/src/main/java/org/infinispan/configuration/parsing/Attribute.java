@@ -80,6 +80,7 @@ public enum Attribute {
    NODE_NAME("nodeName"),
    MODIFICTION_QUEUE_SIZE("modificationQueueSize"),
    NAME("name"),
+   NON_BLOCKING("nonBlocking"),
    NUM_OWNERS("numOwners"),
    NUM_RETRIES("numRetries"),
    NUM_VIRTUAL_NODES("numVirtualNodes"),
@@ -131,6 +132,7 @@ public enum Attribute {
    USE_1PC_FOR_AUTOCOMMIT_TX("use1PcForAutoCommitTransactions"),
    VERSIONING_SCHEME("versioningScheme"),
    TRANSACTION_PROTOCOL("transactionProtocol"),
+   TOTAL_ORDER_PIPELINING("totalOrderPipelining"),
    OBJECT_LOOKUP_FACTORY("objectLookupFactory"),
    COOL_DOWN_TIME("coolDownTime"),
    MAX_KEYS_TO_REQUEST("maxNumberOfKeysToRequest"),
@@ -140,7 +142,9 @@ public enum Attribute {
    VIEW_GC_BACK_OFF("viewGCBackOff"),
    CORE_POOL_SIZE("corePoolSize"),
    MAX_POOL_SIZE("maxPoolSize"),
-   KEEP_ALIVE_TIME("keepAliveTime")
+   KEEP_ALIVE_TIME("keepAliveTime"),
+   MAX_BATCH_SIZE("maxBatchSize"),
+   BATCH_WINDOW("batchWindow")
    ;
 
    private final String name;
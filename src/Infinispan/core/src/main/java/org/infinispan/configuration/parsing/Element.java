@@ -81,7 +81,8 @@ public enum Element {
    VERSIONING("versioning"),
    DATA_PLACEMENT("dataPlacement"),
    GARBAGE_COLLECTOR("garbageCollector"),
-   CONDITIONAL_EXECUTOR_SERVICE("conditionalExecutorService")
+   CONDITIONAL_EXECUTOR_SERVICE("conditionalExecutorService"),
+   TOTAL_ORDER_BATCHING("totalOrderBatching")
    ;
 
    private final String name;
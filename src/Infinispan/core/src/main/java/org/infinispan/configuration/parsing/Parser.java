@@ -320,6 +320,9 @@ public class Parser {
             case CONDITIONAL_EXECUTOR_SERVICE:
                parseConditionalExecutorService(reader, builder);
                break;
+            case TOTAL_ORDER_BATCHING:
+               parseTotalOrderBatching(reader, builder);
+               break;
             default:
                throw ParseUtils.unexpectedElement(reader);
          }
@@ -348,6 +351,28 @@ public class Parser {
       ParseUtils.requireNoContent(reader);
    }
 
+   private void parseTotalOrderBatching(XMLStreamReader reader, ConfigurationBuilder builder) throws XMLStreamException {
+      for (int i = 0; i < reader.getAttributeCount(); i++) {
+         ParseUtils.requireNoNamespaceAttribute(reader, i);
+         String value = replaceSystemProperties(reader.getAttributeValue(i));
+         Attribute attribute = Attribute.forName(reader.getAttributeLocalName(i));
+         switch (attribute) {
+            case ENABLED:
+               builder.totalOrderBatching().enabled(Boolean.valueOf(value));
+               break;
+            case MAX_BATCH_SIZE:
+               builder.totalOrderBatching().maxBatchSize(Integer.parseInt(value));
+               break;
+            case BATCH_WINDOW:
+               builder.totalOrderBatching().batchWindow(Long.parseLong(value));
+               break;
+            default:
+               throw ParseUtils.unexpectedAttribute(reader, i);
+         }
+      }
+      ParseUtils.requireNoContent(reader);
+   }
+
    private void parseGarbageCollector(XMLStreamReader reader, ConfigurationBuilder builder) throws XMLStreamException {
       for (int i = 0; i < reader.getAttributeCount(); i++) {
          ParseUtils.requireNoNamespaceAttribute(reader, i);
@@ -497,6 +522,9 @@ public class Parser {
             case TRANSACTION_PROTOCOL:
                builder.transaction().transactionProtocol(TransactionProtocol.valueOf(value));
                break;
+            case TOTAL_ORDER_PIPELINING:
+               builder.transaction().totalOrderPipelining(Boolean.parseBoolean(value));
+               break;
             default:
                throw ParseUtils.unexpectedAttribute(reader, i);
          }
@@ -1197,6 +1225,9 @@ public class Parser {
             case CHUNK_SIZE:
                builder.clustering().stateTransfer().chunkSize(Integer.parseInt(value));
                break;
+            case NON_BLOCKING:
+               builder.clustering().stateTransfer().nonBlocking(Boolean.parseBoolean(value));
+               break;
             default:
                throw ParseUtils.unexpectedAttribute(reader, i);
          }
@@ -123,6 +123,13 @@ public abstract class AbstractDataContainer<T> implements DataContainer {
 
    protected abstract EntryIterator createEntryIterator(EntryVersion version);
 
+   /**
+    * Passivates the entry chosen for eviction.
+    */
+   protected void passivate(T entry) {
+      passivator.passivate(getCacheEntry(entry));
+   }
+
    private final class DefaultEvictionListener implements BoundedConcurrentHashMap.EvictionListener<Object, T> {
 
       @Override
@@ -132,7 +139,7 @@ public abstract class AbstractDataContainer<T> implements DataContainer {
 
       @Override
       public void onEntryChosenForEviction(T entry) {
-         passivator.passivate(getCacheEntry(entry));
+         passivate(entry);
       }
    }
 
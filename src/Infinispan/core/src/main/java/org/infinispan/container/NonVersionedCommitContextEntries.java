@@ -22,14 +22,19 @@
  */
 package org.infinispan.container;
 
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.SingleKeyNonTxInvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.statetransfer.StateTransferManager;
+import org.infinispan.statetransfer.UpdatedKeysTracker;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -49,12 +54,15 @@ public class NonVersionedCommitContextEntries implements CommitContextEntries {
    private Configuration configuration;
    private DistributionManager distributionManager;
    private DataContainer dataContainer;
+   private StateTransferManager stateTransferManager;
 
    @Inject
-   public void inject(Configuration configuration, DistributionManager distributionManager, DataContainer dataContainer) {
+   public void inject(Configuration configuration, DistributionManager distributionManager, DataContainer dataContainer,
+                      StateTransferManager stateTransferManager) {
       this.configuration = configuration;
       this.distributionManager = distributionManager;
       this.dataContainer = dataContainer;
+      this.stateTransferManager = stateTransferManager;
    }
 
    @Override
@@ -81,6 +89,30 @@ public class NonVersionedCommitContextEntries implements CommitContextEntries {
                }
             }
          }
+         if (context.isInTxScope()) {
+            trackRemovalsOfMissingKeys((TxInvocationContext) context);
+         }
+      }
+   }
+
+   /**
+    * The removals of the keys that were not received yet have no entry to commit, but the state of those keys must
+    * still be discarded if a non-blocking state transfer is in progress (see {@link UpdatedKeysTracker}). The
+    * non-transactional removals are tracked by the {@link org.infinispan.interceptors.EntryWrappingInterceptor}.
+    */
+   private void trackRemovalsOfMissingKeys(TxInvocationContext context) {
+      UpdatedKeysTracker tracker = stateTransferManager == null ? null : stateTransferManager.getUpdatedKeysTracker();
+      if (tracker == null || context.hasFlag(Flag.SKIP_OWNERSHIP_CHECK)) {
+         return;
+      }
+      for (WriteCommand command : context.getModifications()) {
+         if (command instanceof RemoveCommand && !((RemoveCommand) command).isConditional()) {
+            Object key = ((RemoveCommand) command).getKey();
+            CacheEntry entry = context.lookupEntry(key);
+            if (entry == null || entry.isNull()) {
+               tracker.commitRemovalOfMissingKey(key);
+            }
+         }
       }
    }
 
@@ -132,7 +164,15 @@ public class NonVersionedCommitContextEntries implements CommitContextEntries {
                     entry.getKey());
       }
       if (doCommit) {
-         entry.commit(dataContainer, newVersion);
+         UpdatedKeysTracker tracker = stateTransferManager == null ? null : stateTransferManager.getUpdatedKeysTracker();
+         if (tracker == null) {
+            entry.commit(dataContainer, newVersion);
+         } else if (skipOwnershipCheck) {
+            // state received from the old owners, it may be older than the value already committed
+            tracker.commitState(entry, dataContainer, newVersion);
+         } else {
+            tracker.commitUpdate(entry, dataContainer, newVersion);
+         }
       } else {
          entry.rollback();
       }
@@ -22,6 +22,10 @@
  */
 package org.infinispan.container.gmu;
 
+import org.infinispan.Cache;
+import org.infinispan.CacheException;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.container.AbstractDataContainer;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
@@ -30,35 +34,102 @@ import org.infinispan.container.entries.gmu.InternalGMURemovedCacheEntry;
 import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.container.versioning.gmu.GMUCacheEntryVersion;
 import org.infinispan.container.versioning.gmu.GMUReadVersion;
+import org.infinispan.container.versioning.VersionGenerator;
+import org.infinispan.container.versioning.gmu.GMUVersion;
+import org.infinispan.container.versioning.gmu.GMUVersionGenerator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.loaders.CacheLoader;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderManager;
+import org.infinispan.loaders.gmu.VersionedCacheStore;
+import org.infinispan.loaders.gmu.VersionedValue;
 import org.infinispan.transaction.gmu.CommitLog;
+import org.infinispan.util.TypedProperties;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.container.gmu.GMUEntryFactoryImpl.wrap;
 import static org.infinispan.transaction.gmu.GMUHelper.convert;
+import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersion;
+import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersionGenerator;
 import static org.infinispan.transaction.gmu.GMUHelper.toInternalGMUCacheEntry;
 
 /**
- * // TODO: Document this
+ * Multi-version data container used by GMU. Each key is mapped to a {@link VersionChain} with the committed versions,
+ * from the most recent to the oldest.
+ * <p/>
+ * If the cache has a {@link VersionedCacheStore}, the versions are written through to it, or only when the chain is
+ * evicted if passivation is enabled. A version chain that is not in memory is activated from the store, with all its
+ * versions, when the key is first accessed, so that a bounded container keeps the old snapshots readable. The writes
+ * and the eviction of a chain are serialized on the chain, so a write never adds a version to a chain that was already
+ * stored. The keys not found in the store are remembered (up to {@link #STORE_MISS_CACHE_SIZE} keys) to avoid a store
+ * lookup in every miss. {@link #size(EntryVersion)}, {@link #keySet(EntryVersion)}, the iterators and
+ * {@link #clear(EntryVersion)} also include the chains that are only in the store.
  *
  * @author Pedro Ruivo
  * @since 5.2
  */
+@MBean(objectName = "GMUDataContainer", description = "Multi-version data container used by GMU")
 public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.DataContainerVersionChain> {
 
+   /**
+    * data container property with the minimum number of versions traversed by a read to index the version chain
+    */
+   public static final String VERSION_CHAIN_INDEX_THRESHOLD = "versionChainIndexThreshold";
+   public static final int DEFAULT_VERSION_CHAIN_INDEX_THRESHOLD = 32;
+   /**
+    * data container property with the maximum number of keys remembered as not found in the cache store. Zero or
+    * negative value disables it
+    */
+   public static final String STORE_MISS_CACHE_SIZE = "storeMissCacheSize";
+   public static final int DEFAULT_STORE_MISS_CACHE_SIZE = 1024;
    private static final Log log = LogFactory.getLog(GMUDataContainer.class);
    private CommitLog commitLog;
+   private volatile int versionChainIndexThreshold = DEFAULT_VERSION_CHAIN_INDEX_THRESHOLD;
+   /**
+    * keys with a new version since the last incremental garbage collection
+    */
+   private final Set<Object> touchedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+   private CacheLoaderManager cacheLoaderManager;
+   private GMUVersionGenerator versionGenerator;
+   private String cacheName;
+   private VersionedCacheStore store;
+   private boolean passivation;
+   private int storeMissCacheSize = DEFAULT_STORE_MISS_CACHE_SIZE;
+   /**
+    * keys not found in the cache store. A key is only stored while its chain is in memory, so it is forgotten when
+    * the chain is evicted
+    */
+   private Set<Object> storeMisses;
+   private final AtomicLong evictions = new AtomicLong(0);
 
    protected GMUDataContainer(int concurrencyLevel) {
       super(concurrencyLevel);
@@ -78,8 +149,46 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
    }
 
    @Inject
-   public void setCommitLog(CommitLog commitLog) {
+   public void setCommitLog(CommitLog commitLog, Configuration configuration) {
       this.commitLog = commitLog;
+      TypedProperties properties = configuration.dataContainer().properties();
+      this.versionChainIndexThreshold = properties == null ? DEFAULT_VERSION_CHAIN_INDEX_THRESHOLD :
+            properties.getIntProperty(VERSION_CHAIN_INDEX_THRESHOLD, DEFAULT_VERSION_CHAIN_INDEX_THRESHOLD);
+      this.storeMissCacheSize = properties == null ? DEFAULT_STORE_MISS_CACHE_SIZE :
+            properties.getIntProperty(STORE_MISS_CACHE_SIZE, DEFAULT_STORE_MISS_CACHE_SIZE);
+   }
+
+   @Inject
+   public void injectCacheStore(CacheLoaderManager cacheLoaderManager, VersionGenerator versionGenerator, Cache cache) {
+      this.cacheLoaderManager = cacheLoaderManager;
+      this.versionGenerator = toGMUVersionGenerator(versionGenerator);
+      this.cacheName = cache.getName();
+   }
+
+   //AFTER THE CacheLoaderManager
+   @Start(priority = 11)
+   public void start() {
+      store = null;
+      storeMisses = null;
+      if (cacheLoaderManager == null || !cacheLoaderManager.isEnabled()) {
+         return;
+      }
+      CacheLoader loader = cacheLoaderManager.getCacheLoader();
+      if (loader == null) {
+         return;
+      } else if (!(loader instanceof VersionedCacheStore)) {
+         throw new ConfigurationException("GMU can only be used with a cache store that implements " +
+                                                VersionedCacheStore.class.getSimpleName() + " but " +
+                                                loader.getClass().getName() + " was found");
+      }
+      store = (VersionedCacheStore) loader;
+      passivation = cacheLoaderManager.isUsingPassivation();
+      if (storeMissCacheSize > 0) {
+         storeMisses = Collections.newSetFromMap(new BoundedConcurrentHashMap<Object, Boolean>(storeMissCacheSize));
+      }
+      if (log.isDebugEnabled()) {
+         log.debugf("Using the versioned cache store %s. Passivation is %s", store, passivation ? "enabled" : "disabled");
+      }
    }
 
    @Override
@@ -111,7 +220,7 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
          log.tracef("DataContainer.peek(%s,%s)", k, version);
       }
 
-      DataContainerVersionChain chain = entries.get(k);
+      DataContainerVersionChain chain = getOrActivate(k);
       if (chain == null) {
          if (log.isTraceEnabled()) {
             log.tracef("DataContainer.peek(%s,%s) => NOT_FOUND", k, version);
@@ -137,25 +246,43 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
          log.tracef("DataContainer.put(%s,%s,%s,%s,%s)", k, v, version, lifespan, maxIdle);
       }
       GMUCacheEntryVersion cacheEntryVersion = assertGMUCacheEntryVersion(version);
-      DataContainerVersionChain chain = entries.get(k);
+      if (store != null && !passivation) {
+         //stored first, so that a failure does not leave the version in memory. it is appended outside the chain lock:
+         //the version is written again if the chain is activated from the store, which has no effect
+         storeVersion(k, new VersionedValue(v, cacheEntryVersion.getThisNodeVersionValue(),
+                                            cacheEntryVersion.getSubVersion(), false, lifespan, maxIdle));
+      }
+      while (true) {
+         DataContainerVersionChain chain = getOrActivate(k);
+
+         if (chain == null) {
+            if (log.isTraceEnabled()) {
+               log.tracef("DataContainer.put(%s,%s,%s,%s,%s), create new VersionChain", k, v, version, lifespan, maxIdle);
+            }
+            DataContainerVersionChain newChain = new DataContainerVersionChain(this);
+            chain = entries.putIfAbsent(k, newChain);
+            if (chain == null) {
+               chain = newChain;
+            }
+         }
 
-      if (chain == null) {
          if (log.isTraceEnabled()) {
-            log.tracef("DataContainer.put(%s,%s,%s,%s,%s), create new VersionChain", k, v, version, lifespan, maxIdle);
+            log.tracef("DataContainer.put(%s,%s,%s,%s,%s), correct version is %s", k, v, version, lifespan, maxIdle, cacheEntryVersion);
          }
-         chain = new DataContainerVersionChain();
-         entries.put(k, chain);
-      }
 
-      if (log.isTraceEnabled()) {
-         log.tracef("DataContainer.put(%s,%s,%s,%s,%s), correct version is %s", k, v, version, lifespan, maxIdle, cacheEntryVersion);
-      }
-
-      chain.add(entryFactory.create(k, v, cacheEntryVersion, lifespan, maxIdle));
-      if (log.isTraceEnabled()) {
-         StringBuilder stringBuilder = new StringBuilder();
-         chain.chainToString(stringBuilder);
-         log.tracef("Updated chain is %s", stringBuilder);
+         synchronized (chain) {
+            if (!chain.isPassivated()) {
+               chain.add(entryFactory.create(k, v, cacheEntryVersion, lifespan, maxIdle));
+               touchedKeys.add(k);
+               if (log.isTraceEnabled()) {
+                  StringBuilder stringBuilder = new StringBuilder();
+                  chain.chainToString(stringBuilder);
+                  log.tracef("Updated chain is %s", stringBuilder);
+               }
+               return;
+            }
+         }
+         waitEviction(k, chain);
       }
    }
 
@@ -165,7 +292,7 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
          log.tracef("DataContainer.containsKey(%s,%s)", k, version);
       }
 
-      VersionChain chain = entries.get(k);
+      VersionChain chain = getOrActivate(k);
       boolean contains = chain != null && chain.contains(getReadVersion(version));
 
       if (log.isTraceEnabled()) {
@@ -184,19 +311,35 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
          log.tracef("DataContainer.remove(%s,%s)", k, version);
       }
 
-      DataContainerVersionChain chain = entries.get(k);
-      if (chain == null) {
-         if (log.isTraceEnabled()) {
-            log.tracef("DataContainer.remove(%s,%s) => NOT_FOUND", k, version);
+      GMUCacheEntryVersion cacheEntryVersion = assertGMUCacheEntryVersion(version);
+      boolean stored = false;
+      while (true) {
+         DataContainerVersionChain chain = getOrActivate(k);
+         if (chain == null) {
+            if (log.isTraceEnabled()) {
+               log.tracef("DataContainer.remove(%s,%s) => NOT_FOUND", k, version);
+            }
+            return wrap(k, null, true, null, null, null);
          }
-         return wrap(k, null, true, null, null, null);
-      }
-      VersionEntry<InternalCacheEntry> entry = chain.remove(new InternalGMURemovedCacheEntry(k, assertGMUCacheEntryVersion(version)));
-
-      if (log.isTraceEnabled()) {
-         log.tracef("DataContainer.remove(%s,%s) => %s", k, version, entry);
+         if (!stored && store != null && !passivation) {
+            //appended outside the chain lock, as in put()
+            storeVersion(k, VersionedValue.removed(cacheEntryVersion.getThisNodeVersionValue(),
+                                                   cacheEntryVersion.getSubVersion()));
+            stored = true;
+         }
+         synchronized (chain) {
+            if (!chain.isPassivated()) {
+               VersionEntry<InternalCacheEntry> entry = chain.remove(new InternalGMURemovedCacheEntry(k, cacheEntryVersion));
+               touchedKeys.add(k);
+
+               if (log.isTraceEnabled()) {
+                  log.tracef("DataContainer.remove(%s,%s) => %s", k, version, entry);
+               }
+               return wrap(k, entry.getEntry(), entry.isMostRecent(), null, null, null);
+            }
+         }
+         waitEviction(k, chain);
       }
-      return wrap(k, entry.getEntry(), entry.isMostRecent(), null, null, null);
    }
 
    @Override
@@ -210,6 +353,12 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
             size++;
          }
       }
+      for (Object key : loadStoredKeys()) {
+         VersionChain chain = loadChain(key);
+         if (chain != null && chain.contains(getReadVersion(version))) {
+            size++;
+         }
+      }
 
       if (log.isTraceEnabled()) {
          log.tracef("DataContainer.size(%s) => %s", version, size);
@@ -222,7 +371,9 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       if (log.isTraceEnabled()) {
          log.tracef("DataContainer.clear()");
       }
+      //also invoked when the cache stops, so the store is kept. A cache clear removes every key (see the iterator)
       entries.clear();
+      touchedKeys.clear();
    }
 
    @Override
@@ -230,11 +381,21 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       if (log.isTraceEnabled()) {
          log.tracef("DataContainer.clear(%s)", version);
       }
-      for (Object key : entries.keySet()) {
+      for (Object key : keySet(version)) {
          remove(key, version);
       }
    }
 
+   @Override
+   public Set<Object> keySet(EntryVersion version) {
+      if (store == null) {
+         return super.keySet(version);
+      }
+      Set<Object> keys = new HashSet<Object>(entries.keySet());
+      keys.addAll(loadStoredKeys());
+      return Collections.unmodifiableSet(keys);
+   }
+
    @Override
    public void purgeExpired() {
       long currentTimeMillis = System.currentTimeMillis();
@@ -270,8 +431,68 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
 
    @Override
    public final void gc(EntryVersion minimumVersion) {
-      for (DataContainerVersionChain versionChain : entries.values()) {
-         versionChain.gc(minimumVersion);
+      fullGc(minimumVersion);
+   }
+
+   /**
+    * Garbage collects all the version chains.
+    *
+    * @param minimumVersion the minimum visible version
+    * @return the number of versions removed
+    */
+   public final int fullGc(EntryVersion minimumVersion) {
+      int removed = 0;
+      touchedKeys.clear();
+      for (Map.Entry<Object, DataContainerVersionChain> entry : entries.entrySet()) {
+         removed += entry.getValue().gc(minimumVersion);
+         if (entry.getValue().numberOfVersion() > 1) {
+            touchedKeys.add(entry.getKey());
+         }
+      }
+      return removed;
+   }
+
+   /**
+    * Garbage collects only the version chains of the keys written since the last garbage collection. The keys whose
+    * version chain still have old versions are kept to be collected in the next invocation.
+    *
+    * @param minimumVersion the minimum visible version
+    * @return the number of versions removed
+    */
+   public final int incrementalGc(EntryVersion minimumVersion) {
+      int removed = 0;
+      List<Object> notCollected = new LinkedList<Object>();
+      for (Iterator<Object> iterator = touchedKeys.iterator(); iterator.hasNext(); ) {
+         Object key = iterator.next();
+         iterator.remove();
+         DataContainerVersionChain versionChain = entries.get(key);
+         if (versionChain == null) {
+            continue;
+         }
+         removed += versionChain.gc(minimumVersion);
+         if (versionChain.numberOfVersion() > 1) {
+            notCollected.add(key);
+         }
+      }
+      touchedKeys.addAll(notCollected);
+      return removed;
+   }
+
+   /**
+    * Garbage collects the versions in the {@link VersionedCacheStore}, if any.
+    *
+    * @param minimumVersion the minimum visible version
+    * @return the number of versions removed
+    */
+   public final int storeGc(EntryVersion minimumVersion) {
+      if (store == null || minimumVersion == null) {
+         return 0;
+      }
+      try {
+         return store.gc(toGMUVersion(minimumVersion).getThisNodeVersionValue());
+      } catch (CacheLoaderException e) {
+         log.warnf(e, "Unable to garbage collect the versions in the cache store with minimum version %s", minimumVersion);
+         return 0;
       }
    }
 
@@ -279,6 +500,47 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       return entries.get(key);
    }
 
+   @ManagedAttribute(description = "The minimum number of versions traversed by a read to index the version chain. " +
+         "Zero or negative value disables the index")
+   @Metric(displayName = "Version chain index threshold", displayType = DisplayType.DETAIL)
+   public int getVersionChainIndexThreshold() {
+      return versionChainIndexThreshold;
+   }
+
+   @ManagedOperation(description = "Sets the minimum number of versions traversed by a read to index the version " +
+         "chain. Zero or negative value disables the index")
+   @Operation(displayName = "Set version chain index threshold")
+   public void setVersionChainIndexThreshold(@Parameter(name = "threshold", description = "The minimum number of " +
+         "versions traversed") int threshold) {
+      this.versionChainIndexThreshold = threshold;
+   }
+
+   @ManagedAttribute(description = "The number of version chains currently indexed")
+   @Metric(displayName = "Number of indexed version chains", displayType = DisplayType.SUMMARY)
+   public int getNumberOfIndexedVersionChains() {
+      int indexed = 0;
+      for (DataContainerVersionChain chain : entries.values()) {
+         if (chain.isIndexed()) {
+            indexed++;
+         }
+      }
+      return indexed;
+   }
+
+   @ManagedOperation(description = "Returns the histogram of the version chains length. Each bucket contains the " +
+         "number of chains with length between [lower bound, 2 * lower bound[")
+   @Operation(displayName = "Version chain length histogram")
+   public Map<Integer, Integer> getVersionChainLengthHistogram() {
+      SortedMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+      for (DataContainerVersionChain chain : entries.values()) {
+         int length = chain.numberOfVersion();
+         int bucket = length == 0 ? 0 : Integer.highestOneBit(length);
+         Integer count = histogram.get(bucket);
+         histogram.put(bucket, count == null ? 1 : count + 1);
+      }
+      return histogram;
+   }
+
    public final String stateToString() {
       StringBuilder stringBuilder = new StringBuilder(8132);
       for (Map.Entry<Object, DataContainerVersionChain> entry : entries.entrySet()) {
@@ -309,15 +571,153 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       return entry == null ? null : entry.get(version).getEntry();
    }
 
+   /**
+    * With passivation, the old versions are stored before the most recent one is passivated. The chain is locked, so
+    * that a concurrent write waits and activates the chain again from the store, after it is removed from memory.
+    */
+   @Override
+   protected void passivate(DataContainerVersionChain chain) {
+      if (store == null) {
+         super.passivate(chain);
+         return;
+      }
+      synchronized (chain) {
+         if (passivation) {
+            List<InternalCacheEntry> values = chain.values();
+            for (int i = values.size() - 1; i > 0; --i) {
+               InternalCacheEntry entry = values.get(i);
+               storeVersion(entry.getKey(), toVersionedValue(entry));
+            }
+         }
+         super.passivate(chain);
+         chain.setPassivated();
+      }
+      if (storeMisses != null) {
+         evictions.incrementAndGet();
+         storeMisses.remove(getCacheEntry(chain).getKey());
+      }
+   }
+
    @Override
    protected EntryIterator createEntryIterator(EntryVersion version) {
-      return new GMUEntryIterator(version, entries.values().iterator());
+      return new GMUEntryIterator(version, store == null ? entries.values().iterator() : new ChainIterator());
    }
 
    private GMUCacheEntryVersion assertGMUCacheEntryVersion(EntryVersion entryVersion) {
       return convert(entryVersion, GMUCacheEntryVersion.class);
    }
 
+   /**
+    * @return the version chain of the key, activated from the {@link VersionedCacheStore} if it is not in memory, or
+    *         <tt>null</tt> if the key does not exist
+    */
+   private DataContainerVersionChain getOrActivate(Object key) {
+      DataContainerVersionChain chain = entries.get(key);
+      if (chain != null || store == null) {
+         return chain;
+      }
+      if (storeMisses != null && storeMisses.contains(key)) {
+         return null;
+      }
+      long evictionsBefore = evictions.get();
+      DataContainerVersionChain activated = loadChain(key);
+      if (activated == null) {
+         if (storeMisses != null) {
+            storeMisses.add(key);
+            if (evictions.get() != evictionsBefore) {
+               //a chain evicted meanwhile can be the one of this key
+               storeMisses.remove(key);
+            }
+         }
+         return null;
+      }
+      chain = entries.putIfAbsent(key, activated);
+      if (chain != null) {
+         return chain;
+      }
+      if (activated.numberOfVersion() > 1) {
+         touchedKeys.add(key);
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("Activated %s versions of %s", activated.numberOfVersion(), key);
+      }
+      return activated;
+   }
+
+   /**
+    * @return the version chain of the key loaded from the {@link VersionedCacheStore}, not added to the memory, or
+    *         <tt>null</tt> if the key is not stored
+    */
+   private DataContainerVersionChain loadChain(Object key) {
+      List<VersionedValue> versions;
+      try {
+         versions = store.loadVersions(key);
+      } catch (CacheLoaderException e) {
+         throw new CacheException("Unable to load the versions of " + key, e);
+      }
+      if (versions.isEmpty()) {
+         return null;
+      }
+      int viewId = commitLog.getCurrentVersion().getViewId();
+      DataContainerVersionChain chain = new DataContainerVersionChain(this);
+      //the oldest first, so that every version is added to the top of the chain
+      for (int i = versions.size() - 1; i >= 0; --i) {
+         chain.add(toInternalCacheEntry(key, versions.get(i), viewId));
+      }
+      return chain;
+   }
+
+   /**
+    * @return the keys in the {@link VersionedCacheStore} whose version chain is not in memory
+    */
+   private Set<Object> loadStoredKeys() {
+      if (store == null) {
+         return Collections.emptySet();
+      }
+      try {
+         return store.loadAllKeys(entries.keySet());
+      } catch (CacheLoaderException e) {
+         throw new CacheException("Unable to load the keys from the cache store", e);
+      }
+   }
+
+   /**
+    * Waits until the passivated chain is removed from memory, so that the next {@link #getOrActivate(Object)} loads
+    * it from the store. The eviction holds the map lock until the chain is removed.
+    */
+   private void waitEviction(Object key, DataContainerVersionChain chain) {
+      if (log.isTraceEnabled()) {
+         log.tracef("Version chain of %s was passivated concurrently. Activating it again", key);
+      }
+      entries.remove(key, chain);
+   }
+
+   private InternalCacheEntry toInternalCacheEntry(Object key, VersionedValue value, int viewId) {
+      GMUCacheEntryVersion version = new GMUCacheEntryVersion(cacheName, viewId, versionGenerator, value.getVersion(),
+                                                              value.getSubVersion());
+      if (value.isRemoved()) {
+         return new InternalGMURemovedCacheEntry(key, version);
+      }
+      return entryFactory.create(key, value.getValue(), version, value.getLifespan(), value.getMaxIdle());
+   }
+
+   private VersionedValue toVersionedValue(InternalCacheEntry entry) {
+      GMUCacheEntryVersion version = assertGMUCacheEntryVersion(entry.getVersion());
+      if (entry.isRemoved()) {
+         return VersionedValue.removed(version.getThisNodeVersionValue(), version.getSubVersion());
+      }
+      return new VersionedValue(entry.getValue(), version.getThisNodeVersionValue(), version.getSubVersion(), false,
+                                entry.getLifespan(), entry.getMaxIdle());
+   }
+
+   private void storeVersion(Object key, VersionedValue value) {
+      try {
+         store.storeVersion(key, value);
+      } catch (CacheLoaderException e) {
+         throw new CacheException("Unable to store the version " + value + " of " + key, e);
+      }
+   }
+
    private GMUReadVersion getReadVersion(EntryVersion entryVersion) {
       GMUReadVersion gmuReadVersion = commitLog.getReadVersion(entryVersion);
       if (log.isDebugEnabled()) {
@@ -328,6 +728,30 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
 
    public static class DataContainerVersionChain extends VersionChain<InternalCacheEntry> {
 
+      private final GMUDataContainer dataContainer;
+      //guarded by this chain
+      private boolean passivated;
+
+      public DataContainerVersionChain(GMUDataContainer dataContainer) {
+         this.dataContainer = dataContainer;
+      }
+
+      /**
+       * @return <tt>true</tt> if the chain was stored and is being evicted. Must be invoked holding this chain's lock
+       */
+      public final boolean isPassivated() {
+         return passivated;
+      }
+
+      private void setPassivated() {
+         passivated = true;
+      }
+
+      @Override
+      protected int getIndexThreshold() {
+         return dataContainer.versionChainIndexThreshold;
+      }
+
       @Override
       protected VersionBody<InternalCacheEntry> newValue(InternalCacheEntry value) {
          return new DataContainerVersionBody(value);
@@ -362,6 +786,17 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
          return isOlderOrEquals(getValue().getVersion(), entryVersion);
       }
 
+      @Override
+      public boolean isIndexOlderOrEquals(EntryVersion entryVersion) {
+         EntryVersion version = getValue().getVersion();
+         if (version instanceof GMUVersion && entryVersion instanceof GMUVersion) {
+            //ignores the not visible sub versions and the view ids. the chain is ordered by this node version value
+            return ((GMUVersion) version).getThisNodeVersionValue() <=
+                  ((GMUVersion) entryVersion).getThisNodeVersionValue();
+         }
+         return isOlderOrEquals(version, entryVersion);
+      }
+
       @Override
       public boolean isEqual(VersionBody<InternalCacheEntry> otherBody) {
          return isEqual(getValue().getVersion(), otherBody.getVersion());
@@ -380,10 +815,8 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       @Override
       public VersionBody<InternalCacheEntry> gc(EntryVersion minVersion) {
          if (isOlderOrEquals(getValue().getVersion(), minVersion)) {
-            VersionBody<InternalCacheEntry> previous = getPrevious();
             //GC previous entries, removing all the references to the previous version entry
-            setPrevious(null);
-            return previous;
+            return truncate();
          } else {
             return getPrevious();
          }
@@ -396,6 +829,54 @@ public class GMUDataContainer extends AbstractDataContainer<GMUDataContainer.Dat
       }
    }
 
+   /**
+    * Iterates over the version chains in memory and then over the ones only in the cache store, loaded one at the time.
+    */
+   private class ChainIterator implements Iterator<DataContainerVersionChain> {
+
+      private final Iterator<DataContainerVersionChain> inMemory = entries.values().iterator();
+      private Iterator<Object> storedKeys;
+      private DataContainerVersionChain next;
+
+      private ChainIterator() {
+         findNext();
+      }
+
+      @Override
+      public boolean hasNext() {
+         return next != null;
+      }
+
+      @Override
+      public DataContainerVersionChain next() {
+         if (next == null) {
+            throw new NoSuchElementException();
+         }
+         DataContainerVersionChain toReturn = next;
+         findNext();
+         return toReturn;
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+
+      private void findNext() {
+         next = null;
+         if (inMemory.hasNext()) {
+            next = inMemory.next();
+            return;
+         }
+         if (storedKeys == null) {
+            storedKeys = loadStoredKeys().iterator();
+         }
+         while (next == null && storedKeys.hasNext()) {
+            next = loadChain(storedKeys.next());
+         }
+      }
+   }
+
    private class GMUEntryIterator extends EntryIterator {
 
       private final EntryVersion version;
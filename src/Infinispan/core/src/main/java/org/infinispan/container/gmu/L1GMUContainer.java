@@ -211,10 +211,12 @@ public class L1GMUContainer {
       return stats.get(Stat.CACHE_HIT).get();
    }
 
-   public final void gc(GMUVersion version) {
+   public final int gc(GMUVersion version) {
+      int removed = 0;
       for (Map.Entry<Object, L1VersionChain> entry : l1Container.entrySet()) {
-         entry.getValue().gc(version);
+         removed += entry.getValue().gc(version);
       }
+      return removed;
    }
 
    private boolean isValid(L1Entry entry, EntryVersion txVersion, Address owner) {
@@ -296,9 +298,7 @@ public class L1GMUContainer {
       @Override
       public VersionBody<L1Entry> gc(EntryVersion minVersion) {
          if (minVersion == null || isOlderOrEquals(getValue().getCreationVersion(), minVersion)) {
-            VersionBody<L1Entry> previous = getPrevious();
-            setPrevious(null);
-            return previous;
+            return truncate();
          } else {
             return getPrevious();
          }
@@ -332,7 +332,7 @@ public class L1GMUContainer {
    private class L1Entry {
       private final InternalCacheEntry value;
       private final EntryVersion creationVersion;
-      private EntryVersion readVersion;
+      private volatile EntryVersion readVersion;
       private boolean invalid;
 
       public L1Entry(InternalGMUCacheEntry gmuCacheEntry) {
@@ -354,7 +354,7 @@ public class L1GMUContainer {
          return readVersion;
       }
 
-      public void setReadVersion(EntryVersion readVersion) {
+      public synchronized void setReadVersion(EntryVersion readVersion) {
          if (readVersion == null) {
             return;
          } else if (this.readVersion == null) {
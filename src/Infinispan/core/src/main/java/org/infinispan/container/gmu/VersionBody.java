@@ -25,17 +25,23 @@ package org.infinispan.container.gmu;
 import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.container.versioning.InequalVersionComparisonResult;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 import static org.infinispan.container.versioning.InequalVersionComparisonResult.*;
 
 /**
- * // TODO: Document this
+ * A link in the {@link VersionChain}. The link to the previous (older) version is volatile and it is only updated with
+ * compare-and-set, so the readers can traverse the chain without acquiring any lock.
  *
  * @author Pedro Ruivo
  * @since 5.2
  */
 public abstract class VersionBody<T> {
+   @SuppressWarnings("unchecked")
+   private static final AtomicReferenceFieldUpdater<VersionBody, VersionBody> PREVIOUS_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater(VersionBody.class, VersionBody.class, "previous");
    private final T value;
-   private VersionBody<T> previous;
+   private volatile VersionBody<T> previous;
 
    protected VersionBody(T value) {
       this.value = value;
@@ -58,38 +64,79 @@ public abstract class VersionBody<T> {
       return value;
    }
 
-   public synchronized VersionBody<T> getPrevious() {
+   public VersionBody<T> getPrevious() {
       return previous;
    }
 
-   public synchronized void setPrevious(VersionBody<T> previous) {
+   /**
+    * sets the previous version. it should only be invoked before this version is visible to other threads or when the
+    * writes in this link are serialized.
+    *
+    * @param previous the previous version
+    */
+   public void setPrevious(VersionBody<T> previous) {
       this.previous = previous;
    }
 
-   public synchronized VersionBody<T> add(VersionBody<T> other) {
-      if (previous == null) {
-         previous = other;
-         return null;
-      } else if (previous.isOlder(other)) {
-         other.setPrevious(previous);
-         setPrevious(other);
-         return null;
-      } else if (previous.isEqual(other)) {
-         previous.reincarnate(other);
+   /**
+    * atomically sets the previous version if the current previous version is the expected.
+    *
+    * @param expected the expected previous version
+    * @param update   the new previous version
+    * @return true if successful
+    */
+   public boolean casPrevious(VersionBody<T> expected, VersionBody<T> update) {
+      return PREVIOUS_UPDATER.compareAndSet(this, expected, update);
+   }
+
+   /**
+    * tries to add the version after this version.
+    *
+    * @param other the version to add
+    * @return null if the version was added, otherwise the next version to try (it can be this version if the link was
+    *         concurrently modified)
+    */
+   public VersionBody<T> add(VersionBody<T> other) {
+      VersionBody<T> currentPrevious = previous;
+      if (currentPrevious == null || currentPrevious.isOlder(other)) {
+         other.setPrevious(currentPrevious);
+         return casPrevious(currentPrevious, other) ? null : this;
+      } else if (currentPrevious.isEqual(other)) {
+         currentPrevious.reincarnate(other);
          return null;
       }
-      return previous;
+      return currentPrevious;
    }
 
-   public synchronized VersionBody expire(long now) {
-      if (previous == null) {
+   /**
+    * unlinks the previous version if it is expired.
+    *
+    * @param now the current time
+    * @return the next version to check (it can be this version if the previous version was unlinked)
+    */
+   public VersionBody<T> expire(long now) {
+      VersionBody<T> currentPrevious = previous;
+      if (currentPrevious == null) {
          return null;
       }
-      if (previous.isExpired(now)) {
-         previous = previous.getPrevious();
+      if (currentPrevious.isExpired(now)) {
+         casPrevious(currentPrevious, currentPrevious.getPrevious());
          return this;
       }
-      return previous;
+      return currentPrevious;
+   }
+
+   /**
+    * removes all the older versions from the chain (if not removed yet).
+    *
+    * @return the versions removed or null if they were already removed
+    */
+   protected final VersionBody<T> truncate() {
+      VersionBody<T> currentPrevious;
+      do {
+         currentPrevious = previous;
+      } while (currentPrevious != null && !casPrevious(currentPrevious, null));
+      return currentPrevious;
    }
 
    @Override
@@ -107,6 +154,19 @@ public abstract class VersionBody<T> {
 
    public abstract boolean isOlderOrEquals(EntryVersion entryVersion);
 
+   /**
+    * used by the {@link VersionChainIndex} to find the most recent version that can be read. Unlike {@link
+    * #isOlderOrEquals(org.infinispan.container.versioning.EntryVersion)}, it must be monotonic along the chain, i.e. if
+    * it returns true for a version, it must return true for all the older versions. It can return true for versions
+    * that are not visible, but it must not return false for the visible ones.
+    *
+    * @param entryVersion the version to read
+    * @return true if this version is older or equals to the version to read
+    */
+   public boolean isIndexOlderOrEquals(EntryVersion entryVersion) {
+      return isOlderOrEquals(entryVersion);
+   }
+
    public abstract boolean isRemove();
 
    public abstract void reincarnate(VersionBody<T> other);
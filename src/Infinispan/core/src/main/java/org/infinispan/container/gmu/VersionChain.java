@@ -29,9 +29,23 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * // TODO: Document this
+ * A multi-version chain, ordered from the most recent to the oldest version.
+ * <p/>
+ * The reads are lock-free: the most recent version is published in a volatile field and each {@link VersionBody} only
+ * publishes the link to the previous version after it is fully initialized. The new versions are added to the top of
+ * the chain with a compare-and-set and the garbage collection truncates the chain with a compare-and-set. Only the
+ * unlinking of expired versions and the insertion of out-of-order versions in the middle of the chain are serialized
+ * between them.
+ * <p/>
+ * When a read traverses more versions than the {@link #getIndexThreshold()}, a {@link VersionChainIndex} is built and
+ * the following reads find the version by a binary search. The versions added to the top of the chain after the index
+ * is built are still traversed, but any other structural modification invalidates the index.
  *
  * @author Pedro Ruivo
  * @since 5.2
@@ -39,13 +53,18 @@ import java.io.IOException;
 public abstract class VersionChain<T> {
 
    private static final Log log = LogFactory.getLog(VersionChain.class);
-   private VersionBody<T> first;
+   @SuppressWarnings("unchecked")
+   private static final AtomicReferenceFieldUpdater<VersionChain, VersionBody> FIRST_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater(VersionChain.class, VersionBody.class, "first");
+   @SuppressWarnings("unchecked")
+   private static final AtomicIntegerFieldUpdater<VersionChain> MODIFICATION_COUNT_UPDATER =
+         AtomicIntegerFieldUpdater.newUpdater(VersionChain.class, "modificationCount");
+   private volatile VersionBody<T> first;
+   private volatile VersionChainIndex<T> index;
+   private volatile int modificationCount;
 
    public final VersionEntry<T> get(EntryVersion version) {
-      VersionBody<T> iterator;
-      synchronized (this) {
-         iterator = first;
-      }
+      VersionBody<T> iterator = first;
 
       if (log.isTraceEnabled()) {
          log.tracef("[%s] find value for version %s", Thread.currentThread().getName(), version);
@@ -60,44 +79,68 @@ public abstract class VersionChain<T> {
       }
 
       EntryVersion nextVersion = null;
+      VersionChainIndex<T> currentIndex = getValidIndex();
+      int traversed = 0;
 
       while (iterator != null) {
+         if (currentIndex != null && iterator == currentIndex.first()) {
+            int position = currentIndex.search(version);
+            if (position > 0) {
+               nextVersion = currentIndex.get(position - 1).getVersion();
+            }
+            iterator = position < currentIndex.size() ? currentIndex.get(position) : null;
+            currentIndex = null;
+            continue;
+         }
          if (iterator.isOlderOrEquals(version)) {
             if (log.isTraceEnabled()) {
                log.tracef("[%s] value found: %s", Thread.currentThread().getName(), iterator);
             }
+            buildIndexIfNeeded(traversed);
             return new VersionEntry<T>(iterator.getValue(), nextVersion, true);
          }
          nextVersion = iterator.getVersion();
          iterator = iterator.getPrevious();
+         traversed++;
       }
 
       if (log.isTraceEnabled()) {
          log.tracef("[%s] No value found!", Thread.currentThread().getName());
       }
+      buildIndexIfNeeded(traversed);
       return new VersionEntry<T>(null, nextVersion, false);
    }
 
    public final VersionBody<T> add(T value) {
       VersionBody<T> toAdd = newValue(value);
-      VersionBody<T> iterator = firstAdd(toAdd);
-      while (iterator != null) {
-         iterator = iterator.add(toAdd);
+      if (firstAdd(toAdd) != null) {
+         //out-of-order version. the structural changes in the middle of the chain are serialized with the expiration
+         synchronized (this) {
+            VersionBody<T> iterator = firstAdd(toAdd);
+            while (iterator != null) {
+               iterator = iterator.add(toAdd);
+            }
+            incrementModificationCount();
+         }
       }
       return toAdd.getPrevious();
    }
 
    public final boolean contains(EntryVersion version) {
-      VersionBody iterator;
-      synchronized (this) {
-         iterator = first;
-      }
+      VersionBody iterator = first;
 
       if (version == null) {
          return iterator != null && !iterator.isRemove();
       }
 
+      VersionChainIndex<T> currentIndex = getValidIndex();
       while (iterator != null) {
+         if (currentIndex != null && iterator == currentIndex.first()) {
+            int position = currentIndex.search(version);
+            iterator = position < currentIndex.size() ? currentIndex.get(position) : null;
+            currentIndex = null;
+            continue;
+         }
          if (iterator.isOlderOrEquals(version)) {
             return !iterator.isRemove();
          }
@@ -113,24 +156,20 @@ public abstract class VersionChain<T> {
       return new VersionEntry<T>(entry, null, previous != null);
    }
 
-   public final void purgeExpired(long now) {
-      VersionBody iterator;
-      synchronized (this) {
-         while (first != null && first.isExpired(now)) {
-            first = first.getPrevious();
-         }
+   public final synchronized void purgeExpired(long now) {
+      VersionBody<T> iterator = first;
+      while (iterator != null && iterator.isExpired(now)) {
+         FIRST_UPDATER.compareAndSet(this, iterator, iterator.getPrevious());
          iterator = first;
       }
       while (iterator != null) {
          iterator = iterator.expire(now);
       }
+      incrementModificationCount();
    }
 
    public void chainToString(StringBuilder stringBuilder) {
-      VersionBody iterator;
-      synchronized (this) {
-         iterator = first;
-      }
+      VersionBody iterator = first;
       while (iterator != null) {
          stringBuilder.append(iterator).append("-->");
          iterator = iterator.getPrevious();
@@ -139,10 +178,7 @@ public abstract class VersionChain<T> {
    }
 
    public final void dumpChain(BufferedWriter writer) throws IOException {
-      VersionBody<T> iterator;
-      synchronized (this) {
-         iterator = first;
-      }
+      VersionBody<T> iterator = first;
       while (iterator != null) {
          writeValue(writer, iterator.getValue());
          Util.safeWrite(writer, "|");
@@ -150,27 +186,39 @@ public abstract class VersionChain<T> {
       }
    }
 
-   public final void gc(EntryVersion minVersion) {
-      VersionBody<T> iterator;
-      synchronized (this) {
-         iterator = first;
-      }
+   /**
+    * removes all the versions that are not visible by any transaction with snapshot equals or newer than the minimum
+    * version
+    *
+    * @param minVersion the minimum version visible
+    * @return the number of versions removed
+    */
+   public final int gc(EntryVersion minVersion) {
+      VersionBody<T> iterator = first;
+      int removed = 0;
       while (iterator != null) {
-         iterator = iterator.gc(minVersion);
+         VersionBody<T> next = iterator.gc(minVersion);
+         if (next != null && iterator.getPrevious() == null) {
+            //the chain was truncated. the remaining versions are not reachable anymore
+            while (next != null) {
+               removed++;
+               next = next.getPrevious();
+            }
+         }
+         iterator = next;
       }
+      incrementModificationCount();
       if (log.isTraceEnabled()) {
          StringBuilder stringBuilder = new StringBuilder(4096);
          chainToString(stringBuilder);
          log.tracef("Chain after GC: %s", stringBuilder);
       }
+      return removed;
    }
 
    public final int numberOfVersion() {
-      VersionBody<T> iterator;
+      VersionBody<T> iterator = first;
       int size = 0;
-      synchronized (this) {
-         iterator = first;
-      }
       while (iterator != null) {
          size++;
          iterator = iterator.getPrevious();
@@ -178,20 +226,91 @@ public abstract class VersionChain<T> {
       return size;
    }
 
+   /**
+    * @return all the values in the chain, from the most recent to the oldest
+    */
+   public final List<T> values() {
+      List<T> values = new ArrayList<T>();
+      VersionBody<T> iterator = first;
+      while (iterator != null) {
+         values.add(iterator.getValue());
+         iterator = iterator.getPrevious();
+      }
+      return values;
+   }
+
+   /**
+    * @return true if the reads are using an index to find the version to read
+    */
+   public final boolean isIndexed() {
+      return getValidIndex() != null;
+   }
+
+   /**
+    * @return the minimum number of versions traversed by a read to build an index for this chain. zero or negative
+    *         value disables the index
+    */
+   protected int getIndexThreshold() {
+      return 0;
+   }
+
    protected abstract VersionBody<T> newValue(T value);
 
    protected abstract void writeValue(BufferedWriter writer, T value) throws IOException;
 
-   //return null if the value was added successfully
-   private synchronized VersionBody<T> firstAdd(VersionBody<T> body) {
-      if (first == null || first.isOlder(body)) {
-         body.setPrevious(first);
-         first = body;
+   private VersionChainIndex<T> getValidIndex() {
+      VersionChainIndex<T> currentIndex = index;
+      if (currentIndex == null) {
          return null;
-      } else if (first.isEqual(body)) {
-         first.reincarnate(body);
+      } else if (currentIndex.modificationCount() != modificationCount || getIndexThreshold() <= 0) {
+         index = null;
          return null;
       }
-      return first.add(body);
+      return currentIndex;
+   }
+
+   private void buildIndexIfNeeded(int traversed) {
+      int threshold = getIndexThreshold();
+      if (threshold <= 0 || traversed < threshold) {
+         return;
+      }
+      //the modification count is read before traversing the chain. if it is modified concurrently, the index is discarded
+      int currentModificationCount = modificationCount;
+      List<VersionBody<T>> versions = new ArrayList<VersionBody<T>>(traversed + 1);
+      VersionBody<T> iterator = first;
+      while (iterator != null) {
+         versions.add(iterator);
+         iterator = iterator.getPrevious();
+      }
+      if (versions.isEmpty()) {
+         return;
+      }
+      //noinspection unchecked
+      index = new VersionChainIndex<T>(versions.toArray(new VersionBody[versions.size()]), currentModificationCount);
+      if (log.isTraceEnabled()) {
+         log.tracef("[%s] index built with %s versions", Thread.currentThread().getName(), versions.size());
+      }
+   }
+
+   private void incrementModificationCount() {
+      MODIFICATION_COUNT_UPDATER.incrementAndGet(this);
+   }
+
+   //return null if the value was added successfully, otherwise returns the most recent version
+   private VersionBody<T> firstAdd(VersionBody<T> body) {
+      while (true) {
+         VersionBody<T> currentFirst = first;
+         if (currentFirst == null || currentFirst.isOlder(body)) {
+            body.setPrevious(currentFirst);
+            if (FIRST_UPDATER.compareAndSet(this, currentFirst, body)) {
+               return null;
+            }
+         } else if (currentFirst.isEqual(body)) {
+            currentFirst.reincarnate(body);
+            return null;
+         } else {
+            return currentFirst;
+         }
+      }
    }
 }
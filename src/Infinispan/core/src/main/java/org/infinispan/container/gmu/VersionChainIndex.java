@@ -0,0 +1,85 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.gmu;
+
+import org.infinispan.container.versioning.EntryVersion;
+
+/**
+ * An immutable snapshot of a {@link VersionChain} in a sorted array (most recent version first) used to find the
+ * version to read by a binary search, instead of traversing the chain.
+ * <p/>
+ * The index is only valid while the chain is not structurally modified (except for the new versions added to the top
+ * of the chain) and the {@link VersionChain} is responsible to discard it when it is no longer valid.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+final class VersionChainIndex<T> {
+
+   private final VersionBody<T>[] versions;
+   private final int modificationCount;
+
+   VersionChainIndex(VersionBody<T>[] versions, int modificationCount) {
+      this.versions = versions;
+      this.modificationCount = modificationCount;
+   }
+
+   /**
+    * @return the most recent version in this index
+    */
+   final VersionBody<T> first() {
+      return versions[0];
+   }
+
+   final VersionBody<T> get(int position) {
+      return versions[position];
+   }
+
+   final int size() {
+      return versions.length;
+   }
+
+   final int modificationCount() {
+      return modificationCount;
+   }
+
+   /**
+    * @param version the version to read
+    * @return the position of the most recent version that can be (potentially) read by the version or the size of
+    *         this index if none
+    * @see VersionBody#isIndexOlderOrEquals(org.infinispan.container.versioning.EntryVersion)
+    */
+   final int search(EntryVersion version) {
+      int low = 0;
+      int high = versions.length;
+      while (low < high) {
+         int middle = (low + high) >>> 1;
+         if (versions[middle].isIndexOlderOrEquals(version)) {
+            high = middle;
+         } else {
+            low = middle + 1;
+         }
+      }
+      return low;
+   }
+}
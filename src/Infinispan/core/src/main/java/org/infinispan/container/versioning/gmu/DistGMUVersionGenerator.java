@@ -58,6 +58,11 @@ public class DistGMUVersionGenerator implements GMUVersionGenerator {
    private static final Hash HASH = new MurmurHash3();
    private static final Log log = LogFactory.getLog(DistGMUVersionGenerator.class);
    private final TreeMap<Integer, ClusterSnapshot> viewIdClusterSnapshot;
+   /**
+    * per-thread scratch array used to compute the version vectors. It can be reused because the
+    * {@link GMUDistributedVersion} constructor always copies the array
+    */
+   private final ThreadLocal<long[]> versionsPool = new ThreadLocal<long[]>();
    private RpcManager rpcManager;
    private String cacheName;
    private volatile int currentViewId;
@@ -288,7 +293,7 @@ public class DistGMUVersionGenerator implements GMUVersionGenerator {
       } else if (entryVersion instanceof GMUDistributedVersion) {
          int viewId = currentViewId;
          ClusterSnapshot clusterSnapshot = getClusterSnapshot(viewId);
-         long[] newVersions = new long[clusterSnapshot.size()];
+         long[] newVersions = create(false, clusterSnapshot.size());
          for (int i = 0; i < clusterSnapshot.size(); ++i) {
             newVersions[i] = ((GMUDistributedVersion) entryVersion).getVersionValue(clusterSnapshot.get(i));
          }
@@ -357,7 +362,11 @@ public class DistGMUVersionGenerator implements GMUVersionGenerator {
    }
 
    private long[] create(boolean fill, int size) {
-      long[] versions = new long[size];
+      long[] versions = versionsPool.get();
+      if (versions == null || versions.length != size) {
+         versions = new long[size];
+         versionsPool.set(versions);
+      }
       if (fill) {
          Arrays.fill(versions, NON_EXISTING);
       }
@@ -26,6 +26,7 @@ import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.container.versioning.InequalVersionComparisonResult;
 import org.infinispan.dataplacement.ClusterSnapshot;
 import org.infinispan.factories.GlobalComponentRegistry;
+import org.infinispan.io.UnsignedNumeric;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.remoting.transport.Address;
@@ -54,6 +55,7 @@ public class GMUDistributedVersion extends GMUVersion {
          throw new IllegalArgumentException("Version vector (size " + versions.length + ") has not the expected size " +
                                                   clusterSnapshot.size());
       }
+      //the array is always copied: the version generators reuse the array passed in as a scratch buffer
       this.versions = Arrays.copyOf(versions, clusterSnapshot.size());
       this.nodeIndex = clusterSnapshot.indexOf(versionGenerator.getAddress());
    }
@@ -150,6 +152,70 @@ public class GMUDistributedVersion extends GMUVersion {
             ", " + super.toString();
    }
 
+   /**
+    * Writes the version vector in a compact form. The vector size is not written since it is known by the receiver from
+    * the cluster snapshot of the view id. The entries equal to {@link #NON_EXISTING} are omitted and signaled in a
+    * bitmap and the remaining entries are written as variable-length deltas from the smallest existing entry.
+    *
+    * @param output   the output stream
+    * @param versions the version vector
+    * @throws IOException if an I/O error occurs
+    */
+   static void writeVersions(ObjectOutput output, long[] versions) throws IOException {
+      long base = NON_EXISTING;
+      for (long version : versions) {
+         if (version != NON_EXISTING && (base == NON_EXISTING || version < base)) {
+            base = version;
+         }
+      }
+      if (base == NON_EXISTING) {
+         //all the entries are missing
+         base = 0;
+      }
+      UnsignedNumeric.writeUnsignedLong(output, base);
+
+      for (int i = 0; i < versions.length; i += 8) {
+         int bitmap = 0;
+         for (int bit = 0; bit < 8 && i + bit < versions.length; ++bit) {
+            if (versions[i + bit] != NON_EXISTING) {
+               bitmap |= 1 << bit;
+            }
+         }
+         output.writeByte(bitmap);
+      }
+
+      for (long version : versions) {
+         if (version != NON_EXISTING) {
+            UnsignedNumeric.writeUnsignedLong(output, version - base);
+         }
+      }
+   }
+
+   /**
+    * Reads a version vector written by {@link #writeVersions(java.io.ObjectOutput, long[])}.
+    *
+    * @param input    the input stream
+    * @param versions the array to fill. Its size must be the same as the written vector
+    * @throws IOException if an I/O error occurs
+    */
+   static void readVersions(ObjectInput input, long[] versions) throws IOException {
+      long base = UnsignedNumeric.readUnsignedLong(input);
+
+      for (int i = 0; i < versions.length; i += 8) {
+         int bitmap = input.readUnsignedByte();
+         for (int bit = 0; bit < 8 && i + bit < versions.length; ++bit) {
+            //0 is used as marker for the existing entries. it is replaced by the real value below
+            versions[i + bit] = (bitmap & (1 << bit)) != 0 ? 0 : NON_EXISTING;
+         }
+      }
+
+      for (int i = 0; i < versions.length; ++i) {
+         if (versions[i] != NON_EXISTING) {
+            versions[i] = base + UnsignedNumeric.readUnsignedLong(input);
+         }
+      }
+   }
+
    public static class Externalizer extends AbstractExternalizer<GMUDistributedVersion> {
 
       private final GlobalComponentRegistry globalComponentRegistry;
@@ -167,25 +233,22 @@ public class GMUDistributedVersion extends GMUVersion {
       @Override
       public void writeObject(ObjectOutput output, GMUDistributedVersion object) throws IOException {
          output.writeUTF(object.cacheName);
-         output.writeInt(object.viewId);
-         for (long v : object.versions) {
-            output.writeLong(v);
-         }
+         //the view id starts in -1
+         UnsignedNumeric.writeUnsignedInt(output, object.viewId + 1);
+         writeVersions(output, object.versions);
       }
 
       @Override
       public GMUDistributedVersion readObject(ObjectInput input) throws IOException, ClassNotFoundException {
          String cacheName = input.readUTF();
          GMUVersionGenerator gmuVersionGenerator = getGMUVersionGenerator(globalComponentRegistry, cacheName);
-         int viewId = input.readInt();
+         int viewId = UnsignedNumeric.readUnsignedInt(input) - 1;
          ClusterSnapshot clusterSnapshot = gmuVersionGenerator.getClusterSnapshot(viewId);
          if (clusterSnapshot == null) {
             throw new IllegalArgumentException("View Id " + viewId + " not found in this node");
          }
          long[] versions = new long[clusterSnapshot.size()];
-         for (int i = 0; i < versions.length; ++i) {
-            versions[i] = input.readLong();
-         }
+         readVersions(input, versions);
          return new GMUDistributedVersion(cacheName, viewId, clusterSnapshot, gmuVersionGenerator.getAddress(), versions);
       }
 
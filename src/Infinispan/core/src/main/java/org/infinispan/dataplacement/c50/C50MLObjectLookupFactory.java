@@ -31,6 +31,7 @@ import org.infinispan.dataplacement.c50.lookup.BloomFilter;
 import org.infinispan.dataplacement.c50.lookup.BloomFilter2;
 import org.infinispan.dataplacement.c50.tree.DecisionTree;
 import org.infinispan.dataplacement.c50.tree.DecisionTreeBuilder;
+import org.infinispan.dataplacement.c50.tree.DecisionTreeLearner;
 import org.infinispan.dataplacement.c50.tree.DecisionTreeParser;
 import org.infinispan.dataplacement.c50.tree.ParseTreeNode;
 import org.infinispan.dataplacement.lookup.ObjectLookup;
@@ -54,6 +55,9 @@ import java.util.TreeSet;
 
 /**
  * Object Lookup Factory when Machine Learner (C5.0) and Bloom Filters technique is used
+ * <p/>
+ * By default, the decision trees are learned in the same process (see {@link DecisionTreeLearner}). The external C5.0
+ * is used when the {@link #MACHINE_LEARNER} property is {@link #C50_MACHINE_LEARNER}
  *
  * @author Pedro Ruivo
  * @since 5.2
@@ -64,6 +68,11 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
    public static final String LOCATION = "location";
    public static final String KEY_FEATURE_MANAGER = "keyFeatureManager";
    public static final String BF_FALSE_POSITIVE = "bfFalsePositiveProb";
+   public static final String MACHINE_LEARNER = "machineLearner";
+   public static final String MIN_CASES = "minCases";
+
+   public static final String JAVA_MACHINE_LEARNER = "java";
+   public static final String C50_MACHINE_LEARNER = "c5.0";
 
    private static final String INPUT_FORMAT = "%1$sinput-%2$s";
    private static final String INPUT_ML_DATA_FORMAT = INPUT_FORMAT + ".data";
@@ -79,6 +88,8 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
 
    private String machineLearnerPath = System.getProperty("user.dir");
    private double bloomFilterFalsePositiveProbability = 0.001;
+   private boolean externalMachineLearner = false;
+   private int minCases = DecisionTreeLearner.DEFAULT_MIN_CASES;
 
    public C50MLObjectLookupFactory() {
       featureMap = new HashMap<String, Feature>();
@@ -113,6 +124,19 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
                    bloomFilterFalsePositiveProbability, nfe.getMessage());
       }
 
+      String machineLearner = typedProperties.getProperty(MACHINE_LEARNER, JAVA_MACHINE_LEARNER);
+      if (C50_MACHINE_LEARNER.equals(machineLearner)) {
+         externalMachineLearner = true;
+      } else if (!JAVA_MACHINE_LEARNER.equals(machineLearner)) {
+         log.warnf("Unknown machine learner %s. Using %s", machineLearner, JAVA_MACHINE_LEARNER);
+      }
+
+      minCases = typedProperties.getIntProperty(MIN_CASES, DecisionTreeLearner.DEFAULT_MIN_CASES);
+      if (minCases < 1) {
+         log.warnf("Minimum number of cases must be greater than zero. Using %s", DecisionTreeLearner.DEFAULT_MIN_CASES);
+         minCases = DecisionTreeLearner.DEFAULT_MIN_CASES;
+      }
+
       for (Feature feature : keyFeatureManager.getAllKeyFeatures()) {
          featureMap.put(feature.getName(), feature);
       }
@@ -130,6 +154,46 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
       BloomFilter bloomFilter = createBloomFilter(toMoveObj.keySet());
       C50MLObjectLookup objectLookup = new C50MLObjectLookup(numberOfOwners, bloomFilter);
       objectLookup.setKeyFeatureManager(keyFeatureManager);
+
+      if (externalMachineLearner) {
+         return runExternalMachineLearner(toMoveObj, numberOfOwners, objectLookup) ? objectLookup : null;
+      }
+
+      //the features are extracted once and shared by the trees of all the owners
+      DecisionTreeLearner learner = new DecisionTreeLearner(keyFeatureManager.getAllKeyFeatures(), minCases);
+      OwnersInfo[] ownersInfos = new OwnersInfo[toMoveObj.size()];
+      int index = 0;
+      for (Map.Entry<Object, OwnersInfo> entry : toMoveObj.entrySet()) {
+         learner.addExample(keyFeatureManager.getFeatures(entry.getKey()));
+         ownersInfos[index++] = entry.getValue();
+      }
+
+      int[] newOwners = new int[ownersInfos.length];
+      for (int iteration = 0; iteration < numberOfOwners; ++iteration) {
+         for (int i = 0; i < ownersInfos.length; ++i) {
+            newOwners[i] = newOwner(ownersInfos[i], iteration);
+         }
+         objectLookup.setDecisionTreeList(iteration, learner.learn(newOwners));
+      }
+
+      return objectLookup;
+   }
+
+   @Override
+   public int getNumberOfQueryProfilingPhases() {
+      return 3;
+   }
+
+   /**
+    * learns the decision trees with the external C5.0
+    *
+    * @param toMoveObj        the objects to move and new location
+    * @param numberOfOwners   the number of owners
+    * @param objectLookup     the object lookup where the decision trees are set
+    * @return                 true if all the decision trees were learned, false otherwise
+    */
+   private boolean runExternalMachineLearner(Map<Object, OwnersInfo> toMoveObj, int numberOfOwners,
+                                             C50MLObjectLookup objectLookup) {
       deleteAll();
 
       for (int iteration = 0; iteration < numberOfOwners; ++iteration) {
@@ -138,24 +202,24 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
 
          if (!success) {
             log.errorf("Cannot create Object Lookup. Error writing input.data");
-            return null;
+            return false;
          }
 
          success = writeInputNames(ownersIndexes, iteration);
 
          if (!success) {
             log.errorf("Cannot create Object Lookup. Error writing input.name");
-            return null;
+            return false;
          }
 
          try {
             runMachineLearner(iteration);
          } catch (IOException e) {
             log.errorf(e, "Error while trying to executing the Machine Learner");
-            return null;
+            return false;
          } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return null;
+            return false;
          }
 
          ParseTreeNode root;
@@ -163,19 +227,28 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
             root = DecisionTreeParser.parse(String.format(INPUT_ML_TREE_FORMAT, machineLearnerPath, iteration));
          } catch (Exception e) {
             log.errorf(e, "Error parsing Machine Learner tree");
-            return null;
+            return false;
          }
 
          DecisionTree tree = DecisionTreeBuilder.build(root, featureMap);
          objectLookup.setDecisionTreeList(iteration, tree);
       }
 
-      return objectLookup;
+      return true;
    }
 
-   @Override
-   public int getNumberOfQueryProfilingPhases() {
-      return 3;
+   /**
+    * returns the new owner of the key in the iteration
+    *
+    * @param ownersInfo the new owners of the key
+    * @param iteration  the iteration number
+    * @return           the new owner index
+    */
+   private static int newOwner(OwnersInfo ownersInfo, int iteration) {
+      //TODO: hack
+      int owner = ownersInfo.getOwner(0) + iteration;
+      owner %= 40;
+      return owner;
    }
 
    /**
@@ -314,9 +387,7 @@ public class C50MLObjectLookupFactory implements ObjectLookupFactory {
 
       for (Map.Entry<Object, OwnersInfo> entry : toMoveObj.entrySet()) {
          try {
-            //TODO: hack
-            int owner = entry.getValue().getOwner(0) + iteration;
-            owner %= 40;
+            int owner = newOwner(entry.getValue(), iteration);
             writeInputData(entry.getKey(), owner, writer);
             ownersIndexes.add(owner);
          } catch (IOException e) {
@@ -0,0 +1,483 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.dataplacement.c50.tree;
+
+import org.infinispan.dataplacement.c50.keyfeature.Feature;
+import org.infinispan.dataplacement.c50.keyfeature.FeatureValue;
+import org.infinispan.dataplacement.c50.tree.node.DecisionTreeNode;
+import org.infinispan.dataplacement.c50.tree.node.Type0Node;
+import org.infinispan.dataplacement.c50.tree.node.Type1Node;
+import org.infinispan.dataplacement.c50.tree.node.Type2Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Learns a decision tree in memory, with the same node types as the trees built from the C5.0 output (see {@link
+ * DecisionTreeBuilder}).
+ * <p/>
+ * The tree is grown as in C4.5: each node splits the keys by the feature with the best gain ratio among the ones with
+ * at least the average information gain. Discrete features create one branch per possible value and numeric features
+ * create a branch for the values less or equals than the best cut and other for the values greater than it. The keys
+ * without the feature go to the N/A branch. A node is a leaf when all its keys have the same value or when no split
+ * puts at least the minimum number of keys in two branches.
+ * <p/>
+ * The features of the keys are added once (see {@link #addExample(java.util.Map)}) and a tree can be learned for
+ * each set of values (see {@link #learn(int[])}), so that the trees of all the owners share the same examples. The
+ * examples are sorted by each numeric feature only once and each node keeps them sorted when they are split.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class DecisionTreeLearner {
+
+   public static final int DEFAULT_MIN_CASES = 2;
+   private static final int MAX_DEEP = 64;
+   private static final double EPSILON = 1E-9;
+   private static final String CONTINUOUS = "continuous";
+   private static final double LOG_2 = Math.log(2);
+
+   private final Feature[] features;
+   //the possible values of each discrete feature. null for numeric features
+   private final FeatureValue[][] possibleValues;
+   private final int minCases;
+   //for each example, the value of each numeric feature
+   private final List<FeatureValue[]> exampleValues;
+   //for each example, the branch of each feature. 0 is the N/A branch
+   private final List<int[]> exampleBranches;
+   //for each numeric feature, the examples with the feature sorted by its value. null if it must be computed
+   private int[][] sortedExamples;
+   //for each numeric feature, the position of the value of each example in the sorted values
+   private int[][] ranks;
+
+   public DecisionTreeLearner(Feature[] features, int minCases) {
+      if (minCases < 1) {
+         throw new IllegalArgumentException("Minimum number of cases must be greater than zero");
+      }
+      this.features = features;
+      this.minCases = minCases;
+      this.possibleValues = new FeatureValue[features.length][];
+      this.exampleValues = new ArrayList<FeatureValue[]>();
+      this.exampleBranches = new ArrayList<int[]>();
+
+      for (int i = 0; i < features.length; ++i) {
+         String[] classes = features[i].getMachineLearnerClasses();
+         if (classes.length == 1 && CONTINUOUS.equals(classes[0])) {
+            continue;
+         }
+         possibleValues[i] = new FeatureValue[classes.length];
+         for (int j = 0; j < classes.length; ++j) {
+            possibleValues[i][j] = features[i].featureValueFromParser(classes[j]);
+         }
+      }
+   }
+
+   /**
+    * adds a new example (i.e. the features of a key)
+    *
+    * @param keyFeatures   the feature values of the key
+    */
+   public final void addExample(Map<Feature, FeatureValue> keyFeatures) {
+      FeatureValue[] values = new FeatureValue[features.length];
+      int[] branches = new int[features.length];
+
+      for (int i = 0; i < features.length; ++i) {
+         FeatureValue value = keyFeatures.get(features[i]);
+         if (value == null) {
+            continue;
+         }
+         if (possibleValues[i] == null) {
+            values[i] = value;
+            branches[i] = 1;
+            continue;
+         }
+         for (int j = 0; j < possibleValues[i].length; ++j) {
+            if (possibleValues[i][j].isEquals(value)) {
+               branches[i] = j + 1;
+               break;
+            }
+         }
+      }
+
+      exampleValues.add(values);
+      exampleBranches.add(branches);
+      sortedExamples = null;
+   }
+
+   /**
+    * @return  the number of examples added
+    */
+   public final int size() {
+      return exampleValues.size();
+   }
+
+   /**
+    * learns a decision tree that maps each example to its value
+    *
+    * @param values  the value of each example, in the order they were added
+    * @return        the decision tree
+    */
+   public final DecisionTree learn(int[] values) {
+      if (values.length != size()) {
+         throw new IllegalArgumentException("Expected one value per example");
+      }
+      if (values.length == 0) {
+         return new DecisionTree(new Type0Node(-1));
+      }
+
+      if (sortedExamples == null) {
+         sortExamples();
+      }
+
+      int[] sorted = values.clone();
+      Arrays.sort(sorted);
+      int numberOfClasses = 1;
+      for (int i = 1; i < sorted.length; ++i) {
+         if (sorted[i] != sorted[numberOfClasses - 1]) {
+            sorted[numberOfClasses++] = sorted[i];
+         }
+      }
+      int[] classValues = Arrays.copyOf(sorted, numberOfClasses);
+
+      int[] classes = new int[values.length];
+      int[] rows = new int[values.length];
+      for (int i = 0; i < values.length; ++i) {
+         classes[i] = Arrays.binarySearch(classValues, values[i]);
+         rows[i] = i;
+      }
+
+      return new DecisionTree(new Learning(classes, classValues).build(rows, sortedExamples, 0));
+   }
+
+   /**
+    * sorts the examples by each numeric feature. Examples with equals values have the same rank
+    */
+   private void sortExamples() {
+      sortedExamples = new int[features.length][];
+      ranks = new int[features.length][];
+
+      for (int i = 0; i < features.length; ++i) {
+         if (possibleValues[i] != null) {
+            continue;
+         }
+         final int feature = i;
+         List<Integer> known = new ArrayList<Integer>(exampleValues.size());
+         for (int row = 0; row < exampleValues.size(); ++row) {
+            if (exampleValues.get(row)[feature] != null) {
+               known.add(row);
+            }
+         }
+         Collections.sort(known, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer row1, Integer row2) {
+               return DecisionTreeLearner.compare(exampleValues.get(row1)[feature], exampleValues.get(row2)[feature]);
+            }
+         });
+
+         sortedExamples[feature] = new int[known.size()];
+         ranks[feature] = new int[exampleValues.size()];
+         int rank = 0;
+         for (int j = 0; j < known.size(); ++j) {
+            int row = known.get(j);
+            if (j > 0 && compare(exampleValues.get(known.get(j - 1))[feature], exampleValues.get(row)[feature]) != 0) {
+               rank++;
+            }
+            sortedExamples[feature][j] = row;
+            ranks[feature][row] = rank;
+         }
+      }
+   }
+
+   private static double entropy(int[] counts, int total) {
+      if (total == 0) {
+         return 0;
+      }
+      double entropy = 0;
+      for (int count : counts) {
+         if (count > 0) {
+            double p = (double) count / total;
+            entropy -= p * Math.log(p);
+         }
+      }
+      return entropy / LOG_2;
+   }
+
+   private static int compare(FeatureValue value1, FeatureValue value2) {
+      if (value1.isLessOrEqualsThan(value2)) {
+         return value2.isLessOrEqualsThan(value1) ? 0 : -1;
+      }
+      return 1;
+   }
+
+   private static class Split {
+      private final int feature;
+      private final double gain;
+      private final double gainRatio;
+      //the rank of the cut of numeric features. -1 for discrete features
+      private final int cutRank;
+      private final FeatureValue cut;
+
+      private Split(int feature, double gain, double splitInfo, int cutRank, FeatureValue cut) {
+         this.feature = feature;
+         this.gain = gain;
+         this.gainRatio = gain / splitInfo;
+         this.cutRank = cutRank;
+         this.cut = cut;
+      }
+   }
+
+   /**
+    * the state to learn a tree for a set of values
+    */
+   private class Learning {
+      //the dense index of the value of each example
+      private final int[] classes;
+      //the value of each dense index
+      private final int[] classValues;
+      //the branch of each example in the split being applied
+      private final int[] branchOf;
+      //x * log(x) for each number of examples, to compute the entropy of each cut incrementally
+      private final double[] xLogX;
+
+      private Learning(int[] classes, int[] classValues) {
+         this.classes = classes;
+         this.classValues = classValues;
+         this.branchOf = new int[classes.length];
+         this.xLogX = new double[classes.length + 1];
+         for (int i = 1; i < xLogX.length; ++i) {
+            xLogX[i] = i * Math.log(i);
+         }
+      }
+
+      /**
+       * @param rows    the examples in the node
+       * @param sorted  for each numeric feature, the examples in the node with the feature, sorted by its value
+       * @param deep    the deep of the node
+       * @return        the node
+       */
+      private DecisionTreeNode build(int[] rows, int[][] sorted, int deep) {
+         int[] counts = new int[classValues.length];
+         for (int row : rows) {
+            counts[classes[row]]++;
+         }
+         int majority = 0;
+         for (int i = 1; i < counts.length; ++i) {
+            if (counts[i] > counts[majority]) {
+               majority = i;
+            }
+         }
+         int value = classValues[majority];
+
+         if (counts[majority] == rows.length || rows.length < 2 * minCases || deep >= MAX_DEEP) {
+            return new Type0Node(value);
+         }
+
+         List<Split> splits = new ArrayList<Split>(features.length);
+         double gainSum = 0;
+         for (int i = 0; i < features.length; ++i) {
+            Split split = possibleValues[i] == null ? numericSplit(i, rows.length, sorted[i]) : discreteSplit(i, rows);
+            if (split != null) {
+               splits.add(split);
+               gainSum += split.gain;
+            }
+         }
+
+         Split best = null;
+         double averageGain = splits.isEmpty() ? 0 : gainSum / splits.size();
+         for (Split split : splits) {
+            if (split.gain >= averageGain - EPSILON && (best == null || split.gainRatio > best.gainRatio)) {
+               best = split;
+            }
+         }
+
+         if (best == null) {
+            return new Type0Node(value);
+         }
+
+         int numberOfBranches = best.cut == null ? possibleValues[best.feature].length + 1 : 3;
+         int[][] partitions = partition(best, numberOfBranches, rows);
+         //the branches must be partitioned before building the children, because they change the branch of the examples
+         int[][][] partitionsSorted = new int[numberOfBranches][][];
+         for (int i = 0; i < numberOfBranches; ++i) {
+            partitionsSorted[i] = partitionSorted(sorted, i);
+         }
+         DecisionTreeNode[] forks = new DecisionTreeNode[numberOfBranches];
+         for (int i = 0; i < numberOfBranches; ++i) {
+            forks[i] = partitions[i].length == 0 ? new Type0Node(value) :
+                  build(partitions[i], partitionsSorted[i], deep + 1);
+            partitionsSorted[i] = null;
+         }
+
+         Feature feature = features[best.feature];
+         return best.cut == null ? new Type1Node(value, feature, forks) :
+               new Type2Node(value, feature, forks, best.cut);
+      }
+
+      private Split discreteSplit(int feature, int[] rows) {
+         int numberOfBranches = possibleValues[feature].length + 1;
+         int[][] counts = new int[numberOfBranches][classValues.length];
+         int[] knownCounts = new int[classValues.length];
+         int[] branchSize = new int[numberOfBranches];
+
+         for (int row : rows) {
+            int branch = exampleBranches.get(row)[feature];
+            counts[branch][classes[row]]++;
+            branchSize[branch]++;
+            if (branch != 0) {
+               knownCounts[classes[row]]++;
+            }
+         }
+
+         int known = rows.length - branchSize[0];
+         int bigBranches = 0;
+         for (int i = 1; i < numberOfBranches; ++i) {
+            if (branchSize[i] >= minCases) {
+               bigBranches++;
+            }
+         }
+         if (bigBranches < 2) {
+            return null;
+         }
+
+         double splitEntropy = 0;
+         for (int i = 1; i < numberOfBranches; ++i) {
+            splitEntropy += (double) branchSize[i] / known * entropy(counts[i], branchSize[i]);
+         }
+         double gain = (double) known / rows.length * (entropy(knownCounts, known) - splitEntropy);
+         double splitInfo = entropy(branchSize, rows.length);
+
+         return gain <= EPSILON || splitInfo <= EPSILON ? null : new Split(feature, gain, splitInfo, -1, null);
+      }
+
+      private Split numericSplit(int feature, int numberOfRows, int[] sorted) {
+         int known = sorted.length;
+         if (known < 2 * minCases) {
+            return null;
+         }
+
+         int[] rank = ranks[feature];
+         int[] knownCounts = new int[classValues.length];
+         for (int row : sorted) {
+            knownCounts[classes[row]]++;
+         }
+
+         //sum of count * log(count) of the classes in each side of the cut
+         int[] leftCounts = new int[classValues.length];
+         double leftSum = 0;
+         double rightSum = 0;
+         for (int count : knownCounts) {
+            rightSum += xLogX[count];
+         }
+         double bestSplitEntropy = Double.MAX_VALUE;
+         int bestLeftSize = -1;
+
+         for (int i = 0; i < known - 1; ++i) {
+            int clazz = classes[sorted[i]];
+            int leftCount = leftCounts[clazz]++;
+            int rightCount = knownCounts[clazz] - leftCount;
+            leftSum += xLogX[leftCount + 1] - xLogX[leftCount];
+            rightSum += xLogX[rightCount - 1] - xLogX[rightCount];
+            int leftSize = i + 1;
+            int rightSize = known - leftSize;
+            if (leftSize < minCases || rightSize < minCases || rank[sorted[i]] == rank[sorted[i + 1]]) {
+               continue;
+            }
+            //known * (weighted entropy of both sides) * log(2)
+            double splitEntropy = xLogX[leftSize] - leftSum + xLogX[rightSize] - rightSum;
+            if (splitEntropy < bestSplitEntropy) {
+               bestSplitEntropy = splitEntropy;
+               bestLeftSize = leftSize;
+            }
+         }
+
+         if (bestLeftSize == -1) {
+            return null;
+         }
+
+         bestSplitEntropy = bestSplitEntropy / known / LOG_2;
+         double gain = (double) known / numberOfRows * (entropy(knownCounts, known) - bestSplitEntropy);
+         double splitInfo = entropy(new int[] {numberOfRows - known, bestLeftSize, known - bestLeftSize}, numberOfRows);
+         int cutRow = sorted[bestLeftSize - 1];
+
+         return gain <= EPSILON || splitInfo <= EPSILON ? null :
+               new Split(feature, gain, splitInfo, rank[cutRow], exampleValues.get(cutRow)[feature]);
+      }
+
+      /**
+       * sets the branch of each example and returns the examples of each branch, in the same order as the forks of
+       * the node
+       */
+      private int[][] partition(Split split, int numberOfBranches, int[] rows) {
+         int[] branchSize = new int[numberOfBranches];
+
+         for (int row : rows) {
+            int branch = exampleBranches.get(row)[split.feature];
+            if (split.cut != null && branch != 0) {
+               branch = ranks[split.feature][row] <= split.cutRank ? 1 : 2;
+            }
+            branchOf[row] = branch;
+            branchSize[branch]++;
+         }
+
+         int[][] partitions = new int[numberOfBranches][];
+         for (int i = 0; i < numberOfBranches; ++i) {
+            partitions[i] = new int[branchSize[i]];
+            branchSize[i] = 0;
+         }
+         for (int row : rows) {
+            partitions[branchOf[row]][branchSize[branchOf[row]]++] = row;
+         }
+         return partitions;
+      }
+
+      /**
+       * @return  the sorted examples of the branch, for each numeric feature
+       */
+      private int[][] partitionSorted(int[][] sorted, int branch) {
+         int[][] branchSorted = new int[features.length][];
+         for (int i = 0; i < features.length; ++i) {
+            if (sorted[i] == null) {
+               continue;
+            }
+            int size = 0;
+            for (int row : sorted[i]) {
+               if (branchOf[row] == branch) {
+                  size++;
+               }
+            }
+            branchSorted[i] = new int[size];
+            size = 0;
+            for (int row : sorted[i]) {
+               if (branchOf[row] == branch) {
+                  branchSorted[i][size++] = row;
+               }
+            }
+         }
+         return branchSorted;
+      }
+   }
+}
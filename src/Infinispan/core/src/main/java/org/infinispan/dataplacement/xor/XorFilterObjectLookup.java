@@ -0,0 +1,170 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.dataplacement.xor;
+
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.dataplacement.stats.IncrementableLong;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An Object Lookup implementation based on a XOR filter
+ * <p/>
+ * Each moved key is hashed to three entries of a table, one in each third of it, and the XOR of the three entries is
+ * the fingerprint of the key followed by the index of its new owners in the owners table. A key is not moved when the
+ * fingerprint does not match, so other keys are only seen as moved with a probability of 2^-(fingerprint bits), at
+ * most 2^-8 (see {@link XorFilterObjectLookupFactory#MIN_FINGERPRINT_BITS}).
+ * <p/>
+ * All the state is kept in a single byte array (the header, the owners table and the entries) that is the only
+ * serialized field. The queries do not allocate: the owners lists are created once, when the object lookup is
+ * created or deserialized.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class XorFilterObjectLookup implements ObjectLookup {
+
+   private final byte[] data;
+   private transient int seed;
+   private transient int blockLength;
+   private transient int entryBytes;
+   private transient int valueBits;
+   private transient int valueMask;
+   private transient int fingerprintMask;
+   private transient int tableOffset;
+   private transient List<Integer>[] owners;
+
+   /**
+    * @param data the header, the owners table and the entries, as written by {@link XorFilterObjectLookupFactory}
+    */
+   public XorFilterObjectLookup(byte[] data) {
+      this.data = data;
+      init();
+   }
+
+   @Override
+   public List<Integer> query(Object key) {
+      long hash = hash(key.hashCode(), seed);
+      int entry = entry(index(hash, 0, blockLength)) ^ entry(index(hash, 1, blockLength)) ^
+            entry(index(hash, 2, blockLength));
+
+      if (((entry >>> valueBits) & fingerprintMask) != (fingerprint(hash) & fingerprintMask)) {
+         return null;
+      }
+      int value = entry & valueMask;
+      return value < owners.length ? owners[value] : null;
+   }
+
+   @Override
+   public List<Integer> queryWithProfiling(Object key, IncrementableLong[] phaseDurations) {
+      long start = System.nanoTime();
+      List<Integer> result = query(key);
+      long end = System.nanoTime();
+
+      if (phaseDurations.length == 1) {
+         phaseDurations[0].add(end - start);
+      }
+
+      return result;
+   }
+
+   /**
+    * @return  the number of bytes used by this object lookup
+    */
+   public final int size() {
+      return data.length;
+   }
+
+   /**
+    * mixes the hash code of the key with the seed
+    *
+    * @param hashCode   the hash code of the key
+    * @param seed       the seed
+    * @return           the 64 bits hash
+    */
+   static long hash(int hashCode, int seed) {
+      long hash = hashCode + seed * 0x9E3779B97F4A7C15L;
+      hash ^= hash >>> 33;
+      hash *= 0xFF51AFD7ED558CCDL;
+      hash ^= hash >>> 33;
+      hash *= 0xC4CEB9FE1A85EC53L;
+      hash ^= hash >>> 33;
+      return hash;
+   }
+
+   /**
+    * @param hash          the 64 bits hash of the key
+    * @param block         the block (0, 1 or 2)
+    * @param blockLength   the number of entries in each block
+    * @return              the index of the entry of the key in the block
+    */
+   static int index(long hash, int block, int blockLength) {
+      long rotated = Long.rotateLeft(hash, 21 * block) & 0xFFFFFFFFL;
+      return block * blockLength + (int) ((rotated * blockLength) >>> 32);
+   }
+
+   static int fingerprint(long hash) {
+      return (int) (hash ^ (hash >>> 32));
+   }
+
+   private int entry(int index) {
+      int offset = tableOffset + index * entryBytes;
+      int entry = 0;
+      for (int i = 0; i < entryBytes; ++i) {
+         entry |= (data[offset + i] & 0xFF) << (8 * i);
+      }
+      return entry;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void init() {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      seed = buffer.getInt();
+      blockLength = buffer.getInt();
+      entryBytes = buffer.get();
+      valueBits = buffer.get();
+      valueMask = (1 << valueBits) - 1;
+      int fingerprintBits = entryBytes * 8 - valueBits;
+      fingerprintMask = fingerprintBits == 32 ? -1 : (1 << fingerprintBits) - 1;
+
+      owners = new List[buffer.getInt()];
+      for (int i = 0; i < owners.length; ++i) {
+         Integer[] ownersIndexes = new Integer[buffer.get() & 0xFF];
+         for (int j = 0; j < ownersIndexes.length; ++j) {
+            ownersIndexes[j] = buffer.getInt();
+         }
+         owners[i] = Collections.unmodifiableList(Arrays.asList(ownersIndexes));
+      }
+      tableOffset = buffer.position();
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      init();
+   }
+}
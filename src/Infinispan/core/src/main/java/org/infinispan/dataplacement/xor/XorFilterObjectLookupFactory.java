@@ -0,0 +1,258 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.dataplacement.xor;
+
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.dataplacement.OwnersInfo;
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.dataplacement.lookup.ObjectLookupFactory;
+import org.infinispan.util.TypedProperties;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An Object Lookup Factory that constructs {@link XorFilterObjectLookup}
+ * <p/>
+ * This implementation encodes the new owners of each key in a XOR filter with a fixed number of bits per entry (see
+ * {@link #BITS_PER_ENTRY}). The table has 1.23 entries per moved key and each entry has the fingerprint of the key and
+ * the index of the new owners in the list of distinct new owners. Keys with the same hash code are seen as the same
+ * key, so only the first one is encoded.
+ * <p/>
+ * The fingerprint has at least {@link #MIN_FINGERPRINT_BITS} bits, so that less than 0.4% of the keys that were not
+ * moved are wrongly seen as moved (and sent to a wrong owner). If the bits per entry are not enough for the fingerprint
+ * and the index of the new owners, the entries are enlarged by one byte at the time.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class XorFilterObjectLookupFactory implements ObjectLookupFactory {
+
+   public static final String BITS_PER_ENTRY = "bitsPerEntry";
+
+   private static final Log log = LogFactory.getLog(XorFilterObjectLookupFactory.class);
+   /**
+    * the minimum number of bits of the fingerprint. A key that was not moved is seen as moved with a probability of
+    * 2^-8 (about 0.4%)
+    */
+   public static final int MIN_FINGERPRINT_BITS = 8;
+   private static final int MAX_ATTEMPTS = 64;
+
+   private int bitsPerEntry = 16;
+
+   @Override
+   public void setConfiguration(Configuration configuration) {
+      TypedProperties typedProperties = configuration.dataPlacement().properties();
+
+      try {
+         String tmp = typedProperties.getProperty(BITS_PER_ENTRY, Integer.toString(bitsPerEntry));
+         bitsPerEntry = Integer.parseInt(tmp);
+      } catch (NumberFormatException nfe) {
+         log.warnf("Error parsing property %s. The default value is %s. %s", BITS_PER_ENTRY, bitsPerEntry,
+                   nfe.getMessage());
+      }
+
+      if (bitsPerEntry < 8 || bitsPerEntry > 32 || bitsPerEntry % 8 != 0) {
+         log.warnf("Bits per entry must be 8, 16, 24 or 32. The value is %s. Using 16", bitsPerEntry);
+         bitsPerEntry = 16;
+      }
+   }
+
+   @Override
+   public ObjectLookup createObjectLookup(Map<Object, OwnersInfo> keysToMove, int numberOfOwners) {
+      Map<List<Integer>, Integer> ownersIndexes = new HashMap<List<Integer>, Integer>();
+      List<List<Integer>> owners = new ArrayList<List<Integer>>();
+      Map<Integer, Integer> hashCodes = new HashMap<Integer, Integer>(keysToMove.size() * 2);
+      int conflicts = 0;
+
+      for (Map.Entry<Object, OwnersInfo> entry : keysToMove.entrySet()) {
+         List<Integer> newOwners = entry.getValue().getNewOwnersIndexes();
+         Integer index = ownersIndexes.get(newOwners);
+         if (index == null) {
+            index = owners.size();
+            ownersIndexes.put(newOwners, index);
+            owners.add(newOwners);
+         }
+         Integer previous = hashCodes.put(entry.getKey().hashCode(), index);
+         if (previous != null && !previous.equals(index)) {
+            hashCodes.put(entry.getKey().hashCode(), previous);
+            conflicts++;
+         }
+      }
+
+      if (conflicts > 0) {
+         log.warnf("%s keys have the same hash code of other key with different new owners", conflicts);
+      }
+
+      int[] keys = new int[hashCodes.size()];
+      int[] values = new int[hashCodes.size()];
+      int position = 0;
+      for (Map.Entry<Integer, Integer> entry : hashCodes.entrySet()) {
+         keys[position] = entry.getKey();
+         values[position++] = entry.getValue();
+      }
+
+      int valueBits = 32 - Integer.numberOfLeadingZeros(Math.max(owners.size() - 1, 0));
+      int entryBits = bitsPerEntry;
+      while (entryBits - valueBits < MIN_FINGERPRINT_BITS) {
+         entryBits += 8;
+      }
+      if (entryBits > 32) {
+         log.errorf("Cannot create Object Lookup. Too many distinct new owners: %s", owners.size());
+         return null;
+      } else if (entryBits != bitsPerEntry) {
+         log.warnf("Using %s bits per entry to encode %s distinct new owners", entryBits, owners.size());
+      }
+
+      int blockLength = (32 + (int) Math.ceil(1.23 * keys.length)) / 3;
+      for (int seed = 0; seed < MAX_ATTEMPTS; ++seed) {
+         int[] entries = createEntries(keys, values, seed, blockLength, entryBits, valueBits);
+         if (entries == null) {
+            continue;
+         }
+         try {
+            return new XorFilterObjectLookup(toByteArray(seed, blockLength, entryBits / 8, valueBits, owners, entries));
+         } catch (IOException e) {
+            log.errorf(e, "Cannot create Object Lookup");
+            return null;
+         }
+      }
+
+      log.errorf("Cannot create Object Lookup. No XOR filter found after %s attempts", MAX_ATTEMPTS);
+      return null;
+   }
+
+   @Override
+   public void init(ObjectLookup objectLookup) {
+      //no-op
+   }
+
+   @Override
+   public int getNumberOfQueryProfilingPhases() {
+      return 1;
+   }
+
+   /**
+    * creates the entries of the filter by peeling the keys: an entry used by a single key is removed with the key
+    * until no keys are left. The entries are then assigned in the reverse order.
+    *
+    * @return  the entries or null if the keys cannot be peeled with this seed
+    */
+   private int[] createEntries(int[] keys, int[] values, int seed, int blockLength, int entryBits, int valueBits) {
+      int capacity = 3 * blockLength;
+      int[] count = new int[capacity];
+      int[] xorKeys = new int[capacity];
+      long[] hashes = new long[keys.length];
+
+      for (int key = 0; key < keys.length; ++key) {
+         hashes[key] = XorFilterObjectLookup.hash(keys[key], seed);
+         for (int block = 0; block < 3; ++block) {
+            int index = XorFilterObjectLookup.index(hashes[key], block, blockLength);
+            count[index]++;
+            xorKeys[index] ^= key;
+         }
+      }
+
+      int[] queue = new int[capacity];
+      int queueSize = 0;
+      for (int index = 0; index < capacity; ++index) {
+         if (count[index] == 1) {
+            queue[queueSize++] = index;
+         }
+      }
+
+      int[] stackKeys = new int[keys.length];
+      int[] stackIndexes = new int[keys.length];
+      int stackSize = 0;
+      while (queueSize > 0) {
+         int index = queue[--queueSize];
+         if (count[index] != 1) {
+            continue;
+         }
+         int key = xorKeys[index];
+         stackKeys[stackSize] = key;
+         stackIndexes[stackSize++] = index;
+         for (int block = 0; block < 3; ++block) {
+            int other = XorFilterObjectLookup.index(hashes[key], block, blockLength);
+            count[other]--;
+            xorKeys[other] ^= key;
+            if (count[other] == 1) {
+               queue[queueSize++] = other;
+            }
+         }
+      }
+
+      if (stackSize != keys.length) {
+         return null;
+      }
+
+      int fingerprintBits = entryBits - valueBits;
+      int fingerprintMask = fingerprintBits == 32 ? -1 : (1 << fingerprintBits) - 1;
+      int[] entries = new int[capacity];
+      while (stackSize > 0) {
+         int key = stackKeys[--stackSize];
+         int index = stackIndexes[stackSize];
+         long hash = hashes[key];
+         int entry = ((XorFilterObjectLookup.fingerprint(hash) & fingerprintMask) << valueBits) | values[key];
+         for (int block = 0; block < 3; ++block) {
+            int other = XorFilterObjectLookup.index(hash, block, blockLength);
+            if (other != index) {
+               entry ^= entries[other];
+            }
+         }
+         entries[index] = entry;
+      }
+      return entries;
+   }
+
+   private byte[] toByteArray(int seed, int blockLength, int entryBytes, int valueBits, List<List<Integer>> owners,
+                              int[] entries) throws IOException {
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+      output.writeInt(seed);
+      output.writeInt(blockLength);
+      output.writeByte(entryBytes);
+      output.writeByte(valueBits);
+      output.writeInt(owners.size());
+      for (List<Integer> newOwners : owners) {
+         output.writeByte(newOwners.size());
+         for (int owner : newOwners) {
+            output.writeInt(owner);
+         }
+      }
+      for (int entry : entries) {
+         for (int i = 0; i < entryBytes; ++i) {
+            output.writeByte(entry >>> (8 * i));
+         }
+      }
+      output.flush();
+      return byteArrayOutputStream.toByteArray();
+   }
+}
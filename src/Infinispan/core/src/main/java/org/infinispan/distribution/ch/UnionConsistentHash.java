@@ -26,12 +26,12 @@ import org.infinispan.CacheException;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.remoting.transport.Address;
-import org.infinispan.util.Immutables;
 import org.infinispan.util.Util;
 
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -62,7 +62,9 @@ public class UnionConsistentHash extends AbstractConsistentHash {
 
    @Override
    public Set<Address> getCaches() {
-      return Collections.emptySet();
+      Set<Address> caches = new LinkedHashSet<Address>(oldCH.getCaches());
+      caches.addAll(newCH.getCaches());
+      return Collections.unmodifiableSet(caches);
    }
 
    @Override
@@ -70,7 +72,8 @@ public class UnionConsistentHash extends AbstractConsistentHash {
       Set<Address> addresses = new LinkedHashSet<Address>();
       addresses.addAll(oldCH.locate(key, replCount));
       addresses.addAll(newCH.locate(key, replCount));
-      return Immutables.immutableListConvert(addresses);
+      // the callers may change the returned list (e.g. remove the nodes that left the cluster)
+      return new ArrayList<Address>(addresses);
    }
 
    @Override
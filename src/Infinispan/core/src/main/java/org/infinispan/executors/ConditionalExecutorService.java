@@ -33,18 +33,28 @@ import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import org.rhq.helpers.pluginAnnotations.agent.Units;
 
-import java.util.concurrent.SynchronousQueue;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * // TODO: Document this
+ * Executor service that executes a {@link ConditionalRunnable} only when it is ready.
+ * <p/>
+ * The runnable that implements {@link DependencyAwareRunnable} registers a listener in its dependencies and it is
+ * re-checked only when one of them completes. It is submitted to a work-stealing thread pool at that moment. The
+ * remaining runnable are checked periodically by a polling thread, that is only created when needed.
  *
  * @author Pedro Ruivo
  * @since 5.2
@@ -54,13 +64,25 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ConditionalExecutorService {
 
    private static final Log log = LogFactory.getLog(ConditionalExecutorService.class);
-   private volatile SchedulerThread schedulerThread;
-   private RunnableEntry activeRunnables;
-   private RunnableEntry newRunnables;
+   private static final long POLLING_INTERVAL = TimeUnit.MICROSECONDS.toNanos(100);
+   private final Queue<TaskEntry> pollingTasks;
+   private final AtomicInteger pendingTasks;
+   private final EnumMap<Stat, AtomicLong> stats;
+   private volatile WorkStealingThreadPool threadPool;
+   private volatile PollingThread pollingThread;
    private volatile boolean enabled;
    private Configuration configuration;
    private String cacheName;
 
+   public ConditionalExecutorService() {
+      pollingTasks = new ConcurrentLinkedQueue<TaskEntry>();
+      pendingTasks = new AtomicInteger(0);
+      stats = new EnumMap<Stat, AtomicLong>(Stat.class);
+      for (Stat stat : Stat.values()) {
+         stats.put(stat, new AtomicLong(0));
+      }
+   }
+
    @Inject
    public void inject(Configuration configuration, Cache<?, ?> cache) {
       this.configuration = configuration;
@@ -73,96 +95,147 @@ public class ConditionalExecutorService {
    }
 
    @Stop
-   public final void stop() {
+   public final synchronized void stop() {
       enabled = false;
-      if (schedulerThread != null) {
-         schedulerThread.interrupt();
+      if (pollingThread != null) {
+         pollingThread.interrupt();
+         pollingThread = null;
       }
+      if (threadPool != null) {
+         threadPool.shutdown();
+         threadPool = null;
+      }
+      pollingTasks.clear();
+      pendingTasks.set(0);
    }
 
    public void execute(ConditionalRunnable runnable) throws Exception {
       if (!enabled) {
          throw new Exception("Executor Service is not enabled");
       }
-      RunnableEntry runnableEntry = new RunnableEntry(runnable);
-      synchronized (this) {
-         initIfNeeded();
-         runnableEntry.next = newRunnables;
-         newRunnables = runnableEntry;
-         notify();
-         if (log.isTraceEnabled()) {
-            log.tracef("Added a new task: %s waiting to be added", toAddSize());
-         }
+      WorkStealingThreadPool pool = initIfNeeded();
+      TaskEntry taskEntry = new TaskEntry(runnable, pool);
+      pendingTasks.incrementAndGet();
+      if (runnable instanceof DependencyAwareRunnable) {
+         ((DependencyAwareRunnable) runnable).registerDependencyListener(taskEntry.dependencyListener);
+         taskEntry.checkAndSchedule();
+      } else if (!taskEntry.checkAndSchedule()) {
+         pollingTasks.add(taskEntry);
+         LockSupport.unpark(initPollingThreadIfNeeded());
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("Added a new task. Pending tasks=%s", pendingTasks.get());
       }
    }
 
    @ManagedAttribute(description = "The minimum number of threads in the thread pool")
    @Metric(displayName = "Minimum Number of Threads", displayType = DisplayType.DETAIL)
    public int getCorePoolSize() {
-      SchedulerThread current = schedulerThread;
-      return current == null ? 0 : current.getExecutorService().getCorePoolSize();
+      WorkStealingThreadPool current = threadPool;
+      return current == null ? 0 : current.getCorePoolSize();
    }
 
    @ManagedOperation(description = "Set the minimum number of threads in the thread pool")
    @Operation(displayName = "Set Minimum Number Of Threads")
    public void setCorePoolSize(int size) {
-      SchedulerThread current = schedulerThread;
+      WorkStealingThreadPool current = threadPool;
       if (!enabled || current == null) {
          return;
       }
-      current.getExecutorService().setCorePoolSize(size);
+      current.setCorePoolSize(size);
    }
 
    @ManagedAttribute(description = "The maximum number of threads in the thread pool")
    @Metric(displayName = "Maximum Number of Threads", displayType = DisplayType.DETAIL)
    public int getMaximumPoolSize() {
-      SchedulerThread current = schedulerThread;
-      return current == null ? 0 : current.getExecutorService().getMaximumPoolSize();
+      WorkStealingThreadPool current = threadPool;
+      return current == null ? 0 : current.getMaximumPoolSize();
    }
 
    @ManagedOperation(description = "Set the maximum number of threads in the thread pool")
    @Operation(displayName = "Set Maximum Number Of Threads")
    public void setMaximumPoolSize(int size) {
-      SchedulerThread current = schedulerThread;
+      WorkStealingThreadPool current = threadPool;
       if (!enabled || current == null) {
          return;
       }
-      current.getExecutorService().setMaximumPoolSize(size);
+      current.setMaximumPoolSize(size);
    }
 
    @ManagedAttribute(description = "The keep alive time of an idle thread in the thread pool (milliseconds)")
    @Metric(displayName = "Keep Alive Time of a Idle Thread", units = Units.MILLISECONDS,
            displayType = DisplayType.DETAIL)
    public long getKeepAliveTime() {
-      SchedulerThread current = schedulerThread;
-      return current == null ? 0 : current.getExecutorService().getKeepAliveTime(TimeUnit.MILLISECONDS);
+      WorkStealingThreadPool current = threadPool;
+      return current == null ? 0 : current.getKeepAliveTime(TimeUnit.MILLISECONDS);
    }
 
    @ManagedOperation(description = "Set the idle time of a thread in the thread pool (milliseconds)")
    @Operation(displayName = "Set Keep Alive Time of Idle Threads")
    public void setKeepAliveTime(long milliseconds) {
-      SchedulerThread current = schedulerThread;
+      WorkStealingThreadPool current = threadPool;
       if (!enabled || current == null) {
          return;
       }
-      current.getExecutorService().setKeepAliveTime(milliseconds, TimeUnit.MILLISECONDS);
+      current.setKeepAliveTime(milliseconds, TimeUnit.MILLISECONDS);
    }
 
    @ManagedAttribute(description = "The approximate percentage of active threads in the thread pool")
    @Metric(displayName = "Percentage of Active Threads", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getUsagePercentage() {
-      SchedulerThread current = schedulerThread;
+      WorkStealingThreadPool current = threadPool;
       if (current == null) {
          return 0D;
       }
 
-      int max = current.getExecutorService().getMaximumPoolSize();
-      int actual = current.getExecutorService().getActiveCount();
+      int max = current.getMaximumPoolSize();
+      int actual = current.getActiveCount();
       double percentage = actual * 100.0 / max;
       return percentage > 100 ? 100.0 : percentage;
    }
 
-   private ThreadFactory createThreadFactory() {
+   @ManagedAttribute(description = "The number of tasks waiting for their dependencies")
+   @Metric(displayName = "Number of Pending Tasks", displayType = DisplayType.SUMMARY)
+   public int getNumberOfPendingTasks() {
+      return pendingTasks.get();
+   }
+
+   @ManagedAttribute(description = "The approximate number of tasks ready and waiting for a free thread")
+   @Metric(displayName = "Number of Queued Tasks", displayType = DisplayType.SUMMARY)
+   public int getNumberOfQueuedTasks() {
+      WorkStealingThreadPool current = threadPool;
+      return current == null ? 0 : current.getQueuedTaskCount();
+   }
+
+   @ManagedAttribute(description = "The number of tasks executed")
+   @Metric(displayName = "Number of Executed Tasks", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfExecutedTasks() {
+      return stats.get(Stat.EXECUTED_TASKS).get();
+   }
+
+   @ManagedAttribute(description = "Average time between a task being ready and its execution start (in microseconds)")
+   @Metric(displayName = "Average wake-up latency", displayType = DisplayType.SUMMARY)
+   public long getAvgWakeUpLatency() {
+      long tasks = stats.get(Stat.EXECUTED_TASKS).get();
+      return tasks == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.get(Stat.WAKE_UP_LATENCY).get() / tasks);
+   }
+
+   @ManagedAttribute(description = "Maximum time between a task being ready and its execution start (in microseconds)")
+   @Metric(displayName = "Maximum wake-up latency", displayType = DisplayType.SUMMARY)
+   public long getMaxWakeUpLatency() {
+      return TimeUnit.NANOSECONDS.toMicros(stats.get(Stat.MAX_WAKE_UP_LATENCY).get());
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset Statistics")
+   public void resetStatistics() {
+      for (AtomicLong atomicLong : stats.values()) {
+         atomicLong.set(0);
+      }
+   }
+
+   private ThreadFactory createThreadFactory(final String prefix) {
       return new ThreadFactory() {
 
          private final AtomicInteger threadCounter = new AtomicInteger(0);
@@ -170,143 +243,93 @@ public class ConditionalExecutorService {
          @SuppressWarnings("NullableProblems")
          @Override
          public Thread newThread(Runnable runnable) {
-            return new Thread(runnable, "Cond-ThreadPool-" + cacheName + "-" +
-                  threadCounter.incrementAndGet());
+            return new Thread(runnable, prefix + "-" + cacheName + "-" + threadCounter.incrementAndGet());
          }
       };
    }
 
-   private ThreadPoolExecutor createExecutorService() {
-      return new ThreadPoolExecutor(configuration.conditionalExecutorService().corePoolSize(),
-                                    configuration.conditionalExecutorService().maxPoolSize(),
-                                    configuration.conditionalExecutorService().keepAliveTime(),
-                                    TimeUnit.MILLISECONDS,
-                                    new SynchronousQueue<Runnable>(),
-                                    createThreadFactory(),
-                                    new ThreadPoolExecutor.CallerRunsPolicy());
+   private WorkStealingThreadPool createThreadPool() {
+      return new WorkStealingThreadPool(configuration.conditionalExecutorService().corePoolSize(),
+                                        configuration.conditionalExecutorService().maxPoolSize(),
+                                        configuration.conditionalExecutorService().keepAliveTime(),
+                                        createThreadFactory("Cond-ThreadPool"),
+                                        createThreadFactory("Cond-Overflow"));
    }
 
-   private int count(RunnableEntry first) {
-      int size = 0;
-      RunnableEntry iterator = first;
-      while (iterator != null) {
-         size++;
-         iterator = iterator.next;
+   private WorkStealingThreadPool initIfNeeded() throws Exception {
+      WorkStealingThreadPool pool = threadPool;
+      if (pool != null) {
+         return pool;
       }
-      return size;
-   }
-
-   private synchronized void clearAll() {
-      newRunnables = null;
-      activeRunnables = null;
-   }
-
-   private void addNewRunnables() throws InterruptedException {
-      RunnableEntry addList;
       synchronized (this) {
-         addList = newRunnables;
-         newRunnables = null;
-         if (addList == null && activeRunnables == null) {
-            wait();
+         if (!enabled) {
+            throw new Exception("Executor Service is not enabled");
+         } else if (threadPool == null) {
+            threadPool = createThreadPool();
          }
+         return threadPool;
       }
+   }
 
-      if (addList == null) {
-         return;
-      } else if (activeRunnables == null) {
-         activeRunnables = addList;
-         if (log.isTraceEnabled()) {
-            log.tracef("Adding pending tasks. Active=%s", count(activeRunnables));
-         }
-         return;
-      }
-
-      RunnableEntry last = activeRunnables;
-      while (last.next != null) {
-         last = last.next;
-      }
-      last.next = addList;
-      if (log.isTraceEnabled()) {
-         log.tracef("Adding pending tasks. Active=%s", count(activeRunnables));
+   private synchronized Thread initPollingThreadIfNeeded() {
+      if (enabled && pollingThread == null) {
+         pollingThread = new PollingThread(cacheName);
+         pollingThread.start();
       }
+      return pollingThread;
    }
 
-   private synchronized int toAddSize() {
-      return count(newRunnables);
+   private void updateWakeUpLatency(long latency) {
+      stats.get(Stat.EXECUTED_TASKS).incrementAndGet();
+      stats.get(Stat.WAKE_UP_LATENCY).addAndGet(latency);
+      AtomicLong maxLatency = stats.get(Stat.MAX_WAKE_UP_LATENCY);
+      long max;
+      do {
+         max = maxLatency.get();
+      } while (latency > max && !maxLatency.compareAndSet(max, latency));
    }
 
-   private void initIfNeeded() {
-      if (!enabled || schedulerThread != null) {
-         return;
-      }
-      schedulerThread = new SchedulerThread(cacheName);
-      schedulerThread.start();
+   private static enum Stat {
+      EXECUTED_TASKS,
+      WAKE_UP_LATENCY,
+      MAX_WAKE_UP_LATENCY
    }
 
-   private class SchedulerThread extends Thread {
+   /**
+    * periodically checks the tasks that are not able to notify when their dependencies complete
+    */
+   private class PollingThread extends Thread {
 
-      private final ThreadPoolExecutor executorService;
       private volatile boolean running;
 
-      public SchedulerThread(String cacheName) {
+      public PollingThread(String cacheName) {
          super("Scheduler-" + cacheName);
-         this.executorService = createExecutorService();
+         running = true;
       }
 
       @Override
       public void run() {
-         running = true;
          while (running) {
             try {
-               addNewRunnables();
-
-               if (activeRunnables == null) {
-                  continue;
-               }
-
-               int tasksExecuted = 0;
-
-               while (activeRunnables != null && activeRunnables.runnable.isReady()) {
-                  executorService.execute(activeRunnables.runnable);
-                  activeRunnables = activeRunnables.next;
-                  tasksExecuted++;
-               }
-
-               if (activeRunnables == null) {
-                  if (log.isTraceEnabled() && tasksExecuted > 0) {
-                     log.tracef("Tasks executed=%s, still active=%s", tasksExecuted, count(activeRunnables));
-                  }
-                  continue;
-               }
-
-               RunnableEntry iterator = activeRunnables;
-               while (iterator.next != null) {
-                  RunnableEntry toAnalyze = iterator.next;
-                  if (toAnalyze.runnable.isReady()) {
-                     executorService.execute(toAnalyze.runnable);
-                     iterator.next = toAnalyze.next;
-                     tasksExecuted++;
-                  } else {
-                     iterator = iterator.next;
+               Iterator<TaskEntry> iterator = pollingTasks.iterator();
+               while (iterator.hasNext()) {
+                  if (iterator.next().checkAndSchedule()) {
+                     iterator.remove();
                   }
                }
-
-               if (log.isTraceEnabled() && tasksExecuted > 0) {
-                  log.tracef("Tasks executed=%s, still active=%s", tasksExecuted, count(activeRunnables));
-               }
-            } catch (InterruptedException e) {
-               break;
             } catch (Throwable throwable) {
                if (log.isTraceEnabled()) {
-                  log.tracef(throwable, "Exception caught while executing task");
+                  log.tracef(throwable, "Exception caught while checking tasks");
                } else {
-                  log.warnf("Exception caught while executing task: %s", throwable.getLocalizedMessage());
+                  log.warnf("Exception caught while checking tasks: %s", throwable.getLocalizedMessage());
                }
-
+            }
+            if (pollingTasks.isEmpty()) {
+               LockSupport.park(this);
+            } else {
+               LockSupport.parkNanos(this, POLLING_INTERVAL);
             }
          }
-         executorService.shutdown();
-         clearAll();
       }
 
       @Override
@@ -314,19 +337,62 @@ public class ConditionalExecutorService {
          running = false;
          super.interrupt();
       }
-
-      public ThreadPoolExecutor getExecutorService() {
-         return executorService;
-      }
    }
 
-   private class RunnableEntry {
+   private class TaskEntry implements Runnable {
       private final ConditionalRunnable runnable;
-      private RunnableEntry next;
+      private final WorkStealingThreadPool pool;
+      private final Runnable dependencyListener;
+      private volatile long readyTimestamp;
+      private boolean scheduled;
 
-      private RunnableEntry(ConditionalRunnable runnable) {
+      private TaskEntry(ConditionalRunnable runnable, WorkStealingThreadPool pool) {
          this.runnable = runnable;
-         this.next = null;
+         this.pool = pool;
+         this.dependencyListener = new Runnable() {
+            @Override
+            public void run() {
+               checkAndSchedule();
+            }
+         };
+      }
+
+      /**
+       * submits the task to the thread pool if it is ready. the isReady() is invoked by a single thread at a time and
+       * the task is submitted after releasing the lock, since this method is invoked by the dependency listeners
+       *
+       * @return true if the task was already submitted
+       */
+      private boolean checkAndSchedule() {
+         synchronized (this) {
+            if (scheduled) {
+               return true;
+            } else if (!runnable.isReady()) {
+               return false;
+            }
+            scheduled = true;
+         }
+         pendingTasks.decrementAndGet();
+         readyTimestamp = System.nanoTime();
+         try {
+            pool.execute(this);
+         } catch (RejectedExecutionException e) {
+            if (log.isTraceEnabled()) {
+               log.tracef("Task %s discarded. Executor service is stopped", runnable);
+            }
+         }
+         return true;
+      }
+
+      @Override
+      public void run() {
+         updateWakeUpLatency(System.nanoTime() - readyTimestamp);
+         runnable.run();
+      }
+
+      @Override
+      public String toString() {
+         return String.valueOf(runnable);
       }
    }
 }
@@ -0,0 +1,43 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.executors;
+
+/**
+ * A {@link ConditionalRunnable} that knows the dependencies it is waiting for. Instead of being polled by the
+ * {@link ConditionalExecutorService}, it registers a listener in each dependency and the executor re-checks
+ * {@link #isReady()} only when one of them completes.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public interface DependencyAwareRunnable extends ConditionalRunnable {
+
+   /**
+    * registers the listener in all the dependencies that are not completed yet. The listener must be invoked when
+    * each dependency completes, or immediately if it is already completed. It is safe to invoke it more than once.
+    *
+    * @param listener the listener to notify
+    */
+   void registerDependencyListener(Runnable listener);
+
+}
@@ -0,0 +1,335 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.executors;
+
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A work-stealing thread pool. Each worker has its own deque: the tasks submitted by a worker are pushed to its own
+ * deque and the tasks submitted by other threads are put in a shared submission queue. A worker takes the tasks from
+ * its deque first, then it steals from the other workers and, finally, it takes from the submission queue.
+ * <p/>
+ * The pool grows on demand up to the maximum pool size and the workers above the core pool size are terminated after
+ * being idle for the keep alive time.
+ * <p/>
+ * The number of queued tasks is bounded to {@link #TASKS_PER_WORKER} times the maximum pool size. When the bound is
+ * reached, the task is handed to an overflow executor with, at most, the maximum pool size threads. The task is never
+ * executed by the submitting thread because it can be a listener invoked while holding locks (for example, when a
+ * transaction dependency completes).
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+final class WorkStealingThreadPool {
+
+   private static final Log log = LogFactory.getLog(WorkStealingThreadPool.class);
+   static final int TASKS_PER_WORKER = 256;
+   private final ThreadFactory threadFactory;
+   private final Queue<Runnable> submissionQueue;
+   private final List<Worker> workers;
+   private final Queue<Worker> idleWorkers;
+   private final ThreadLocal<Worker> localWorker;
+   private final ThreadPoolExecutor overflowExecutor;
+   private final AtomicInteger poolSize;
+   private final AtomicInteger activeCount;
+   private final AtomicInteger queuedTasks;
+   private volatile int corePoolSize;
+   private volatile int maximumPoolSize;
+   private volatile long keepAliveTime;
+   private volatile boolean shutdown;
+
+   WorkStealingThreadPool(int corePoolSize, int maximumPoolSize, long keepAliveTime, ThreadFactory threadFactory,
+                          ThreadFactory overflowThreadFactory) {
+      this.threadFactory = threadFactory;
+      this.submissionQueue = new ConcurrentLinkedQueue<Runnable>();
+      this.workers = new CopyOnWriteArrayList<Worker>();
+      this.idleWorkers = new ConcurrentLinkedQueue<Worker>();
+      this.localWorker = new ThreadLocal<Worker>();
+      this.poolSize = new AtomicInteger(0);
+      this.activeCount = new AtomicInteger(0);
+      this.queuedTasks = new AtomicInteger(0);
+      this.corePoolSize = corePoolSize;
+      this.maximumPoolSize = Math.max(1, maximumPoolSize);
+      this.keepAliveTime = keepAliveTime;
+      this.overflowExecutor = new ThreadPoolExecutor(this.maximumPoolSize, this.maximumPoolSize, keepAliveTime,
+                                                     TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                     overflowThreadFactory);
+      this.overflowExecutor.allowCoreThreadTimeOut(keepAliveTime > 0);
+   }
+
+   public final void execute(final Runnable task) {
+      if (shutdown) {
+         throw new RejectedExecutionException("Thread pool is shutdown");
+      }
+      if (!reserveQueueSlot()) {
+         overflowExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  task.run();
+               } catch (Throwable throwable) {
+                  log.warnf(throwable, "Exception caught while executing task %s", task);
+               }
+            }
+         });
+         return;
+      }
+      Worker worker = localWorker.get();
+      if (worker == null || !worker.deque.offerFirst(task)) {
+         submissionQueue.offer(task);
+      }
+      signalWork();
+   }
+
+   public final void shutdown() {
+      shutdown = true;
+      for (Worker worker : workers) {
+         worker.wakeUp();
+      }
+      submissionQueue.clear();
+      queuedTasks.set(0);
+      overflowExecutor.shutdownNow();
+   }
+
+   public final int getCorePoolSize() {
+      return corePoolSize;
+   }
+
+   public final void setCorePoolSize(int corePoolSize) {
+      this.corePoolSize = corePoolSize;
+   }
+
+   public final int getMaximumPoolSize() {
+      return maximumPoolSize;
+   }
+
+   public final void setMaximumPoolSize(int maximumPoolSize) {
+      int newMaximumPoolSize = Math.max(1, maximumPoolSize);
+      if (newMaximumPoolSize > this.maximumPoolSize) {
+         overflowExecutor.setMaximumPoolSize(newMaximumPoolSize);
+         overflowExecutor.setCorePoolSize(newMaximumPoolSize);
+      } else {
+         overflowExecutor.setCorePoolSize(newMaximumPoolSize);
+         overflowExecutor.setMaximumPoolSize(newMaximumPoolSize);
+      }
+      this.maximumPoolSize = newMaximumPoolSize;
+   }
+
+   public final long getKeepAliveTime(TimeUnit unit) {
+      return unit.convert(keepAliveTime, TimeUnit.MILLISECONDS);
+   }
+
+   public final void setKeepAliveTime(long keepAliveTime, TimeUnit unit) {
+      this.keepAliveTime = unit.toMillis(keepAliveTime);
+      if (keepAliveTime > 0) {
+         overflowExecutor.setKeepAliveTime(keepAliveTime, unit);
+      }
+      overflowExecutor.allowCoreThreadTimeOut(keepAliveTime > 0);
+   }
+
+   public final int getPoolSize() {
+      return poolSize.get() + overflowExecutor.getPoolSize();
+   }
+
+   public final int getActiveCount() {
+      return activeCount.get() + overflowExecutor.getActiveCount();
+   }
+
+   /**
+    * @return the approximate number of tasks ready to be executed but waiting for a free thread
+    */
+   public final int getQueuedTaskCount() {
+      return queuedTasks.get() + overflowExecutor.getQueue().size();
+   }
+
+   /**
+    * @return false if the queues are full and the task must be handed to the overflow executor
+    */
+   private boolean reserveQueueSlot() {
+      int queued;
+      do {
+         queued = queuedTasks.get();
+         if (queued >= maximumPoolSize * TASKS_PER_WORKER) {
+            return false;
+         }
+      } while (!queuedTasks.compareAndSet(queued, queued + 1));
+      return true;
+   }
+
+   private Runnable dequeued(Runnable task) {
+      if (task != null) {
+         queuedTasks.decrementAndGet();
+      }
+      return task;
+   }
+
+   private void signalWork() {
+      Worker idle = idleWorkers.poll();
+      if (idle != null) {
+         idle.wakeUp();
+         return;
+      }
+      int size;
+      do {
+         size = poolSize.get();
+         if (size >= maximumPoolSize) {
+            return;
+         }
+      } while (!poolSize.compareAndSet(size, size + 1));
+      Worker worker = new Worker();
+      workers.add(worker);
+      threadFactory.newThread(worker).start();
+   }
+
+   private boolean hasWork() {
+      if (!submissionQueue.isEmpty()) {
+         return true;
+      }
+      for (Worker worker : workers) {
+         if (!worker.deque.isEmpty()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @return true if the worker can terminate, i.e., the pool has more workers than the core pool size
+    */
+   private boolean tryRetire() {
+      int size;
+      do {
+         size = poolSize.get();
+         if (size <= corePoolSize) {
+            return false;
+         }
+      } while (!poolSize.compareAndSet(size, size - 1));
+      return true;
+   }
+
+   private class Worker implements Runnable {
+
+      private final BlockingDeque<Runnable> deque = new LinkedBlockingDeque<Runnable>(TASKS_PER_WORKER);
+      private volatile Thread thread;
+
+      @Override
+      public void run() {
+         thread = Thread.currentThread();
+         localWorker.set(this);
+         boolean retired = false;
+         try {
+            while (!shutdown) {
+               Runnable task = nextTask();
+               if (task != null) {
+                  runTask(task);
+               } else if (!awaitWork()) {
+                  retired = true;
+                  break;
+               }
+            }
+         } finally {
+            localWorker.remove();
+            workers.remove(this);
+            idleWorkers.remove(this);
+            if (!retired) {
+               poolSize.decrementAndGet();
+            }
+            Runnable task;
+            while (!shutdown && (task = deque.pollLast()) != null) {
+               submissionQueue.offer(task);
+            }
+         }
+      }
+
+      private void wakeUp() {
+         Thread current = thread;
+         if (current != null) {
+            LockSupport.unpark(current);
+         }
+      }
+
+      private Runnable nextTask() {
+         Runnable task = deque.pollFirst();
+         if (task != null) {
+            return dequeued(task);
+         }
+         Object[] victims = workers.toArray();
+         int offset = victims.length == 0 ? 0 : (int) (Thread.currentThread().getId() % victims.length);
+         for (int i = 0; i < victims.length; ++i) {
+            Worker victim = (Worker) victims[(offset + i) % victims.length];
+            if (victim != this && (task = victim.deque.pollLast()) != null) {
+               return dequeued(task);
+            }
+         }
+         return dequeued(submissionQueue.poll());
+      }
+
+      private void runTask(Runnable task) {
+         activeCount.incrementAndGet();
+         try {
+            task.run();
+         } catch (Throwable throwable) {
+            log.warnf(throwable, "Exception caught while executing task %s", task);
+         } finally {
+            activeCount.decrementAndGet();
+         }
+      }
+
+      /**
+       * parks the worker until new work is available or the keep alive time expires
+       *
+       * @return false if the worker should terminate
+       */
+      private boolean awaitWork() {
+         idleWorkers.offer(this);
+         //check again. the work can be submitted before this worker is marked as idle
+         if (hasWork() || shutdown) {
+            idleWorkers.remove(this);
+            return true;
+         }
+         long keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveTime);
+         long start = System.nanoTime();
+         LockSupport.parkNanos(this, keepAliveNanos);
+         if (idleWorkers.remove(this)) {
+            //nobody has signaled this worker
+            return System.nanoTime() - start < keepAliveNanos || hasWork() || !tryRetire();
+         }
+         return true;
+      }
+   }
+}
@@ -68,6 +68,7 @@ import org.infinispan.transaction.gmu.manager.TransactionCommitManager;
 import org.infinispan.transaction.totalorder.ParallelTotalOrderManager;
 import org.infinispan.transaction.totalorder.SequentialTotalOrderManager;
 import org.infinispan.transaction.totalorder.TotalOrderManager;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.transaction.xa.recovery.RecoveryAdminOperations;
 import org.infinispan.util.concurrent.IsolationLevel;
 import org.infinispan.executors.ConditionalExecutorService;
@@ -95,7 +96,8 @@ import static org.infinispan.util.Util.getInstance;
                               ClusteringDependentLogic.class, LockContainer.class, TotalOrderManager.class, DataPlacementManager.class,
                               ReconfigurableReplicationManager.class, ProtocolTable.class, CommitContextEntries.class,
                               L1GMUContainer.class, L1Manager.class, CommitLog.class, TransactionCommitManager.class,
-                              GarbageCollectorManager.class, ConditionalExecutorService.class})
+                              GarbageCollectorManager.class, ConditionalExecutorService.class,
+                              TotalOrderPrepareBatcher.class})
 public class EmptyConstructorNamedCacheFactory extends AbstractNamedCacheComponentFactory implements AutoInstantiableFactory {
 
    @Override
@@ -186,10 +188,14 @@ public class EmptyConstructorNamedCacheFactory extends AbstractNamedCacheCompone
                notTransactional ? new ReentrantPerEntryLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantPerEntryLockContainer(configuration.getConcurrencyLevel());
          return (T) lockContainer;
       } else if (componentType.equals(TotalOrderManager.class)) {
-         boolean needsMultiThreadValidation = configuration.getIsolationLevel() == IsolationLevel.REPEATABLE_READ &&
-               configuration.isWriteSkewCheck() && !configuration.isUseSynchronizationForTransactions();
+         //with pipelining, the transactions committed in one phase and the GMU transactions are validated in parallel too
+         boolean needsMultiThreadValidation = configuration.isTotalOrderPipelining() ||
+               (configuration.getIsolationLevel() == IsolationLevel.REPEATABLE_READ &&
+                      configuration.isWriteSkewCheck() && !configuration.isUseSynchronizationForTransactions());
 
          return needsMultiThreadValidation ? (T) new ParallelTotalOrderManager() : (T) new SequentialTotalOrderManager();
+      } else if (componentType.equals(TotalOrderPrepareBatcher.class)) {
+         return (T) new TotalOrderPrepareBatcher();
       } else if (componentType.equals(DataPlacementManager.class)){
          return (T) new DataPlacementManager();
       } else if (componentType.equals(ReconfigurableReplicationManager.class)) {
@@ -32,6 +32,7 @@ import org.infinispan.interceptors.*;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheStoreConfig;
+import org.infinispan.loaders.gmu.VersionedCacheStore;
 import org.infinispan.transaction.LockingMode;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
@@ -133,7 +134,8 @@ public class InterceptorChainFactory extends AbstractNamedCacheComponentFactory
 
       interceptorChain.appendWrapper(InterceptorChain.InterceptorType.WRAPPER);
 
-      if (configuration.isUsingCacheLoaders()) {
+      //the versions are persisted and activated by the GMUDataContainer, in a VersionedCacheStore
+      if (configuration.isUsingCacheLoaders() && !hasVersionedCacheStore()) {
          if (configuration.getCacheLoaderManagerConfig().isPassivation()) {
             if (configuration.getCacheMode().isClustered())
                interceptorChain.appendInterceptor(createInterceptor(new ClusteredActivationInterceptor(), ClusteredActivationInterceptor.class), false);
@@ -225,6 +227,17 @@ public class InterceptorChainFactory extends AbstractNamedCacheComponentFactory
       return false;
    }
 
+   private boolean hasVersionedCacheStore() {
+      List<CacheLoaderConfig> loaderConfigs = configuration.getCacheLoaderManagerConfig().getCacheLoaderConfigs();
+      for (CacheLoaderConfig loaderConfig : loaderConfigs) {
+         if (VersionedCacheStore.class.isAssignableFrom(Util.loadClass(loaderConfig.getCacheLoaderClassName(),
+                                                                         configuration.getClassLoader()))) {
+            return true;
+         }
+      }
+      return false;
+   }
+
    @Override
    public <T> T construct(Class<T> componentType) {
       try {
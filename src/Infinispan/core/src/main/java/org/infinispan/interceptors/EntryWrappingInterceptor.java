@@ -30,11 +30,14 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.EntryFactory;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.interceptors.locking.ClusteringDependentLogic;
+import org.infinispan.statetransfer.StateTransferManager;
+import org.infinispan.statetransfer.UpdatedKeysTracker;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -51,6 +54,7 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
    protected DataContainer dataContainer;
    protected ClusteringDependentLogic cll;
    protected CommitContextEntries commitContextEntries;
+   private StateTransferManager stateTransferManager;
    protected final EntryWrappingVisitor entryWrappingVisitor = new EntryWrappingVisitor();
 
    private static final Log log = LogFactory.getLog(EntryWrappingInterceptor.class);
@@ -69,6 +73,11 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
       this.commitContextEntries = commitContextEntries;
    }
 
+   @Inject
+   public void injectStateTransferManager(StateTransferManager stateTransferManager) {
+      this.stateTransferManager = stateTransferManager;
+   }
+
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       wrapEntriesForPrepare(ctx, command);
@@ -139,7 +148,11 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
       entryFactory.wrapEntryForRemove(ctx, command.getKey());
-      return invokeNextAndApplyChanges(ctx, command);
+      Object result = invokeNextAndApplyChanges(ctx, command);
+      if (!ctx.isInTxScope() && command.isNonExistent()) {
+         trackRemovalOfMissingKey(ctx, command);
+      }
+      return result;
    }
 
    @Override
@@ -161,6 +174,19 @@ public class EntryWrappingInterceptor extends CommandInterceptor {
       return visitRemoveCommand(ctx, command);
    }
 
+   /**
+    * A removal of a key that was not received yet has no entry to commit, but the value still pulled from the old
+    * owners must be discarded (see {@link UpdatedKeysTracker}). The transactional removals are tracked when the
+    * transaction commits.
+    */
+   private void trackRemovalOfMissingKey(InvocationContext ctx, RemoveCommand command) {
+      UpdatedKeysTracker tracker = stateTransferManager == null ? null : stateTransferManager.getUpdatedKeysTracker();
+      if (tracker != null && !command.isConditional() && !(command instanceof EvictCommand)
+            && !ctx.hasFlag(Flag.SKIP_OWNERSHIP_CHECK)) {
+         tracker.commitRemovalOfMissingKey(command.getKey());
+      }
+   }
+
    protected final void wrapEntriesForPrepare(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       if (!ctx.isOriginLocal() || command.isReplayEntryWrapping()) {
          for (WriteCommand c : command.getModifications()) c.acceptVisitor(ctx, entryWrappingVisitor);
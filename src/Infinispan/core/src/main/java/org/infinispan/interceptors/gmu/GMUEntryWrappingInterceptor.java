@@ -46,6 +46,7 @@ import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.EntryWrappingInterceptor;
 import org.infinispan.transaction.gmu.CommitLog;
+import org.infinispan.transaction.gmu.manager.GarbageCollectorManager;
 import org.infinispan.transaction.gmu.manager.TransactionCommitManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -65,11 +66,14 @@ public class GMUEntryWrappingInterceptor extends EntryWrappingInterceptor {
    private static final Log log = LogFactory.getLog(GMUEntryWrappingInterceptor.class);
    protected GMUVersionGenerator versionGenerator;
    private TransactionCommitManager transactionCommitManager;
+   private GarbageCollectorManager garbageCollectorManager;
 
    @Inject
    public void inject(TransactionCommitManager transactionCommitManager, DataContainer dataContainer,
-                      CommitLog commitLog, VersionGenerator versionGenerator) {
+                      CommitLog commitLog, VersionGenerator versionGenerator,
+                      GarbageCollectorManager garbageCollectorManager) {
       this.transactionCommitManager = transactionCommitManager;
+      this.garbageCollectorManager = garbageCollectorManager;
       this.versionGenerator = toGMUVersionGenerator(versionGenerator);
    }
 
@@ -80,8 +84,12 @@ public class GMUEntryWrappingInterceptor extends EntryWrappingInterceptor {
       if (ctx.isOriginLocal()) {
          spc.setVersion(ctx.getTransactionVersion());
          spc.setReadSet(ctx.getReadSet());
+         spc.setMinimumVisible(garbageCollectorManager.getLocalMinimumVisibleVersion(),
+                               garbageCollectorManager.getLocalMinimumVisibleViewId());
       } else {
          ctx.setTransactionVersion(spc.getPrepareVersion());
+         garbageCollectorManager.handleReportMinimumVisible(spc.getOrigin(), spc.getMinimumVisibleVersion(),
+                                                            spc.getMinimumVisibleViewId());
       }
 
       wrapEntriesForPrepare(ctx, command);
@@ -99,6 +107,7 @@ public class GMUEntryWrappingInterceptor extends EntryWrappingInterceptor {
 
       if (command.isOnePhaseCommit()) {
          commitContextEntries.commitContextEntries(ctx);
+         garbageCollectorManager.tryIncrementalGarbageCollection();
       }
 
       return retVal;
@@ -110,8 +119,13 @@ public class GMUEntryWrappingInterceptor extends EntryWrappingInterceptor {
 
       if (ctx.isOriginLocal()) {
          gmuCommitCommand.setCommitVersion(ctx.getTransactionVersion());
+         gmuCommitCommand.setMinimumVisible(garbageCollectorManager.getLocalMinimumVisibleVersion(),
+                                            garbageCollectorManager.getLocalMinimumVisibleViewId());
       } else {
          ctx.setTransactionVersion(gmuCommitCommand.getCommitVersion());
+         garbageCollectorManager.handleReportMinimumVisible(gmuCommitCommand.getOrigin(),
+                                                            gmuCommitCommand.getMinimumVisibleVersion(),
+                                                            gmuCommitCommand.getMinimumVisibleViewId());
       }
 
       transactionCommitManager.commitTransaction(ctx.getCacheTransaction(), gmuCommitCommand.getCommitVersion());
@@ -125,6 +139,7 @@ public class GMUEntryWrappingInterceptor extends EntryWrappingInterceptor {
       } finally {
          transactionCommitManager.awaitUntilCommitted(ctx.getCacheTransaction(), ctx.isOriginLocal() ? null : gmuCommitCommand);
       }
+      garbageCollectorManager.tryIncrementalGarbageCollection();
       return ctx.isOriginLocal() ? retVal : RequestHandler.DO_NOT_REPLY;
    }
 
@@ -24,8 +24,10 @@ package org.infinispan.interceptors.gmu;
 
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -45,6 +47,13 @@ public class TotalOrderGMUDistributionInterceptor extends GMUDistributionInterce
 
    private final Log log = LogFactory.getLog(TotalOrderGMUDistributionInterceptor.class);
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return prepare(ctx, command, this);
@@ -61,7 +70,8 @@ public class TotalOrderGMUDistributionInterceptor extends GMUDistributionInterce
          log.tracef("Total Order Anycast transaction %s with Total Order", command.getGlobalTransaction().prettyPrint());
       }
       Collection<Response> responses = totalOrderBroadcastPrepare(command, recipients, getAffectedKeys(command, null),
-                                                                  rpcManager, false, configuration.isSyncCommitPhase(),
+                                                                  rpcManager, prepareBatcher, false,
+                                                                  configuration.isSyncCommitPhase(),
                                                                   configuration.getSyncReplTimeout());
       joinAndSetTransactionVersion(responses, ctx, versionGenerator);
    }
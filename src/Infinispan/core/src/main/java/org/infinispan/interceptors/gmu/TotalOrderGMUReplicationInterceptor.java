@@ -24,7 +24,9 @@ package org.infinispan.interceptors.gmu;
 
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.remoting.responses.Response;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 
 import java.util.Collection;
 
@@ -39,6 +41,13 @@ import static org.infinispan.transaction.gmu.GMUHelper.joinAndSetTransactionVers
  */
 public class TotalOrderGMUReplicationInterceptor extends GMUReplicationInterceptor implements TotalOrderRpcInterceptor {
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Override
    public final Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return prepare(ctx, command, this);
@@ -52,7 +61,8 @@ public class TotalOrderGMUReplicationInterceptor extends GMUReplicationIntercept
    @Override
    protected void broadcastPrepare(TxInvocationContext context, PrepareCommand command) {
       boolean waitOnlySelfDeliver =!configuration.isSyncCommitPhase();
-      Collection<Response> responses = totalOrderBroadcastPrepare(command, null, null, rpcManager, waitOnlySelfDeliver,
+      Collection<Response> responses = totalOrderBroadcastPrepare(command, null, null, rpcManager, prepareBatcher,
+                                                                  waitOnlySelfDeliver,
                                                                   configuration.isSyncCommitPhase(),
                                                                   configuration.getSyncReplTimeout());
       joinAndSetTransactionVersion(responses, context, versionGenerator);
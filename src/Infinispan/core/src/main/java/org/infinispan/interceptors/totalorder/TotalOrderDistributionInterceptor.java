@@ -24,8 +24,10 @@ package org.infinispan.interceptors.totalorder;
 
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.DistributionInterceptor;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -46,6 +48,13 @@ public class TotalOrderDistributionInterceptor extends DistributionInterceptor i
 
    private static final Log log = LogFactory.getLog(TotalOrderDistributionInterceptor.class);
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return prepare(ctx, command, this);
@@ -61,7 +70,7 @@ public class TotalOrderDistributionInterceptor extends DistributionInterceptor i
       if(log.isTraceEnabled()) {
          log.tracef("Total Order Anycast transaction %s with Total Order", command.getGlobalTransaction().prettyPrint());
       }
-      totalOrderBroadcastPrepare(command, recipients, getAffectedKeys(command, null), rpcManager, false,
+      totalOrderBroadcastPrepare(command, recipients, getAffectedKeys(command, null), rpcManager, prepareBatcher, false,
                                  configuration.isSyncCommitPhase(), configuration.getSyncReplTimeout());
    }
 }
@@ -31,10 +31,10 @@ import org.infinispan.remoting.responses.KeyValidationFilter;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SelfDeliverFilter;
 import org.infinispan.remoting.rpc.ResponseFilter;
-import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.StateTransferException;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -82,7 +82,9 @@ public class TotalOrderHelper {
    public static Collection<Response> totalOrderBroadcastPrepare(PrepareCommand prepareCommand,
                                                                  Collection<Address> target,
                                                                  Collection<Object> keysToValidate,
-                                                                 RpcManager rpcManager, boolean waitOnlySelfDeliver,
+                                                                 RpcManager rpcManager,
+                                                                 TotalOrderPrepareBatcher prepareBatcher,
+                                                                 boolean waitOnlySelfDeliver,
                                                                  boolean syncCommitPhase, long timeout) {
       ResponseFilter filter;
       if (waitOnlySelfDeliver) {
@@ -97,8 +99,7 @@ public class TotalOrderHelper {
          log.tracef("Filter used by transaction %s is %s", prepareCommand.getGlobalTransaction().prettyPrint(), filter);
       }
 
-      Map<Address, Response> responses = rpcManager.invokeRemotely(target, prepareCommand, ResponseMode.SYNCHRONOUS,
-                                                                   timeout, true, filter, true);
+      Map<Address, Response> responses = prepareBatcher.invokeRemotely(target, prepareCommand, filter, timeout);
       for (Response  response : responses.values()) {
          if (response instanceof ExceptionResponse) {
             Exception e = ((ExceptionResponse) response).getException();
@@ -24,7 +24,9 @@ package org.infinispan.interceptors.totalorder;
 
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.ReplicationInterceptor;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 
 import static org.infinispan.interceptors.totalorder.TotalOrderHelper.*;
 
@@ -34,6 +36,13 @@ import static org.infinispan.interceptors.totalorder.TotalOrderHelper.*;
  */
 public class TotalOrderReplicationInterceptor extends ReplicationInterceptor implements TotalOrderRpcInterceptor {
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Override
    public final Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return prepare(ctx, command, this);
@@ -47,7 +56,7 @@ public class TotalOrderReplicationInterceptor extends ReplicationInterceptor imp
    @Override
    protected void broadcastPrepare(TxInvocationContext context, PrepareCommand command) {
       boolean waitOnlySelfDeliver =!configuration.isSyncCommitPhase();
-      totalOrderBroadcastPrepare(command, null, null, rpcManager, waitOnlySelfDeliver,
+      totalOrderBroadcastPrepare(command, null, null, rpcManager, prepareBatcher, waitOnlySelfDeliver,
                                  configuration.isSyncCommitPhase(), configuration.getSyncReplTimeout());
    }
 }
@@ -29,6 +29,7 @@ import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.VersionedDistributionInterceptor;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.totalorder.TotalOrderManager;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -54,6 +55,13 @@ public class TotalOrderVersionedDistributionInterceptor extends VersionedDistrib
 
    private TotalOrderManager totalOrderManager;
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Inject
    public void injectDependencies(TotalOrderManager totalOrderManager) {
       this.totalOrderManager = totalOrderManager;
@@ -81,7 +89,7 @@ public class TotalOrderVersionedDistributionInterceptor extends VersionedDistrib
       }
 
       setVersionsSeenOnPrepareCommand((VersionedPrepareCommand) command, ctx);
-      totalOrderBroadcastPrepare(command, recipients, getAffectedKeys(command, null), rpcManager, false,
+      totalOrderBroadcastPrepare(command, recipients, getAffectedKeys(command, null), rpcManager, prepareBatcher, false,
                                  configuration.isSyncCommitPhase(), configuration.getSyncReplTimeout());
    }
 }
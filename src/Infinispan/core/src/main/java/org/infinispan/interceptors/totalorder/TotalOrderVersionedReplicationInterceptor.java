@@ -25,7 +25,9 @@ package org.infinispan.interceptors.totalorder;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.tx.VersionedPrepareCommand;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.VersionedReplicationInterceptor;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -45,6 +47,13 @@ public class TotalOrderVersionedReplicationInterceptor extends VersionedReplicat
 
    private static final Log log = LogFactory.getLog(TotalOrderVersionedReplicationInterceptor.class);
 
+   private TotalOrderPrepareBatcher prepareBatcher;
+
+   @Inject
+   public void injectPrepareBatcher(TotalOrderPrepareBatcher prepareBatcher) {
+      this.prepareBatcher = prepareBatcher;
+   }
+
    @Override
    public final Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return prepare(ctx, command, this);
@@ -67,7 +76,7 @@ public class TotalOrderVersionedReplicationInterceptor extends VersionedReplicat
 
       setVersionsSeenOnPrepareCommand((VersionedPrepareCommand) command, ctx);
       boolean waitOnlySelfDeliver =!configuration.isSyncCommitPhase();
-      totalOrderBroadcastPrepare(command, null, null, rpcManager, waitOnlySelfDeliver,
+      totalOrderBroadcastPrepare(command, null, null, rpcManager, prepareBatcher, waitOnlySelfDeliver,
                                  configuration.isSyncCommitPhase(), configuration.getSyncReplTimeout());
    }
 }
@@ -39,6 +39,7 @@ import org.infinispan.loaders.decorators.ChainingCacheStore;
 import org.infinispan.loaders.decorators.ReadOnlyStore;
 import org.infinispan.loaders.decorators.SingletonStore;
 import org.infinispan.loaders.decorators.SingletonStoreConfig;
+import org.infinispan.loaders.gmu.VersionedCacheStore;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.ReflectionUtil;
 import org.infinispan.util.Util;
@@ -154,7 +155,12 @@ public class CacheLoaderManagerImpl implements CacheLoaderManager {
    @Start(priority = 56)
    public void preload() {
       if (loader != null) {
-         if (clmConfig.isPreload()) {
+         if (loader instanceof VersionedCacheStore) {
+            //the version chains are activated by the GMUDataContainer when the key is first accessed
+            if (clmConfig.isPreload()) {
+               log.debugf("Preload is ignored by the multi-version cache store %s", loader);
+            }
+         } else if (clmConfig.isPreload()) {
             long start = 0;
             boolean debugTiming = log.isDebugEnabled();
             if (debugTiming) {
@@ -0,0 +1,76 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.gmu;
+
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+
+import java.util.List;
+
+/**
+ * A {@link CacheStore} that keeps the multiple versions of each key, as needed by GMU.
+ * <p/>
+ * The {@link org.infinispan.container.gmu.GMUDataContainer} writes each new version of a key (or the whole version
+ * chain, when it is passivated) and reloads the chain when a key that is not in memory is read. The old versions are
+ * removed by the {@link org.infinispan.transaction.gmu.manager.GarbageCollectorManager}, with the same minimum visible
+ * version used for the data container, and the most recent version is used to rebuild the commit log after a restart.
+ * <p/>
+ * The methods inherited from {@link CacheStore} only see the most recent version of each key.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public interface VersionedCacheStore extends CacheStore {
+
+   /**
+    * Adds a version of the key. A version already stored (same version and sub version) is ignored.
+    *
+    * @param key   the key
+    * @param value the new version
+    * @throws CacheLoaderException in the event of problems writing to the store
+    */
+   void storeVersion(Object key, VersionedValue value) throws CacheLoaderException;
+
+   /**
+    * @param key the key
+    * @return the versions of the key, from the most recent to the oldest, or an empty list if the key is not stored
+    * @throws CacheLoaderException in the event of problems reading from the store
+    */
+   List<VersionedValue> loadVersions(Object key) throws CacheLoaderException;
+
+   /**
+    * Removes the versions that are not visible by any transaction. For each key, the most recent version equals or
+    * older than the minimum version is kept (unless it removes the key) and all the older versions are removed.
+    *
+    * @param minimumVersion the minimum visible version of this node
+    * @return the number of versions removed
+    * @throws CacheLoaderException in the event of problems writing to the store
+    */
+   int gc(long minimumVersion) throws CacheLoaderException;
+
+   /**
+    * @return the most recent version stored, or {@link org.infinispan.container.versioning.gmu.GMUVersion#NON_EXISTING}
+    *         if the store is empty
+    */
+   long getMostRecentVersion();
+}
@@ -0,0 +1,825 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.gmu;
+
+import org.infinispan.Cache;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.gmu.GMUCacheEntryVersion;
+import org.infinispan.loaders.AbstractCacheStore;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.logfile.RecordFile;
+import org.infinispan.loaders.logfile.RecordReader;
+import org.infinispan.loaders.logfile.Records;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.concurrent.ConcurrentMapFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.infinispan.container.versioning.gmu.GMUVersion.NON_EXISTING;
+import static org.infinispan.loaders.logfile.Records.EMPTY;
+import static org.infinispan.loaders.logfile.Records.HEADER_SIZE;
+
+/**
+ * A log-structured {@link VersionedCacheStore}.
+ * <p/>
+ * Every version is appended as a record to a single log file, in the configured location, and an in-memory index maps
+ * each key to the position of its versions, from the most recent to the oldest, so that loading a version chain only
+ * reads the records of that key. The garbage collection only changes the index: like the incremental rounds of the
+ * data container, it visits only the keys with old versions, and the records it drops are accounted as dead bytes.
+ * When the dead bytes take more than the compaction threshold of the log, a background thread writes the live records
+ * to a new file, which then replaces the log.
+ * <p/>
+ * The log is written with the record I/O of {@link org.infinispan.loaders.logfile.LogFileCacheStore}: each record is
+ * framed by {@link Records} and its payload has the following layout:
+ * <pre>
+ * [byte type][long version][int sub version][long lifespan][long max idle][int key length][key][value]
+ * </pre>
+ * The index is rebuilt on start by scanning the log and a torn or corrupted tail, left by a crash, is truncated. Since
+ * the garbage collection does not write to the log, the versions removed after the last compaction are found again by
+ * the scan and removed by the next garbage collection round.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ * @see VersionedLogCacheStoreConfig
+ */
+@CacheLoaderMetadata(configurationClass = VersionedLogCacheStoreConfig.class)
+public class VersionedLogCacheStore extends AbstractCacheStore implements VersionedCacheStore {
+
+   private static final Log log = LogFactory.getLog(VersionedLogCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final String LOG_FILE_NAME = "versions.log";
+   private static final String COMPACTED_FILE_NAME = "versions.compacted";
+   private static final int PAYLOAD_PREFIX_SIZE = 33;
+   private static final byte VERSION = 1;
+   private static final byte REMOVED_VERSION = 2;
+   private static final byte PURGE = 3;
+
+   private final ConcurrentMap<Object, VersionPointer[]> index = ConcurrentMapFactory.makeConcurrentMap();
+   /**
+    * keys with more than one version, or whose only version is a removal
+    */
+   private final Set<Object> collectableKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+   private final ReentrantLock writeLock = new ReentrantLock();
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+   private final InternalEntryFactory entryFactory = new InternalEntryFactoryImpl();
+
+   private VersionedLogCacheStoreConfig config;
+   private File root;
+   private volatile RecordFile logFile;
+   private long deadBytes; //guarded by writeLock
+   private volatile long mostRecentVersion = NON_EXISTING;
+   private ExecutorService compactionService;
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (VersionedLogCacheStoreConfig) config;
+   }
+
+   @Override
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return VersionedLogCacheStoreConfig.class;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0) {
+         location = "Infinispan-VersionedLogCacheStore";
+      }
+      root = new File(location, cache.getName());
+      if (!root.exists() && !root.mkdirs()) {
+         throw new CacheLoaderException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+      if (!root.isDirectory()) {
+         throw new CacheLoaderException("Location " + root.getAbsolutePath() + " is not a directory!");
+      }
+      //left by a compaction that did not finish. the log is still complete
+      File compacted = new File(root, COMPACTED_FILE_NAME);
+      if (compacted.exists() && !compacted.delete()) {
+         log.problemsRemovingFile(compacted);
+      }
+      compactionService = Executors.newSingleThreadExecutor(
+            Records.threadFactory(cache.getName(), VersionedLogCacheStore.class, "compactor"));
+      replay();
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      if (compactionService != null) {
+         compactionService.shutdown();
+         try {
+            if (!compactionService.awaitTermination(30, TimeUnit.SECONDS)) {
+               compactionService.shutdownNow();
+            }
+         } catch (InterruptedException e) {
+            compactionService.shutdownNow();
+            Thread.currentThread().interrupt();
+         }
+      }
+      writeLock.lock();
+      try {
+         if (logFile != null) {
+            logFile.close();
+            logFile = null;
+         }
+         index.clear();
+         collectableKeys.clear();
+      } finally {
+         writeLock.unlock();
+      }
+      super.stop();
+   }
+
+   @Override
+   public void storeVersion(Object key, VersionedValue value) throws CacheLoaderException {
+      ByteBuffer record = encode(value.isRemoved() ? REMOVED_VERSION : VERSION, value.getVersion(), value.getSubVersion(),
+                                 value.getLifespan(), value.getMaxIdle(), marshall(key),
+                                 value.isRemoved() ? EMPTY : marshall(value.getValue()));
+      writeLock.lock();
+      try {
+         if (indexOf(index.get(key), value.getVersion(), value.getSubVersion()) >= 0) {
+            //already stored, e.g. a version chain passivated more than once
+            return;
+         }
+         long offset = logFile().append(record);
+         addPointer(key, new VersionPointer(logFile, offset, record.limit(), value.getVersion(), value.getSubVersion(),
+                                            value.isRemoved()));
+         syncWrite();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append the version " + value.getVersion() + " of " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   @Override
+   public List<VersionedValue> loadVersions(Object key) throws CacheLoaderException {
+      while (true) {
+         VersionPointer[] pointers = index.get(key);
+         if (pointers == null) {
+            return Collections.emptyList();
+         }
+         List<VersionedValue> versions = new ArrayList<VersionedValue>(pointers.length);
+         for (VersionPointer pointer : pointers) {
+            VersionedValue version = read(pointer);
+            if (version == null) {
+               //the log was compacted in the meantime. the index already points to the new file
+               versions = null;
+               break;
+            }
+            versions.add(version);
+         }
+         if (versions != null) {
+            return versions;
+         }
+      }
+   }
+
+   @Override
+   public int gc(long minimumVersion) throws CacheLoaderException {
+      int removed = 0;
+      List<Object> notCollected = new LinkedList<Object>();
+      for (Iterator<Object> iterator = collectableKeys.iterator(); iterator.hasNext(); ) {
+         Object key = iterator.next();
+         iterator.remove();
+         writeLock.lock();
+         try {
+            VersionPointer[] pointers = index.get(key);
+            if (pointers == null) {
+               continue;
+            }
+            int keep = 0;
+            while (keep < pointers.length && pointers[keep].version > minimumVersion) {
+               keep++;
+            }
+            if (keep == pointers.length) {
+               //all the versions are still visible
+               notCollected.add(key);
+               continue;
+            }
+            //the key is removed in every visible snapshot if its most recent version is an old removal
+            int remaining = keep == 0 && pointers[0].removed ? 0 : keep + 1;
+            for (int i = remaining; i < pointers.length; ++i) {
+               deadBytes += pointers[i].length;
+               removed++;
+            }
+            if (remaining == 0) {
+               index.remove(key);
+            } else if (remaining < pointers.length) {
+               index.put(key, Arrays.copyOf(pointers, remaining));
+            }
+            if (remaining > 1 || (remaining == 1 && pointers[0].removed)) {
+               notCollected.add(key);
+            }
+         } finally {
+            writeLock.unlock();
+         }
+      }
+      collectableKeys.addAll(notCollected);
+      if (trace) {
+         log.tracef("gc(%s) ==> %s versions removed", minimumVersion, removed);
+      }
+      scheduleCompactionIfNeeded();
+      return removed;
+   }
+
+   @Override
+   public long getMostRecentVersion() {
+      return mostRecentVersion;
+   }
+
+   /**
+    * Stores the entry as a new version of its key. The entry must have a {@link GMUCacheEntryVersion}.
+    */
+   @Override
+   public void store(InternalCacheEntry entry) throws CacheLoaderException {
+      EntryVersion entryVersion = entry.getVersion();
+      if (!(entryVersion instanceof GMUCacheEntryVersion)) {
+         throw new CacheLoaderException("Expected a GMU cache entry version but the entry " + entry + " has " +
+                                              entryVersion);
+      }
+      GMUCacheEntryVersion version = (GMUCacheEntryVersion) entryVersion;
+      storeVersion(entry.getKey(), entry.isRemoved() ?
+            VersionedValue.removed(version.getThisNodeVersionValue(), version.getSubVersion()) :
+            new VersionedValue(entry.getValue(), version.getThisNodeVersionValue(), version.getSubVersion(), false,
+                               entry.getLifespan(), entry.getMaxIdle()));
+   }
+
+   /**
+    * Removes all the versions of the key.
+    */
+   @Override
+   public boolean remove(Object key) throws CacheLoaderException {
+      if (!index.containsKey(key)) {
+         return false;
+      }
+      ByteBuffer purge = encode(PURGE, NON_EXISTING, 0, -1, -1, marshall(key), EMPTY);
+      writeLock.lock();
+      try {
+         VersionPointer[] pointers = index.remove(key);
+         if (pointers == null) {
+            return false;
+         }
+         for (VersionPointer pointer : pointers) {
+            deadBytes += pointer.length;
+         }
+         logFile().append(purge);
+         deadBytes += purge.limit();
+         syncWrite();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append the removal of " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+      scheduleCompactionIfNeeded();
+      return true;
+   }
+
+   /**
+    * @return the most recent version of the key, without the GMU version, or <tt>null</tt> if it is removed
+    */
+   @Override
+   public InternalCacheEntry load(Object key) throws CacheLoaderException {
+      VersionedValue mostRecent = loadMostRecent(key);
+      if (mostRecent == null || mostRecent.isRemoved()) {
+         return null;
+      }
+      return entryFactory.create(key, mostRecent.getValue(), null, mostRecent.getLifespan(), mostRecent.getMaxIdle());
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      VersionPointer[] pointers = index.get(key);
+      return pointers != null && !pointers[0].removed;
+   }
+
+   @Override
+   public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
+      return load(Integer.MAX_VALUE);
+   }
+
+   @Override
+   public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      if (numEntries < 0) {
+         return loadAll();
+      }
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Object key : index.keySet()) {
+         if (result.size() >= numEntries) {
+            break;
+         }
+         InternalCacheEntry entry = load(key);
+         if (entry != null) {
+            result.add(entry);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
+      Set<Object> result = new HashSet<Object>();
+      for (Map.Entry<Object, VersionPointer[]> entry : index.entrySet()) {
+         if (!entry.getValue()[0].removed && (keysToExclude == null || !keysToExclude.contains(entry.getKey()))) {
+            result.add(entry.getKey());
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public void clear() throws CacheLoaderException {
+      writeLock.lock();
+      try {
+         logFile.delete();
+         logFile = new RecordFile(new File(root, LOG_FILE_NAME));
+         logFile.truncate(0);
+         index.clear();
+         collectableKeys.clear();
+         deadBytes = 0;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to clear the log file in " + root, e);
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   /**
+    * Writes all the versions of each key, followed by <tt>null</tt>. Note that the versions are only meaningful in the
+    * node that committed them.
+    */
+   @Override
+   public void toStream(ObjectOutput outputStream) throws CacheLoaderException {
+      try {
+         StreamingMarshaller marshaller = getMarshaller();
+         int count = 0;
+         for (Object key : index.keySet()) {
+            List<VersionedValue> versions = loadVersions(key);
+            if (versions.isEmpty()) {
+               continue;
+            }
+            marshaller.objectToObjectStream(key, outputStream);
+            outputStream.writeInt(versions.size());
+            for (VersionedValue version : versions) {
+               marshaller.objectToObjectStream(version.getValue(), outputStream);
+               outputStream.writeLong(version.getVersion());
+               outputStream.writeInt(version.getSubVersion());
+               outputStream.writeBoolean(version.isRemoved());
+               outputStream.writeLong(version.getLifespan());
+               outputStream.writeLong(version.getMaxIdle());
+            }
+            count++;
+         }
+         marshaller.objectToObjectStream(null, outputStream);
+         if (trace) {
+            log.tracef("Wrote the versions of %s keys to the stream", count);
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   /**
+    * Stores the versions read from the stream, until <tt>null</tt> is found.
+    */
+   @Override
+   public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
+      try {
+         StreamingMarshaller marshaller = getMarshaller();
+         while (true) {
+            Object key = marshaller.objectFromObjectStream(inputStream);
+            if (key == null) {
+               break;
+            }
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; ++i) {
+               Object value = marshaller.objectFromObjectStream(inputStream);
+               long version = inputStream.readLong();
+               int subVersion = inputStream.readInt();
+               boolean removed = inputStream.readBoolean();
+               long lifespan = inputStream.readLong();
+               long maxIdle = inputStream.readLong();
+               storeVersion(key, new VersionedValue(value, version, subVersion, removed, lifespan, maxIdle));
+            }
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException e) {
+         if (trace) {
+            log.trace("Interrupted while reading from stream");
+         }
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * The old versions are removed by {@link #gc(long)} and the expiration of the GMU entries is handled by the data
+    * container, so it only compacts the log if needed.
+    */
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      scheduleCompactionIfNeeded();
+   }
+
+   /**
+    * @return the directory of the log file.
+    */
+   public File getRoot() {
+      return root;
+   }
+
+   /**
+    * @return the size of the log file, in bytes.
+    */
+   public long getLogSize() {
+      RecordFile current = logFile;
+      return current == null ? 0 : current.size();
+   }
+
+   /**
+    * Writes the live records to a new log file, in the calling thread.
+    */
+   public synchronized void compact() throws CacheLoaderException {
+      RecordFile source;
+      long end;
+      Map<Object, VersionPointer[]> live;
+      writeLock.lock();
+      try {
+         source = logFile;
+         if (source == null) {
+            return;
+         }
+         end = source.size();
+         live = new HashMap<Object, VersionPointer[]>(index);
+      } finally {
+         writeLock.unlock();
+      }
+      if (trace) {
+         log.tracef("Compacting %s with %s bytes", source, end);
+      }
+      RecordFile target = null;
+      boolean installed = false;
+      try {
+         target = new RecordFile(new File(root, COMPACTED_FILE_NAME));
+         target.truncate(0);
+         Map<Object, VersionPointer[]> moved = new HashMap<Object, VersionPointer[]>(live.size() * 4 / 3 + 1);
+         for (Map.Entry<Object, VersionPointer[]> entry : live.entrySet()) {
+            VersionPointer[] pointers = entry.getValue();
+            VersionPointer[] relocated = new VersionPointer[pointers.length];
+            for (int i = 0; i < pointers.length; ++i) {
+               ByteBuffer record = ByteBuffer.allocate(pointers[i].length);
+               if (!source.read(record, pointers[i].offset)) {
+                  //cleared in the meantime
+                  return;
+               }
+               record.flip();
+               relocated[i] = pointers[i].moveTo(target, target.append(record));
+            }
+            moved.put(entry.getKey(), relocated);
+         }
+         writeLock.lock();
+         try {
+            if (logFile != source) {
+               //cleared or stopped in the meantime
+               return;
+            }
+            //the records appended during the compaction are copied as they are
+            long shift = target.size() - end;
+            source.copyTo(target, end, source.size());
+            long liveBytes = 0;
+            for (Map.Entry<Object, VersionPointer[]> entry : index.entrySet()) {
+               VersionPointer[] pointers = entry.getValue();
+               VersionPointer[] before = moved.get(entry.getKey());
+               VersionPointer[] updated = new VersionPointer[pointers.length];
+               for (int i = 0; i < pointers.length; ++i) {
+                  VersionPointer pointer = pointers[i];
+                  updated[i] = pointer.offset >= end ? pointer.moveTo(target, pointer.offset + shift) :
+                        find(before, pointer);
+                  liveBytes += pointer.length;
+               }
+               index.put(entry.getKey(), updated);
+            }
+            target.force();
+            target.renameTo(new File(root, LOG_FILE_NAME));
+            logFile = target;
+            deadBytes = target.size() - liveBytes;
+            installed = true;
+            source.retire();
+         } finally {
+            writeLock.unlock();
+         }
+         if (log.isDebugEnabled()) {
+            log.debugf("Compacted %s from %s to %s bytes", target, end, target.size());
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to compact " + source, e);
+      } finally {
+         if (!installed && target != null) {
+            target.delete();
+         }
+      }
+   }
+
+   private void scheduleCompactionIfNeeded() {
+      writeLock.lock();
+      try {
+         RecordFile current = logFile;
+         if (current == null || current.size() == 0 || deadBytes < current.size() * config.getCompactionThreshold()) {
+            return;
+         }
+      } finally {
+         writeLock.unlock();
+      }
+      if (compactionService == null || compactionService.isShutdown() || !compactionScheduled.compareAndSet(false, true)) {
+         return;
+      }
+      compactionService.execute(new Runnable() {
+         @Override
+         public void run() {
+            compactionScheduled.set(false);
+            try {
+               compact();
+            } catch (CacheLoaderException e) {
+               log.warnf(e, "Unable to compact the log file in %s", root);
+            }
+         }
+      });
+   }
+
+   /**
+    * @return the pointer relocated by the compaction with the same version of the given pointer.
+    */
+   private static VersionPointer find(VersionPointer[] relocated, VersionPointer pointer) throws IOException {
+      int index = indexOf(relocated, pointer.version, pointer.subVersion);
+      if (index < 0) {
+         throw new IOException("Version " + pointer.version + " was not relocated by the compaction");
+      }
+      return relocated[index];
+   }
+
+   private static int indexOf(VersionPointer[] pointers, long version, int subVersion) {
+      if (pointers == null) {
+         return -1;
+      }
+      for (int i = 0; i < pointers.length; ++i) {
+         if (pointers[i].version == version && pointers[i].subVersion == subVersion) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Adds the pointer to the versions of the key, keeping them ordered from the most recent to the oldest. Must be
+    * invoked while holding the write lock.
+    */
+   private void addPointer(Object key, VersionPointer pointer) {
+      VersionPointer[] pointers = index.get(key);
+      if (pointers == null) {
+         index.put(key, new VersionPointer[]{pointer});
+         if (pointer.removed) {
+            collectableKeys.add(key);
+         }
+      } else {
+         int position = 0;
+         while (position < pointers.length && pointers[position].isNewerThan(pointer)) {
+            position++;
+         }
+         if (position < pointers.length && pointers[position].version == pointer.version &&
+               pointers[position].subVersion == pointer.subVersion) {
+            //the same version written again, found by the replay
+            deadBytes += pointers[position].length;
+            pointers = pointers.clone();
+            pointers[position] = pointer;
+            index.put(key, pointers);
+            return;
+         }
+         VersionPointer[] updated = new VersionPointer[pointers.length + 1];
+         System.arraycopy(pointers, 0, updated, 0, position);
+         updated[position] = pointer;
+         System.arraycopy(pointers, position, updated, position + 1, pointers.length - position);
+         index.put(key, updated);
+         collectableKeys.add(key);
+      }
+      if (pointer.version > mostRecentVersion) {
+         mostRecentVersion = pointer.version;
+      }
+   }
+
+   private byte[] marshall(Object object) throws CacheLoaderException {
+      return Records.marshall(getMarshaller(), object);
+   }
+
+   private Object unmarshall(byte[] bytes, int offset, int length) throws CacheLoaderException {
+      return Records.unmarshall(getMarshaller(), bytes, offset, length);
+   }
+
+   private static ByteBuffer encode(byte type, long version, int subVersion, long lifespan, long maxIdle, byte[] key,
+                                    byte[] value) {
+      ByteBuffer record = Records.allocate(PAYLOAD_PREFIX_SIZE + key.length + value.length);
+      record.put(type).putLong(version).putInt(subVersion).putLong(lifespan).putLong(maxIdle).putInt(key.length)
+            .put(key).put(value);
+      return Records.seal(record);
+   }
+
+   /**
+    * @return the current log file. Must be invoked while holding the write lock.
+    */
+   private RecordFile logFile() throws IOException {
+      RecordFile current = logFile;
+      if (current == null) {
+         throw new IOException("The cache store is not started");
+      }
+      return current;
+   }
+
+   private void syncWrite() throws IOException {
+      if (config.isSyncWrites()) {
+         logFile.force();
+      }
+   }
+
+   private VersionedValue loadMostRecent(Object key) throws CacheLoaderException {
+      while (true) {
+         VersionPointer[] pointers = index.get(key);
+         if (pointers == null) {
+            return null;
+         }
+         VersionedValue version = read(pointers[0]);
+         if (version != null) {
+            return version;
+         }
+         //the log was compacted in the meantime. the index already points to the new file
+      }
+   }
+
+   /**
+    * @return the version of the record, or <tt>null</tt> if its file was replaced by a compaction.
+    */
+   private VersionedValue read(VersionPointer pointer) throws CacheLoaderException {
+      ByteBuffer record = ByteBuffer.allocate(pointer.length);
+      if (!pointer.file.read(record, pointer.offset)) {
+         return null;
+      }
+      byte[] bytes = record.array();
+      if (!Records.isIntact(bytes, 0, pointer.length)) {
+         throw new CacheLoaderException("Corrupted record at offset " + pointer.offset + " of " + pointer.file);
+      }
+      int valueOffset = HEADER_SIZE + PAYLOAD_PREFIX_SIZE + record.getInt(HEADER_SIZE + 29);
+      Object value = pointer.removed ? null : unmarshall(bytes, valueOffset, bytes.length - valueOffset);
+      return new VersionedValue(value, pointer.version, pointer.subVersion, pointer.removed,
+                                record.getLong(HEADER_SIZE + 13), record.getLong(HEADER_SIZE + 21));
+   }
+
+   /**
+    * Rebuilds the index from the log file.
+    */
+   private void replay() throws CacheLoaderException {
+      File file = new File(root, LOG_FILE_NAME);
+      writeLock.lock();
+      try {
+         RecordFile current = new RecordFile(file);
+         logFile = current;
+         VersionReader reader = new VersionReader(file);
+         try {
+            while (reader.next()) {
+               Object key = unmarshall(reader.getRecord(), HEADER_SIZE + PAYLOAD_PREFIX_SIZE, reader.keyLength);
+               if (reader.type == PURGE) {
+                  index.remove(key);
+               } else {
+                  addPointer(key, new VersionPointer(current, reader.getOffset(), reader.getRecord().length,
+                                                     reader.version, reader.subVersion, reader.type == REMOVED_VERSION));
+               }
+            }
+         } finally {
+            reader.close();
+         }
+         current.setSize(reader.getValidLength());
+         if (reader.isCorrupted()) {
+            log.warnf("Log file %s has a torn or corrupted record at offset %s. Truncating it", file,
+                      reader.getValidLength());
+            current.truncate(reader.getValidLength());
+         }
+         long liveBytes = 0;
+         for (VersionPointer[] pointers : index.values()) {
+            for (VersionPointer pointer : pointers) {
+               liveBytes += pointer.length;
+            }
+         }
+         deadBytes = current.size() - liveBytes;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to read the log file " + file, e);
+      } finally {
+         writeLock.unlock();
+      }
+      if (log.isDebugEnabled()) {
+         log.debugf("Loaded %s keys from %s. The most recent version is %s", index.size(), file, mostRecentVersion);
+      }
+   }
+
+   /**
+    * The position of a version in the log.
+    */
+   private static final class VersionPointer {
+      private final RecordFile file;
+      private final long offset;
+      private final int length;
+      private final long version;
+      private final int subVersion;
+      private final boolean removed;
+
+      private VersionPointer(RecordFile file, long offset, int length, long version, int subVersion, boolean removed) {
+         this.file = file;
+         this.offset = offset;
+         this.length = length;
+         this.version = version;
+         this.subVersion = subVersion;
+         this.removed = removed;
+      }
+
+      private boolean isNewerThan(VersionPointer other) {
+         return version > other.version || (version == other.version && subVersion > other.subVersion);
+      }
+
+      private VersionPointer moveTo(RecordFile file, long offset) {
+         return new VersionPointer(file, offset, length, version, subVersion, removed);
+      }
+   }
+
+   /**
+    * Reads the records of the log, parsing the type, the version and the key length of each one.
+    */
+   private static final class VersionReader extends RecordReader {
+      private byte type;
+      private long version;
+      private int subVersion;
+      private int keyLength;
+
+      private VersionReader(File file) throws IOException {
+         super(file, PAYLOAD_PREFIX_SIZE);
+      }
+
+      @Override
+      protected boolean accept(ByteBuffer record) {
+         type = record.get(HEADER_SIZE);
+         version = record.getLong(HEADER_SIZE + 1);
+         subVersion = record.getInt(HEADER_SIZE + 9);
+         keyLength = record.getInt(HEADER_SIZE + 29);
+         return keyLength >= 0 && keyLength <= record.limit() - HEADER_SIZE - PAYLOAD_PREFIX_SIZE &&
+               (type == VERSION || type == REMOVED_VERSION || type == PURGE);
+      }
+   }
+}
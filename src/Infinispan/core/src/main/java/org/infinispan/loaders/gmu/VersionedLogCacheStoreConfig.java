@@ -0,0 +1,122 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.gmu;
+
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+
+/**
+ * Configures {@link VersionedLogCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store writes its log file.  This defaults to
+ * <tt>Infinispan-VersionedLogCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>compactionThreshold</tt> - the fraction of the log file taken by garbage collected and removed versions
+ * after which the log is compacted, i.e. its live versions are written to a new file that replaces it.  By default,
+ * this is set to <tt>0.5</tt>.</li>
+ *       <li><tt>syncWrites</tt> - if true, a write returns only after its record is synchronized with the underlying
+ * file system.  By default, this is set to <tt>false</tt>.</li>
+ *    </ul>
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class VersionedLogCacheStoreConfig extends AbstractCacheStoreConfig {
+
+   private static final long serialVersionUID = 4511432659346582386L;
+
+   private String location = "Infinispan-VersionedLogCacheStore";
+   private double compactionThreshold = 0.5;
+   private boolean syncWrites = false;
+
+   public VersionedLogCacheStoreConfig() {
+      setCacheLoaderClassName(VersionedLogCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public VersionedLogCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public VersionedLogCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public boolean isSyncWrites() {
+      return syncWrites;
+   }
+
+   public void setSyncWrites(boolean syncWrites) {
+      testImmutability("syncWrites");
+      this.syncWrites = syncWrites;
+   }
+
+   public VersionedLogCacheStoreConfig syncWrites(boolean syncWrites) {
+      setSyncWrites(syncWrites);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public VersionedLogCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public VersionedLogCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public VersionedLogCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public VersionedLogCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
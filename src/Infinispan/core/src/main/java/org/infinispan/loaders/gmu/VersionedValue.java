@@ -0,0 +1,101 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.gmu;
+
+/**
+ * A version of a key, as persisted by a {@link VersionedCacheStore}.
+ * <p/>
+ * The GMU versions cannot be persisted as they are, because they refer to cache views that do not survive a restart.
+ * Only the position of the version in the commit log of this node ({@link #getVersion()}) and the order of the
+ * transaction in its commit batch ({@link #getSubVersion()}) are kept: they are the only parts of a {@link
+ * org.infinispan.container.versioning.gmu.GMUCacheEntryVersion} used to order the versions of a key.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public final class VersionedValue {
+
+   private final Object value;
+   private final long version;
+   private final int subVersion;
+   private final boolean removed;
+   private final long lifespan;
+   private final long maxIdle;
+
+   public VersionedValue(Object value, long version, int subVersion, boolean removed, long lifespan, long maxIdle) {
+      this.value = value;
+      this.version = version;
+      this.subVersion = subVersion;
+      this.removed = removed;
+      this.lifespan = lifespan;
+      this.maxIdle = maxIdle;
+   }
+
+   /**
+    * @return a version that removes the key
+    */
+   public static VersionedValue removed(long version, int subVersion) {
+      return new VersionedValue(null, version, subVersion, true, -1, -1);
+   }
+
+   public Object getValue() {
+      return value;
+   }
+
+   public long getVersion() {
+      return version;
+   }
+
+   public int getSubVersion() {
+      return subVersion;
+   }
+
+   public boolean isRemoved() {
+      return removed;
+   }
+
+   public long getLifespan() {
+      return lifespan;
+   }
+
+   public long getMaxIdle() {
+      return maxIdle;
+   }
+
+   /**
+    * @return true if this version was committed after the other version
+    */
+   public boolean isNewerThan(long otherVersion, int otherSubVersion) {
+      return version > otherVersion || (version == otherVersion && subVersion > otherSubVersion);
+   }
+
+   @Override
+   public String toString() {
+      return "VersionedValue{" +
+            "value=" + value +
+            ", version=" + version +
+            ", subVersion=" + subVersion +
+            ", removed=" + removed +
+            '}';
+   }
+}
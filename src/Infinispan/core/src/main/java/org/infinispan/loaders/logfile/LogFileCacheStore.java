@@ -0,0 +1,827 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.AbstractCacheStore;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.file.FileCacheStoreConfig;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.concurrent.ConcurrentMapFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.infinispan.loaders.logfile.Records.EMPTY;
+import static org.infinispan.loaders.logfile.Records.HEADER_SIZE;
+
+/**
+ * A log-structured, append-only {@link org.infinispan.loaders.CacheStore}.
+ * <p/>
+ * Every store and remove appends a record to the active segment file, in the configured location.  Once the active
+ * segment reaches the maximum segment size it is closed and a new one is started.  An in-memory index maps each key to
+ * the position of its latest record, so that a load is a single positional read and {@link #loadAll()} reads the live
+ * records in file order.  Overwritten, removed and expired records are accounted as dead bytes and, when they take
+ * more than the compaction threshold of a closed segment, a background thread appends the live records of that segment
+ * again and deletes its file.
+ * <p/>
+ * Each record is framed by {@link Records} and its payload has the following layout:
+ * <pre>
+ * [byte type][long expiry time][int key length][key][entry]
+ * </pre>
+ * The index is rebuilt on start by scanning the segments in order.  Only the keys are unmarshalled and a torn or
+ * corrupted tail, left by a crash, is truncated.
+ * <p/>
+ * With {@link FileCacheStoreConfig.FsyncMode#PER_WRITE}, the writers waiting for an fsync share a single call to
+ * {@link FileChannel#force(boolean)}, which covers every record appended before it started.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ * @see LogFileCacheStoreConfig
+ */
+@CacheLoaderMetadata(configurationClass = LogFileCacheStoreConfig.class)
+public class LogFileCacheStore extends AbstractCacheStore {
+
+   private static final Log log = LogFactory.getLog(LogFileCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final String SEGMENT_SUFFIX = ".log";
+   private static final int PAYLOAD_PREFIX_SIZE = 13;
+   private static final byte STORE = 1;
+   private static final byte REMOVE = 2;
+   private static final int READ_WINDOW_SIZE = 256 * 1024;
+
+   private static final FilenameFilter SEGMENT_FILTER = new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+         return name.endsWith(SEGMENT_SUFFIX) && segmentId(name) >= 0;
+      }
+   };
+
+   private final ConcurrentMap<Object, RecordPointer> index = ConcurrentMapFactory.makeConcurrentMap();
+   private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<Integer, Segment>();
+   private final ReentrantLock writeLock = new ReentrantLock();
+   private final Object syncLock = new Object();
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+   private LogFileCacheStoreConfig config;
+   private File root;
+   private volatile Segment activeSegment;
+   private int nextSegmentId; //guarded by writeLock
+   private volatile long appendedBytes; //written under writeLock
+   private long syncedBytes; //guarded by syncLock
+   private ExecutorService compactionService;
+   private ScheduledExecutorService fsyncService;
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogFileCacheStoreConfig) config;
+   }
+
+   @Override
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogFileCacheStoreConfig.class;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0) {
+         location = "Infinispan-LogFileCacheStore";
+      }
+      root = new File(location, cache.getName());
+      if (!root.exists() && !root.mkdirs()) {
+         throw new CacheLoaderException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+      if (!root.isDirectory()) {
+         throw new CacheLoaderException("Location " + root.getAbsolutePath() + " is not a directory!");
+      }
+      compactionService = Executors.newSingleThreadExecutor(threadFactory("compactor"));
+      replay();
+      if (config.getFsyncMode() == FileCacheStoreConfig.FsyncMode.PERIODIC) {
+         fsyncService = Executors.newSingleThreadScheduledExecutor(threadFactory("fsync"));
+         fsyncService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  sync(appendedBytes);
+               } catch (IOException e) {
+                  log.warnf(e, "Unable to synchronize segment %s", activeSegment);
+               }
+            }
+         }, config.getFsyncInterval(), config.getFsyncInterval(), TimeUnit.MILLISECONDS);
+      }
+      scheduleCompaction();
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      if (fsyncService != null) {
+         fsyncService.shutdownNow();
+      }
+      if (compactionService != null) {
+         compactionService.shutdown();
+         try {
+            if (!compactionService.awaitTermination(30, TimeUnit.SECONDS)) {
+               compactionService.shutdownNow();
+            }
+         } catch (InterruptedException e) {
+            compactionService.shutdownNow();
+            Thread.currentThread().interrupt();
+         }
+      }
+      writeLock.lock();
+      try {
+         for (Segment segment : segments.values()) {
+            segment.close();
+         }
+         segments.clear();
+         index.clear();
+         activeSegment = null;
+      } finally {
+         writeLock.unlock();
+      }
+      super.stop();
+   }
+
+   @Override
+   public void store(InternalCacheEntry entry) throws CacheLoaderException {
+      Object key = entry.getKey();
+      long expiryTime = entry.canExpire() ? entry.getExpiryTime() : -1;
+      ByteBuffer record = encode(STORE, marshall(key), expiryTime, marshall(entry));
+      long position;
+      writeLock.lock();
+      try {
+         RecordPointer previous = index.put(key, append(record, expiryTime));
+         if (previous != null) {
+            discard(previous);
+         }
+         position = appendedBytes;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append the record of " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+      syncWrite(position);
+   }
+
+   @Override
+   public boolean remove(Object key) throws CacheLoaderException {
+      if (!index.containsKey(key)) {
+         return false;
+      }
+      ByteBuffer tombstone = encode(REMOVE, marshall(key), -1, EMPTY);
+      long position;
+      writeLock.lock();
+      try {
+         RecordPointer previous = index.remove(key);
+         if (previous == null) {
+            return false;
+         }
+         discard(previous);
+         discard(append(tombstone, -1));
+         position = appendedBytes;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append the tombstone of " + key, e);
+      } finally {
+         writeLock.unlock();
+      }
+      syncWrite(position);
+      return true;
+   }
+
+   @Override
+   public InternalCacheEntry load(Object key) throws CacheLoaderException {
+      while (true) {
+         RecordPointer pointer = index.get(key);
+         if (pointer == null || pointer.isExpired(System.currentTimeMillis())) {
+            return null;
+         }
+         InternalCacheEntry entry = read(pointer);
+         if (entry != null) {
+            return entry;
+         }
+         //the segment was compacted in the meantime. the index already points to the new record
+      }
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      RecordPointer pointer = index.get(key);
+      return pointer != null && !pointer.isExpired(System.currentTimeMillis());
+   }
+
+   @Override
+   public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
+      return load(Integer.MAX_VALUE);
+   }
+
+   @Override
+   public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      if (numEntries < 0) {
+         return loadAll();
+      }
+      List<Map.Entry<Object, RecordPointer>> live = livePointers();
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>(Math.min(live.size(), numEntries) * 4 / 3 + 1);
+      //the live records are read in file order, a window at a time, instead of one read per record
+      ByteBuffer window = ByteBuffer.allocate(READ_WINDOW_SIZE);
+      Segment windowSegment = null;
+      long windowStart = 0;
+      for (Map.Entry<Object, RecordPointer> entry : live) {
+         if (result.size() >= numEntries) {
+            break;
+         }
+         RecordPointer pointer = entry.getValue();
+         if (pointer.segment != windowSegment || pointer.offset < windowStart ||
+               pointer.offset + pointer.length > windowStart + window.limit()) {
+            int length = (int) Math.min(Math.max(pointer.length, READ_WINDOW_SIZE),
+                                        pointer.segment.file.size() - pointer.offset);
+            if (length > window.capacity()) {
+               window = ByteBuffer.allocate(length);
+            }
+            window.clear();
+            window.limit(length);
+            windowSegment = pointer.segment.file.read(window, pointer.offset) ? pointer.segment : null;
+            windowStart = pointer.offset;
+         }
+         InternalCacheEntry loaded = windowSegment == null ? load(entry.getKey()) :
+               decode(pointer, window.array(), (int) (pointer.offset - windowStart));
+         if (loaded != null) {
+            result.add(loaded);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
+      long now = System.currentTimeMillis();
+      Set<Object> result = new HashSet<Object>();
+      for (Map.Entry<Object, RecordPointer> entry : index.entrySet()) {
+         if (!entry.getValue().isExpired(now) && (keysToExclude == null || !keysToExclude.contains(entry.getKey()))) {
+            result.add(entry.getKey());
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public void clear() throws CacheLoaderException {
+      writeLock.lock();
+      try {
+         for (Segment segment : segments.values()) {
+            segment.delete();
+         }
+         segments.clear();
+         index.clear();
+         activeSegment = newSegment();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to clear the segments in " + root, e);
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   /**
+    * Writes the live entries, followed by <tt>null</tt>.
+    */
+   @Override
+   public void toStream(ObjectOutput outputStream) throws CacheLoaderException {
+      try {
+         int count = 0;
+         for (InternalCacheEntry entry : loadAll()) {
+            getMarshaller().objectToObjectStream(entry, outputStream);
+            count++;
+         }
+         getMarshaller().objectToObjectStream(null, outputStream);
+         if (trace) {
+            log.tracef("Wrote %s entries to the stream", count);
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   /**
+    * Stores the entries read from the stream, until <tt>null</tt> is found.
+    */
+   @Override
+   public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
+      try {
+         while (true) {
+            InternalCacheEntry entry = (InternalCacheEntry) getMarshaller().objectFromObjectStream(inputStream);
+            if (entry == null) {
+               break;
+            }
+            store(entry);
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException e) {
+         if (trace) {
+            log.trace("Interrupted while reading from stream");
+         }
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * The expired keys are removed from the index and a tombstone is appended for each of them, so that older records
+    * of the same key are not loaded again after a restart.
+    */
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) {
+         log.trace("purgeInternal()");
+      }
+      long now = System.currentTimeMillis();
+      long position = -1;
+      for (Map.Entry<Object, RecordPointer> entry : index.entrySet()) {
+         RecordPointer pointer = entry.getValue();
+         if (!pointer.isExpired(now)) {
+            continue;
+         }
+         ByteBuffer tombstone = encode(REMOVE, marshall(entry.getKey()), -1, EMPTY);
+         writeLock.lock();
+         try {
+            if (index.remove(entry.getKey(), pointer)) {
+               discard(pointer);
+               discard(append(tombstone, -1));
+               position = appendedBytes;
+            }
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to append the tombstone of " + entry.getKey(), e);
+         } finally {
+            writeLock.unlock();
+         }
+      }
+      if (position >= 0) {
+         syncWrite(position);
+      }
+      scheduleCompaction();
+   }
+
+   /**
+    * @return the number of segment files, including the active one.
+    */
+   public int getSegmentCount() {
+      return segments.size();
+   }
+
+   /**
+    * @return the directory of the segment files.
+    */
+   public File getRoot() {
+      return root;
+   }
+
+   /**
+    * Compacts the closed segments with enough dead bytes in the calling thread.
+    */
+   public synchronized void compact() throws CacheLoaderException {
+      for (Segment segment : segments.values()) {
+         if (segment != activeSegment && segment.isCompactable(config.getCompactionThreshold())) {
+            try {
+               compact(segment);
+            } catch (IOException e) {
+               if (!segment.file.isClosed()) {
+                  throw new CacheLoaderException("Unable to compact segment " + segment, e);
+               }
+               //deleted by a clear in the meantime
+            }
+         }
+      }
+   }
+
+   private ThreadFactory threadFactory(String name) {
+      return Records.threadFactory(cache.getName(), LogFileCacheStore.class, name);
+   }
+
+   private byte[] marshall(Object object) throws CacheLoaderException {
+      return Records.marshall(getMarshaller(), object);
+   }
+
+   private Object unmarshall(byte[] bytes, int offset, int length) throws CacheLoaderException {
+      return Records.unmarshall(getMarshaller(), bytes, offset, length);
+   }
+
+   private static ByteBuffer encode(byte type, byte[] key, long expiryTime, byte[] entry) {
+      ByteBuffer record = Records.allocate(PAYLOAD_PREFIX_SIZE + key.length + entry.length);
+      record.put(type).putLong(expiryTime).putInt(key.length).put(key).put(entry);
+      return Records.seal(record);
+   }
+
+   /**
+    * Appends the record to the active segment, starting a new one if it does not fit.  Must be invoked while holding
+    * the write lock.
+    */
+   private RecordPointer append(ByteBuffer record, long expiryTime) throws IOException {
+      int length = record.remaining();
+      Segment segment = activeSegment;
+      long size = segment.file.size();
+      if (size > 0 && size + length > config.getMaxSegmentSize()) {
+         segment = rollover();
+      }
+      long offset = segment.file.append(record);
+      appendedBytes += length;
+      return new RecordPointer(segment, offset, length, expiryTime);
+   }
+
+   /**
+    * Closes the active segment and starts a new one.  Must be invoked while holding the write lock.
+    */
+   private Segment rollover() throws IOException {
+      Segment sealed = activeSegment;
+      sealed.file.force();
+      Segment segment = newSegment();
+      activeSegment = segment;
+      if (trace) {
+         log.tracef("Segment %s sealed with %s bytes. Appending to %s", sealed, sealed.file.size(), segment);
+      }
+      if (sealed.isCompactable(config.getCompactionThreshold())) {
+         scheduleCompaction();
+      }
+      return segment;
+   }
+
+   private Segment newSegment() throws IOException {
+      int id = nextSegmentId++;
+      Segment segment = new Segment(id, new File(root, id + SEGMENT_SUFFIX));
+      segment.file.truncate(0);
+      segments.put(id, segment);
+      return segment;
+   }
+
+   /**
+    * Accounts a record that is no longer referenced by the index.
+    */
+   private void discard(RecordPointer pointer) {
+      Segment segment = pointer.segment;
+      segment.deadBytes.addAndGet(pointer.length);
+      if (segment != activeSegment && segment.isCompactable(config.getCompactionThreshold())) {
+         scheduleCompaction();
+      }
+   }
+
+   private void syncWrite(long position) throws CacheLoaderException {
+      if (config.getFsyncMode() != FileCacheStoreConfig.FsyncMode.PER_WRITE) {
+         return;
+      }
+      try {
+         sync(position);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to synchronize segment " + activeSegment, e);
+      }
+   }
+
+   /**
+    * Makes sure that every record appended up to the given position is on disk.  The first writer to get here forces
+    * the active segment, covering the records appended by the writers that are queued behind it.
+    */
+   private void sync(long position) throws IOException {
+      synchronized (syncLock) {
+         if (syncedBytes >= position) {
+            return;
+         }
+         //read the position before the segment: records appended to a previous segment were forced by the rollover
+         long target = appendedBytes;
+         Segment segment = activeSegment;
+         if (segment == null) {
+            return;
+         }
+         segment.file.force();
+         syncedBytes = target;
+      }
+   }
+
+   /**
+    * @return the entry of the record, or <tt>null</tt> if its segment was deleted by a compaction.
+    */
+   private InternalCacheEntry read(RecordPointer pointer) throws CacheLoaderException {
+      ByteBuffer record = ByteBuffer.allocate(pointer.length);
+      if (!pointer.segment.file.read(record, pointer.offset)) {
+         return null;
+      }
+      return decode(pointer, record.array(), 0);
+   }
+
+   private InternalCacheEntry decode(RecordPointer pointer, byte[] bytes, int offset) throws CacheLoaderException {
+      if (!Records.isIntact(bytes, offset, pointer.length)) {
+         throw new CacheLoaderException("Corrupted record at offset " + pointer.offset + " of segment " + pointer.segment);
+      }
+      int entryOffset = HEADER_SIZE + PAYLOAD_PREFIX_SIZE + ByteBuffer.wrap(bytes).getInt(offset + HEADER_SIZE + 9);
+      return (InternalCacheEntry) unmarshall(bytes, offset + entryOffset, pointer.length - entryOffset);
+   }
+
+   /**
+    * @return the live pointers, sorted by segment and offset, so that they are read sequentially.
+    */
+   private List<Map.Entry<Object, RecordPointer>> livePointers() {
+      long now = System.currentTimeMillis();
+      List<Map.Entry<Object, RecordPointer>> live = new ArrayList<Map.Entry<Object, RecordPointer>>(index.size());
+      for (Map.Entry<Object, RecordPointer> entry : index.entrySet()) {
+         if (!entry.getValue().isExpired(now)) {
+            live.add(entry);
+         }
+      }
+      Collections.sort(live, new Comparator<Map.Entry<Object, RecordPointer>>() {
+         @Override
+         public int compare(Map.Entry<Object, RecordPointer> e1, Map.Entry<Object, RecordPointer> e2) {
+            RecordPointer p1 = e1.getValue();
+            RecordPointer p2 = e2.getValue();
+            if (p1.segment.id != p2.segment.id) {
+               return p1.segment.id < p2.segment.id ? -1 : 1;
+            }
+            return p1.offset < p2.offset ? -1 : (p1.offset == p2.offset ? 0 : 1);
+         }
+      });
+      return live;
+   }
+
+   /**
+    * Rebuilds the index from the segment files, in order.  A record overrides the records of the same key in older
+    * segments and in lower offsets.
+    */
+   private void replay() throws CacheLoaderException {
+      File[] files = root.listFiles(SEGMENT_FILTER);
+      if (files == null) {
+         throw new CacheLoaderException("Unable to list the segments in " + root);
+      }
+      Arrays.sort(files, new Comparator<File>() {
+         @Override
+         public int compare(File f1, File f2) {
+            int id1 = segmentId(f1.getName());
+            int id2 = segmentId(f2.getName());
+            return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+         }
+      });
+      long now = System.currentTimeMillis();
+      writeLock.lock();
+      try {
+         for (File file : files) {
+            int id = segmentId(file.getName());
+            Segment segment = new Segment(id, file);
+            segments.put(id, segment);
+            nextSegmentId = id + 1;
+            activeSegment = segment;
+            SegmentReader reader = new SegmentReader(file);
+            try {
+               while (reader.next()) {
+                  Object key = unmarshall(reader.getRecord(), HEADER_SIZE + PAYLOAD_PREFIX_SIZE, reader.keyLength);
+                  RecordPointer pointer = new RecordPointer(segment, reader.getOffset(), reader.getRecord().length,
+                                                            reader.expiryTime);
+                  RecordPointer previous;
+                  if (reader.type == STORE && !pointer.isExpired(now)) {
+                     previous = index.put(key, pointer);
+                  } else {
+                     previous = index.remove(key);
+                     segment.deadBytes.addAndGet(pointer.length);
+                  }
+                  if (previous != null) {
+                     previous.segment.deadBytes.addAndGet(previous.length);
+                  }
+               }
+            } finally {
+               reader.close();
+            }
+            segment.file.setSize(reader.getValidLength());
+            if (reader.isCorrupted()) {
+               log.warnf("Segment %s has a torn or corrupted record at offset %s. Truncating it", file,
+                         reader.getValidLength());
+               segment.file.truncate(reader.getValidLength());
+            }
+            appendedBytes += segment.file.size();
+         }
+         if (activeSegment == null || activeSegment.file.size() >= config.getMaxSegmentSize()) {
+            activeSegment = newSegment();
+         }
+         synchronized (syncLock) {
+            syncedBytes = appendedBytes;
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to read the segments in " + root, e);
+      } finally {
+         writeLock.unlock();
+      }
+      if (log.isDebugEnabled()) {
+         log.debugf("Loaded %s keys from %s segments in %s", index.size(), segments.size(), root);
+      }
+   }
+
+   private void scheduleCompaction() {
+      if (compactionService == null || compactionService.isShutdown() || !compactionScheduled.compareAndSet(false, true)) {
+         return;
+      }
+      compactionService.execute(new Runnable() {
+         @Override
+         public void run() {
+            compactionScheduled.set(false);
+            try {
+               compact();
+            } catch (CacheLoaderException e) {
+               log.warnf(e, "Unable to compact the segments in %s", root);
+            }
+         }
+      });
+   }
+
+   /**
+    * Appends the live records of a closed segment to the active segment and deletes its file.  A tombstone is kept
+    * while older segments might still have a record of its key.
+    */
+   private void compact(Segment segment) throws IOException, CacheLoaderException {
+      if (trace) {
+         log.tracef("Compacting segment %s with %s dead bytes out of %s", segment, segment.deadBytes.get(),
+                    segment.file.size());
+      }
+      SegmentReader reader = new SegmentReader(segment.file.getFile());
+      try {
+         while (reader.next()) {
+            if (segment.file.isClosed() || compactionService.isShutdown()) {
+               //cleared or stopping. the segment is compacted later, if still needed
+               return;
+            }
+            if (reader.type == STORE) {
+               Object key = unmarshall(reader.getRecord(), HEADER_SIZE + PAYLOAD_PREFIX_SIZE, reader.keyLength);
+               RecordPointer pointer = index.get(key);
+               if (pointer == null || pointer.segment != segment || pointer.offset != reader.getOffset()) {
+                  continue;
+               }
+               writeLock.lock();
+               try {
+                  if (index.get(key) == pointer) {
+                     index.put(key, append(ByteBuffer.wrap(reader.getRecord()), pointer.expiryTime));
+                  }
+               } finally {
+                  writeLock.unlock();
+               }
+            } else if (!isOldest(segment)) {
+               Object key = unmarshall(reader.getRecord(), HEADER_SIZE + PAYLOAD_PREFIX_SIZE, reader.keyLength);
+               writeLock.lock();
+               try {
+                  if (!index.containsKey(key)) {
+                     discard(append(ByteBuffer.wrap(reader.getRecord()), -1));
+                  }
+               } finally {
+                  writeLock.unlock();
+               }
+            }
+         }
+      } finally {
+         reader.close();
+      }
+      //the relocated records must be on disk before the segment is deleted
+      sync(appendedBytes);
+      writeLock.lock();
+      try {
+         if (segments.remove(segment.id, segment)) {
+            segment.delete();
+         }
+      } finally {
+         writeLock.unlock();
+      }
+      if (trace) {
+         log.tracef("Segment %s compacted", segment);
+      }
+   }
+
+   private boolean isOldest(Segment segment) {
+      Map.Entry<Integer, Segment> oldest = segments.firstEntry();
+      return oldest == null || oldest.getValue() == segment;
+   }
+
+   private static int segmentId(String fileName) {
+      try {
+         return Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+      } catch (RuntimeException e) {
+         return -1;
+      }
+   }
+
+   /**
+    * The position of the latest record of a key.
+    */
+   private static final class RecordPointer {
+      private final Segment segment;
+      private final long offset;
+      private final int length;
+      private final long expiryTime;
+
+      private RecordPointer(Segment segment, long offset, int length, long expiryTime) {
+         this.segment = segment;
+         this.offset = offset;
+         this.length = length;
+         this.expiryTime = expiryTime;
+      }
+
+      private boolean isExpired(long now) {
+         return expiryTime >= 0 && expiryTime <= now;
+      }
+   }
+
+   /**
+    * A segment file and the bytes of its records that are no longer referenced by the index.
+    */
+   private static final class Segment {
+      private final int id;
+      private final RecordFile file;
+      private final AtomicLong deadBytes = new AtomicLong(0);
+
+      private Segment(int id, File file) throws IOException {
+         this.id = id;
+         this.file = new RecordFile(file);
+      }
+
+      private boolean isCompactable(double threshold) {
+         long size = file.size();
+         return size > 0 && deadBytes.get() >= size * threshold;
+      }
+
+      private void close() {
+         file.close();
+      }
+
+      private void delete() {
+         file.delete();
+      }
+
+      @Override
+      public String toString() {
+         return file.toString();
+      }
+   }
+
+   /**
+    * Reads the records of a segment, parsing the type, the expiry time and the key length of each one.
+    */
+   private static final class SegmentReader extends RecordReader {
+      private byte type;
+      private long expiryTime;
+      private int keyLength;
+
+      private SegmentReader(File file) throws IOException {
+         super(file, PAYLOAD_PREFIX_SIZE);
+      }
+
+      @Override
+      protected boolean accept(ByteBuffer record) {
+         type = record.get(HEADER_SIZE);
+         expiryTime = record.getLong(HEADER_SIZE + 1);
+         keyLength = record.getInt(HEADER_SIZE + 9);
+         return keyLength >= 0 && keyLength <= record.limit() - HEADER_SIZE - PAYLOAD_PREFIX_SIZE &&
+               (type == STORE || type == REMOVE);
+      }
+   }
+}
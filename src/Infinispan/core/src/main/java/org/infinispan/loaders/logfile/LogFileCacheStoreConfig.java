@@ -0,0 +1,163 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+import org.infinispan.loaders.file.FileCacheStoreConfig.FsyncMode;
+
+/**
+ * Configures {@link LogFileCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store writes its segment files.  This defaults to
+ * <tt>Infinispan-LogFileCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxSegmentSize</tt> - the size, in bytes, after which the segment being appended is closed and a new
+ * one is started.  Only closed segments are compacted.  By default, this is set to <tt>16777216</tt> (16 MB).</li>
+ *       <li><tt>compactionThreshold</tt> - the fraction of a closed segment taken by overwritten, removed or expired
+ * records after which the segment is compacted, i.e. its live records are appended again and the file is deleted.
+ * By default, this is set to <tt>0.5</tt>.</li>
+ *       <li><tt>fsyncMode</tt> - configures how the appended records are synchronized with the underlying file system:
+ *       <ul>
+ *          <li><tt>default</tt> - the file system is synchronized when the OS buffer is full or when a segment is
+ *       closed.</li>
+ *          <li><tt>perWrite</tt> - a write returns only after its record is synchronized.  The writers waiting at the
+ *       same time share a single fsync.</li>
+ *          <li><tt>periodic</tt> - the segment being appended is synchronized every <tt>fsyncInterval</tt>.</li>
+ *       </ul>
+ *       <li><tt>fsyncInterval</tt> - the interval, in milliseconds, of the <tt>periodic</tt> fsync mode.  By default,
+ * this is set to <tt>1000</tt>.</li>
+ *    </ul>
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class LogFileCacheStoreConfig extends AbstractCacheStoreConfig {
+
+   private static final long serialVersionUID = -3683917294571066482L;
+
+   private String location = "Infinispan-LogFileCacheStore";
+   private long maxSegmentSize = 16 * 1024 * 1024;
+   private double compactionThreshold = 0.5;
+   private FsyncMode fsyncMode = FsyncMode.DEFAULT;
+   private long fsyncInterval = 1000;
+
+   public LogFileCacheStoreConfig() {
+      setCacheLoaderClassName(LogFileCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogFileCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public long getMaxSegmentSize() {
+      return maxSegmentSize;
+   }
+
+   public void setMaxSegmentSize(long maxSegmentSize) {
+      testImmutability("maxSegmentSize");
+      this.maxSegmentSize = maxSegmentSize;
+   }
+
+   public LogFileCacheStoreConfig maxSegmentSize(long maxSegmentSize) {
+      setMaxSegmentSize(maxSegmentSize);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogFileCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public FsyncMode getFsyncMode() {
+      return fsyncMode;
+   }
+
+   public void setFsyncMode(FsyncMode fsyncMode) {
+      testImmutability("fsyncMode");
+      this.fsyncMode = fsyncMode;
+   }
+
+   public LogFileCacheStoreConfig fsyncMode(FsyncMode fsyncMode) {
+      setFsyncMode(fsyncMode);
+      return this;
+   }
+
+   public long getFsyncInterval() {
+      return fsyncInterval;
+   }
+
+   public void setFsyncInterval(long fsyncInterval) {
+      testImmutability("fsyncInterval");
+      this.fsyncInterval = fsyncInterval;
+   }
+
+   public LogFileCacheStoreConfig fsyncInterval(long fsyncInterval) {
+      setFsyncInterval(fsyncInterval);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogFileCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
@@ -0,0 +1,256 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of records, appended by a single writer at a time. The channel is shared by the writer and the readers,
+ * using positional reads and writes. If it is closed because a reader was interrupted, it is opened again by the next
+ * user.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ * @see Records
+ */
+public final class RecordFile {
+
+   private static final Log log = LogFactory.getLog(RecordFile.class);
+   private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+   private volatile File file;
+   private volatile FileChannel channel;
+   private volatile long size;
+   private volatile boolean closed;
+
+   public RecordFile(File file) throws IOException {
+      this.file = file;
+      this.channel = new RandomAccessFile(file, "rw").getChannel();
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   /**
+    * @return the size of the file, in bytes, up to the end of the last record appended.
+    */
+   public long size() {
+      return size;
+   }
+
+   /**
+    * Sets the end of the last record, after the records already in the file are read.
+    */
+   public void setSize(long size) {
+      this.size = size;
+   }
+
+   /**
+    * @return <tt>true</tt> if the file was closed or deleted.
+    */
+   public boolean isClosed() {
+      return closed;
+   }
+
+   /**
+    * Writes the record at the end of the file. If it fails, the file is truncated to its previous size.
+    *
+    * @return the offset of the record
+    */
+   public long append(ByteBuffer record) throws IOException {
+      long offset = size;
+      FileChannel current = channel;
+      try {
+         while (record.hasRemaining()) {
+            try {
+               current.write(record, offset + record.position());
+            } catch (ClosedByInterruptException e) {
+               throw e;
+            } catch (ClosedChannelException e) {
+               //closed by a reader that was interrupted
+               current = reopen(current);
+               if (current == null) {
+                  throw e;
+               }
+            }
+         }
+      } catch (IOException e) {
+         try {
+            truncate(offset);
+         } catch (IOException truncateException) {
+            log.warnf(truncateException, "Unable to truncate %s to %s bytes", this, offset);
+         }
+         throw e;
+      }
+      size = offset + record.limit();
+      return offset;
+   }
+
+   /**
+    * Fills the buffer with the bytes of the file starting at the given position.
+    *
+    * @return <tt>false</tt> if the file was closed or deleted.
+    */
+   public boolean read(ByteBuffer buffer, long position) throws CacheLoaderException {
+      FileChannel current = channel;
+      try {
+         while (buffer.hasRemaining()) {
+            try {
+               if (current.read(buffer, position + buffer.position()) < 0) {
+                  throw new EOFException("Unexpected end of " + this);
+               }
+            } catch (ClosedByInterruptException e) {
+               Thread.currentThread().interrupt();
+               throw new CacheLoaderException("Interrupted while reading " + this, e);
+            } catch (ClosedChannelException e) {
+               current = reopen(current);
+               if (current == null) {
+                  return false;
+               }
+            }
+         }
+      } catch (IOException e) {
+         if (closed) {
+            return false;
+         }
+         throw new CacheLoaderException("Unable to read " + this, e);
+      }
+      return true;
+   }
+
+   /**
+    * Appends the bytes of this file between the given positions to the end of the target file.
+    */
+   public void copyTo(RecordFile target, long from, long to) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+      long position = from;
+      while (position < to) {
+         buffer.clear();
+         buffer.limit((int) Math.min(COPY_BUFFER_SIZE, to - position));
+         if (channel.read(buffer, position) < 0) {
+            throw new EOFException("Unexpected end of " + this);
+         }
+         buffer.flip();
+         position += buffer.remaining();
+         target.append(buffer);
+      }
+   }
+
+   public void truncate(long size) throws IOException {
+      FileChannel current = reopen(null);
+      if (current != null) {
+         current.truncate(size);
+         this.size = size;
+      }
+   }
+
+   /**
+    * Forces the records appended to the disk. It has no effect if the file is closed.
+    */
+   public void force() throws IOException {
+      FileChannel current = channel;
+      try {
+         current.force(false);
+      } catch (ClosedByInterruptException e) {
+         throw e;
+      } catch (ClosedChannelException e) {
+         current = reopen(current);
+         if (current != null) {
+            current.force(false);
+         }
+      }
+   }
+
+   /**
+    * Renames the file, which is kept open.
+    */
+   public void renameTo(File target) throws IOException {
+      if (!file.renameTo(target)) {
+         throw new IOException("Unable to rename " + file + " to " + target);
+      }
+      file = target;
+   }
+
+   /**
+    * Forces the records appended to the disk and closes the file.
+    */
+   public synchronized void close() {
+      if (closed) {
+         return;
+      }
+      try {
+         if (channel.isOpen()) {
+            channel.force(false);
+         }
+      } catch (IOException e) {
+         log.warnf(e, "Unable to synchronize %s", this);
+      }
+      retire();
+   }
+
+   /**
+    * Closes the file without forcing it, e.g. after it was replaced by a compacted one.
+    */
+   public synchronized void retire() {
+      closed = true;
+      Util.close(channel);
+   }
+
+   public synchronized void delete() {
+      retire();
+      if (!file.delete() && file.exists()) {
+         log.problemsRemovingFile(file);
+      }
+   }
+
+   /**
+    * @return the current channel, or <tt>null</tt> if the file was closed.
+    */
+   private synchronized FileChannel reopen(FileChannel failed) throws IOException {
+      if (closed) {
+         return null;
+      }
+      if (channel == failed || !channel.isOpen()) {
+         channel = new RandomAccessFile(file, "rw").getChannel();
+      }
+      return channel;
+   }
+
+   @Override
+   public String toString() {
+      return file.getName();
+   }
+}
@@ -0,0 +1,136 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.util.Util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.infinispan.loaders.logfile.Records.HEADER_SIZE;
+
+/**
+ * Reads the records of a file sequentially, stopping at the end of the file or at the first torn or corrupted record.
+ * A record is corrupted if its payload does not match the checksum or if it is rejected by {@link
+ * #accept(ByteBuffer)}, which parses the payload of each cache store.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ * @see Records
+ */
+public class RecordReader {
+
+   private final DataInputStream input;
+   private final long fileLength;
+   private final int minimumPayloadLength;
+   private long offset;
+   private long validLength;
+   private boolean corrupted;
+   private byte[] record = Records.EMPTY;
+
+   public RecordReader(File file, int minimumPayloadLength) throws IOException {
+      this.fileLength = file.length();
+      this.minimumPayloadLength = minimumPayloadLength;
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+   }
+
+   /**
+    * @return <tt>false</tt> if the end of the file or a corrupted record was reached.
+    */
+   public final boolean next() throws IOException {
+      offset = validLength;
+      if (corrupted) {
+         return false;
+      }
+      if (offset + HEADER_SIZE > fileLength) {
+         corrupted = offset != fileLength;
+         return false;
+      }
+      int payloadLength = input.readInt();
+      int checksum = input.readInt();
+      if (payloadLength < minimumPayloadLength || offset + HEADER_SIZE + payloadLength > fileLength) {
+         corrupted = true;
+         return false;
+      }
+      byte[] bytes = new byte[HEADER_SIZE + payloadLength];
+      input.readFully(bytes, HEADER_SIZE, payloadLength);
+      if (checksum != Records.checksum(bytes, HEADER_SIZE, payloadLength)) {
+         corrupted = true;
+         return false;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      buffer.putInt(0, payloadLength).putInt(4, checksum);
+      if (!accept(buffer)) {
+         corrupted = true;
+         return false;
+      }
+      record = bytes;
+      validLength = offset + bytes.length;
+      return true;
+   }
+
+   /**
+    * @return the bytes of the current record, including the header.
+    */
+   public final byte[] getRecord() {
+      return record;
+   }
+
+   /**
+    * @return the offset of the current record.
+    */
+   public final long getOffset() {
+      return offset;
+   }
+
+   /**
+    * @return the end of the last valid record read.
+    */
+   public final long getValidLength() {
+      return validLength;
+   }
+
+   /**
+    * @return <tt>true</tt> if the reading stopped at a torn or corrupted record.
+    */
+   public final boolean isCorrupted() {
+      return corrupted;
+   }
+
+   public final void close() {
+      Util.close(input);
+   }
+
+   /**
+    * Parses the payload of a record with a valid checksum.
+    *
+    * @return <tt>false</tt> if the record is corrupted.
+    */
+   protected boolean accept(ByteBuffer record) {
+      return true;
+   }
+}
@@ -0,0 +1,129 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.marshall.StreamingMarshaller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * The framing of the records appended by the log-structured cache stores, {@link LogFileCacheStore} and {@link
+ * org.infinispan.loaders.gmu.VersionedLogCacheStore}.
+ * <p/>
+ * Each record starts with a header with the payload length and the CRC32 of the payload:
+ * <pre>
+ * [int payload length][int checksum][payload]
+ * </pre>
+ * The layout of the payload is defined by each cache store.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ * @see RecordFile
+ * @see RecordReader
+ */
+public final class Records {
+
+   public static final int HEADER_SIZE = 8;
+   public static final byte[] EMPTY = new byte[0];
+   private static final AtomicLong THREAD_COUNTER = new AtomicLong(0);
+
+   private Records() {
+   }
+
+   /**
+    * @return a new record with the header, positioned at the start of the payload
+    */
+   public static ByteBuffer allocate(int payloadLength) {
+      ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+      record.putInt(payloadLength).putInt(0);
+      return record;
+   }
+
+   /**
+    * Writes the checksum of the payload in the header and flips the record, so that it is ready to be appended.
+    */
+   public static ByteBuffer seal(ByteBuffer record) {
+      record.putInt(4, checksum(record.array(), HEADER_SIZE, record.getInt(0)));
+      record.flip();
+      return record;
+   }
+
+   /**
+    * @return <tt>true</tt> if the record at the given offset has the given length and its payload matches the
+    *         checksum
+    */
+   public static boolean isIntact(byte[] bytes, int offset, int length) {
+      ByteBuffer record = ByteBuffer.wrap(bytes);
+      int payloadLength = record.getInt(offset);
+      return payloadLength == length - HEADER_SIZE &&
+            record.getInt(offset + 4) == checksum(bytes, offset + HEADER_SIZE, payloadLength);
+   }
+
+   public static int checksum(byte[] bytes, int offset, int length) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes, offset, length);
+      return (int) crc.getValue();
+   }
+
+   public static byte[] marshall(StreamingMarshaller marshaller, Object object) throws CacheLoaderException {
+      try {
+         return marshaller.objectToByteBuffer(object);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to marshall " + object, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling " + object, e);
+      }
+   }
+
+   public static Object unmarshall(StreamingMarshaller marshaller, byte[] bytes, int offset, int length)
+         throws CacheLoaderException {
+      try {
+         return marshaller.objectFromByteBuffer(bytes, offset, length);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to unmarshall record", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to unmarshall record", e);
+      }
+   }
+
+   /**
+    * @return a factory of daemon threads, named after the cache and the cache store
+    */
+   public static ThreadFactory threadFactory(final String cacheName, final Class<?> cacheStore, final String name) {
+      return new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, cacheName + '-' + cacheStore.getSimpleName() + '-' + name + '-' +
+                  THREAD_COUNTER.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+         }
+      };
+   }
+}
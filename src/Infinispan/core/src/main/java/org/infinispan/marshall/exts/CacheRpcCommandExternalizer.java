@@ -33,6 +33,7 @@ import org.infinispan.commands.remote.GarbageCollectorControlCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.ReconfigurableProtocolCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.TotalOrderPrepareBatchCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -94,7 +95,8 @@ public final class CacheRpcCommandExternalizer extends AbstractExternalizer<Cach
             GetInDoubtTxInfoCommand.class, CompleteTransactionCommand.class,
             CacheViewControlCommand.class, VersionedPrepareCommand.class, VersionedCommitCommand.class,
             DataPlacementCommand.class, GMUPrepareCommand.class, GMUCommitCommand.class, GMUClusteredGetCommand.class,
-            ReconfigurableProtocolCommand.class, GarbageCollectorControlCommand.class, ConfigurationStateCommand.class);
+            ReconfigurableProtocolCommand.class, GarbageCollectorControlCommand.class, ConfigurationStateCommand.class,
+            TotalOrderPrepareBatchCommand.class);
       // Only interested in cache specific replicable commands
       coreCommands.addAll(gcr.getModuleProperties().moduleCacheRpcCommands());
       return coreCommands;
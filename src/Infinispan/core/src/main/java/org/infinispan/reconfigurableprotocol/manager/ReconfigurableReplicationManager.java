@@ -28,6 +28,7 @@ import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Stop;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
@@ -40,6 +41,10 @@ import org.infinispan.reconfigurableprotocol.exception.SwitchInProgressException
 import org.infinispan.reconfigurableprotocol.protocol.PassiveReplicationCommitProtocol;
 import org.infinispan.reconfigurableprotocol.protocol.TotalOrderCommitProtocol;
 import org.infinispan.reconfigurableprotocol.protocol.TwoPhaseCommitProtocol;
+import org.infinispan.reconfigurableprotocol.selector.AutonomicProtocolSelector;
+import org.infinispan.reconfigurableprotocol.selector.DefaultProtocolSelectionPolicy;
+import org.infinispan.reconfigurableprotocol.selector.WorkloadSample;
+import org.infinispan.reconfigurableprotocol.selector.WorkloadSampler;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.LocalTransaction;
@@ -58,6 +63,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static org.infinispan.commands.remote.ReconfigurableProtocolCommand.Type;
 
@@ -82,12 +92,20 @@ public class ReconfigurableReplicationManager {
    private Configuration configuration;
    private ComponentRegistry componentRegistry;
    private volatile boolean allowSwitch = false;
+   private final DefaultProtocolSelectionPolicy selectionPolicy;
+   private final AutonomicProtocolSelector autonomicSelector;
+   private final WorkloadSampler workloadSampler;
+   private ScheduledExecutorService autonomicExecutor;
+   private ScheduledFuture<?> autonomicTask;
 
    public ReconfigurableReplicationManager() {
       statisticManager = new StatisticManager();
       registry = new ReconfigurableProtocolRegistry();
       protocolManager = new ProtocolManager(statisticManager);
       coolDownTimeManager = new CoolDownTimeManager();
+      selectionPolicy = new DefaultProtocolSelectionPolicy();
+      autonomicSelector = new AutonomicProtocolSelector(selectionPolicy);
+      workloadSampler = new WorkloadSampler();
    }
 
    @Inject
@@ -600,6 +618,109 @@ public class ReconfigurableReplicationManager {
       return allowSwitch;
    }
 
+   @ManagedOperation(description = "Starts the autonomic selection of the replication protocol, sampling the workload " +
+         "with the period (in seconds) given. Only the coordinator takes decisions")
+   public final synchronized void startAutonomicSelector(int periodSeconds) {
+      if (periodSeconds <= 0) {
+         throw new IllegalArgumentException("The sampling period must be greater than zero");
+      }
+      stopAutonomicSelector();
+      if (autonomicExecutor == null) {
+         autonomicExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+               Thread thread = new Thread(r, "Autonomic-Selector-Thread");
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+      }
+      autonomicSelector.reset();
+      workloadSampler.reset();
+      autonomicTask = autonomicExecutor.scheduleAtFixedRate(new AutonomicSelectorTask(), periodSeconds, periodSeconds,
+                                                            TimeUnit.SECONDS);
+   }
+
+   @ManagedOperation(description = "Stops the autonomic selection of the replication protocol")
+   public final synchronized void stopAutonomicSelector() {
+      if (autonomicTask != null) {
+         autonomicTask.cancel(false);
+         autonomicTask = null;
+      }
+   }
+
+   @ManagedAttribute(description = "Returns true if the autonomic selection of the replication protocol is running",
+                     writable = false)
+   public final synchronized boolean isAutonomicSelectorRunning() {
+      return autonomicTask != null;
+   }
+
+   @ManagedAttribute(description = "Returns the replication protocol ID selected for the last workload sample",
+                     writable = false)
+   public final String getAutonomicLastSelectedProtocolId() {
+      return autonomicSelector.getLastSelected();
+   }
+
+   @ManagedAttribute(description = "Returns the number of workload samples processed by the autonomic selector",
+                     writable = false)
+   public final long getAutonomicNumberOfSamples() {
+      return autonomicSelector.getNumberOfSamples();
+   }
+
+   @ManagedAttribute(description = "Returns the number of switches requested by the autonomic selector", writable = false)
+   public final long getAutonomicNumberOfSwitchRequests() {
+      return autonomicSelector.getNumberOfSwitchRequests();
+   }
+
+   @ManagedOperation(description = "Prints the last workload samples processed by the autonomic selector, in the " +
+         "trace format used by the WorkloadTraceReplay")
+   public final String printWorkloadTrace() {
+      return autonomicSelector.printTrace();
+   }
+
+   @ManagedOperation(description = "Sets the number of consecutive workload samples that must select the same " +
+         "replication protocol before switching")
+   public final void setAutonomicStableSamples(int stableSamples) {
+      autonomicSelector.setStableSamples(stableSamples);
+   }
+
+   @ManagedOperation(description = "Sets the minimum number of transactions in a workload sample to be considered")
+   public final void setAutonomicMinTransactions(long minTransactions) {
+      autonomicSelector.setMinTransactions(minTransactions);
+   }
+
+   @ManagedOperation(description = "Sets the maximum percentage of write transactions (between 0 and 1) to select " +
+         "the passive replication")
+   public final void setAutonomicMaxPassiveReplicationWritePercentage(double percentage) {
+      selectionPolicy.setMaxPassiveReplicationWritePercentage(percentage);
+   }
+
+   @ManagedOperation(description = "Sets the minimum abort rate (between 0 and 1) to select the total order")
+   public final void setAutonomicMinTotalOrderAbortRate(double abortRate) {
+      selectionPolicy.setMinTotalOrderAbortRate(abortRate);
+   }
+
+   @ManagedOperation(description = "Sets the minimum lock contention probability (between 0 and 1) to select the " +
+         "total order")
+   public final void setAutonomicMinTotalOrderContentionProbability(double contentionProbability) {
+      selectionPolicy.setMinTotalOrderContentionProbability(contentionProbability);
+   }
+
+   @ManagedOperation(description = "Sets the hysteresis (between 0 and 1) applied to the thresholds when leaving the " +
+         "current replication protocol")
+   public final void setAutonomicHysteresis(double hysteresis) {
+      selectionPolicy.setHysteresis(hysteresis);
+   }
+
+   @Stop
+   public final synchronized void stop() {
+      stopAutonomicSelector();
+      if (autonomicExecutor != null) {
+         autonomicExecutor.shutdownNow();
+         autonomicExecutor = null;
+      }
+   }
+
    /**
     * Returns the information about the protocol, namely the protocol ID and the full class name
     *
@@ -685,6 +806,10 @@ public class ReconfigurableReplicationManager {
          }
       }
 
+      public synchronized boolean canSwitch() {
+         return nextSwitchTime <= System.currentTimeMillis();
+      }
+
       public synchronized int getCoolDownTimePeriod() {
          return (int) (coolDownTimePeriod / 1000);
       }
@@ -694,6 +819,32 @@ public class ReconfigurableReplicationManager {
       }
    }
 
+   /**
+    * samples the workload and switches the replication protocol when the autonomic selector decides so
+    */
+   private class AutonomicSelectorTask implements Runnable {
+
+      @Override
+      public void run() {
+         try {
+            WorkloadSample sample = workloadSampler.sample();
+            if (!allowSwitch || !rpcManager.getTransport().isCoordinator()) {
+               return;
+            }
+            boolean canSwitch = coolDownTimeManager.canSwitch() && !protocolManager.isInProgress() &&
+                  !protocolManager.isUnsafe();
+            String newProtocolId = autonomicSelector.onSample(sample, getCurrentProtocolId(), canSwitch);
+            if (newProtocolId != null) {
+               log.infof("Autonomic selector is switching the replication protocol from %s to %s. Workload is %s",
+                         getCurrentProtocolId(), newProtocolId, sample);
+               switchTo(newProtocolId, false, false);
+            }
+         } catch (Throwable t) {
+            log.warnf(t, "Error in the autonomic selection of the replication protocol");
+         }
+      }
+   }
+
    private class SwitchTask implements Runnable {
 
       private final String protocolId;
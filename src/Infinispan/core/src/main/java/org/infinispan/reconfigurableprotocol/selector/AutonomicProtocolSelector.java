@@ -0,0 +1,179 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol.selector;
+
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.LinkedList;
+
+/**
+ * Decides when to switch the replication protocol, based on the workload samples.
+ * <p/>
+ * A switch is only requested when the {@link ProtocolSelectionPolicy} selects the same protocol, different from the
+ * current one, in a number of consecutive samples (see {@link #setStableSamples(int)}) and when a switch is allowed
+ * (i.e. the cool down time has passed). The samples with few transactions are ignored, because the statistics are not
+ * representative. The last samples are kept, so that they can be saved as a trace and replayed offline (see {@link
+ * WorkloadTraceReplay}).
+ * <p/>
+ * This class has no timers and does not switch the protocol by itself, so that the same decisions are taken online
+ * (by the {@code ReconfigurableReplicationManager}) and when a trace is replayed.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class AutonomicProtocolSelector {
+
+   private static final Log log = LogFactory.getLog(AutonomicProtocolSelector.class);
+   private static final int MAX_TRACE_SIZE = 1000;
+
+   private final ProtocolSelectionPolicy policy;
+   private final LinkedList<WorkloadSample> trace;
+   private volatile int stableSamples = 3;
+   private volatile long minTransactions = 100;
+   private String candidate;
+   private int candidateSamples;
+   private String lastSelected;
+   private long numberOfSamples;
+   private long numberOfSwitchRequests;
+
+   public AutonomicProtocolSelector(ProtocolSelectionPolicy policy) {
+      if (policy == null) {
+         throw new NullPointerException("Protocol selection policy cannot be null");
+      }
+      this.policy = policy;
+      this.trace = new LinkedList<WorkloadSample>();
+   }
+
+   /**
+    * processes a new workload sample
+    *
+    * @param sample              the workload sample (it can be null if no sample is available)
+    * @param currentProtocolId   the current replication protocol ID
+    * @param canSwitch           true if a switch is allowed now
+    * @return                    the replication protocol ID to switch to or null if the current protocol must be kept
+    */
+   public final synchronized String onSample(WorkloadSample sample, String currentProtocolId, boolean canSwitch) {
+      if (sample == null || sample.getNumberOfTransactions() < minTransactions) {
+         if (log.isTraceEnabled()) {
+            log.tracef("Ignoring workload sample %s", sample);
+         }
+         return null;
+      }
+
+      numberOfSamples++;
+      trace.addLast(sample);
+      if (trace.size() > MAX_TRACE_SIZE) {
+         trace.removeFirst();
+      }
+
+      String selected = policy.select(sample, currentProtocolId);
+      lastSelected = selected;
+
+      if (selected == null || selected.equals(currentProtocolId)) {
+         candidate = null;
+         candidateSamples = 0;
+         return null;
+      }
+
+      if (selected.equals(candidate)) {
+         candidateSamples++;
+      } else {
+         candidate = selected;
+         candidateSamples = 1;
+      }
+
+      if (log.isDebugEnabled()) {
+         log.debugf("Workload sample %s selects %s (current is %s) in %s consecutive samples", sample, selected,
+                    currentProtocolId, candidateSamples);
+      }
+
+      //the candidate is kept while the switch is not allowed, so that it switches as soon as it is allowed
+      if (candidateSamples < stableSamples || !canSwitch) {
+         return null;
+      }
+
+      candidate = null;
+      candidateSamples = 0;
+      numberOfSwitchRequests++;
+      return selected;
+   }
+
+   /**
+    * @return  the last samples, in trace lines, starting with the header
+    */
+   public final synchronized String printTrace() {
+      StringBuilder sb = new StringBuilder(WorkloadSample.TRACE_HEADER);
+      for (WorkloadSample sample : trace) {
+         sb.append("\n").append(sample.toTraceLine());
+      }
+      return sb.toString();
+   }
+
+   /**
+    * discards the candidate protocol and the samples kept
+    */
+   public final synchronized void reset() {
+      candidate = null;
+      candidateSamples = 0;
+      lastSelected = null;
+      numberOfSamples = 0;
+      numberOfSwitchRequests = 0;
+      trace.clear();
+   }
+
+   public final ProtocolSelectionPolicy getPolicy() {
+      return policy;
+   }
+
+   public final int getStableSamples() {
+      return stableSamples;
+   }
+
+   public final void setStableSamples(int stableSamples) {
+      if (stableSamples < 1) {
+         throw new IllegalArgumentException("The number of stable samples must be greater than zero");
+      }
+      this.stableSamples = stableSamples;
+   }
+
+   public final long getMinTransactions() {
+      return minTransactions;
+   }
+
+   public final void setMinTransactions(long minTransactions) {
+      this.minTransactions = minTransactions;
+   }
+
+   public final synchronized String getLastSelected() {
+      return lastSelected;
+   }
+
+   public final synchronized long getNumberOfSamples() {
+      return numberOfSamples;
+   }
+
+   public final synchronized long getNumberOfSwitchRequests() {
+      return numberOfSwitchRequests;
+   }
+}
@@ -0,0 +1,108 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol.selector;
+
+import org.infinispan.reconfigurableprotocol.protocol.PassiveReplicationCommitProtocol;
+import org.infinispan.reconfigurableprotocol.protocol.TotalOrderCommitProtocol;
+import org.infinispan.reconfigurableprotocol.protocol.TwoPhaseCommitProtocol;
+
+/**
+ * The default protocol selection policy, based on thresholds:
+ * <ul>
+ *    <li>Passive Replication when the percentage of write transactions is low, because the primary can process all
+ *    the writes and the read transactions scale in all the nodes;</li>
+ *    <li>Total Order when the abort rate or the contention probability is high, because the transactions are
+ *    validated in the same order in all nodes and do not deadlock or abort due to lock timeouts;</li>
+ *    <li>Two Phase Commit otherwise.</li>
+ * </ul>
+ * Each threshold has a hysteresis band: the current protocol is kept while the workload is inside the band (the
+ * threshold increased or decreased by the hysteresis percentage) and it is only selected when the workload crosses
+ * the band.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class DefaultProtocolSelectionPolicy implements ProtocolSelectionPolicy {
+
+   private volatile double maxPassiveReplicationWritePercentage = 0.1;
+   private volatile double minTotalOrderAbortRate = 0.1;
+   private volatile double minTotalOrderContentionProbability = 0.05;
+   private volatile double hysteresis = 0.2;
+
+   @Override
+   public String select(WorkloadSample sample, String currentProtocolId) {
+      boolean isPassiveReplication = PassiveReplicationCommitProtocol.UID.equals(currentProtocolId);
+      if (sample.getWritePercentage() <= band(maxPassiveReplicationWritePercentage, isPassiveReplication)) {
+         return PassiveReplicationCommitProtocol.UID;
+      }
+
+      boolean isTotalOrder = TotalOrderCommitProtocol.UID.equals(currentProtocolId);
+      if (sample.getAbortRate() >= band(minTotalOrderAbortRate, !isTotalOrder) ||
+            sample.getContentionProbability() >= band(minTotalOrderContentionProbability, !isTotalOrder)) {
+         return TotalOrderCommitProtocol.UID;
+      }
+
+      return TwoPhaseCommitProtocol.UID;
+   }
+
+   public final double getMaxPassiveReplicationWritePercentage() {
+      return maxPassiveReplicationWritePercentage;
+   }
+
+   public final void setMaxPassiveReplicationWritePercentage(double maxPassiveReplicationWritePercentage) {
+      this.maxPassiveReplicationWritePercentage = maxPassiveReplicationWritePercentage;
+   }
+
+   public final double getMinTotalOrderAbortRate() {
+      return minTotalOrderAbortRate;
+   }
+
+   public final void setMinTotalOrderAbortRate(double minTotalOrderAbortRate) {
+      this.minTotalOrderAbortRate = minTotalOrderAbortRate;
+   }
+
+   public final double getMinTotalOrderContentionProbability() {
+      return minTotalOrderContentionProbability;
+   }
+
+   public final void setMinTotalOrderContentionProbability(double minTotalOrderContentionProbability) {
+      this.minTotalOrderContentionProbability = minTotalOrderContentionProbability;
+   }
+
+   public final double getHysteresis() {
+      return hysteresis;
+   }
+
+   public final void setHysteresis(double hysteresis) {
+      this.hysteresis = hysteresis;
+   }
+
+   /**
+    * @param threshold  the threshold
+    * @param upper      true to return the upper limit of the band, false to return the lower limit
+    * @return           the limit of the hysteresis band around the threshold
+    */
+   private double band(double threshold, boolean upper) {
+      return upper ? threshold * (1 + hysteresis) : threshold * (1 - hysteresis);
+   }
+}
@@ -0,0 +1,134 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol.selector;
+
+/**
+ * The workload observed in a sampling period, as used by the {@link AutonomicProtocolSelector}. The samples can be
+ * written to and read from a trace line, so that the decisions can be replayed offline (see {@link
+ * WorkloadTraceReplay})
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class WorkloadSample {
+
+   public static final String TRACE_HEADER = "timestamp,transactions,abortRate,contentionProbability," +
+         "writePercentage,writeTxDuration,throughput";
+
+   private final long timestamp;
+   private final long numberOfTransactions;
+   private final double abortRate;
+   private final double contentionProbability;
+   private final double writePercentage;
+   private final double writeTxDuration;
+   private final double throughput;
+
+   /**
+    * @param timestamp              the end of the sampling period (in milliseconds)
+    * @param numberOfTransactions   the number of local transactions that finished in the period
+    * @param abortRate              the percentage of local transactions aborted (0 to 1)
+    * @param contentionProbability  the probability of a write finding the lock taken (0 to 1)
+    * @param writePercentage        the percentage of local write transactions (0 to 1)
+    * @param writeTxDuration        the average duration of the local committed write transactions (in microseconds)
+    * @param throughput             the number of local transactions committed per second
+    */
+   public WorkloadSample(long timestamp, long numberOfTransactions, double abortRate, double contentionProbability,
+                         double writePercentage, double writeTxDuration, double throughput) {
+      this.timestamp = timestamp;
+      this.numberOfTransactions = numberOfTransactions;
+      this.abortRate = abortRate;
+      this.contentionProbability = contentionProbability;
+      this.writePercentage = writePercentage;
+      this.writeTxDuration = writeTxDuration;
+      this.throughput = throughput;
+   }
+
+   public final long getTimestamp() {
+      return timestamp;
+   }
+
+   public final long getNumberOfTransactions() {
+      return numberOfTransactions;
+   }
+
+   public final double getAbortRate() {
+      return abortRate;
+   }
+
+   public final double getContentionProbability() {
+      return contentionProbability;
+   }
+
+   public final double getWritePercentage() {
+      return writePercentage;
+   }
+
+   public final double getWriteTxDuration() {
+      return writeTxDuration;
+   }
+
+   public final double getThroughput() {
+      return throughput;
+   }
+
+   /**
+    * @return  the sample in a comma separated line, in the same order as {@link #TRACE_HEADER}
+    */
+   public final String toTraceLine() {
+      return timestamp + "," + numberOfTransactions + "," + abortRate + "," + contentionProbability + "," +
+            writePercentage + "," + writeTxDuration + "," + throughput;
+   }
+
+   /**
+    * @param line the line written by {@link #toTraceLine()}
+    * @return     the sample
+    * @throws IllegalArgumentException   if the line is malformed
+    */
+   public static WorkloadSample fromTraceLine(String line) {
+      String[] values = line.trim().split(",");
+      if (values.length != 7) {
+         throw new IllegalArgumentException("Expected 7 values in trace line: " + line);
+      }
+      try {
+         return new WorkloadSample(Long.parseLong(values[0].trim()), Long.parseLong(values[1].trim()),
+                                   Double.parseDouble(values[2].trim()), Double.parseDouble(values[3].trim()),
+                                   Double.parseDouble(values[4].trim()), Double.parseDouble(values[5].trim()),
+                                   Double.parseDouble(values[6].trim()));
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Malformed trace line: " + line, e);
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "WorkloadSample{" +
+            "timestamp=" + timestamp +
+            ", numberOfTransactions=" + numberOfTransactions +
+            ", abortRate=" + abortRate +
+            ", contentionProbability=" + contentionProbability +
+            ", writePercentage=" + writePercentage +
+            ", writeTxDuration=" + writeTxDuration +
+            ", throughput=" + throughput +
+            '}';
+   }
+}
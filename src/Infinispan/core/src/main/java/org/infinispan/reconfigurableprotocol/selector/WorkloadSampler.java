@@ -0,0 +1,138 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol.selector;
+
+import org.infinispan.stats.TransactionsStatisticsRegistry;
+import org.infinispan.stats.translations.ExposedStatistics.IspnStats;
+
+/**
+ * Creates the {@link WorkloadSample} of each sampling period from the statistics in the {@link
+ * TransactionsStatisticsRegistry} (collected by the {@code CustomStatsInterceptor}).
+ * <p/>
+ * The registry only exposes averages and percentages since the last reset, so the sampler converts them back to
+ * cumulative counters and subtracts the counters of the previous sample. The statistics are not reset, so that they
+ * can still be used by other clients. When the counters go back (i.e. the statistics were reset), the period is
+ * discarded.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class WorkloadSampler {
+
+   private Counters last;
+
+   /**
+    * @return  the workload sample since the last invocation or null if the statistics are not available or if it is
+    *          the first invocation (or the first after a reset)
+    */
+   public final synchronized WorkloadSample sample() {
+      Counters current = Counters.read();
+      Counters previous = last;
+      last = current;
+
+      if (current == null || previous == null || current.isBefore(previous)) {
+         return null;
+      }
+
+      double commits = current.commits - previous.commits;
+      double total = commits + current.aborts - previous.aborts;
+      double writeTxs = current.writeTxs - previous.writeTxs;
+      double writeCommits = current.writeCommits - previous.writeCommits;
+      double writeCommitTime = current.writeCommitTime - previous.writeCommitTime;
+      double puts = current.puts - previous.puts;
+      double contentions = current.contentions - previous.contentions;
+      double seconds = (current.timestamp - previous.timestamp) / 1000.0;
+
+      return new WorkloadSample(current.timestamp, Math.round(total),
+                                ratio(total - commits, total),
+                                ratio(contentions, puts),
+                                ratio(writeTxs, total),
+                                ratio(writeCommitTime, writeCommits),
+                                ratio(commits, seconds));
+   }
+
+   /**
+    * discards the last sample, so that the next invocation of {@link #sample()} starts a new period
+    */
+   public final synchronized void reset() {
+      last = null;
+   }
+
+   private static double ratio(double value, double total) {
+      return total <= 0 || value <= 0 ? 0 : value / total;
+   }
+
+   /**
+    * the local cumulative counters since the last reset of the statistics
+    */
+   private static class Counters {
+      private final long timestamp;
+      private final double commits;
+      private final double aborts;
+      private final double writeTxs;
+      private final double writeCommits;
+      private final double writeCommitTime;
+      private final double puts;
+      private final double contentions;
+
+      private Counters(double commits, double abortRate, double writePercentage, double successfulWritePercentage,
+                       double writeTxDuration, double puts, double contentionProbability) {
+         this.timestamp = System.currentTimeMillis();
+         this.commits = commits;
+         double total = abortRate < 1 ? commits / (1 - abortRate) : commits;
+         this.aborts = total - commits;
+         this.writeTxs = writePercentage * total;
+         this.writeCommits = successfulWritePercentage * commits;
+         this.writeCommitTime = writeTxDuration * writeCommits;
+         this.puts = puts;
+         this.contentions = contentionProbability * puts;
+      }
+
+      private static Counters read() {
+         try {
+            Object commits = TransactionsStatisticsRegistry.getAttribute(IspnStats.NUM_LOCAL_COMMITS);
+            if (commits == null) {
+               return null;
+            }
+            return new Counters(toDouble(commits),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.ABORT_RATE)),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.TX_WRITE_PERCENTAGE)),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.SUCCESSFUL_WRITE_PERCENTAGE)),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.WR_TX_SUCCESSFUL_EXECUTION_TIME)),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.NUM_PUT)),
+                                toDouble(TransactionsStatisticsRegistry.getAttribute(IspnStats.LOCAL_CONTENTION_PROBABILITY)));
+         } catch (RuntimeException e) {
+            //the statistics are not available
+            return null;
+         }
+      }
+
+      private static double toDouble(Object value) {
+         return value instanceof Number ? ((Number) value).doubleValue() : 0;
+      }
+
+      private boolean isBefore(Counters other) {
+         return commits < other.commits || puts < other.puts;
+      }
+   }
+}
@@ -0,0 +1,188 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol.selector;
+
+import org.infinispan.reconfigurableprotocol.protocol.TwoPhaseCommitProtocol;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a workload trace (as printed by {@link AutonomicProtocolSelector#printTrace()}) through an {@link
+ * AutonomicProtocolSelector}, simulating the switches and the cool down time between them, so that the decisions can
+ * be validated offline.
+ * <p/>
+ * Usage: <code>WorkloadTraceReplay traceFile [initialProtocolId [coolDownTimeSeconds [stableSamples]]]</code>
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class WorkloadTraceReplay {
+
+   private final AutonomicProtocolSelector selector;
+   private final String initialProtocolId;
+   private final long coolDownTime;
+
+   /**
+    * @param selector            the selector to validate
+    * @param initialProtocolId   the replication protocol ID at the beginning of the trace
+    * @param coolDownTime        the minimum time between two switches (in milliseconds)
+    */
+   public WorkloadTraceReplay(AutonomicProtocolSelector selector, String initialProtocolId, long coolDownTime) {
+      this.selector = selector;
+      this.initialProtocolId = initialProtocolId;
+      this.coolDownTime = coolDownTime;
+   }
+
+   /**
+    * replays the samples, in order
+    *
+    * @param samples the workload samples
+    * @return        the switches performed
+    */
+   public final List<Switch> replay(List<WorkloadSample> samples) {
+      List<Switch> switches = new ArrayList<Switch>();
+      String current = initialProtocolId;
+      long nextSwitchTime = samples.isEmpty() ? 0 : samples.get(0).getTimestamp();
+      selector.reset();
+
+      for (WorkloadSample sample : samples) {
+         String newProtocolId = selector.onSample(sample, current, sample.getTimestamp() >= nextSwitchTime);
+         if (newProtocolId != null) {
+            switches.add(new Switch(sample.getTimestamp(), current, newProtocolId));
+            current = newProtocolId;
+            nextSwitchTime = sample.getTimestamp() + coolDownTime;
+         }
+      }
+      return switches;
+   }
+
+   /**
+    * @param samples    the workload samples
+    * @param switches   the switches performed in the replay
+    * @return           the number of samples processed with each replication protocol
+    */
+   public final Map<String, Integer> samplesPerProtocol(List<WorkloadSample> samples, List<Switch> switches) {
+      Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+      String current = initialProtocolId;
+      int nextSwitch = 0;
+      for (WorkloadSample sample : samples) {
+         Integer count = result.get(current);
+         result.put(current, count == null ? 1 : count + 1);
+         if (nextSwitch < switches.size() && switches.get(nextSwitch).getTimestamp() == sample.getTimestamp()) {
+            current = switches.get(nextSwitch++).getTo();
+         }
+      }
+      return result;
+   }
+
+   /**
+    * reads a trace, ignoring the header, the empty lines and the lines started by #
+    *
+    * @param reader  the trace reader
+    * @return        the workload samples
+    * @throws IOException  if it cannot read the trace
+    */
+   public static List<WorkloadSample> readTrace(BufferedReader reader) throws IOException {
+      List<WorkloadSample> samples = new ArrayList<WorkloadSample>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#") || line.equals(WorkloadSample.TRACE_HEADER)) {
+            continue;
+         }
+         samples.add(WorkloadSample.fromTraceLine(line));
+      }
+      return samples;
+   }
+
+   public static void main(String[] args) throws IOException {
+      if (args.length == 0) {
+         System.err.println("Usage: WorkloadTraceReplay traceFile [initialProtocolId [coolDownTimeSeconds [stableSamples]]]");
+         System.exit(1);
+      }
+      String initialProtocolId = args.length > 1 ? args[1] : TwoPhaseCommitProtocol.UID;
+      long coolDownTime = args.length > 2 ? Long.parseLong(args[2]) * 1000 : 60000;
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      if (args.length > 3) {
+         selector.setStableSamples(Integer.parseInt(args[3]));
+      }
+
+      BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+      List<WorkloadSample> samples;
+      try {
+         samples = readTrace(reader);
+      } finally {
+         reader.close();
+      }
+
+      WorkloadTraceReplay replay = new WorkloadTraceReplay(selector, initialProtocolId, coolDownTime);
+      List<Switch> switches = replay.replay(samples);
+      for (Switch s : switches) {
+         System.out.println(s);
+      }
+      System.out.println(samples.size() + " samples, " + switches.size() + " switches, samples per protocol: " +
+                               replay.samplesPerProtocol(samples, switches));
+   }
+
+   /**
+    * a switch between two replication protocols
+    */
+   public static class Switch {
+      private final long timestamp;
+      private final String from;
+      private final String to;
+
+      public Switch(long timestamp, String from, String to) {
+         this.timestamp = timestamp;
+         this.from = from;
+         this.to = to;
+      }
+
+      public final long getTimestamp() {
+         return timestamp;
+      }
+
+      public final String getFrom() {
+         return from;
+      }
+
+      public final String getTo() {
+         return to;
+      }
+
+      @Override
+      public String toString() {
+         return "Switch{" +
+               "timestamp=" + timestamp +
+               ", from=" + from +
+               ", to=" + to +
+               '}';
+      }
+   }
+}
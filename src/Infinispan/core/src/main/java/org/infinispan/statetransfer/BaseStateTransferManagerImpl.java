@@ -313,7 +313,8 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
          if (trace) log.tracef("Received keys: %s", keys(state));
          for (InternalCacheEntry e : state) {
             InvocationContext ctx = icc.createInvocationContext(false, 1);
-            // locking not necessary as during rehashing we block all transactions
+            // locking not necessary as during rehashing we block all transactions, or the non-blocking state transfer
+            // discards the state of the keys written in the meantime (see UpdatedKeysTracker)
             ctx.setFlags(CACHE_MODE_LOCAL, SKIP_CACHE_LOAD, SKIP_REMOTE_LOOKUP, SKIP_SHARED_CACHE_STORE, SKIP_LOCKING,
                          SKIP_OWNERSHIP_CHECK);
             try {
@@ -349,6 +350,22 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
       }
    }
 
+   @Override
+   public boolean prepareState(Address requester, int viewId) throws StateTransferException {
+      throw new StateTransferException("Non-blocking state transfer is only supported in distributed mode");
+   }
+
+   @Override
+   public Collection<InternalCacheEntry> getState(Address requester, int viewId, int segment) throws InterruptedException,
+                                                                                                     StateTransferException {
+      throw new StateTransferException("Non-blocking state transfer is only supported in distributed mode");
+   }
+
+   @Override
+   public UpdatedKeysTracker getUpdatedKeysTracker() {
+      return null;
+   }
+
    private Collection<Object> keys(Collection<InternalCacheEntry> state) {
       Collection<Object> result = new ArrayList<Object>(state.size());
       for (InternalCacheEntry e : state) {
@@ -396,6 +413,14 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
       return viewId == newView.getViewId();
    }
 
+   protected final BaseStateTransferTask getStateTransferTask() {
+      return stateTransferTask;
+   }
+
+   protected final CacheView getCommittedView() {
+      return oldView;
+   }
+
    @Override
    public void prepareView(CacheView pendingView, CacheView committedView, List<CacheView> viewHistory, int replicationDegree) throws Exception {
       if (versionGenerator != null) {
@@ -472,10 +497,13 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
 
    @Override
    public void postInstallView(int viewId) {
-      try {
-         stateTransferLock.unblockNewTransactions(viewId);
-      } catch (Exception e) {
-         log.errorUnblockingTransactions(e);
+      // the non-blocking state transfer only blocks the write commands while it installs the union CH
+      if (!configuration.isStateTransferNonBlocking() || stateTransferLock.areNewTransactionsBlocked()) {
+         try {
+            stateTransferLock.unblockNewTransactions(viewId);
+         } catch (Exception e) {
+            log.errorUnblockingTransactions(e);
+         }
       }
 
       stateTransferInProgressLatch.open();
@@ -19,7 +19,9 @@
 package org.infinispan.statetransfer;
 
 import org.infinispan.CacheException;
+import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.write.InvalidateCommand;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.dataplacement.ClusterSnapshot;
 import org.infinispan.dataplacement.lookup.ObjectLookup;
@@ -30,12 +32,18 @@ import org.infinispan.distribution.ch.DataPlacementConsistentHash;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.totalorder.TotalOrderDistributedStateTransferTask;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.infinispan.context.Flag.CACHE_MODE_LOCAL;
 import static org.infinispan.context.Flag.SKIP_LOCKING;
@@ -80,6 +88,16 @@ public class DistributedStateTransferManagerImpl extends BaseStateTransferManage
                                                            this, dm, stateTransferLock, cacheNotifier, viewId, members,
                                                            chOld, chNew, initialView, transactionTable, totalOrderManager,
                                                            replicationDegree);
+      } else if (isNonBlocking(replicationDegree)) {
+         ConsistentHash previousCh = chOld;
+         if (previousCh == null && !getCommittedView().getMembers().isEmpty()) {
+            // a joiner has no consistent hash yet, but it needs one to know from which nodes to pull the state
+            previousCh = ConsistentHashHelper.createConsistentHash(configuration, getCommittedView().getMembers());
+         }
+         return new NonBlockingDistributedStateTransferTask(rpcManager, configuration, dataContainer,
+                                                            this, dm, stateTransferLock, cacheNotifier, viewId, members,
+                                                            previousCh, chNew, previousCh == null, transactionTable,
+                                                            replicationDegree);
       } else {
          return new DistributedStateTransferTask(rpcManager, configuration, dataContainer,
                                                  this, dm, stateTransferLock, cacheNotifier, viewId, members, chOld,
@@ -157,10 +175,105 @@ public class DistributedStateTransferManagerImpl extends BaseStateTransferManage
 
    @Override
    public boolean isLocationInDoubt(Object key) {
+      BaseStateTransferTask task = getStateTransferTask();
+      if (task instanceof NonBlockingDistributedStateTransferTask) {
+         return ((NonBlockingDistributedStateTransferTask) task).isLocationInDoubt(key);
+      }
       return isStateTransferInProgress() && !chOld.isKeyLocalToAddress(getAddress(), key, configuration.getNumOwners())
             && chNew.isKeyLocalToAddress(getAddress(), key, configuration.getNumOwners());
    }
 
+   @Override
+   public boolean prepareState(Address requester, int viewId) throws StateTransferException {
+      NonBlockingDistributedStateTransferTask task = getNonBlockingStateTransferTask(viewId);
+      return task != null && task.isReadyToSendState();
+   }
+
+   @Override
+   public Collection<InternalCacheEntry> getState(Address requester, int viewId, int segment) throws InterruptedException,
+                                                                                                     StateTransferException {
+      NonBlockingDistributedStateTransferTask task = getNonBlockingStateTransferTask(viewId);
+      if (task == null) {
+         throw new StateTransferException(String.format("No non-blocking state transfer in progress for view %d", viewId));
+      }
+      return task.getState(requester, segment);
+   }
+
+   @Override
+   public UpdatedKeysTracker getUpdatedKeysTracker() {
+      BaseStateTransferTask task = getStateTransferTask();
+      if (task instanceof NonBlockingDistributedStateTransferTask) {
+         return ((NonBlockingDistributedStateTransferTask) task).getUpdatedKeysTracker();
+      }
+      return null;
+   }
+
+   /**
+    * @return <code>true</code> if all the providers send the writes to the new owners too, so the state can be
+    *         requested
+    */
+   public boolean prepareStateRequests(Collection<Address> providers, int viewId) throws StateTransferException {
+      StateTransferControlCommand cmd = cf.buildStateTransferCommand(StateTransferControlCommand.Type.PREPARE_STATE,
+                                                                     getAddress(), viewId);
+      for (Map.Entry<Address, Object> e : invokeStateRequest(providers, cmd).entrySet()) {
+         if (e.getValue() == null) {
+            throw new StateTransferException(String.format("Node %s could not prepare the state of view %d",
+                                                           e.getKey(), viewId));
+         } else if (!Boolean.TRUE.equals(e.getValue())) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return the entries of the segment sent by each provider
+    */
+   @SuppressWarnings("unchecked")
+   public Map<Address, Collection<InternalCacheEntry>> requestState(Collection<Address> providers, int viewId,
+                                                                    int segment) throws StateTransferException {
+      StateTransferControlCommand cmd = cf.buildStateTransferCommand(StateTransferControlCommand.Type.REQUEST_STATE,
+                                                                     getAddress(), viewId, segment);
+      Map<Address, Collection<InternalCacheEntry>> state = new HashMap<Address, Collection<InternalCacheEntry>>();
+      for (Map.Entry<Address, Object> e : invokeStateRequest(providers, cmd).entrySet()) {
+         if (e.getValue() == null) {
+            throw new StateTransferException(String.format("Node %s could not send the segment %d of view %d",
+                                                           e.getKey(), segment, viewId));
+         }
+         state.put(e.getKey(), (Collection<InternalCacheEntry>) e.getValue());
+      }
+      return state;
+   }
+
+   private Map<Address, Object> invokeStateRequest(Collection<Address> providers, StateTransferControlCommand cmd)
+         throws StateTransferException {
+      Map<Address, Response> responses = rpcManager.invokeRemotely(providers, cmd, ResponseMode.SYNCHRONOUS,
+                                                                   getTimeout(), usePriorityQueue(), false);
+      Map<Address, Object> result = new HashMap<Address, Object>();
+      for (Address provider : providers) {
+         Response response = responses.get(provider);
+         if (response == null || !response.isSuccessful()) {
+            throw new StateTransferException(String.format("Node %s did not answer %s: %s", provider, cmd, response));
+         }
+         result.put(provider, ((SuccessfulResponse) response).getResponseValue());
+      }
+      return result;
+   }
+
+   private NonBlockingDistributedStateTransferTask getNonBlockingStateTransferTask(int viewId) {
+      BaseStateTransferTask task = getStateTransferTask();
+      if (task instanceof NonBlockingDistributedStateTransferTask && task.newViewId == viewId) {
+         return (NonBlockingDistributedStateTransferTask) task;
+      }
+      // the view was not received yet, or it was already cancelled
+      return null;
+   }
+
+   private boolean isNonBlocking(int replicationDegree) {
+      // a change in the replication degree keeps the consistent hash and moves the keys with the blocking push
+      return configuration.isStateTransferNonBlocking() && replicationDegree <= 0;
+   }
+
    private boolean isDataPlacementConsistentHash() {
       return dataPlacementConsistentHash != null;
    }
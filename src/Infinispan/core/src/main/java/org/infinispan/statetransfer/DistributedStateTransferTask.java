@@ -69,15 +69,15 @@ import java.util.Map;
 public class DistributedStateTransferTask extends BaseStateTransferTask {
    private static final Log log = LogFactory.getLog(DistributedStateTransferTask.class);
 
-   private final DistributionManager dm;
-   private final DistributedStateTransferManagerImpl stateTransferManager;
-   private List<Object> keysToRemove;
-   private Collection<Address> oldCacheSet;
-   private Collection<Address> newCacheSet;
-   private final Collection<Object> keysMoved = new LinkedList<Object>();
-   private TransactionTable transactionTable;
-   private final int finalNumOwners;
-   private final int initialNumOwners;
+   protected final DistributionManager dm;
+   protected final DistributedStateTransferManagerImpl stateTransferManager;
+   protected List<Object> keysToRemove;
+   protected Collection<Address> oldCacheSet;
+   protected Collection<Address> newCacheSet;
+   protected final Collection<Object> keysMoved = new LinkedList<Object>();
+   protected TransactionTable transactionTable;
+   protected final int finalNumOwners;
+   protected final int initialNumOwners;
 
    public DistributedStateTransferTask(RpcManager rpcManager, Configuration configuration, DataContainer dataContainer,
                                        DistributedStateTransferManagerImpl stateTransferManager,
@@ -150,16 +150,7 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
             pushPartialState(Collections.singleton(entry.getKey()), entry.getValue(), null);
          }
 
-         // Push locks if the cache is transactional and it is distributed
-         if (shouldPushLocks() && transactionTable != null) {
-            log.debug("Starting lock migration");
-            Map<Address, Collection<LockInfo>> locksToMigrate = new HashMap<Address, Collection<LockInfo>>();
-            rebalanceLocks(locksToMigrate, transactionTable.getRemoteTransactions());
-            rebalanceLocks(locksToMigrate, transactionTable.getLocalTransactions());
-            for (Map.Entry<Address, Collection<LockInfo>> e : locksToMigrate.entrySet()) {
-               pushPartialState(Collections.singleton(e.getKey()), null, e.getValue());
-            }
-         }
+         pushLocks();
 
          // And wait for all the push RPCs to end
          finishPushingState();
@@ -168,6 +159,21 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
       }
    }
 
+   /**
+    * Push locks if the cache is transactional and it is distributed
+    */
+   protected void pushLocks() throws StateTransferCancelledException {
+      if (shouldPushLocks() && transactionTable != null) {
+         log.debug("Starting lock migration");
+         Map<Address, Collection<LockInfo>> locksToMigrate = new HashMap<Address, Collection<LockInfo>>();
+         rebalanceLocks(locksToMigrate, transactionTable.getRemoteTransactions());
+         rebalanceLocks(locksToMigrate, transactionTable.getLocalTransactions());
+         for (Map.Entry<Address, Collection<LockInfo>> e : locksToMigrate.entrySet()) {
+            pushPartialState(Collections.singleton(e.getKey()), null, e.getValue());
+         }
+      }
+   }
+
    private void rebalanceLocks(Map<Address, Collection<LockInfo>> locksToMigrate, Collection<? extends CacheTransaction> tx) throws StateTransferCancelledException {
       for (CacheTransaction cacheTx : tx) {
          for (Object key : cacheTx.getLockedKeys()) {
@@ -232,14 +238,7 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
 
       // 3. The pushing server is the last node in the old owner list that's also in the new CH
       // It will only be null if all the old owners left the cluster
-      Address pushingOwner = null;
-      for (int i = oldOwners.size() - 1; i >= 0; i--) {
-         Address server = oldOwners.get(i);
-         if (chNew.getCaches().contains(server)) {
-            pushingOwner = server;
-            break;
-         }
-      }
+      Address pushingOwner = getPushingOwner(oldOwners);
 
       if (trace) log.tracef("Rebalancing key %s from %s to %s, pushing owner is %s",
                             key, oldOwners, newOwners, pushingOwner);
@@ -280,6 +279,20 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
       }
    }
 
+   /**
+    * @return the last node in the old owner list that's also in the new CH, or <code>null</code> if all the old owners
+    *         left the cluster
+    */
+   protected Address getPushingOwner(List<Address> oldOwners) {
+      for (int i = oldOwners.size() - 1; i >= 0; i--) {
+         Address server = oldOwners.get(i);
+         if (chNew.getCaches().contains(server)) {
+            return server;
+         }
+      }
+      return null;
+   }
+
    protected boolean shouldPushLocks() {
       return true;
    }
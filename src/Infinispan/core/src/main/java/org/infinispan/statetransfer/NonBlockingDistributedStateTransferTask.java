@@ -0,0 +1,369 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.UnionConsistentHash;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.TransactionTable;
+import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Task which handles view changes in distributed mode without blocking the transactions while the state is
+ * transferred.
+ * <p/>
+ * The write commands are blocked only for a moment, to drain the ones that are still running with the old consistent
+ * hash. Then the union of the old and the new consistent hash is installed, so the writes are applied to both the old
+ * and the new owners, and the write commands are unblocked. The new owners pull the state from the old owners, one
+ * segment at a time, where a segment is a bucket of the key hash (see {@link #getSegment(Object)}). The key is in doubt
+ * until its segment is received, so the remote gets are answered by the old owners. The writes committed in the
+ * meantime win over the received state (see {@link UpdatedKeysTracker}).
+ * <p/>
+ * The write commands are blocked again when the view is committed, to install the new consistent hash and to
+ * invalidate the keys that are no longer owned. No state is sent at that point.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class NonBlockingDistributedStateTransferTask extends DistributedStateTransferTask {
+   private static final Log log = LogFactory.getLog(NonBlockingDistributedStateTransferTask.class);
+
+   /**
+    * The number of segments in which the keys are pulled by the new owners. The consistent hashes do not have segments,
+    * so they are buckets of the key hash, the same in every node.
+    */
+   public static final int NUMBER_OF_SEGMENTS = 64;
+
+   private static final long PREPARE_RETRY_MILLIS = 10;
+
+   private final AtomicIntegerArray receivedSegments = new AtomicIntegerArray(NUMBER_OF_SEGMENTS);
+   private final UpdatedKeysTracker updatedKeysTracker = new UpdatedKeysTracker();
+   private volatile boolean unionInstalled;
+   //true when the requests for state can be answered
+   private volatile boolean readyToSendState;
+   //the keys to send to each new owner, by segment. collected when the first segment is requested
+   private Map<Address, Map<Integer, List<Object>>> keysToSend;
+
+   public NonBlockingDistributedStateTransferTask(RpcManager rpcManager, Configuration configuration,
+                                                 DataContainer dataContainer,
+                                                 DistributedStateTransferManagerImpl stateTransferManager,
+                                                 DistributionManager dm, StateTransferLock stateTransferLock,
+                                                 CacheNotifier cacheNotifier, int newViewId, Collection<Address> members,
+                                                 ConsistentHash chOld, ConsistentHash chNew, boolean initialView,
+                                                 TransactionTable transactionTable, int finalNumOwners) {
+      super(rpcManager, configuration, dataContainer, stateTransferManager, dm, stateTransferLock, cacheNotifier,
+            newViewId, members, chOld, chNew, initialView, transactionTable, finalNumOwners);
+   }
+
+   /**
+    * @return the segment of the key, between 0 and {@link #NUMBER_OF_SEGMENTS} - 1
+    */
+   public static int getSegment(Object key) {
+      int h = key.hashCode();
+      // spread the bits, the low ones of the String and Integer hash codes are not well distributed
+      h ^= (h >>> 20) ^ (h >>> 12);
+      h ^= (h >>> 7) ^ (h >>> 4);
+      return (h & Integer.MAX_VALUE) % NUMBER_OF_SEGMENTS;
+   }
+
+   @Override
+   public void doPerformStateTransfer() throws Exception {
+      if (!stateTransferManager.startStateTransfer(newViewId, members, initialView))
+         return;
+
+      if (!configuration.isRehashEnabled() || initialView) {
+         if (!initialView) log.trace("Rehash not enabled, so not pulling state");
+         // there is no state to transfer, keep the write commands blocked until the view is committed
+         stateTransferLock.blockNewTransactions(newViewId);
+         readyToSendState = true;
+         return;
+      }
+
+      if (log.isDebugEnabled())
+         log.debugf("Commencing non-blocking rehash %d on node: %s. Before start, data container had %d entries",
+                    newViewId, self, dataContainer.size(null));
+      if (trace) {
+         log.tracef("Rebalancing: chOld = %s, chNew = %s", chOld, chNew);
+      }
+
+      cacheNotifier.notifyDataRehashed(oldCacheSet, newCacheSet, newViewId, true, null);
+
+      // the write commands started with the old CH must finish before they are sent to the new owners too
+      stateTransferLock.blockNewTransactions(newViewId);
+      try {
+         dm.setConsistentHash(new UnionConsistentHash(chOld, chNew));
+         unionInstalled = true;
+      } finally {
+         stateTransferLock.unblockNewTransactions(newViewId);
+      }
+      readyToSendState = true;
+
+      pushLocks();
+      pullState();
+
+      // And wait for all the lock push RPCs to end
+      finishPushingState();
+   }
+
+   @Override
+   public void commitStateTransfer() {
+      if (configuration.isRehashEnabled() && !initialView) {
+         // the write commands are not blocked here: once the new CH is installed, a write to a key that is no longer
+         // local is not committed in this node (see the ownership check in NonVersionedCommitContextEntries), so the keys to
+         // remove can be collected while the writes are running. Blocking them again for the same view would make
+         // the nodes wait for each other's running writes until the commit times out
+         dm.setConsistentHash(chNew);
+         keysToRemove = collectKeysToRemove();
+      }
+      super.commitStateTransfer();
+   }
+
+   @Override
+   public void cancelStateTransfer(boolean sync) {
+      super.cancelStateTransfer(sync);
+      readyToSendState = false;
+      if (unionInstalled) {
+         // stop sending the writes to the new owners
+         dm.setConsistentHash(chOld);
+         unionInstalled = false;
+      }
+   }
+
+   /**
+    * @return the tracker of the keys written while this state transfer is in progress
+    */
+   public UpdatedKeysTracker getUpdatedKeysTracker() {
+      return updatedKeysTracker;
+   }
+
+   /**
+    * @return <code>true</code> if the key is owned in the new consistent hash but not in the old one, and its segment
+    *         was not received yet
+    */
+   public boolean isLocationInDoubt(Object key) {
+      return receivedSegments.get(getSegment(key)) == 0 && !chOld.isKeyLocalToAddress(self, key, initialNumOwners)
+            && chNew.isKeyLocalToAddress(self, key, finalNumOwners);
+   }
+
+   /**
+    * @return <code>true</code> if the writes are sent to both the old and the new owners, so the state can be requested
+    */
+   public boolean isReadyToSendState() {
+      return readyToSendState;
+   }
+
+   /**
+    * @return the entries of the segment that this node sends to the requester, with their current value
+    */
+   public synchronized Collection<InternalCacheEntry> getState(Address requester, int segment) throws StateTransferException {
+      checkIfCancelled();
+      if (!unionInstalled) {
+         return Collections.emptyList();
+      }
+      if (keysToSend == null) {
+         try {
+            keysToSend = collectKeysToSend();
+         } catch (CacheLoaderException e) {
+            throw new StateTransferException("Failed loading the keys from the cache store", e);
+         }
+      }
+      Map<Integer, List<Object>> segments = keysToSend.get(requester);
+      List<Object> keys = segments == null ? null : segments.remove(segment);
+      if (keys == null) {
+         return Collections.emptyList();
+      }
+
+      CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
+      Collection<InternalCacheEntry> state = new ArrayList<InternalCacheEntry>(keys.size());
+      for (Object key : keys) {
+         InternalCacheEntry value = dataContainer.peek(key, null);
+         if ((value == null || value.getValue() == null) && cacheStore != null) {
+            try {
+               value = cacheStore.load(key);
+            } catch (CacheLoaderException e) {
+               log.failedLoadingValueFromCacheStore(key);
+            }
+         }
+         // the key may have been removed after it was collected
+         if (value != null && value.getValue() != null && !value.isExpired()) {
+            state.add(value);
+         }
+      }
+      if (trace) log.tracef("Sending %d keys of segment %d to %s", state.size(), segment, requester);
+      return state;
+   }
+
+   /**
+    * Requests the state from the old owners, one segment at a time, and applies it.
+    */
+   private void pullState() throws Exception {
+      List<Address> providers = new ArrayList<Address>();
+      for (Address address : chOld.getCaches()) {
+         if (!address.equals(self) && chNew.getCaches().contains(address)) {
+            providers.add(address);
+         }
+      }
+      if (providers.isEmpty()) {
+         markAllSegmentsReceived();
+         return;
+      }
+
+      // the old owners collect the keys only after all of them send the writes to the new owners, otherwise they
+      // could miss a key written with the old CH after they collected theirs. They don't wait for it, so that a
+      // cancelled view does not keep this thread waiting for a node that will never receive it
+      long timeout = stateTransferManager.getTimeout();
+      long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      while (!stateTransferManager.prepareStateRequests(providers, newViewId)) {
+         checkIfCancelled();
+         if (System.nanoTime() > endNanos) {
+            throw new StateTransferException(String.format("Timed out after %s waiting for %s to prepare the state of view %d",
+                                                           Util.prettyPrintTime(timeout), providers, newViewId));
+         }
+         Thread.sleep(PREPARE_RETRY_MILLIS);
+      }
+
+      long startNanos = System.nanoTime();
+      int receivedKeys = 0;
+      for (int segment = 0; segment < NUMBER_OF_SEGMENTS; segment++) {
+         checkIfCancelled();
+         Map<Address, Collection<InternalCacheEntry>> state = stateTransferManager.requestState(providers, newViewId, segment);
+         for (Map.Entry<Address, Collection<InternalCacheEntry>> e : state.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+               stateTransferManager.applyState(e.getValue(), e.getKey(), newViewId);
+               receivedKeys += e.getValue().size();
+            }
+         }
+         receivedSegments.set(segment, 1);
+      }
+
+      if (log.isDebugEnabled()) {
+         log.debugf("Node %s pulled %d keys in %d segments from %s in %s, %d keys were written in the meantime", self,
+                    receivedKeys, NUMBER_OF_SEGMENTS, providers,
+                    Util.prettyPrintTime(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS),
+                    updatedKeysTracker.getUpdatedKeysCount());
+      }
+   }
+
+   private void markAllSegmentsReceived() {
+      for (int segment = 0; segment < NUMBER_OF_SEGMENTS; segment++) {
+         receivedSegments.set(segment, 1);
+      }
+   }
+
+   /**
+    * Computes, for each key that this node pushes (see {@link #getPushingOwner(java.util.List)}), the new owners that
+    * did not own it before.
+    */
+   private Map<Address, Map<Integer, List<Object>>> collectKeysToSend() throws StateTransferCancelledException,
+                                                                               CacheLoaderException {
+      Map<Address, Map<Integer, List<Object>>> result = new HashMap<Address, Map<Integer, List<Object>>>();
+      for (InternalCacheEntry ice : dataContainer) {
+         collectKeyToSend(ice.getKey(), result);
+      }
+
+      checkIfCancelled();
+
+      // Only fetch the keys from the cache store if the cache store is not shared
+      CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
+      if (cacheStore != null) {
+         for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
+            collectKeyToSend(key, result);
+         }
+      }
+      return result;
+   }
+
+   private void collectKeyToSend(Object key, Map<Address, Map<Integer, List<Object>>> result) {
+      List<Address> oldOwners = chOld.locate(key, initialNumOwners);
+      List<Address> newOwners = chNew.locate(key, finalNumOwners);
+      if (oldOwners.equals(newOwners) || !self.equals(getPushingOwner(oldOwners)))
+         return;
+
+      keysMoved.add(key);
+      for (Address server : newOwners) {
+         if (!oldOwners.contains(server)) {
+            Map<Integer, List<Object>> segments = result.get(server);
+            if (segments == null) {
+               segments = new HashMap<Integer, List<Object>>();
+               result.put(server, segments);
+            }
+            int segment = getSegment(key);
+            List<Object> keys = segments.get(segment);
+            if (keys == null) {
+               keys = new ArrayList<Object>();
+               segments.put(segment, keys);
+            }
+            keys.add(key);
+         }
+      }
+   }
+
+   /**
+    * @return the keys that were owned in the old consistent hash, but are not owned in the new one
+    */
+   private List<Object> collectKeysToRemove() {
+      List<Object> result = new ArrayList<Object>();
+      for (InternalCacheEntry ice : dataContainer) {
+         collectKeyToRemove(ice.getKey(), result);
+      }
+      CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
+      if (cacheStore != null) {
+         try {
+            for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
+               collectKeyToRemove(key, result);
+            }
+         } catch (CacheLoaderException e) {
+            log.warnf(e, "Failed loading the keys from the cache store, the stored keys no longer owned are kept");
+         }
+      }
+      return result;
+   }
+
+   private void collectKeyToRemove(Object key, List<Object> result) {
+      List<Address> oldOwners = chOld.locate(key, initialNumOwners);
+      List<Address> newOwners = chNew.locate(key, finalNumOwners);
+      if (!oldOwners.equals(newOwners) && !newOwners.contains(self)) {
+         result.add(key);
+      }
+   }
+}
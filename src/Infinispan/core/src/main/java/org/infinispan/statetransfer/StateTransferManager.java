@@ -67,5 +67,24 @@ public interface StateTransferManager {
     */
    boolean isLocationInDoubt(Object key);
 
+   /**
+    * @return <code>true</code> if the local node sends the writes to both the old and the new owners of the keys, so
+    *         that the requester can start pulling the state of the view. Only used by the non-blocking state transfer.
+    */
+   boolean prepareState(Address requester, int viewId) throws StateTransferException;
+
+   /**
+    * @return the entries of the segment that moved from the local node to the requester in the view. Only used by the
+    *         non-blocking state transfer.
+    */
+   Collection<InternalCacheEntry> getState(Address requester, int viewId, int segment) throws InterruptedException,
+                                                                                              StateTransferException;
+
+   /**
+    * @return the tracker of the keys written while a non-blocking state transfer is in progress, or <code>null</code>
+    *         if the state is applied while the write commands are blocked
+    */
+   UpdatedKeysTracker getUpdatedKeysTracker();
+
 }
 
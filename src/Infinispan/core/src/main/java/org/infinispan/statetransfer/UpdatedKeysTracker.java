@@ -0,0 +1,104 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
+import org.infinispan.util.concurrent.locks.StripedLock;
+
+import java.util.Set;
+
+/**
+ * Keeps the keys written in the local node while a non-blocking state transfer is in progress. The writes are applied
+ * to the new owners as soon as the union of the old and the new consistent hash is installed, so the state pulled from
+ * the old owners afterwards may be older than the value already committed. It is only applied to the keys that were not
+ * written in the meantime.
+ * <p/>
+ * The commit of a write and the application of the state for the same key are serialized by a striped lock, because
+ * the state is applied without acquiring the key locks.
+ * <p/>
+ * A removal of a key that was not received yet has nothing to commit, but it is tracked too (see
+ * {@link #commitRemovalOfMissingKey(Object)}): the old owner may still send the removed value if the state was collected
+ * before the removal reached it.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class UpdatedKeysTracker {
+
+   private final StripedLock locks = new StripedLock();
+   private final Set<Object> updatedKeys = new ConcurrentHashSet<Object>();
+
+   /**
+    * Commits an entry written by a transaction or a non-transactional write command and remembers its key.
+    */
+   public void commitUpdate(CacheEntry entry, DataContainer dataContainer, EntryVersion newVersion) {
+      Object key = entry.getKey();
+      locks.acquireLock(key, true);
+      try {
+         updatedKeys.add(key);
+         entry.commit(dataContainer, newVersion);
+      } finally {
+         locks.releaseLock(key);
+      }
+   }
+
+   /**
+    * Remembers the key of an unconditional removal that found no entry in the local node, so that the value received
+    * later from an old owner is discarded.
+    */
+   public void commitRemovalOfMissingKey(Object key) {
+      locks.acquireLock(key, true);
+      try {
+         updatedKeys.add(key);
+      } finally {
+         locks.releaseLock(key);
+      }
+   }
+
+   /**
+    * Commits an entry received from an old owner, unless its key was written in the meantime.
+    *
+    * @return <code>true</code> if the entry was committed, <code>false</code> if it was discarded
+    */
+   public boolean commitState(CacheEntry entry, DataContainer dataContainer, EntryVersion newVersion) {
+      Object key = entry.getKey();
+      locks.acquireLock(key, true);
+      try {
+         if (updatedKeys.contains(key)) {
+            entry.rollback();
+            return false;
+         }
+         entry.commit(dataContainer, newVersion);
+         return true;
+      } finally {
+         locks.releaseLock(key);
+      }
+   }
+
+   public int getUpdatedKeysCount() {
+      return updatedKeys.size();
+   }
+}
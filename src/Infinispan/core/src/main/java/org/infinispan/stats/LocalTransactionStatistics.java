@@ -44,6 +44,18 @@ public class LocalTransactionStatistics extends TransactionStatistics {
       this.stillLocalExecution = true;
    }
 
+   /**
+    * creates the statistics of all the local transactions of a node, that are updated concurrently
+    */
+   public static LocalTransactionStatistics createNodeScope(Configuration configuration) {
+      return new LocalTransactionStatistics(configuration, new ThreadLocalStatisticsContainer(LocalStatistics.getSize()));
+   }
+
+   private LocalTransactionStatistics(Configuration configuration, StatisticsContainer statisticsContainer) {
+      super(statisticsContainer, configuration);
+      this.stillLocalExecution = true;
+   }
+
    public final void terminateLocalExecution() {
       this.stillLocalExecution = false;
 
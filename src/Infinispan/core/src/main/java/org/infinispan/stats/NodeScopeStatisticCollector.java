@@ -42,25 +42,26 @@ import static org.infinispan.stats.translations.ExposedStatistics.IspnStats.*;
 public class NodeScopeStatisticCollector {
    private final static Log log = LogFactory.getLog(NodeScopeStatisticCollector.class);
 
-   private LocalTransactionStatistics localTransactionStatistics;
-   private RemoteTransactionStatistics remoteTransactionStatistics;
+   //the statistics are replaced on reset and they can be updated concurrently without locking
+   private volatile LocalTransactionStatistics localTransactionStatistics;
+   private volatile RemoteTransactionStatistics remoteTransactionStatistics;
 
-   private PercentileStats localTransactionWrExecutionTime;
-   private PercentileStats remoteTransactionWrExecutionTime;
-   private PercentileStats localTransactionRoExecutionTime;
-   private PercentileStats remoteTransactionRoExecutionTime;
+   private volatile PercentileStats localTransactionWrExecutionTime;
+   private volatile PercentileStats remoteTransactionWrExecutionTime;
+   private volatile PercentileStats localTransactionRoExecutionTime;
+   private volatile PercentileStats remoteTransactionRoExecutionTime;
 
    private Configuration configuration;
 
 
-   private long lastResetTime;
+   private volatile long lastResetTime;
 
    public final synchronized void reset(){
       if (log.isTraceEnabled()) {
          log.tracef("Resetting Node Scope Statistics");
       }
-      this.localTransactionStatistics = new LocalTransactionStatistics(this.configuration);
-      this.remoteTransactionStatistics = new RemoteTransactionStatistics(this.configuration);
+      this.localTransactionStatistics = LocalTransactionStatistics.createNodeScope(this.configuration);
+      this.remoteTransactionStatistics = RemoteTransactionStatistics.createNodeScope(this.configuration);
 
       this.localTransactionRoExecutionTime = PercentileStatsFactory.createNewPercentileStats();
       this.localTransactionWrExecutionTime = PercentileStatsFactory.createNewPercentileStats();
@@ -75,7 +76,7 @@ public class NodeScopeStatisticCollector {
       reset();
    }
 
-   public final synchronized void merge(TransactionStatistics ts){
+   public final void merge(TransactionStatistics ts){
       if (log.isTraceEnabled()) {
          log.tracef("Merge transaction statistics %s to the node statistics", ts);
       }
@@ -119,18 +120,18 @@ public class NodeScopeStatisticCollector {
       }
    }
 
-   public final synchronized void addLocalValue(IspnStats stat, double value) {
+   public final void addLocalValue(IspnStats stat, double value) {
       localTransactionStatistics.addValue(stat, value);
    }
 
-   public final synchronized void addRemoteValue(IspnStats stat, double value) {
+   public final void addRemoteValue(IspnStats stat, double value) {
       remoteTransactionStatistics.addValue(stat, value);
    }
 
 
 
 
-   public final synchronized double getPercentile(IspnStats param, int percentile) throws NoIspnStatException{
+   public final double getPercentile(IspnStats param, int percentile) throws NoIspnStatException{
       if (log.isTraceEnabled()) {
          log.tracef("Get percentile %s from %s", percentile, param);
       }
@@ -148,12 +149,8 @@ public class NodeScopeStatisticCollector {
       }
    }
 
-   /*
-   Can I invoke this synchronized method from inside itself??
-    */
-
    @SuppressWarnings("UnnecessaryBoxing")
-   public final synchronized Object getAttribute(IspnStats param) throws NoIspnStatException{
+   public final Object getAttribute(IspnStats param) throws NoIspnStatException{
       if (log.isTraceEnabled()) {
          log.tracef("Get attribute %s", param);
       }
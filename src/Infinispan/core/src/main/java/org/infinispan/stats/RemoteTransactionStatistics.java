@@ -38,6 +38,17 @@ public class RemoteTransactionStatistics extends TransactionStatistics{
       super(RemoteStatistics.getSize(),configuration);
    }
 
+   /**
+    * creates the statistics of all the remote transactions of a node, that are updated concurrently
+    */
+   public static RemoteTransactionStatistics createNodeScope(Configuration configuration) {
+      return new RemoteTransactionStatistics(configuration, new ThreadLocalStatisticsContainer(RemoteStatistics.getSize()));
+   }
+
+   private RemoteTransactionStatistics(Configuration configuration, StatisticsContainer statisticsContainer) {
+      super(statisticsContainer, configuration);
+   }
+
    protected final void onPrepareCommand(){
       //nop
    }
@@ -0,0 +1,145 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link StatisticsContainer} that can be updated by multiple threads without locking. Each thread adds the values
+ * to its own counters, that are only combined when they are read. It is used by the {@link
+ * NodeScopeStatisticCollector}, so that the transactions finishing concurrently do not contend to merge their
+ * statistics.
+ * <p/>
+ * The counters of a thread are only written by that thread and they are published with {@link
+ * AtomicLongArray#lazySet(int, long)}, so the writes do not need a full memory barrier. When a thread dies, its
+ * counters are added to the counters of the dead threads and they are discarded.
+ * <p/>
+ * Note: a read concurrent with a merge can see only some of the values of the merged transaction.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class ThreadLocalStatisticsContainer implements StatisticsContainer {
+
+   private final int size;
+   private final ConcurrentLinkedQueue<ThreadCounters> threadCounters;
+   private final ThreadLocal<ThreadCounters> localCounters;
+   private final long[] deadThreadCounters; //guarded by this
+
+   public ThreadLocalStatisticsContainer(int size) {
+      this.size = size;
+      this.threadCounters = new ConcurrentLinkedQueue<ThreadCounters>();
+      this.localCounters = new ThreadLocal<ThreadCounters>();
+      this.deadThreadCounters = new long[size];
+   }
+
+   @Override
+   public final void addValue(int param, double value) {
+      ThreadCounters counters = localCounters.get();
+      if (counters == null) {
+         counters = new ThreadCounters(Thread.currentThread(), size);
+         localCounters.set(counters);
+         threadCounters.add(counters);
+      }
+      counters.add(param, (long) value);
+   }
+
+   @Override
+   public final synchronized long getValue(int param) {
+      long value = deadThreadCounters[param];
+      for (Iterator<ThreadCounters> iterator = threadCounters.iterator(); iterator.hasNext(); ) {
+         ThreadCounters counters = iterator.next();
+         value += counters.values.get(param);
+         retireIfDead(counters, iterator);
+      }
+      return value;
+   }
+
+   @Override
+   public final void mergeTo(StatisticsContainer sc) {
+      long[] values = snapshot();
+      for (int i = 0; i < size; ++i) {
+         sc.addValue(i, values[i]);
+      }
+   }
+
+   @Override
+   public final int size() {
+      return size;
+   }
+
+   @Override
+   public final void dump() {
+      long[] values = snapshot();
+      for (int i = 0; i < size; ++i) {
+         System.out.println("** " + i + " : " + values[i] + " **");
+      }
+   }
+
+   /**
+    * @return  the sum of the counters of all threads
+    */
+   private synchronized long[] snapshot() {
+      long[] values = new long[size];
+      System.arraycopy(deadThreadCounters, 0, values, 0, size);
+      for (Iterator<ThreadCounters> iterator = threadCounters.iterator(); iterator.hasNext(); ) {
+         ThreadCounters counters = iterator.next();
+         for (int i = 0; i < size; ++i) {
+            values[i] += counters.values.get(i);
+         }
+         retireIfDead(counters, iterator);
+      }
+      return values;
+   }
+
+   /**
+    * adds the counters of a dead thread to the dead threads counters and discards them. a dead thread does not write
+    * anymore, so its counters are final.
+    */
+   private void retireIfDead(ThreadCounters counters, Iterator<ThreadCounters> iterator) {
+      if (counters.owner.isAlive()) {
+         return;
+      }
+      for (int i = 0; i < size; ++i) {
+         deadThreadCounters[i] += counters.values.get(i);
+      }
+      iterator.remove();
+   }
+
+   private static class ThreadCounters {
+      private final Thread owner;
+      private final AtomicLongArray values;
+
+      private ThreadCounters(Thread owner, int size) {
+         this.owner = owner;
+         this.values = new AtomicLongArray(size);
+      }
+
+      private void add(int param, long value) {
+         //only the owner writes, so the read-modify-write does not need to be atomic
+         values.lazySet(param, values.get(param) + value);
+      }
+   }
+}
@@ -54,11 +54,15 @@ public abstract class TransactionStatistics implements InfinispanStat {
 
 
    public TransactionStatistics(int size, Configuration configuration) {
+      this(new StatisticsContainerImpl(size), configuration);
+   }
+
+   protected TransactionStatistics(StatisticsContainer statisticsContainer, Configuration configuration) {
       this.initTime = System.nanoTime();
       this.isReadOnly = true; //as far as it does not tries to perform a put operation
       this.takenLocks = new HashMap<Object, Long>();
       this.transactionalClass = TransactionsStatisticsRegistry.DEFAULT_ISPN_CLASS;
-      this.statisticsContainer = new StatisticsContainerImpl(size);
+      this.statisticsContainer = statisticsContainer;
       this.configuration = configuration;
       if (log.isTraceEnabled()) {
          log.tracef("Created transaction statistics. Class is %s. Start time is %s",
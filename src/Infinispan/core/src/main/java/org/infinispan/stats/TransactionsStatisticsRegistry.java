@@ -174,7 +174,10 @@ public final class TransactionsStatisticsRegistry {
 
       thread.remove();
       TransactionTS lastTS = lastTransactionTS.get();
-      lastTS.setEndLastTxTs(System.nanoTime());
+      //it is null if the thread only terminated remote transactions
+      if (lastTS != null) {
+         lastTS.setEndLastTxTs(System.nanoTime());
+      }
    }
 
    public static Object getAttribute(IspnStats param,String className){
@@ -0,0 +1,268 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats.percentiles;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link PercentileStats} that counts the samples in log-bucketed histogram, in the style of the HdrHistogram.
+ * <p/>
+ * The values (rounded to longs) between 0 and 2^<code>significantBits</code> - 1 are counted exactly. Above that,
+ * each power of two is split in 2^(<code>significantBits</code> - 1) buckets, so the relative error of a percentile
+ * is below 2^-(<code>significantBits</code> - 1). It covers all the non-negative long values, with 3712 buckets with
+ * the default 7 significant bits.
+ * <p/>
+ * Inserting a sample does not allocate and does not lock: it only increments the counter of the bucket. The
+ * histograms can be merged (e.g. the histograms of different threads or of different nodes) and they are serialized
+ * with only the non empty buckets. The interval histogram (see {@link #getIntervalHistogram()}) contains the samples
+ * inserted since the last time it was requested, without resetting this histogram.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class LogHistogram implements PercentileStats, Serializable {
+
+   public static final int DEFAULT_SIGNIFICANT_BITS = 7;
+   private static final long serialVersionUID = -4271850913437541527L;
+
+   private final int significantBits;
+   private transient AtomicLongArray counts;
+   private transient long[] lastIntervalCounts; //guarded by this
+
+   public LogHistogram() {
+      this(DEFAULT_SIGNIFICANT_BITS);
+   }
+
+   /**
+    * @param significantBits  the number of significant bits kept for each value, between 1 and 12
+    */
+   public LogHistogram(int significantBits) {
+      if (significantBits < 1 || significantBits > 12) {
+         throw new IllegalArgumentException("The number of significant bits must be between 1 and 12");
+      }
+      this.significantBits = significantBits;
+      this.counts = new AtomicLongArray(numberOfBuckets(significantBits));
+   }
+
+   @Override
+   public final void insertSample(double value) {
+      insertValue(value > 0 ? (long) value : 0);
+   }
+
+   /**
+    * inserts a sample
+    *
+    * @param value   the value (the negative values are counted as zero)
+    */
+   public final void insertValue(long value) {
+      counts.getAndIncrement(bucket(value < 0 ? 0 : value, significantBits));
+   }
+
+   /**
+    * same as {@link #getPercentile(double)}
+    */
+   @Override
+   public final double getKPercentile(int percentile) {
+      return getPercentile(percentile);
+   }
+
+   /**
+    * returns the value below which the percentage of the samples given is found. the value returned is the highest
+    * value counted in the bucket of that sample.
+    *
+    * @param percentile the percentile, between 0 and 100
+    * @return           the percentile value or 0 if no samples was inserted
+    */
+   public final double getPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+         throw new IllegalArgumentException("Wrong percentile " + percentile);
+      }
+      return percentile(snapshot(), percentile);
+   }
+
+   /**
+    * @return  the number of samples inserted
+    */
+   public final long getCount() {
+      long count = 0;
+      for (int i = 0; i < counts.length(); ++i) {
+         count += counts.get(i);
+      }
+      return count;
+   }
+
+   /**
+    * adds the samples of the other histogram to this histogram
+    *
+    * @param other   the other histogram, with the same number of significant bits
+    */
+   public final void merge(LogHistogram other) {
+      if (other.significantBits != significantBits) {
+         throw new IllegalArgumentException("Cannot merge an histogram with " + other.significantBits +
+                                                  " significant bits into an histogram with " + significantBits);
+      }
+      for (int i = 0; i < counts.length(); ++i) {
+         long count = other.counts.get(i);
+         if (count != 0) {
+            counts.getAndAdd(i, count);
+         }
+      }
+   }
+
+   /**
+    * @return  a new histogram with the samples inserted since the last invocation of this method (or since the
+    *          creation or the last reset)
+    */
+   public final synchronized LogHistogram getIntervalHistogram() {
+      long[] current = snapshot();
+      LogHistogram interval = new LogHistogram(significantBits);
+      for (int i = 0; i < current.length; ++i) {
+         long count = current[i] - (lastIntervalCounts == null ? 0 : lastIntervalCounts[i]);
+         if (count > 0) {
+            interval.counts.set(i, count);
+         }
+      }
+      lastIntervalCounts = current;
+      return interval;
+   }
+
+   /**
+    * removes all the samples. the samples inserted concurrently can be lost.
+    */
+   @Override
+   public final synchronized void reset() {
+      for (int i = 0; i < counts.length(); ++i) {
+         counts.set(i, 0);
+      }
+      lastIntervalCounts = null;
+   }
+
+   public final int getSignificantBits() {
+      return significantBits;
+   }
+
+   @Override
+   public String toString() {
+      long[] snapshot = snapshot();
+      return "LogHistogram{" +
+            "count=" + sum(snapshot) +
+            ", p50=" + percentile(snapshot, 50) +
+            ", p90=" + percentile(snapshot, 90) +
+            ", p99=" + percentile(snapshot, 99) +
+            ", p100=" + percentile(snapshot, 100) +
+            '}';
+   }
+
+   /**
+    * @return  the bucket index of the (non-negative) value
+    */
+   static int bucket(long value, int significantBits) {
+      int highestBit = 63 - Long.numberOfLeadingZeros(value);
+      if (highestBit < significantBits) {
+         return (int) value;
+      }
+      int shift = highestBit - significantBits + 1;
+      return (shift << (significantBits - 1)) + (int) (value >>> shift);
+   }
+
+   /**
+    * @return  the highest value counted in the bucket
+    */
+   static long highestValue(int bucket, int significantBits) {
+      if (bucket < (1 << significantBits)) {
+         return bucket;
+      }
+      int halfBuckets = 1 << (significantBits - 1);
+      int shift = bucket / halfBuckets - 1;
+      long subBucket = bucket - shift * halfBuckets;
+      //the last bucket ends at Long.MAX_VALUE
+      return ((subBucket + 1) << shift) - 1;
+   }
+
+   static int numberOfBuckets(int significantBits) {
+      return bucket(Long.MAX_VALUE, significantBits) + 1;
+   }
+
+   private long[] snapshot() {
+      long[] snapshot = new long[counts.length()];
+      for (int i = 0; i < snapshot.length; ++i) {
+         snapshot[i] = counts.get(i);
+      }
+      return snapshot;
+   }
+
+   private double percentile(long[] snapshot, double percentile) {
+      long total = sum(snapshot);
+      if (total == 0) {
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile * total / 100));
+      long seen = 0;
+      for (int i = 0; i < snapshot.length; ++i) {
+         seen += snapshot[i];
+         if (seen >= rank) {
+            return highestValue(i, significantBits);
+         }
+      }
+      return highestValue(snapshot.length - 1, significantBits);
+   }
+
+   private static long sum(long[] snapshot) {
+      long sum = 0;
+      for (long count : snapshot) {
+         sum += count;
+      }
+      return sum;
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      long[] snapshot = snapshot();
+      int nonEmpty = 0;
+      for (long count : snapshot) {
+         if (count != 0) {
+            nonEmpty++;
+         }
+      }
+      out.writeInt(nonEmpty);
+      for (int i = 0; i < snapshot.length; ++i) {
+         if (snapshot[i] != 0) {
+            out.writeInt(i);
+            out.writeLong(snapshot[i]);
+         }
+      }
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      counts = new AtomicLongArray(numberOfBuckets(significantBits));
+      int nonEmpty = in.readInt();
+      for (int i = 0; i < nonEmpty; ++i) {
+         counts.set(in.readInt(), in.readLong());
+      }
+   }
+}
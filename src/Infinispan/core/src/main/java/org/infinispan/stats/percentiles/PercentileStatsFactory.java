@@ -31,6 +31,6 @@ package org.infinispan.stats.percentiles;
 public final class PercentileStatsFactory {
 
    public static PercentileStats createNewPercentileStats(){
-      return new ReservoirSampling();
+      return new LogHistogram();
    }
 }
@@ -24,24 +24,91 @@ package org.infinispan.transaction;
 
 import org.infinispan.transaction.xa.GlobalTransaction;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 /**
  * This latch represents the dependencies between the transactions. A transaction has a set of this latch and
  * it will wait on each one. The latch is released when the transaction finishes (ie, the modification are applied or
  * it is rollbacked)
+ * <p/>
+ * Listeners can be registered to be notified when the latch is released, avoiding the need to poll the latch.
  *
  * @author Pedro Ruivo
  * @since 5.2
  */
 public class TxDependencyLatch extends CountDownLatch {
    private String globalTransaction;
+   private List<Runnable> listeners;
+   //the keys written by the transaction, set when it is added to the dependency graph
+   private volatile Object[] keysWritten;
+   //the delivery sequence number of the last transaction that added this one to its dependencies. Only accessed by
+   //the delivery thread
+   private long dependencyMark = -1;
 
    public TxDependencyLatch(GlobalTransaction globalTransaction) {
       super(1);
       this.globalTransaction = globalTransaction.prettyPrint();
    }
 
+   /**
+    * registers a listener to be invoked when this latch is released. If the latch is already released, the listener
+    * is invoked immediately by the caller thread.
+    *
+    * @param listener the listener
+    */
+   public final void addCompletionListener(Runnable listener) {
+      synchronized (this) {
+         if (getCount() != 0) {
+            if (listeners == null) {
+               listeners = new LinkedList<Runnable>();
+            }
+            listeners.add(listener);
+            return;
+         }
+      }
+      listener.run();
+   }
+
+   public final Object[] getKeysWritten() {
+      return keysWritten;
+   }
+
+   public final void setKeysWritten(Object[] keysWritten) {
+      this.keysWritten = keysWritten;
+   }
+
+   /**
+    * marks this transaction as a dependency of the transaction being added to the dependency graph, so it is added
+    * only once to its dependencies. It must be invoked by the delivery thread.
+    *
+    * @param mark the delivery sequence number of the transaction being added
+    * @return false if this transaction was already marked by the same transaction
+    */
+   public final boolean markDependency(long mark) {
+      if (dependencyMark == mark) {
+         return false;
+      }
+      dependencyMark = mark;
+      return true;
+   }
+
+   @Override
+   public void countDown() {
+      super.countDown();
+      List<Runnable> toNotify;
+      synchronized (this) {
+         toNotify = listeners;
+         listeners = null;
+      }
+      if (toNotify != null) {
+         for (Runnable listener : toNotify) {
+            listener.run();
+         }
+      }
+   }
+
    @Override
    public String toString() {
       return "TxDependencyLatch{" +
@@ -33,6 +33,9 @@ import org.infinispan.container.versioning.gmu.GMUVersionGenerator;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
+import org.infinispan.loaders.CacheLoader;
+import org.infinispan.loaders.CacheLoaderManager;
+import org.infinispan.loaders.gmu.VersionedCacheStore;
 import org.infinispan.transaction.LocalTransaction;
 import org.infinispan.transaction.gmu.manager.CommittedTransaction;
 import org.infinispan.util.Util;
@@ -42,11 +45,22 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.infinispan.container.versioning.InequalVersionComparisonResult.*;
 import static org.infinispan.container.versioning.gmu.GMUVersion.NON_EXISTING;
@@ -54,6 +68,13 @@ import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersion;
 import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersionGenerator;
 
 /**
+ * Keeps the versions committed in this node, most recent first.
+ * <p/>
+ * The committed versions are appended without locks: each {@link VersionEntry} carries the most recent version merged
+ * with all the previous ones and it is published with a compare-and-set, so the current and most recent versions are
+ * read without any synchronization. The threads waiting for a version are parked in a latch per version and they are
+ * only woken up when that version (or a higher one) is committed.
+ *
  * @author Pedro Ruivo
  * @author Sebastiano Peluso
  * @since 5.2
@@ -61,27 +82,47 @@ import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersionGenerator;
 public class CommitLog {
 
    private static final Log log = LogFactory.getLog(CommitLog.class);
-   private GMUVersion mostRecentVersion;
-   private VersionEntry currentVersion;
+   private final AtomicReference<VersionEntry> currentVersion;
+   private final ConcurrentNavigableMap<Long, VersionWaiter> versionWaiters;
    private GMUVersionGenerator versionGenerator;
+   private CacheLoaderManager cacheLoaderManager;
    private boolean enabled = false;
 
+   public CommitLog() {
+      currentVersion = new AtomicReference<VersionEntry>();
+      versionWaiters = new ConcurrentSkipListMap<Long, VersionWaiter>();
+   }
+
    @Inject
-   public void inject(VersionGenerator versionGenerator, Configuration configuration) {
+   public void inject(VersionGenerator versionGenerator, Configuration configuration,
+                      CacheLoaderManager cacheLoaderManager) {
+      this.cacheLoaderManager = cacheLoaderManager;
       if (configuration.locking().isolationLevel() == IsolationLevel.SERIALIZABLE) {
          this.versionGenerator = toGMUVersionGenerator(versionGenerator);
       }
       enabled = this.versionGenerator != null;
    }
 
-   //AFTER THE VersionVCFactory
+   //AFTER THE VersionVCFactory and the CacheLoaderManager
    @Start(priority = 31)
    public void start() {
       if (!enabled) {
          return;
       }
-      currentVersion = new VersionEntry(toGMUVersion(versionGenerator.generateNew()), Collections.emptySet(), 0);
-      mostRecentVersion = toGMUVersion(versionGenerator.generateNew());
+      long restoredVersion = getRestoredVersion();
+      GMUVersion firstVersion = toGMUVersion(versionGenerator.generateNew());
+      GMUVersion mostRecentVersion = toGMUVersion(versionGenerator.generateNew());
+      if (restoredVersion != NON_EXISTING) {
+         //warm restart: the new versions must be higher than the versions in the cache store
+         firstVersion = versionGenerator.setNodeVersion(firstVersion, restoredVersion);
+         mostRecentVersion = versionGenerator.setNodeVersion(mostRecentVersion, restoredVersion);
+         if (log.isDebugEnabled()) {
+            log.debugf("Commit log restored from the cache store. The most recent version is %s", restoredVersion);
+         }
+      }
+      VersionEntry first = new VersionEntry(firstVersion, Collections.emptySet(), 0);
+      first.setMostRecentVersion(mostRecentVersion);
+      currentVersion.set(first);
    }
 
    @Stop
@@ -89,21 +130,31 @@ public class CommitLog {
 
    }
 
+   /**
+    * @return the most recent version in the {@link VersionedCacheStore}, or {@link GMUVersion#NON_EXISTING} if the
+    *         cache has no such store or if it is empty
+    */
+   private long getRestoredVersion() {
+      if (cacheLoaderManager == null || !cacheLoaderManager.isEnabled()) {
+         return NON_EXISTING;
+      }
+      CacheLoader loader = cacheLoaderManager.getCacheLoader();
+      return loader instanceof VersionedCacheStore ? ((VersionedCacheStore) loader).getMostRecentVersion() :
+            NON_EXISTING;
+   }
+
    public final void initLocalTransaction(LocalTransaction localTransaction) {
       if (!enabled) {
          return;
       }
-      GMUVersion transactionVersion;
-      synchronized (this) {
-         transactionVersion = versionGenerator.updatedVersion(mostRecentVersion);
-      }
+      GMUVersion transactionVersion = versionGenerator.updatedVersion(currentVersion.get().getMostRecentVersion());
       localTransaction.setTransactionVersion(transactionVersion);
    }
 
-   public final synchronized GMUVersion getCurrentVersion() {
+   public final GMUVersion getCurrentVersion() {
       assertEnabled();
       //versions are immutable
-      GMUVersion version = versionGenerator.updatedVersion(mostRecentVersion);
+      GMUVersion version = versionGenerator.updatedVersion(currentVersion.get().getMostRecentVersion());
       //GMUVersion version = versionGenerator.updatedVersion(currentVersion.getVersion());
       if (log.isTraceEnabled()) {
          log.tracef("getCurrentVersion() ==> %s", version);
@@ -112,10 +163,7 @@ public class CommitLog {
    }
 
    public final EntryVersion getOldestVersion() {
-      VersionEntry iterator;
-      synchronized (this) {
-         iterator = currentVersion;
-      }
+      VersionEntry iterator = currentVersion.get();
       while (iterator.getPrevious() != null) {
          iterator = iterator.getPrevious();
       }
@@ -124,10 +172,7 @@ public class CommitLog {
 
    public final EntryVersion getEntry(EntryVersion entryVersion) {
       GMUVersion gmuEntryVersion = toGMUVersion(entryVersion);
-      VersionEntry versionEntry;
-      synchronized (this) {
-         versionEntry = currentVersion;
-      }
+      VersionEntry versionEntry = currentVersion.get();
       while (versionEntry != null) {
          if (versionEntry.getVersion().getThisNodeVersionValue() == gmuEntryVersion.getThisNodeVersionValue()) {
             return versionEntry.getVersion();
@@ -140,10 +185,7 @@ public class CommitLog {
    public final GMUVersion getAvailableVersionLessThan(EntryVersion other) {
       assertEnabled();
       if (other == null) {
-         synchronized (this) {
-            return versionGenerator.updatedVersion(mostRecentVersion);
-            //return versionGenerator.updatedVersion(currentVersion.getVersion());
-         }
+         return versionGenerator.updatedVersion(currentVersion.get().getMostRecentVersion());
       }
       GMUVersion gmuVersion = toGMUVersion(other);
 
@@ -152,10 +194,7 @@ public class CommitLog {
       }
 
       LinkedList<GMUVersion> possibleVersion = new LinkedList<GMUVersion>();
-      VersionEntry iterator;
-      synchronized (this) {
-         iterator = currentVersion;
-      }
+      VersionEntry iterator = currentVersion.get();
 
       while (iterator != null) {
          if (isLessOrEquals(iterator.getVersion(), gmuVersion)) {
@@ -172,10 +211,7 @@ public class CommitLog {
       }
       GMUVersion gmuVersion = toGMUVersion(other);
       GMUReadVersion gmuReadVersion = versionGenerator.convertVersionToRead(gmuVersion);
-      VersionEntry iterator;
-      synchronized (this) {
-         iterator = currentVersion;
-      }
+      VersionEntry iterator = currentVersion.get();
 
       while (iterator != null) {
          if (log.isTraceEnabled()) {
@@ -205,8 +241,13 @@ public class CommitLog {
       return gmuReadVersion;
    }
 
-   public final synchronized void insertNewCommittedVersions(Collection<CommittedTransaction> transactions) {
+   public final void insertNewCommittedVersions(Collection<CommittedTransaction> transactions) {
       assertEnabled();
+      if (transactions.isEmpty()) {
+         return;
+      }
+      List<VersionEntry> newVersions = new ArrayList<VersionEntry>(transactions.size());
+      VersionEntry last = null;
       for (CommittedTransaction transaction : transactions) {
          if (log.isTraceEnabled()) {
             log.tracef("insertNewCommittedVersions(...) ==> add %s", transaction.getCommitVersion());
@@ -214,17 +255,26 @@ public class CommitLog {
          VersionEntry current = new VersionEntry(toGMUVersion(transaction.getCommitVersion()),
                                                  Util.getAffectedKeys(transaction.getModifications(), null),
                                                  transaction.getSubVersion());
-         current.setPrevious(currentVersion);
-         currentVersion = current;
-         mostRecentVersion = versionGenerator.mergeAndMax(mostRecentVersion, currentVersion.getVersion());
+         current.setPrevious(last);
+         newVersions.add(current);
+         last = current;
       }
+
+      VersionEntry first = newVersions.get(0);
+      VersionEntry previousVersion;
+      do {
+         previousVersion = currentVersion.get();
+         first.setPrevious(previousVersion);
+         updateMostRecentVersions(previousVersion, newVersions);
+      } while (!currentVersion.compareAndSet(previousVersion, last));
+
       if (log.isTraceEnabled()) {
-         log.tracef("insertNewCommittedVersions(...) ==> %s", currentVersion.getVersion());
+         log.tracef("insertNewCommittedVersions(...) ==> %s", last.getVersion());
       }
-      notifyAll();
+      notifyVersionWaiters(last.getVersion().getThisNodeVersionValue());
    }
 
-   public final synchronized void updateMostRecentVersion(EntryVersion newVersion) {
+   public final void updateMostRecentVersion(EntryVersion newVersion) {
       /*
       assertEnabled();
       GMUVersion gmuEntryVersion = toGMUVersion(newVersion);
@@ -237,46 +287,58 @@ public class CommitLog {
       */
    }
 
-   public final synchronized boolean waitForVersion(EntryVersion version, long timeout) throws InterruptedException {
+   public final boolean waitForVersion(EntryVersion version, long timeout) throws InterruptedException {
       assertEnabled();
-      if (timeout < 0) {
-         if (log.isTraceEnabled()) {
-            log.tracef("waitForVersion(%s,%s) and current version is %s", version, timeout, currentVersion.getVersion());
-         }
-         long versionValue = toGMUVersion(version).getThisNodeVersionValue();
-         while (currentVersion.getVersion().getThisNodeVersionValue() < versionValue) {
-            wait();
-         }
+      long versionValue = toGMUVersion(version).getThisNodeVersionValue();
+      if (log.isTraceEnabled()) {
+         log.tracef("waitForVersion(%s,%s) and current version is %s", version, timeout,
+                    currentVersion.get().getVersion());
+      }
+      if (isVersionAvailable(versionValue)) {
          if (log.isTraceEnabled()) {
-            log.tracef("waitForVersion(%s) ==> %s TRUE ?", version,
-                       currentVersion.getVersion().getThisNodeVersionValue());
+            log.tracef("waitForVersion(%s) ==> %s >= %s ?", version, currentVersionValue(), versionValue);
          }
          return true;
       }
-      long finalTimeout = System.currentTimeMillis() + timeout;
-      long versionValue = toGMUVersion(version).getThisNodeVersionValue();
-      if (log.isTraceEnabled()) {
-         log.tracef("waitForVersion(%s,%s) and current version is %s", version, timeout, currentVersion.getVersion());
+
+      VersionWaiter latch = getOrCreateVersionWaiter(versionValue);
+      //check again. the version can be committed before the latch is registered
+      if (isVersionAvailable(versionValue)) {
+         notifyVersionWaiters(currentVersionValue());
+         return true;
+      }
+
+      if (timeout < 0) {
+         latch.await();
+      } else {
+         latch.await(timeout, TimeUnit.MILLISECONDS);
       }
-      do {
-         if (currentVersion.getVersion().getThisNodeVersionValue() >= versionValue) {
-            if (log.isTraceEnabled()) {
-               log.tracef("waitForVersion(%s) ==> %s >= %s ?", version,
-                          currentVersion.getVersion().getThisNodeVersionValue(), versionValue);
-            }
-            return true;
-         }
-         long waitingTime = finalTimeout - System.currentTimeMillis();
-         if (waitingTime <= 0) {
-            break;
-         }
-         wait(waitingTime);
-      } while (true);
       if (log.isTraceEnabled()) {
-         log.tracef("waitForVersion(%s) ==> %s >= %s ?", version,
-                    currentVersion.getVersion().getThisNodeVersionValue(), versionValue);
+         log.tracef("waitForVersion(%s) ==> %s >= %s ?", version, currentVersionValue(), versionValue);
+      }
+      return isVersionAvailable(versionValue);
+   }
+
+   /**
+    * registers a listener to be invoked when the version is available in this commit log. If the version is already
+    * available, the listener is invoked immediately by the caller thread. Note: the listener can be invoked more than
+    * once
+    *
+    * @param version  the version to wait for
+    * @param listener the listener
+    */
+   public final void addVersionListener(EntryVersion version, Runnable listener) {
+      assertEnabled();
+      long versionValue = toGMUVersion(version).getThisNodeVersionValue();
+      if (isVersionAvailable(versionValue)) {
+         listener.run();
+         return;
+      }
+      getOrCreateVersionWaiter(versionValue).addListener(listener);
+      //check again. the version can be committed before the listener is registered
+      if (isVersionAvailable(versionValue)) {
+         notifyVersionWaiters(currentVersionValue());
       }
-      return currentVersion.getVersion().getThisNodeVersionValue() >= versionValue;
    }
 
    public final boolean dumpTo(String filePath) {
@@ -286,11 +348,7 @@ public class CommitLog {
          return false;
       }
       try {
-         VersionEntry iterator;
-         synchronized (this) {
-            //bufferedWriter.write(mostRecentVersion.toString());
-            iterator = currentVersion;
-         }
+         VersionEntry iterator = currentVersion.get();
          bufferedWriter.newLine();
          while (iterator != null) {
             iterator.dumpTo(bufferedWriter);
@@ -315,9 +373,7 @@ public class CommitLog {
       VersionEntry iterator;
       VersionEntry removeFromHere = null;
       GMUVersion minimumVisibleVersion = null;
-      synchronized (this) {
-         iterator = currentVersion;
-      }
+      iterator = currentVersion.get();
 
       while (iterator != null) {
          if (isLessOrEquals(iterator.getVersion(), minVersion)) {
@@ -346,20 +402,70 @@ public class CommitLog {
    }
 
    public final int calculateMinimumViewId() {
-      VersionEntry iterator;
-      int minimumViewId;
-      synchronized (this) {
-         minimumViewId = currentVersion.getVersion().getViewId();
-         iterator = currentVersion.getPrevious();
-      }
+      VersionEntry first = currentVersion.get();
+      int minimumViewId = first.getVersion().getViewId();
+      VersionEntry iterator = first.getPrevious();
       while (iterator != null) {
          minimumViewId = Math.min(minimumViewId, iterator.getVersion().getViewId());
+         iterator = iterator.getPrevious();
       }
       return minimumViewId;
    }
 
+   /**
+    * @return the committed versions, from the most recent to the oldest
+    */
+   final List<GMUVersion> getCommittedVersions() {
+      List<GMUVersion> versions = new ArrayList<GMUVersion>();
+      VersionEntry iterator = currentVersion.get();
+      while (iterator != null) {
+         versions.add(iterator.getVersion());
+         iterator = iterator.getPrevious();
+      }
+      return versions;
+   }
+
    public boolean tryWaitForVersion(GMUVersion minGMUVersion) {
-      return currentVersion.getVersion().getThisNodeVersionValue() >= minGMUVersion.getThisNodeVersionValue();
+      return isVersionAvailable(minGMUVersion.getThisNodeVersionValue());
+   }
+
+   private boolean isVersionAvailable(long versionValue) {
+      return currentVersionValue() >= versionValue;
+   }
+
+   private long currentVersionValue() {
+      return currentVersion.get().getVersion().getThisNodeVersionValue();
+   }
+
+   /**
+    * computes the most recent version of each new entry, from the oldest to the newest
+    */
+   private void updateMostRecentVersions(VersionEntry previousVersion, List<VersionEntry> newVersions) {
+      GMUVersion mostRecentVersion = previousVersion == null ? null : previousVersion.getMostRecentVersion();
+      for (VersionEntry versionEntry : newVersions) {
+         mostRecentVersion = mostRecentVersion == null ? versionEntry.getVersion() :
+               versionGenerator.mergeAndMax(mostRecentVersion, versionEntry.getVersion());
+         versionEntry.setMostRecentVersion(mostRecentVersion);
+      }
+   }
+
+   /**
+    * wakes up all the threads waiting for a version lower or equals than {@param versionValue}
+    */
+   private void notifyVersionWaiters(long versionValue) {
+      Iterator<Map.Entry<Long, VersionWaiter>> iterator = versionWaiters.headMap(versionValue, true).entrySet()
+            .iterator();
+      while (iterator.hasNext()) {
+         Map.Entry<Long, VersionWaiter> entry = iterator.next();
+         iterator.remove();
+         entry.getValue().countDown();
+      }
+   }
+
+   private VersionWaiter getOrCreateVersionWaiter(long versionValue) {
+      VersionWaiter waiter = new VersionWaiter();
+      VersionWaiter existing = versionWaiters.putIfAbsent(versionValue, waiter);
+      return existing == null ? waiter : existing;
    }
 
    private void assertEnabled() {
@@ -373,11 +479,46 @@ public class CommitLog {
       return comparisonResult == BEFORE_OR_EQUAL || comparisonResult == BEFORE || comparisonResult == EQUAL;
    }
 
+   /**
+    * a latch released when a version is available. it also notifies the registered listeners
+    */
+   private static class VersionWaiter extends CountDownLatch {
+      private final Queue<Runnable> listeners;
+
+      private VersionWaiter() {
+         super(1);
+         listeners = new ConcurrentLinkedQueue<Runnable>();
+      }
+
+      public final void addListener(Runnable listener) {
+         listeners.add(listener);
+         if (getCount() == 0) {
+            //already released. the listener may not have been notified
+            notifyListeners();
+         }
+      }
+
+      @Override
+      public void countDown() {
+         super.countDown();
+         notifyListeners();
+      }
+
+      private void notifyListeners() {
+         Runnable listener;
+         while ((listener = listeners.poll()) != null) {
+            listener.run();
+         }
+      }
+   }
+
    private static class VersionEntry {
       private final GMUVersion version;
       private final Object[] keysModified;
       private final int subVersion;
-      private VersionEntry previous;
+      private volatile VersionEntry previous;
+      //the versions are merged from the oldest to this entry
+      private volatile GMUVersion mostRecentVersion;
 
       private VersionEntry(GMUVersion version, Set<Object> keysModified, int subVersion) {
          this.version = version;
@@ -405,6 +546,14 @@ public class CommitLog {
          return subVersion;
       }
 
+      public GMUVersion getMostRecentVersion() {
+         return mostRecentVersion;
+      }
+
+      public void setMostRecentVersion(GMUVersion mostRecentVersion) {
+         this.mostRecentVersion = mostRecentVersion;
+      }
+
       @Override
       public String toString() {
          return "VersionEntry{" +
@@ -27,6 +27,7 @@ import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.remote.GarbageCollectorControlCommand;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.gmu.GMUDataContainer;
 import org.infinispan.container.gmu.L1GMUContainer;
 import org.infinispan.container.versioning.EntryVersion;
 import org.infinispan.container.versioning.VersionGenerator;
@@ -35,6 +36,9 @@ import org.infinispan.container.versioning.gmu.GMUVersionGenerator;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
 import org.infinispan.notifications.cachemanagerlistener.annotation.Merged;
@@ -51,25 +55,62 @@ import org.infinispan.transaction.gmu.CommitLog;
 import org.infinispan.util.concurrent.IsolationLevel;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
-
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.infinispan.commands.remote.GarbageCollectorControlCommand.Type.*;
+import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersion;
 import static org.infinispan.transaction.gmu.GMUHelper.toGMUVersionGenerator;
 
 /**
- * // TODO: Document this
+ * Garbage collects the old versions in the data container, L1 and commit log, and the old cache views.
+ * <p/>
+ * The garbage collection is incremental and it does not have its own threads. Each node piggybacks its minimum
+ * visible version and view id in the prepare and commit messages and the garbage collection rounds are executed by the
+ * threads that process the commits, when the number of committed transactions reaches the transaction threshold (or
+ * when the last round is older than the version max idle time). Each round only trims the version chains of the keys
+ * written since the previous round.
+ * <p/>
+ * A round needs a fresh minimum visible version of each member. If a member did not send any since the last round, it
+ * is asked to report it asynchronously and the round is postponed. The request is sent again if the reports are still
+ * missing after the replication timeout or after a number of postponed rounds (a report can be lost or a member can
+ * join after the request was sent), and the reports are discarded when the view changes.
+ * <p/>
+ * The local minimum visible version piggybacked in the messages is cached. It is refreshed in each round, when it is
+ * requested by another member and when it is older than the version max idle time. A cached value is always a lower
+ * bound of the versions visible by the local transactions, because the new transactions start with a version not
+ * lower than the commit log version used to compute it.
  *
  * @author Pedro Ruivo
  * @since 5.2
  */
 @Listener
+@MBean(objectName = "GarbageCollectorManager", description = "Garbage collector of the old versions used by GMU")
 public class GarbageCollectorManager {
    private static final Log log = LogFactory.getLog(GarbageCollectorManager.class);
+   //number of postponed rounds after which the minimum visible versions are requested again
+   private static final int POSTPONED_ROUNDS_BEFORE_NEW_REQUEST = 8;
+   private final ConcurrentMap<Address, MinimumVisible> minimumVisibleReports;
+   private final AtomicInteger txCommittedSinceLastRound;
+   private final ReentrantLock roundLock;
+   private final EnumMap<Stat, AtomicLong> stats;
    private CommitLog commitLog;
    private CommandsFactory commandsFactory;
    private RpcManager rpcManager;
@@ -80,10 +121,29 @@ public class GarbageCollectorManager {
    private L1GMUContainer l1GMUContainer;
    private CacheViewsManager cacheViewsManager;
    private boolean enabled;
-   private VersionGarbageCollectorThread versionGarbageCollectorThread;
-   private L1GarbageCollectorThread l1GarbageCollectorThread;
-   private ViewGarbageCollectorThread viewGarbageCollectorThread;
    private CacheManagerNotifier cacheManagerNotifier;
+   private volatile long lastRoundTimestamp;
+   private volatile int localMinimumVisibleViewId = -1;
+   private volatile GMUVersion localMinimumVisibleVersion;
+   private volatile long localMinimumVisibleVersionTimestamp;
+   //reset by the view change listener
+   private volatile boolean minimumVisibleRequested;
+   //the following fields are protected by the round lock
+   private long lastL1RoundTimestamp;
+   private long lastViewRoundTimestamp;
+   private int lastMinimumVisibleViewId = -1;
+   private long minimumVisibleRequestTimestamp;
+   private int postponedRoundsSinceRequest;
+
+   public GarbageCollectorManager() {
+      minimumVisibleReports = new ConcurrentHashMap<Address, MinimumVisible>();
+      txCommittedSinceLastRound = new AtomicInteger(0);
+      roundLock = new ReentrantLock();
+      stats = new EnumMap<Stat, AtomicLong>(Stat.class);
+      for (Stat stat : Stat.values()) {
+         stats.put(stat, new AtomicLong(0));
+      }
+   }
 
    @Inject
    public void inject(CommitLog commitLog, CommandsFactory commandsFactory, RpcManager rpcManager,
@@ -112,16 +172,11 @@ public class GarbageCollectorManager {
       if (!enabled) {
          return;
       }
-      versionGarbageCollectorThread = new VersionGarbageCollectorThread(configuration.garbageCollector().transactionThreshold(), configuration.garbageCollector().versionGCMaxIdle());
-      l1GarbageCollectorThread = new L1GarbageCollectorThread(configuration.garbageCollector().l1GCInterval());
-      viewGarbageCollectorThread = new ViewGarbageCollectorThread(configuration.garbageCollector().viewGCBackOff());
-
-      if (enabled) {
-         versionGarbageCollectorThread.start();
-         l1GarbageCollectorThread.start();
-         viewGarbageCollectorThread.start();
-         cacheManagerNotifier.addListener(this);
-      }
+      long now = System.currentTimeMillis();
+      lastRoundTimestamp = now;
+      lastL1RoundTimestamp = now;
+      lastViewRoundTimestamp = now;
+      cacheManagerNotifier.addListener(this);
    }
 
    @Stop
@@ -129,10 +184,9 @@ public class GarbageCollectorManager {
       if (!enabled) {
          return;
       }
-      versionGarbageCollectorThread.interrupt();
-      l1GarbageCollectorThread.interrupt();
-      viewGarbageCollectorThread.interrupt();
       cacheManagerNotifier.removeListener(this);
+      minimumVisibleReports.clear();
+      localMinimumVisibleVersion = null;
    }
 
    /**
@@ -145,12 +199,20 @@ public class GarbageCollectorManager {
     * 2 - a version (VC) is created with all the previous values 3 - gets the newest commit log entry that is lower than
     * the VC created in 2) 4 - delete all commit log entries older than the version in 3) and delete all values with
     * version older than the version in 3)
+    * <p/>
+    * Note: unlike the incremental rounds, it broadcasts a request to collect the minimum visible versions and it sweeps
+    * all the version chains. It is executed by the invoking thread.
     */
-   public final synchronized void triggerVersionGarbageCollection() {
+   public final void triggerVersionGarbageCollection() {
       if (!enabled) {
          return;
       }
-      versionGarbageCollectorThread.trigger();
+      roundLock.lock();
+      try {
+         fullVersionGarbageCollection();
+      } finally {
+         roundLock.unlock();
+      }
    }
 
    /**
@@ -159,31 +221,117 @@ public class GarbageCollectorManager {
     * Note: the view id is used in gmu distributed version, which are only used in transactions versions and commit log
     * entries. checking in the commit log should be enough to determine the minimum view id
     * <p/>
-    * Note: this algorithm is triggered only by the coordinator
-    * <p/>
     * The algorithm is performed in 3 steps: 1 - collect the minimum view id in commit log from local node and remote
     * node 2 - broadcast the minimum view id to all members 3 - when the message in 2) is received, delete all view ids
     * less than minimum view id
     */
-   public final synchronized void triggerViewGarbageCollection() {
+   public final void triggerViewGarbageCollection() {
       if (!enabled) {
          return;
       }
-      viewGarbageCollectorThread.triggerNow();
+      roundLock.lock();
+      try {
+         fullViewGarbageCollection();
+      } finally {
+         roundLock.unlock();
+      }
    }
 
    /**
     * The main goal is to delete all versions that are not visible any more. Note that the L1 is used only be local
     * transactions, so no remote interaction is needed.
     * <p/>
-    * The algorithm is performed in 3 steps: 1 - pick the oldest version in commit log used by the local transactions 2
+    * The algorithm is performed in 2 steps: 1 - pick the oldest version in commit log used by the local transactions 2
     * - delete all values with creation version less than the version in 1)
     */
-   public final synchronized void triggerL1GarbageCollection() {
+   public final void triggerL1GarbageCollection() {
       if (!enabled || configuration.clustering().cacheMode().isReplicated()) {
          return;
       }
-      l1GarbageCollectorThread.trigger();
+      if (log.isTraceEnabled()) {
+         log.tracef("Starting Garbage Collection for old L1 versions");
+      }
+      //step 1
+      GMUVersion minLocalVersion = handleGetMinimumVisibleVersion();
+
+      if (log.isTraceEnabled()) {
+         log.tracef("Garbage Collector old versions in L1 Cache. Minimum local visible version is %s",
+                    minLocalVersion);
+      }
+
+      //step 2
+      stats.get(Stat.RECLAIMED_L1_VERSIONS).addAndGet(l1GMUContainer.gc(minLocalVersion));
+   }
+
+   /**
+    * executes an incremental garbage collection round if the number of transactions committed since the last round is
+    * higher than the threshold or if the last round is older than the max idle time. If other thread is executing a
+    * round, it returns immediately.
+    */
+   public final void tryIncrementalGarbageCollection() {
+      if (!enabled) {
+         return;
+      }
+      if (txCommittedSinceLastRound.get() < configuration.garbageCollector().transactionThreshold() &&
+            System.currentTimeMillis() - lastRoundTimestamp < secondsToMillis(configuration.garbageCollector().versionGCMaxIdle())) {
+         return;
+      }
+      if (!roundLock.tryLock()) {
+         return;
+      }
+      try {
+         incrementalGarbageCollection();
+      } catch (Throwable throwable) {
+         log.warnf("Exception caught while garbage collecting oldest versions: " + throwable.getLocalizedMessage());
+      } finally {
+         roundLock.unlock();
+      }
+   }
+
+   /**
+    * @return the minimum version visible by the local transactions or by the transactions that will start in this
+    *         node, or null if the garbage collector is disabled. It is piggybacked in the prepare and commit messages,
+    *         so the value computed in the last round is returned (see the class javadoc)
+    */
+   public final GMUVersion getLocalMinimumVisibleVersion() {
+      if (!enabled) {
+         return null;
+      }
+      GMUVersion minimumVisibleVersion = localMinimumVisibleVersion;
+      if (minimumVisibleVersion == null || System.currentTimeMillis() - localMinimumVisibleVersionTimestamp >=
+            secondsToMillis(configuration.garbageCollector().versionGCMaxIdle())) {
+         minimumVisibleVersion = refreshLocalMinimumVisibleVersion();
+      }
+      return minimumVisibleVersion;
+   }
+
+   /**
+    * @return the minimum version visible by the local transactions or by the transactions that will start in this
+    *         node, computed from the local transactions. The cached value is updated.
+    */
+   private GMUVersion refreshLocalMinimumVisibleVersion() {
+      long now = System.currentTimeMillis();
+      List<EntryVersion> versions = new LinkedList<EntryVersion>();
+      for (LocalTransaction localTransaction : transactionTable.getLocalTransactions()) {
+         EntryVersion transactionVersion = localTransaction.getTransactionVersion();
+         if (transactionVersion != null) {
+            versions.add(transactionVersion);
+         }
+      }
+      //the new transactions starts with the current version
+      versions.add(commitLog.getCurrentVersion());
+      GMUVersion minimumVisibleVersion = versionGenerator.mergeAndMin(versions.toArray(new EntryVersion[versions.size()]));
+      localMinimumVisibleVersion = minimumVisibleVersion;
+      localMinimumVisibleVersionTimestamp = now;
+      return minimumVisibleVersion;
+   }
+
+   /**
+    * @return the minimum view id in use by this node, calculated in the last garbage collection round. It is
+    *         piggybacked in the prepare and commit messages
+    */
+   public final int getLocalMinimumVisibleViewId() {
+      return localMinimumVisibleViewId;
    }
 
    public final GMUVersion handleGetMinimumVisibleVersion() {
@@ -229,11 +377,44 @@ public class GarbageCollectorManager {
       versionGenerator.gcCacheView(minimumVisibleId);
    }
 
+   /**
+    * stores the minimum visible version and view id piggybacked in a message
+    *
+    * @param origin                the sender
+    * @param minimumVisibleVersion the minimum visible version of the sender
+    * @param minimumVisibleViewId  the minimum view id in use by the sender
+    */
+   public final void handleReportMinimumVisible(Address origin, EntryVersion minimumVisibleVersion,
+                                                int minimumVisibleViewId) {
+      if (!enabled || origin == null || minimumVisibleVersion == null) {
+         return;
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("handleReportMinimumVisible(%s, %s, %s)", origin, minimumVisibleVersion, minimumVisibleViewId);
+      }
+      minimumVisibleReports.put(origin, new MinimumVisible(toGMUVersion(minimumVisibleVersion), minimumVisibleViewId));
+   }
+
+   /**
+    * sends asynchronously the local minimum visible version and view id to the requester
+    *
+    * @param origin the requester
+    */
+   public final void handleRequestMinimumVisible(Address origin) {
+      if (!enabled || origin == null) {
+         return;
+      }
+      GarbageCollectorControlCommand report = commandsFactory.buildGarbageCollectorControlCommand(REPORT_VERSION,
+                                                                                                  localMinimumVisibleViewId,
+                                                                                                  refreshLocalMinimumVisibleVersion());
+      rpcManager.invokeRemotely(Collections.singleton(origin), report, false);
+   }
+
    public final void notifyCommittedTransaction() {
       if (!enabled) {
          return;
       }
-      versionGarbageCollectorThread.incrementCommittedTx();
+      txCommittedSinceLastRound.incrementAndGet();
    }
 
    @ViewChanged
@@ -242,308 +423,320 @@ public class GarbageCollectorManager {
       if (!enabled) {
          return;
       }
-      viewGarbageCollectorThread.trigger();
+      //the reports received before the view change are stale and the members that joined were not asked for them, so
+      //the next round requests them again
+      minimumVisibleReports.clear();
+      minimumVisibleRequested = false;
    }
 
-   private long getTimeout() {
-      return configuration.clustering().sync().replTimeout();
+   @ManagedAttribute(description = "Number of incremental garbage collection rounds executed")
+   @Metric(displayName = "Number of garbage collection rounds", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfRounds() {
+      return stats.get(Stat.ROUNDS).get();
    }
 
-   private <T> Map<Address, T> convert(Map<Address, Response> responseMap, Class<T> tClass) throws Exception {
-      Map<Address, T> retVal = new HashMap<Address, T>();
-      for (Map.Entry<Address, Response> entry : responseMap.entrySet()) {
-         Response response = entry.getValue();
-         if (!response.isSuccessful()) {
-            throw new Exception("Error executing command");
-         }
-         retVal.put(entry.getKey(), tClass.cast(((SuccessfulResponse) response).getResponseValue()));
-      }
-      return retVal;
+   @ManagedAttribute(description = "Number of incremental garbage collection rounds postponed due to missing minimum " +
+         "visible versions")
+   @Metric(displayName = "Number of postponed garbage collection rounds", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfPostponedRounds() {
+      return stats.get(Stat.POSTPONED_ROUNDS).get();
    }
 
-   private class VersionGarbageCollectorThread extends Thread {
-
-      private final int transactionThreshold;
-      private final int maxIdleTime;
-      private int txCommittedSinceLastReset;
-      private volatile boolean running;
+   @ManagedAttribute(description = "Average pause time of the garbage collection rounds (in microseconds)")
+   @Metric(displayName = "Average pause time", displayType = DisplayType.SUMMARY)
+   public long getAvgPauseTime() {
+      long rounds = stats.get(Stat.ROUNDS).get();
+      return rounds == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.get(Stat.PAUSE_TIME).get() / rounds);
+   }
 
-      private VersionGarbageCollectorThread(int transactionThreshold, int maxIdleTime) {
-         super("Version-GC-Thread");
-         this.transactionThreshold = transactionThreshold;
-         this.maxIdleTime = maxIdleTime;
-      }
+   @ManagedAttribute(description = "Maximum pause time of the garbage collection rounds (in microseconds)")
+   @Metric(displayName = "Maximum pause time", displayType = DisplayType.SUMMARY)
+   public long getMaxPauseTime() {
+      return TimeUnit.NANOSECONDS.toMicros(stats.get(Stat.MAX_PAUSE_TIME).get());
+   }
 
-      @Override
-      public void run() {
-         running = true;
-         while (running) {
-            block();
-            if (running) {
-               gc();
-            }
-         }
-      }
+   @ManagedAttribute(description = "Number of versions removed from the data container")
+   @Metric(displayName = "Number of versions reclaimed", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getReclaimedVersions() {
+      return stats.get(Stat.RECLAIMED_VERSIONS).get();
+   }
 
-      @Override
-      public void interrupt() {
-         running = false;
-         super.interrupt();
-      }
+   @ManagedAttribute(description = "Number of versions removed from the L1 cache")
+   @Metric(displayName = "Number of L1 versions reclaimed", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getReclaimedL1Versions() {
+      return stats.get(Stat.RECLAIMED_L1_VERSIONS).get();
+   }
 
-      public final synchronized void incrementCommittedTx() {
-         txCommittedSinceLastReset++;
-         if (txCommittedSinceLastReset > transactionThreshold) {
-            notify();
-         }
-      }
+   @ManagedAttribute(description = "Number of versions removed from the cache store")
+   @Metric(displayName = "Number of stored versions reclaimed", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getReclaimedStoredVersions() {
+      return stats.get(Stat.RECLAIMED_STORED_VERSIONS).get();
+   }
 
-      public final synchronized void trigger() {
-         notify();
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset Statistics")
+   public void resetStatistics() {
+      for (AtomicLong atomicLong : stats.values()) {
+         atomicLong.set(0);
       }
+   }
 
-      /**
-       * The main goal is to delete all version that cannot be visible by any transaction in the system. To do that,
-       * some remote interaction is needed.
-       * <p/>
-       * The algorithm is performed in 4 steps:
-       * <p/>
-       * 1 - for each node i, returns the i-th position for the oldest commit log entry used by it owns local
-       * transactions 2 - a version (VC) is created with all the previous values 3 - gets the newest commit log entry
-       * that is lower than the VC created in 2) 4 - delete all commit log entries older than the version in 3) and
-       * delete all values with version older than the version in 3)
-       */
-      private void gc() {
-         try {
-            if (log.isTraceEnabled()) {
-               log.tracef("Starting Garbage Collection for old versions");
-            }
-            //step 1
-            GarbageCollectorControlCommand cmd = commandsFactory.buildGarbageCollectorControlCommand(GET_VERSION, -1);
-            Map<Address, Response> responseMap = rpcManager.invokeRemotely(null, cmd,
-                                                                           ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS,
-                                                                           getTimeout(), true, false);
-            Map<Address, EntryVersion> minVersionValues = convert(responseMap, EntryVersion.class);
-            commandsFactory.initializeReplicableCommand(cmd, false);
-            minVersionValues.put(rpcManager.getAddress(), (EntryVersion) cmd.perform(null));
-
-            EntryVersion[] array = new EntryVersion[minVersionValues.values().size()];
-            array = minVersionValues.values().toArray(array);
-
-            //step 2
-            GMUVersion globalMinimumVersion = versionGenerator.mergeAndMin(array);
-
-            if (log.isTraceEnabled()) {
-               log.tracef("Finished collection current transactions versions. Minimum version is %s",
-                          globalMinimumVersion);
-            }
-
-            //step 3
-            GMUVersion minimumLocalVersion = commitLog.gcOlderVersions(globalMinimumVersion);
-
-            if (log.isTraceEnabled()) {
-               log.tracef("Minimum local visible version is %s", minimumLocalVersion);
-            }
+   private void incrementalGarbageCollection() {
+      List<EntryVersion> minimumVersions = new ArrayList<EntryVersion>();
+      List<Address> missing = new LinkedList<Address>();
+      int minimumViewId = Integer.MAX_VALUE;
 
-            //step 4
-            dataContainer.gc(minimumLocalVersion);
-         } catch (Throwable throwable) {
-            log.warnf("Exception caught while garbage collecting oldest versions: " + throwable.getLocalizedMessage());
+      for (Address member : getMembers()) {
+         if (member.equals(rpcManager.getAddress())) {
+            continue;
+         }
+         MinimumVisible minimumVisible = minimumVisibleReports.get(member);
+         if (minimumVisible == null) {
+            missing.add(member);
+         } else {
+            minimumVersions.add(minimumVisible.version);
+            minimumViewId = Math.min(minimumViewId, minimumVisible.viewId);
          }
       }
 
-      private synchronized void block() {
-         txCommittedSinceLastReset = 0;
-         try {
-            wait(maxIdleTime * 1000);
-         } catch (InterruptedException e) {
-            //no-op
+      if (!missing.isEmpty()) {
+         long now = System.currentTimeMillis();
+         //the request or a report may be lost, so it is sent again after a while
+         if (!minimumVisibleRequested || postponedRoundsSinceRequest >= POSTPONED_ROUNDS_BEFORE_NEW_REQUEST ||
+               now - minimumVisibleRequestTimestamp >= getTimeout()) {
+            if (log.isTraceEnabled()) {
+               log.tracef("Garbage collection round postponed. Requesting the minimum visible version to %s", missing);
+            }
+            GarbageCollectorControlCommand request = commandsFactory.buildGarbageCollectorControlCommand(REQUEST_VERSION, -1);
+            rpcManager.invokeRemotely(missing, request, false);
+            minimumVisibleRequested = true;
+            minimumVisibleRequestTimestamp = now;
+            postponedRoundsSinceRequest = 0;
+         } else {
+            postponedRoundsSinceRequest++;
          }
+         stats.get(Stat.POSTPONED_ROUNDS).incrementAndGet();
+         return;
       }
-   }
 
-   private class L1GarbageCollectorThread extends Thread {
+      long start = System.nanoTime();
+      long now = System.currentTimeMillis();
+      //the reports are used only in one round
+      minimumVisibleReports.clear();
+      minimumVisibleRequested = false;
+      txCommittedSinceLastRound.set(0);
+      lastRoundTimestamp = now;
 
-      private final int interval;
-      private volatile boolean running;
+      GMUVersion localMinimumVersion = refreshLocalMinimumVisibleVersion();
+      minimumVersions.add(localMinimumVersion);
+      GMUVersion globalMinimumVersion = versionGenerator.mergeAndMin(minimumVersions.toArray(
+            new EntryVersion[minimumVersions.size()]));
+      GMUVersion minimumLocalVersion = commitLog.gcOlderVersions(globalMinimumVersion);
 
-      private L1GarbageCollectorThread(int interval) {
-         super("L1-GC-Thread");
-         this.interval = interval;
+      if (log.isTraceEnabled()) {
+         log.tracef("Incremental garbage collection round. Global minimum version is %s and minimum local visible " +
+                          "version is %s", globalMinimumVersion, minimumLocalVersion);
       }
 
-      @Override
-      public void run() {
-         if (interval == 0 || configuration.clustering().cacheMode().isReplicated()) {
-            return;
-         }
-         running = true;
-         while (running) {
-            block();
-            if (running) {
-               gc();
-            }
-         }
+      if (minimumLocalVersion != null && dataContainer instanceof GMUDataContainer) {
+         GMUDataContainer gmuDataContainer = (GMUDataContainer) dataContainer;
+         stats.get(Stat.RECLAIMED_VERSIONS).addAndGet(gmuDataContainer.incrementalGc(minimumLocalVersion));
+         stats.get(Stat.RECLAIMED_STORED_VERSIONS).addAndGet(gmuDataContainer.storeGc(minimumLocalVersion));
       }
 
-      @Override
-      public void interrupt() {
-         running = false;
-         super.interrupt();
+      int l1Interval = configuration.garbageCollector().l1GCInterval();
+      if (l1Interval > 0 && !configuration.clustering().cacheMode().isReplicated() &&
+            now - lastL1RoundTimestamp >= secondsToMillis(l1Interval)) {
+         lastL1RoundTimestamp = now;
+         stats.get(Stat.RECLAIMED_L1_VERSIONS).addAndGet(l1GMUContainer.gc(localMinimumVersion));
       }
 
-      public final synchronized void trigger() {
-         notify();
+      localMinimumVisibleViewId = commitLog.calculateMinimumViewId();
+      minimumViewId = Math.min(minimumViewId, localMinimumVisibleViewId);
+      if (rpcManager.getTransport().isCoordinator() && minimumViewId > lastMinimumVisibleViewId &&
+            now - lastViewRoundTimestamp >= secondsToMillis(configuration.garbageCollector().viewGCBackOff())) {
+         lastViewRoundTimestamp = now;
+         lastMinimumVisibleViewId = minimumViewId;
+         if (log.isTraceEnabled()) {
+            log.tracef("Garbage collect cache views older than %s", minimumViewId);
+         }
+         GarbageCollectorControlCommand control = commandsFactory.buildGarbageCollectorControlCommand(SET_VIEW_ID,
+                                                                                                      minimumViewId);
+         rpcManager.broadcastRpcCommand(control, false, false);
+         handleDeleteOlderViewId(minimumViewId);
       }
 
-      /**
-       * The main goal is to delete all versions that are not visible any more. Note that the L1 is used only be local
-       * transactions, so no remote interaction is needed.
-       * <p/>
-       * The algorithm is performed in 2 steps: 1 - pick the oldest version in commit log used by the local transactions
-       * 2 - delete all values with creation version less than the version in 1)
-       */
-      private void gc() {
+      updatePauseTime(System.nanoTime() - start);
+   }
+
+   /**
+    * The main goal is to delete all version that cannot be visible by any transaction in the system. To do that,
+    * some remote interaction is needed.
+    * <p/>
+    * The algorithm is performed in 4 steps:
+    * <p/>
+    * 1 - for each node i, returns the i-th position for the oldest commit log entry used by it owns local
+    * transactions 2 - a version (VC) is created with all the previous values 3 - gets the newest commit log entry
+    * that is lower than the VC created in 2) 4 - delete all commit log entries older than the version in 3) and
+    * delete all values with version older than the version in 3)
+    */
+   private void fullVersionGarbageCollection() {
+      try {
          if (log.isTraceEnabled()) {
-            log.tracef("Starting Garbage Collection for old L1 versions");
+            log.tracef("Starting Garbage Collection for old versions");
          }
+         long start = System.nanoTime();
          //step 1
-         GMUVersion minLocalVersion = handleGetMinimumVisibleVersion();
+         GarbageCollectorControlCommand cmd = commandsFactory.buildGarbageCollectorControlCommand(GET_VERSION, -1);
+         Map<Address, Response> responseMap = rpcManager.invokeRemotely(null, cmd,
+                                                                        ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS,
+                                                                        getTimeout(), true, false);
+         Map<Address, EntryVersion> minVersionValues = convert(responseMap, EntryVersion.class);
+         commandsFactory.initializeReplicableCommand(cmd, false);
+         minVersionValues.put(rpcManager.getAddress(), (EntryVersion) cmd.perform(null));
 
-         if (log.isTraceEnabled()) {
-            log.tracef("Garbage Collector old versions in L1 Cache. Minimum local visible version is %s",
-                       minLocalVersion);
-         }
+         EntryVersion[] array = new EntryVersion[minVersionValues.values().size()];
+         array = minVersionValues.values().toArray(array);
 
          //step 2
-         l1GMUContainer.gc(minLocalVersion);
-      }
+         GMUVersion globalMinimumVersion = versionGenerator.mergeAndMin(array);
 
-      private synchronized void block() {
-         try {
-            wait(interval * 1000);
-         } catch (InterruptedException e) {
-            //no-op
+         if (log.isTraceEnabled()) {
+            log.tracef("Finished collection current transactions versions. Minimum version is %s",
+                       globalMinimumVersion);
          }
-      }
-   }
 
-   private class ViewGarbageCollectorThread extends Thread {
+         //step 3
+         GMUVersion minimumLocalVersion = commitLog.gcOlderVersions(globalMinimumVersion);
 
-      private final int backOff;
-      private boolean running;
-      private boolean triggered;
-      private boolean triggerNow;
+         if (log.isTraceEnabled()) {
+            log.tracef("Minimum local visible version is %s", minimumLocalVersion);
+         }
 
-      private ViewGarbageCollectorThread(int backOff) {
-         super("View-GC-Thread");
-         this.backOff = backOff;
+         //step 4
+         if (dataContainer instanceof GMUDataContainer) {
+            GMUDataContainer gmuDataContainer = (GMUDataContainer) dataContainer;
+            stats.get(Stat.RECLAIMED_VERSIONS).addAndGet(gmuDataContainer.fullGc(minimumLocalVersion));
+            stats.get(Stat.RECLAIMED_STORED_VERSIONS).addAndGet(gmuDataContainer.storeGc(minimumLocalVersion));
+         } else {
+            dataContainer.gc(minimumLocalVersion);
+         }
+         txCommittedSinceLastRound.set(0);
+         lastRoundTimestamp = System.currentTimeMillis();
+         updatePauseTime(System.nanoTime() - start);
+      } catch (Throwable throwable) {
+         log.warnf("Exception caught while garbage collecting oldest versions: " + throwable.getLocalizedMessage());
       }
+   }
 
-      @Override
-      public void run() {
-         running = true;
-         while (running) {
-            block();
-            if (running) {
-               gc();
+   /**
+    * The main goal is to delete all older view id => addresses that are not in use by any version
+    * <p/>
+    * The algorithm is performed in 3 steps: 1 - collect the minimum view id in commit log from local node and remote
+    * node 2 - broadcast the minimum view id to all members 3 - when the message in 2) is received, delete all view
+    * ids less than minimum view id
+    */
+   private void fullViewGarbageCollection() {
+      try {
+         if (log.isTraceEnabled()) {
+            log.tracef("Starting Garbage Collector for old cache views");
+         }
+         GarbageCollectorControlCommand request = commandsFactory.buildGarbageCollectorControlCommand(GET_VIEW_ID, -1);
+
+         Map<Address, Response> responseMap = rpcManager.invokeRemotely(null, request,
+                                                                        ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS,
+                                                                        getTimeout(), true, false);
+         Map<Address, Integer> viewIdMap = convert(responseMap, Integer.class);
+         commandsFactory.initializeReplicableCommand(request, false);
+         viewIdMap.put(rpcManager.getAddress(), (Integer) request.perform(null));
+         Iterator<Integer> iterator = viewIdMap.values().iterator();
+         int minimumViewId;
+
+         if (iterator.hasNext()) {
+            minimumViewId = iterator.next();
+         } else {
+            if (log.isTraceEnabled()) {
+               log.tracef("No Garbage Collect needed");
             }
+            //no GC
+            return;
          }
-      }
 
-      public final synchronized void triggerNow() {
-         triggerNow = true;
-         notify();
-      }
+         while (iterator.hasNext()) {
+            minimumViewId = Math.min(minimumViewId, iterator.next());
+         }
 
-      @Override
-      public void interrupt() {
-         running = false;
-         super.interrupt();
-      }
+         if (log.isTraceEnabled()) {
+            log.tracef("Garbage collect cache views older than %s", minimumViewId);
+         }
 
-      @ViewChanged
-      @Merged
-      public void handle(Event event) {
-         trigger();
+         GarbageCollectorControlCommand control = commandsFactory.buildGarbageCollectorControlCommand(SET_VIEW_ID,
+                                                                                                      minimumViewId);
+         rpcManager.broadcastRpcCommand(control, false, false);
+         commandsFactory.initializeReplicableCommand(control, false);
+         control.perform(null);
+         lastMinimumVisibleViewId = Math.max(lastMinimumVisibleViewId, minimumViewId);
+      } catch (Throwable throwable) {
+         log.warnf("Exception caught while garbage collecting oldest cache views: " + throwable.getLocalizedMessage());
       }
+   }
 
-      public final synchronized void trigger() {
-         triggered = true;
-         notify();
-      }
+   private void updatePauseTime(long pauseTime) {
+      stats.get(Stat.ROUNDS).incrementAndGet();
+      stats.get(Stat.PAUSE_TIME).addAndGet(pauseTime);
+      AtomicLong maxPauseTime = stats.get(Stat.MAX_PAUSE_TIME);
+      long max;
+      do {
+         max = maxPauseTime.get();
+      } while (pauseTime > max && !maxPauseTime.compareAndSet(max, pauseTime));
+   }
 
-      /**
-       * The main goal is to delete all older view id => addresses that are not in use by any version
-       * <p/>
-       * Note: the view id is used in gmu distributed version, which are only used in transactions versions and commit
-       * log entries. checking in the commit log should be enough to determine the minimum view id
-       * <p/>
-       * Note: this algorithm is triggered only by the coordinator
-       * <p/>
-       * The algorithm is performed in 3 steps: 1 - collect the minimum view id in commit log from local node and remote
-       * node 2 - broadcast the minimum view id to all members 3 - when the message in 2) is received, delete all view
-       * ids less than minimum view id
-       */
-      private void gc() {
-         try {
-            if (log.isTraceEnabled()) {
-               log.tracef("Starting Garbage Collector for old cache views");
-            }
-            GarbageCollectorControlCommand request = commandsFactory.buildGarbageCollectorControlCommand(GET_VIEW_ID, -1);
-
-            Map<Address, Response> responseMap = rpcManager.invokeRemotely(null, request,
-                                                                           ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS,
-                                                                           getTimeout(), true, false);
-            Map<Address, Integer> viewIdMap = convert(responseMap, Integer.class);
-            commandsFactory.initializeReplicableCommand(request, false);
-            viewIdMap.put(rpcManager.getAddress(), (Integer) request.perform(null));
-            Iterator<Integer> iterator = viewIdMap.values().iterator();
-            int minimumViewId;
-
-            if (iterator.hasNext()) {
-               minimumViewId = iterator.next();
-            } else {
-               if (log.isTraceEnabled()) {
-                  log.tracef("No Garbage Collect needed");
-               }
-               //no GC
-               return;
-            }
+   private List<Address> getMembers() {
+      return rpcManager == null ? Collections.<Address>emptyList() : rpcManager.getTransport().getMembers();
+   }
 
-            while (iterator.hasNext()) {
-               minimumViewId = Math.min(minimumViewId, iterator.next());
-            }
+   private long getTimeout() {
+      return configuration.clustering().sync().replTimeout();
+   }
 
-            if (log.isTraceEnabled()) {
-               log.tracef("Garbage collect cache views older than %s", minimumViewId);
-            }
+   private static long secondsToMillis(int seconds) {
+      return TimeUnit.SECONDS.toMillis(seconds);
+   }
 
-            GarbageCollectorControlCommand control = commandsFactory.buildGarbageCollectorControlCommand(SET_VIEW_ID,
-                                                                                                         minimumViewId);
-            rpcManager.broadcastRpcCommand(control, false, false);
-            commandsFactory.initializeReplicableCommand(control, false);
-            control.perform(null);
-         } catch (Throwable throwable) {
-            log.warnf("Exception caught while garbage collecting oldest cache views: " + throwable.getLocalizedMessage());
+   private <T> Map<Address, T> convert(Map<Address, Response> responseMap, Class<T> tClass) throws Exception {
+      Map<Address, T> retVal = new HashMap<Address, T>();
+      for (Map.Entry<Address, Response> entry : responseMap.entrySet()) {
+         Response response = entry.getValue();
+         if (!response.isSuccessful()) {
+            throw new Exception("Error executing command");
          }
+         retVal.put(entry.getKey(), tClass.cast(((SuccessfulResponse) response).getResponseValue()));
       }
+      return retVal;
+   }
 
-      private synchronized void block() {
-         try {
-            while (!triggered && !triggerNow) {
-               wait();
-            }
-            while (triggered && !triggerNow) {
-               triggered = false;
-               wait(backOff * 1000);
-            }
-         } catch (InterruptedException e) {
-            //no-op
-         }
-         triggered = false;
-         triggerNow = false;
-      }
+   private static enum Stat {
+      ROUNDS,
+      POSTPONED_ROUNDS,
+      PAUSE_TIME,
+      MAX_PAUSE_TIME,
+      RECLAIMED_VERSIONS,
+      RECLAIMED_L1_VERSIONS,
+      RECLAIMED_STORED_VERSIONS
    }
 
+   private static class MinimumVisible {
+      private final GMUVersion version;
+      private final int viewId;
+
+      private MinimumVisible(GMUVersion version, int viewId) {
+         this.version = version;
+         this.viewId = viewId;
+      }
+   }
 }
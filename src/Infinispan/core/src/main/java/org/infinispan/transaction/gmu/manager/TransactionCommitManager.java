@@ -88,9 +88,11 @@ public class TransactionCommitManager {
       this.garbageCollectorManager = garbageCollectorManager;
    }
 
-   //AFTER THE VersionGenerator
-   @Start(priority = 31)
+   //AFTER THE VersionGenerator and the CommitLog
+   @Start(priority = 32)
    public void start() {
+      //the commit log is restored from the cache store in a warm restart
+      lastPreparedVersion = Math.max(lastPreparedVersion, commitLog.getCurrentVersion().getThisNodeVersionValue());
       commitThread = new CommitThread(transport.getAddress() + "-" + cache.getName() + "-GMU-Commit");
       commitThread.start();
    }
@@ -28,7 +28,7 @@ import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.context.Flag;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.executors.ConditionalExecutorService;
-import org.infinispan.executors.ConditionalRunnable;
+import org.infinispan.executors.DependencyAwareRunnable;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
@@ -43,14 +43,19 @@ import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Units;
 
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Validates the transactions delivered in total order in parallel. A transaction only waits for the previous
+ * conflicting transactions.
+ * <p/>
+ * When the pipelining is enabled ({@link org.infinispan.configuration.cache.TransactionConfiguration#totalOrderPipelining()}),
+ * the delivery order is only the serialization order: the transactions are validated and applied in parallel and the
+ * replies are sent in the delivery order (see {@link TotalOrderCommitPublisher}).
+ *
  * @author Pedro Ruivo
  * @author Mircea.markus@jboss.org
  * @since 5.2
@@ -63,16 +68,28 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
    private final AtomicLong waitTimeInQueue = new AtomicLong(0);
    private final AtomicLong initializationDuration = new AtomicLong(0);
    /**
-    * this map is used to keep track of concurrent transactions.
+    * this graph is used to keep track of concurrent transactions.
     */
-   private final ConcurrentMap<Object, TxDependencyLatch> keysLocked = new ConcurrentHashMap<Object, TxDependencyLatch>();
+   private TxDependencyGraph dependencyGraph;
    private ConditionalExecutorService validationExecutorService;
+   /**
+    * when the pipelining is enabled, the replies are sent in the delivery order. otherwise, it is null
+    */
+   private TotalOrderCommitPublisher commitPublisher;
 
    @Inject
    public void inject(ConditionalExecutorService conditionalExecutorService) {
       validationExecutorService = conditionalExecutorService;
    }
 
+   @Override
+   public void start() {
+      super.start();
+      dependencyGraph = new TxDependencyGraph(configuration.locking().concurrencyLevel());
+      commitPublisher = configuration.transaction().totalOrderPipelining() ?
+            new TotalOrderCommitPublisher(configuration.locking().concurrencyLevel()) : null;
+   }
+
    @Override
    public final Object processTransactionFromSequencer(PrepareCommand prepareCommand, TxInvocationContext ctx,
                                                        CommandInterceptor invoker) {
@@ -83,26 +100,19 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
       RemoteTransaction remoteTransaction = (RemoteTransaction) ctx.getCacheTransaction();
 
       ParallelPrepareProcessor ppp = constructParallelPrepareProcessor(prepareCommand, ctx, invoker, remoteTransaction);
-      Set<TxDependencyLatch> previousTxs = new HashSet<TxDependencyLatch>();
       Set<Object> keysModified = getModifiedKeyFromModifications(remoteTransaction.getModifications());
+      Object[] keysRead = prepareCommand instanceof GMUPrepareCommand ?
+            ((GMUPrepareCommand) prepareCommand).getReadSet() : null;
 
       //this will collect all the count down latch corresponding to the previous transactions in the queue
-      for (Object key : keysModified) {
-         TxDependencyLatch prevTx = keysLocked.put(key, remoteTransaction.getDependencyLatch());
-         if (prevTx != null) {
-            previousTxs.add(prevTx);
-         }
-      }
+      ppp.setPreviousTransactions(dependencyGraph.addTransaction(remoteTransaction.getDependencyLatch(), keysModified,
+                                                                 keysRead));
 
-      if (prepareCommand instanceof GMUPrepareCommand) {
-         for (Object key : ((GMUPrepareCommand) prepareCommand).getReadSet()) {
-            previousTxs.add(keysLocked.get(key));
-         }
-         previousTxs.remove(remoteTransaction.getDependencyLatch());
+      if (commitPublisher != null) {
+         //the delivery order is the serialization order
+         ppp.setTicket(commitPublisher.nextTicket());
       }
 
-      ppp.setPreviousTransactions(previousTxs);
-
       if (trace)
          log.tracef("Transaction [%s] write set is %s", remoteTransaction.getDependencyLatch(), keysModified);
 
@@ -110,6 +120,9 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
          validationExecutorService.execute(ppp);
       } catch (Exception e) {
          log.fatal("Executor service is not enabled!");
+         if (commitPublisher != null) {
+            commitPublisher.skip(ppp.ticket);
+         }
          throw new RuntimeException(e);
       }
       return RequestHandler.DO_NOT_REPLY;
@@ -117,15 +130,22 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
 
    @Override
    public final void finishTransaction(RemoteTransaction remoteTransaction) {
+      //releases the dependent transactions
       super.finishTransaction(remoteTransaction);
-      for (Object key : getModifiedKeyFromModifications(remoteTransaction.getModifications())) {
-         this.keysLocked.remove(key, remoteTransaction.getDependencyLatch());
-      }
+      dependencyGraph.removeTransaction(remoteTransaction.getDependencyLatch());
    }
 
    @Override
    public Set<TxDependencyLatch> getPendingCommittingTransaction() {
-      return new HashSet<TxDependencyLatch>(keysLocked.values());
+      return dependencyGraph.getPendingTransactions();
+   }
+
+   @ManagedAttribute(description = "Number of transactions validated and waiting for the previous transactions to be " +
+         "committed (only when the pipelining is enabled)")
+   @Metric(displayName = "Number Of Transactions Waiting To Commit", displayType = DisplayType.DETAIL)
+   public int getNumberOfTransactionsWaitingToCommit() {
+      TotalOrderCommitPublisher publisher = commitPublisher;
+      return publisher == null ? 0 : publisher.size();
    }
 
    @ManagedOperation(description = "Resets the statistics")
@@ -197,17 +217,21 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
    /**
     * This class is used to validate transaction in repeatable read with write skew check
     */
-   private class ParallelPrepareProcessor implements ConditionalRunnable {
+   private class ParallelPrepareProcessor implements DependencyAwareRunnable {
 
       protected final RemoteTransaction remoteTransaction;
       protected final PrepareCommand prepareCommand;
-      //the set of others transaction's count down latch (it will be unblocked when the transaction finishes)
-      private final Set<TxDependencyLatch> previousTransactions;
+      //the number of previous transactions not finished yet. it is decremented when each one finishes
+      private final AtomicInteger pendingDependencies;
+      //notified when all the previous transactions are finished
+      private volatile Runnable readyListener;
       private final TxInvocationContext txInvocationContext;
       private final CommandInterceptor invoker;
       private long creationTime = -1;
       private long processStartTime = -1;
       private long initializationEndTime = -1;
+      //the position in the delivery order, used to send the reply in order when the pipelining is enabled
+      private long ticket = -1;
 
       protected ParallelPrepareProcessor(PrepareCommand prepareCommand, TxInvocationContext txInvocationContext,
                                          CommandInterceptor invoker, RemoteTransaction remoteTransaction) {
@@ -218,18 +242,50 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
          this.txInvocationContext = txInvocationContext;
          this.invoker = invoker;
          this.creationTime = now();
-         this.previousTransactions = new HashSet<TxDependencyLatch>();
+         this.pendingDependencies = new AtomicInteger(0);
          this.remoteTransaction = remoteTransaction;
       }
 
-      public void setPreviousTransactions(Set<TxDependencyLatch> previousTransactions) {
-         this.previousTransactions.addAll(previousTransactions);
+      /**
+       * @param ticket the position of this transaction in the total order, used to commit it in order
+       */
+      public void setTicket(long ticket) {
+         this.ticket = ticket;
+      }
+
+      /**
+       * registers this transaction in all the previous transactions. when they finish, the dependency counter is
+       * decremented and the transaction is ready when it reaches zero
+       *
+       * @param previousTransactions the previous conflicting transactions
+       */
+      public void setPreviousTransactions(Collection<TxDependencyLatch> previousTransactions) {
+         if (log.isTraceEnabled()) {
+            log.tracef("[%s] depends on %s", prepareCommand.getGlobalTransaction().prettyPrint(),
+                       previousTransactions);
+         }
+         pendingDependencies.set(previousTransactions.size());
+         Runnable dependencyFinished = new Runnable() {
+            @Override
+            public void run() {
+               if (pendingDependencies.decrementAndGet() == 0) {
+                  Runnable listener = readyListener;
+                  if (listener != null) {
+                     listener.run();
+                  }
+               }
+            }
+         };
+         for (TxDependencyLatch prevTx : previousTransactions) {
+            prevTx.addCompletionListener(dependencyFinished);
+         }
       }
 
       @Override
       public final void run() {
          processStartTime = now();
          boolean exception = false;
+         Object result = null;
          try {
             if (trace) log.tracef("Validating transaction %s ",
                                   prepareCommand.getGlobalTransaction().prettyPrint());
@@ -237,46 +293,60 @@ public class ParallelTotalOrderManager extends BaseTotalOrderManager {
             initializationEndTime = now();
 
             //invoke next interceptor in the chain
-            Object result = prepareCommand.acceptVisitor(txInvocationContext, invoker);
-            prepareCommand.sendReply(result, false);
+            result = prepareCommand.acceptVisitor(txInvocationContext, invoker);
          } catch (Throwable t) {
             log.trace("Exception while processing the rest of the interceptor chain", t);
             if (initializationEndTime == -1) {
                initializationEndTime = now();
             }
-            prepareCommand.sendReply(t, true);
+            result = t;
             exception = true;
          } finally {
+            if (commitPublisher == null) {
+               prepareCommand.sendReply(result, exception);
+            }
             logProcessingFinalStatus(prepareCommand, exception);
+            //releases the dependent transactions before this one is published
             finishPrepare(exception);
+            if (commitPublisher != null) {
+               publishReply(result, exception);
+            }
             updateDurationStats(creationTime, processStartTime, now(), initializationEndTime);
          }
       }
 
-      @Override
-      public final boolean isReady() {
-         previousTransactions.remove(remoteTransaction.getDependencyLatch());
-         for (TxDependencyLatch prevTx : previousTransactions) {
-            try {
-               if (!prevTx.await(0, TimeUnit.SECONDS)) {
-                  if (log.isTraceEnabled()) {
-                     log.tracef("[%s] is not ready to prepare due to %s",
-                                prepareCommand.getGlobalTransaction().prettyPrint(), prevTx);
-                  }
-                  return false;
-               }
-            } catch (InterruptedException e) {
-               if (log.isTraceEnabled()) {
-                  log.tracef("[%s ]Interrupted while checking is the previous conflicting transactions has finished",
-                             prepareCommand.getGlobalTransaction().prettyPrint());
-               }
-               return false;
+      /**
+       * sends the reply after the replies of all the transactions delivered before this one
+       *
+       * @param result    the result of the prepare
+       * @param exception true if the result is an exception
+       */
+      private void publishReply(final Object result, final boolean exception) {
+         commitPublisher.publish(ticket, new Runnable() {
+            @Override
+            public void run() {
+               prepareCommand.sendReply(result, exception);
             }
+         });
+      }
+
+      @Override
+      public final void registerDependencyListener(Runnable listener) {
+         readyListener = listener;
+         if (pendingDependencies.get() == 0) {
+            listener.run();
          }
+      }
+
+      @Override
+      public final boolean isReady() {
+         int pending = pendingDependencies.get();
          if (log.isTraceEnabled()) {
-            log.tracef("[%s] is ready to prepare", prepareCommand.getGlobalTransaction().prettyPrint());
+            log.tracef("[%s] is %s to prepare. Pending dependencies=%s",
+                       prepareCommand.getGlobalTransaction().prettyPrint(), pending == 0 ? "ready" : "not ready",
+                       pending);
          }
-         return true;
+         return pending == 0;
       }
 
       /**
@@ -0,0 +1,117 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction.totalorder;
+
+import org.infinispan.util.concurrent.ConcurrentMapFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the outcome of the transactions validated in parallel in the order they were delivered.
+ * <p/>
+ * Each transaction takes a ticket when it is delivered and, when its validation finishes, hands its publication (the
+ * reply to the coordinator) with that ticket. The publications are run in the ticket order: the thread that hands the
+ * next one runs it and all the following ones already handed, so no thread waits for the previous transactions.
+ * <p/>
+ * Every ticket taken must be published or skipped, otherwise the following transactions are never published.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class TotalOrderCommitPublisher {
+
+   private static final Log log = LogFactory.getLog(TotalOrderCommitPublisher.class);
+   private final AtomicLong nextTicket = new AtomicLong(0);
+   private final ConcurrentMap<Long, Runnable> pending;
+   private final AtomicBoolean publishing = new AtomicBoolean(false);
+   //only updated by the thread publishing
+   private volatile long nextToPublish = 0;
+
+   public TotalOrderCommitPublisher(int concurrencyLevel) {
+      pending = ConcurrentMapFactory.makeConcurrentMap(64, concurrencyLevel);
+   }
+
+   /**
+    * @return the ticket of a new transaction. It must be invoked in the delivery order
+    */
+   public final long nextTicket() {
+      return nextTicket.getAndIncrement();
+   }
+
+   /**
+    * runs the publication when all the transactions with a lower ticket are published
+    *
+    * @param ticket      the transaction ticket
+    * @param publication the publication
+    */
+   public final void publish(long ticket, Runnable publication) {
+      pending.put(ticket, publication);
+      //the thread publishing checks again after releasing the flag, so no publication is left behind
+      while (pending.containsKey(nextToPublish) && publishing.compareAndSet(false, true)) {
+         try {
+            Runnable next;
+            while ((next = pending.remove(nextToPublish)) != null) {
+               nextToPublish++;
+               run(next);
+            }
+         } finally {
+            publishing.set(false);
+         }
+      }
+   }
+
+   /**
+    * releases the ticket of a transaction that has nothing to publish
+    *
+    * @param ticket the transaction ticket
+    */
+   public final void skip(long ticket) {
+      publish(ticket, NO_OP);
+   }
+
+   /**
+    * @return the number of transactions validated and waiting for a previous transaction to be published
+    */
+   public final int size() {
+      return pending.size();
+   }
+
+   private static void run(Runnable publication) {
+      try {
+         publication.run();
+      } catch (Throwable throwable) {
+         log.warnf(throwable, "Exception caught while publishing the outcome of a transaction");
+      }
+   }
+
+   private static final Runnable NO_OP = new Runnable() {
+      @Override
+      public void run() {
+         //no-op
+      }
+   };
+}
@@ -0,0 +1,487 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction.totalorder;
+
+import org.infinispan.CacheException;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.tx.GMUPrepareCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.remoting.responses.AllResponsesFilter;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends the prepare commands in total order, coalescing the prepares issued within a small time window in a single
+ * totally ordered message ({@link org.infinispan.commands.remote.TotalOrderPrepareBatchCommand}).
+ * <p/>
+ * The first prepare of a batch waits up to the batch window for other prepares and sends the batch. It only waits if
+ * other prepares are already in flight: when the sequencer is idle, the prepare is sent immediately. The batch is sent
+ * earlier if it reaches the maximum size.
+ * <p/>
+ * The reply of a batch is only sent when all its prepares are validated, so a prepare that conflicts with one already
+ * in the batch (it writes or reads a key written by the other) is never added to it: it would wait in the remote nodes
+ * for a commit that is only sent after the batch reply. The batch is sent and the conflicting prepare starts a new
+ * one. Prepares with unknown key sets (i.e. with a clear operation) are always sent alone.
+ * <p/>
+ * When the batching is disabled, the prepare is sent directly in its own message.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@MBean(objectName = "TotalOrderPrepareBatcher", description = "Coalesces the prepares sent in total order in a " +
+      "single totally ordered message")
+public class TotalOrderPrepareBatcher {
+
+   private static final Log log = LogFactory.getLog(TotalOrderPrepareBatcher.class);
+   //batch key when the prepare is sent to all the members
+   private static final Object ALL_MEMBERS = new Object();
+   private final ReentrantLock lock;
+   private final Map<Object, Batch> pendingBatches;
+   private final AtomicInteger inFlight;
+   private final EnumMap<Stat, AtomicLong> stats;
+   private volatile boolean enabled;
+   private volatile int maxBatchSize;
+   private volatile long batchWindow;
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+   private Configuration configuration;
+
+   public TotalOrderPrepareBatcher() {
+      lock = new ReentrantLock();
+      pendingBatches = new HashMap<Object, Batch>();
+      inFlight = new AtomicInteger(0);
+      stats = new EnumMap<Stat, AtomicLong>(Stat.class);
+      for (Stat stat : Stat.values()) {
+         stats.put(stat, new AtomicLong(0));
+      }
+   }
+
+   @Inject
+   public void inject(RpcManager rpcManager, CommandsFactory commandsFactory, Configuration configuration) {
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+      this.configuration = configuration;
+   }
+
+   @Start
+   public void start() {
+      enabled = configuration.totalOrderBatching().enabled();
+      maxBatchSize = configuration.totalOrderBatching().maxBatchSize();
+      batchWindow = TimeUnit.MICROSECONDS.toNanos(configuration.totalOrderBatching().batchWindow());
+   }
+
+   /**
+    * sends the prepare command in total order, possibly in the same message of other prepares, and waits for the
+    * responses accepted by the filter
+    *
+    * @param recipients     the recipients of the prepare (null means all the members)
+    * @param prepareCommand the prepare command
+    * @param filter         the response filter of this prepare
+    * @param timeout        the timeout (in milliseconds)
+    * @return the responses of this prepare
+    */
+   public final Map<Address, Response> invokeRemotely(Collection<Address> recipients, PrepareCommand prepareCommand,
+                                                      ResponseFilter filter, long timeout) {
+      if (!enabled) {
+         return rpcManager.invokeRemotely(recipients, prepareCommand, ResponseMode.SYNCHRONOUS, timeout, true, filter,
+                                          true);
+      }
+      Set<Object> keysWritten = Util.getAffectedKeys(prepareCommand, null);
+      Object[] keysRead = prepareCommand instanceof GMUPrepareCommand ?
+            ((GMUPrepareCommand) prepareCommand).getReadSet() : null;
+      BatchEntry entry = new BatchEntry(prepareCommand, filter == null ? new AllResponsesFilter() : filter);
+      Batch batch;
+      boolean sender = false;
+      lock.lock();
+      try {
+         Object batchKey = recipients == null ? ALL_MEMBERS : new HashSet<Address>(recipients);
+         batch = pendingBatches.get(batchKey);
+         if (batch != null && batch.conflictsWith(keysWritten, keysRead)) {
+            if (log.isTraceEnabled()) {
+               log.tracef("Transaction %s conflicts with the pending batch. Sending it",
+                          prepareCommand.getGlobalTransaction().prettyPrint());
+            }
+            stats.get(Stat.CONFLICTS).incrementAndGet();
+            close(batch);
+            batch = null;
+         }
+         if (batch == null) {
+            batch = new Batch(batchKey, recipients, lock.newCondition());
+            pendingBatches.put(batchKey, batch);
+            sender = true;
+         }
+         batch.add(entry, keysWritten);
+         if (keysWritten == null || batch.entries.size() >= maxBatchSize) {
+            close(batch);
+         }
+      } finally {
+         lock.unlock();
+      }
+      if (sender) {
+         awaitBatch(batch);
+         send(batch, timeout);
+      }
+      return entry.awaitResponses();
+   }
+
+   @ManagedAttribute(description = "Shows if the prepares are being coalesced")
+   @Metric(displayName = "Is Batching Enabled", displayType = DisplayType.DETAIL)
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   @ManagedOperation(description = "Enables or disables the coalescing of the prepares")
+   @Operation(displayName = "Enable/Disable Batching")
+   public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   @ManagedAttribute(description = "The maximum number of prepares coalesced in a single message")
+   @Metric(displayName = "Maximum Batch Size", displayType = DisplayType.DETAIL)
+   public int getMaxBatchSize() {
+      return maxBatchSize;
+   }
+
+   @ManagedOperation(description = "Sets the maximum number of prepares coalesced in a single message")
+   @Operation(displayName = "Set Maximum Batch Size")
+   public void setMaxBatchSize(int maxBatchSize) {
+      if (maxBatchSize > 0) {
+         this.maxBatchSize = maxBatchSize;
+      }
+   }
+
+   @ManagedAttribute(description = "The maximum time that a prepare waits for other prepares (in microseconds)")
+   @Metric(displayName = "Batch Window", displayType = DisplayType.DETAIL)
+   public long getBatchWindow() {
+      return TimeUnit.NANOSECONDS.toMicros(batchWindow);
+   }
+
+   @ManagedOperation(description = "Sets the maximum time that a prepare waits for other prepares (in microseconds)")
+   @Operation(displayName = "Set Batch Window")
+   public void setBatchWindow(long microseconds) {
+      if (microseconds >= 0) {
+         this.batchWindow = TimeUnit.MICROSECONDS.toNanos(microseconds);
+      }
+   }
+
+   @ManagedAttribute(description = "The number of totally ordered messages sent with prepares")
+   @Metric(displayName = "Number of Messages Sent", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfMessagesSent() {
+      return stats.get(Stat.MESSAGES).get();
+   }
+
+   @ManagedAttribute(description = "The number of prepares sent")
+   @Metric(displayName = "Number of Prepares Sent", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfPreparesSent() {
+      return stats.get(Stat.PREPARES).get();
+   }
+
+   @ManagedAttribute(description = "The number of batches sent earlier because of a conflicting prepare")
+   @Metric(displayName = "Number of Conflicts", measurementType = MeasurementType.TRENDSUP,
+           displayType = DisplayType.SUMMARY)
+   public long getNumberOfConflicts() {
+      return stats.get(Stat.CONFLICTS).get();
+   }
+
+   @ManagedAttribute(description = "The average number of prepares per message")
+   @Metric(displayName = "Average Batch Size", displayType = DisplayType.SUMMARY)
+   public double getAvgBatchSize() {
+      long messages = stats.get(Stat.MESSAGES).get();
+      return messages == 0 ? 0 : stats.get(Stat.PREPARES).get() * 1.0 / messages;
+   }
+
+   @ManagedAttribute(description = "Average time that a prepare waits in the batch before being sent (in microseconds)")
+   @Metric(displayName = "Average Added Latency", displayType = DisplayType.SUMMARY)
+   public long getAvgAddedLatency() {
+      long prepares = stats.get(Stat.PREPARES).get();
+      return prepares == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.get(Stat.ADDED_LATENCY).get() / prepares);
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset Statistics")
+   public void resetStatistics() {
+      for (AtomicLong atomicLong : stats.values()) {
+         atomicLong.set(0);
+      }
+   }
+
+   /**
+    * waits until the batch is closed or the batch window expires. The batch is not delayed if no other prepare is in
+    * flight.
+    */
+   private void awaitBatch(Batch batch) {
+      lock.lock();
+      try {
+         long remaining = inFlight.get() == 0 ? 0 : batchWindow;
+         while (!batch.closed && remaining > 0) {
+            remaining = batch.closeCondition.awaitNanos(remaining);
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         if (!batch.closed) {
+            close(batch);
+         }
+         lock.unlock();
+      }
+   }
+
+   /**
+    * removes the batch from the pending batches. no more prepares are added to it. It must be invoked with the lock
+    * acquired
+    */
+   private void close(Batch batch) {
+      if (pendingBatches.get(batch.key) == batch) {
+         pendingBatches.remove(batch.key);
+      }
+      batch.closed = true;
+      batch.closeCondition.signal();
+   }
+
+   private void send(Batch batch, long timeout) {
+      List<BatchEntry> entries = batch.entries;
+      long now = System.nanoTime();
+      long addedLatency = 0;
+      for (BatchEntry entry : entries) {
+         addedLatency += now - entry.creationTime;
+      }
+      stats.get(Stat.MESSAGES).incrementAndGet();
+      stats.get(Stat.PREPARES).addAndGet(entries.size());
+      stats.get(Stat.ADDED_LATENCY).addAndGet(addedLatency);
+      if (log.isTraceEnabled()) {
+         log.tracef("Sending batch with %s prepares to %s", entries.size(),
+                    batch.recipients == null ? "all" : batch.recipients);
+      }
+
+      inFlight.incrementAndGet();
+      try {
+         if (entries.size() == 1) {
+            BatchEntry entry = entries.get(0);
+            entry.complete(rpcManager.invokeRemotely(batch.recipients, entry.prepareCommand, ResponseMode.SYNCHRONOUS,
+                                                     timeout, true, entry.filter, true));
+            return;
+         }
+         List<PrepareCommand> prepareCommands = new ArrayList<PrepareCommand>(entries.size());
+         for (BatchEntry entry : entries) {
+            prepareCommands.add(entry.prepareCommand);
+         }
+         Map<Address, Response> responses = rpcManager.invokeRemotely(batch.recipients,
+                                                                      commandsFactory.buildTotalOrderPrepareBatchCommand(prepareCommands),
+                                                                      ResponseMode.SYNCHRONOUS, timeout, true,
+                                                                      new BatchResponseFilter(entries), true);
+         for (int i = 0; i < entries.size(); ++i) {
+            entries.get(i).complete(unpack(responses, i));
+         }
+      } catch (RuntimeException e) {
+         for (BatchEntry entry : entries) {
+            entry.fail(e);
+         }
+      } catch (Error e) {
+         for (BatchEntry entry : entries) {
+            entry.fail(new CacheException(e));
+         }
+         throw e;
+      } finally {
+         inFlight.decrementAndGet();
+      }
+   }
+
+   /**
+    * @return the responses of the prepare in the {@param index} position of the batch
+    */
+   private static Map<Address, Response> unpack(Map<Address, Response> responses, int index) {
+      Map<Address, Response> unpacked = new HashMap<Address, Response>(responses.size());
+      for (Map.Entry<Address, Response> entry : responses.entrySet()) {
+         Response response = unpack(entry.getValue(), index);
+         if (response != null) {
+            unpacked.put(entry.getKey(), response);
+         }
+      }
+      return unpacked;
+   }
+
+   private static Response unpack(Response response, int index) {
+      if (response instanceof SuccessfulResponse) {
+         Object value = ((SuccessfulResponse) response).getResponseValue();
+         if (value instanceof Object[]) {
+            Object reply = ((Object[]) value)[index];
+            return reply instanceof Response ? (Response) reply : null;
+         }
+      }
+      //not a batch reply, it is the same for all the prepares
+      return response;
+   }
+
+   private static enum Stat {
+      MESSAGES,
+      PREPARES,
+      CONFLICTS,
+      ADDED_LATENCY
+   }
+
+   private static class Batch {
+      private final Object key;
+      private final Collection<Address> recipients;
+      private final Condition closeCondition;
+      private final List<BatchEntry> entries;
+      private final Set<Object> keysWritten;
+      private boolean closed;
+
+      private Batch(Object key, Collection<Address> recipients, Condition closeCondition) {
+         this.key = key;
+         this.recipients = recipients;
+         this.closeCondition = closeCondition;
+         this.entries = new ArrayList<BatchEntry>();
+         this.keysWritten = new HashSet<Object>();
+      }
+
+      private void add(BatchEntry entry, Set<Object> keys) {
+         entries.add(entry);
+         if (keys != null) {
+            keysWritten.addAll(keys);
+         }
+      }
+
+      private boolean conflictsWith(Set<Object> keysToWrite, Object[] keysToRead) {
+         if (keysToWrite == null) {
+            return true;
+         }
+         for (Object key : keysToWrite) {
+            if (keysWritten.contains(key)) {
+               return true;
+            }
+         }
+         if (keysToRead != null) {
+            for (Object key : keysToRead) {
+               if (keysWritten.contains(key)) {
+                  return true;
+               }
+            }
+         }
+         return false;
+      }
+   }
+
+   private static class BatchEntry {
+      private final PrepareCommand prepareCommand;
+      private final ResponseFilter filter;
+      private final long creationTime;
+      private final CountDownLatch done;
+      private volatile Map<Address, Response> responses;
+      private volatile RuntimeException exception;
+
+      private BatchEntry(PrepareCommand prepareCommand, ResponseFilter filter) {
+         this.prepareCommand = prepareCommand;
+         this.filter = filter;
+         this.creationTime = System.nanoTime();
+         this.done = new CountDownLatch(1);
+      }
+
+      private void complete(Map<Address, Response> responses) {
+         this.responses = responses;
+         done.countDown();
+      }
+
+      private void fail(RuntimeException exception) {
+         this.exception = exception;
+         done.countDown();
+      }
+
+      private Map<Address, Response> awaitResponses() {
+         try {
+            done.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while waiting for the prepare responses of " +
+                                           prepareCommand.getGlobalTransaction().prettyPrint(), e);
+         }
+         if (exception != null) {
+            throw exception;
+         }
+         return responses;
+      }
+   }
+
+   /**
+    * feeds the responses of each prepare to its filter and waits until all of them are satisfied
+    */
+   private static class BatchResponseFilter implements ResponseFilter {
+      private final List<BatchEntry> entries;
+
+      private BatchResponseFilter(List<BatchEntry> entries) {
+         this.entries = entries;
+      }
+
+      @Override
+      public boolean isAcceptable(Response response, Address sender) {
+         for (int i = 0; i < entries.size(); ++i) {
+            entries.get(i).filter.isAcceptable(unpack(response, i), sender);
+         }
+         return true;
+      }
+
+      @Override
+      public boolean needMoreResponses() {
+         for (BatchEntry entry : entries) {
+            if (entry.filter.needMoreResponses()) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+}
@@ -0,0 +1,248 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction.totalorder;
+
+import org.infinispan.transaction.TxDependencyLatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds incrementally the dependency graph of the transactions delivered in total order. For each key, it keeps the
+ * last delivered transaction that writes it: a new transaction depends on the last writer of each key that it reads
+ * or writes.
+ * <p/>
+ * The {@link TxDependencyLatch} is the node of the graph: the dependent transactions register on it and they are
+ * released directly when it is counted down. It also keeps the keys written, so the transaction is removed without
+ * computing its write set again.
+ * <p/>
+ * The last writer index is a fixed-size array of slots, indexed by the key hash. The keys in the same slot are chained
+ * and compared by equality, so a collision never creates a false dependency. The slots are guarded by a number of lock
+ * stripes proportional to the concurrency level, so the threads finishing transactions do not contend with the
+ * delivery thread and the index is never resized.
+ * <p/>
+ * The duplicated dependencies are filtered by marking each one with the delivery sequence number of the transaction
+ * being added, so the cost of adding a transaction is linear in the size of its read and write sets.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+public class TxDependencyGraph {
+
+   private static final Object[] EMPTY_ARRAY = new Object[0];
+   private static final int NUMBER_OF_SLOTS = 1 << 20;
+   private static final int MAX_LOCKS = 1 << 12;
+   private final LastWriter[] slots;
+   private final Object[] locks;
+   //only accessed by the delivery thread
+   private long deliverySequence;
+
+   public TxDependencyGraph(int concurrencyLevel) {
+      int numberOfLocks = 1;
+      while (numberOfLocks < concurrencyLevel * 4 && numberOfLocks < MAX_LOCKS) {
+         numberOfLocks <<= 1;
+      }
+      slots = new LastWriter[NUMBER_OF_SLOTS];
+      locks = new Object[numberOfLocks];
+      for (int i = 0; i < numberOfLocks; ++i) {
+         locks[i] = new Object();
+      }
+   }
+
+   /**
+    * adds a new transaction to the graph and returns the transactions that it depends on, i.e., the last writer of
+    * each key in the write and read set. It must be invoked in the delivery order.
+    *
+    * @param latch    the new transaction
+    * @param writeSet the keys written by the transaction
+    * @param readSet  the keys read by the transaction (can be null)
+    * @return the dependencies of the transaction, without duplicates
+    */
+   public final List<TxDependencyLatch> addTransaction(TxDependencyLatch latch, Collection<Object> writeSet,
+                                                       Object[] readSet) {
+      Object[] writeKeys = writeSet == null || writeSet.isEmpty() ? EMPTY_ARRAY : new Object[writeSet.size()];
+      Object[] readKeys = readSet == null ? EMPTY_ARRAY : readSet;
+      latch.setKeysWritten(writeKeys);
+      if (writeKeys.length == 0 && readKeys.length == 0) {
+         return Collections.emptyList();
+      }
+      long mark = ++deliverySequence;
+      List<TxDependencyLatch> dependencies = new ArrayList<TxDependencyLatch>(4);
+      if (writeKeys.length != 0) {
+         //the keys are copied while iterating the write set, to avoid iterating it twice
+         int index = 0;
+         for (Object key : writeSet) {
+            writeKeys[index++] = key;
+            addDependency(dependencies, putLastWriter(key, latch), latch, mark);
+         }
+      }
+      for (Object key : readKeys) {
+         addDependency(dependencies, getLastWriter(key), latch, mark);
+      }
+      return dependencies;
+   }
+
+   /**
+    * removes the transaction from the graph. The keys whose last writer is another transaction are not changed
+    *
+    * @param latch the finished transaction
+    */
+   public final void removeTransaction(TxDependencyLatch latch) {
+      Object[] writeKeys = latch.getKeysWritten();
+      if (writeKeys == null) {
+         return;
+      }
+      for (Object key : writeKeys) {
+         removeLastWriter(key, latch);
+      }
+   }
+
+   /**
+    * @return the transactions that are the last writer of, at least, one key
+    */
+   public final Set<TxDependencyLatch> getPendingTransactions() {
+      Set<TxDependencyLatch> pending = new HashSet<TxDependencyLatch>();
+      for (int index = 0; index < slots.length; ++index) {
+         synchronized (lockFor(index)) {
+            for (LastWriter node = slots[index]; node != null; node = node.next) {
+               pending.add(node.latch);
+            }
+         }
+      }
+      return pending;
+   }
+
+   /**
+    * @return the number of keys with a pending writer
+    */
+   public final int size() {
+      int size = 0;
+      for (int index = 0; index < slots.length; ++index) {
+         synchronized (lockFor(index)) {
+            for (LastWriter node = slots[index]; node != null; node = node.next) {
+               size++;
+            }
+         }
+      }
+      return size;
+   }
+
+   /**
+    * adds the previous transaction to the dependencies, if it is not the transaction itself and if it is not already
+    * there, i.e., if it was not marked yet with the mark of the transaction
+    */
+   private static void addDependency(List<TxDependencyLatch> dependencies, TxDependencyLatch previous,
+                                     TxDependencyLatch latch, long mark) {
+      if (previous == null || previous == latch || !previous.markDependency(mark)) {
+         return;
+      }
+      dependencies.add(previous);
+   }
+
+   /**
+    * sets the transaction as the last writer of the key
+    *
+    * @return the previous last writer of the key or null if it has none
+    */
+   private TxDependencyLatch putLastWriter(Object key, TxDependencyLatch latch) {
+      int hash = hash(key);
+      int index = hash & (slots.length - 1);
+      synchronized (lockFor(index)) {
+         for (LastWriter node = slots[index]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+               TxDependencyLatch previous = node.latch;
+               node.latch = latch;
+               return previous;
+            }
+         }
+         slots[index] = new LastWriter(hash, key, latch, slots[index]);
+         return null;
+      }
+   }
+
+   private TxDependencyLatch getLastWriter(Object key) {
+      int hash = hash(key);
+      int index = hash & (slots.length - 1);
+      synchronized (lockFor(index)) {
+         for (LastWriter node = slots[index]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+               return node.latch;
+            }
+         }
+         return null;
+      }
+   }
+
+   /**
+    * removes the key if its last writer is still the transaction
+    */
+   private void removeLastWriter(Object key, TxDependencyLatch latch) {
+      int hash = hash(key);
+      int index = hash & (slots.length - 1);
+      synchronized (lockFor(index)) {
+         LastWriter previous = null;
+         for (LastWriter node = slots[index]; node != null; previous = node, node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+               if (node.latch != latch) {
+                  return;
+               } else if (previous == null) {
+                  slots[index] = node.next;
+               } else {
+                  previous.next = node.next;
+               }
+               return;
+            }
+         }
+      }
+   }
+
+   private Object lockFor(int index) {
+      return locks[index & (locks.length - 1)];
+   }
+
+   /**
+    * spreads the higher bits of the hash code, since only the lower bits select the slot
+    */
+   private static int hash(Object key) {
+      int h = key.hashCode();
+      return h ^ (h >>> 16);
+   }
+
+   private static class LastWriter {
+      private final int hash;
+      private final Object key;
+      private TxDependencyLatch latch;
+      private LastWriter next;
+
+      private LastWriter(int hash, Object key, TxDependencyLatch latch, LastWriter next) {
+         this.hash = hash;
+         this.key = key;
+         this.latch = latch;
+         this.next = next;
+      }
+   }
+}
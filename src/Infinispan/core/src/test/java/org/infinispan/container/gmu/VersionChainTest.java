@@ -0,0 +1,279 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.gmu;
+
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.SimpleClusteredVersion;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the snapshot semantics of the {@link VersionChain}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "container.gmu.VersionChainTest")
+public class VersionChainTest extends AbstractInfinispanTest {
+
+   public void testReadSnapshot() {
+      SimpleVersionChain chain = new SimpleVersionChain();
+      chain.add(version(1));
+      chain.add(version(3));
+      chain.add(version(5));
+
+      assertReadVersion(chain, 0, null, 1);
+      assertReadVersion(chain, 1, 1L, 3);
+      assertReadVersion(chain, 2, 1L, 3);
+      assertReadVersion(chain, 4, 3L, 5);
+      assertReadVersion(chain, 10, 5L, null);
+      assertEquals(5, chain.get(null).getEntry().getVersion());
+      assertTrue(chain.get(null).isMostRecent());
+      assertEquals(3, chain.numberOfVersion());
+   }
+
+   public void testOutOfOrderAdd() {
+      SimpleVersionChain chain = new SimpleVersionChain();
+      chain.add(version(5));
+      chain.add(version(1));
+      chain.add(version(3));
+      chain.add(version(3));
+
+      assertEquals(3, chain.numberOfVersion());
+      assertReadVersion(chain, 2, 1L, 3);
+      assertReadVersion(chain, 3, 3L, 5);
+      assertReadVersion(chain, 6, 5L, null);
+   }
+
+   public void testGarbageCollection() {
+      SimpleVersionChain chain = new SimpleVersionChain();
+      for (int i = 1; i <= 10; ++i) {
+         chain.add(version(i));
+      }
+      assertEquals(10, chain.numberOfVersion());
+
+      chain.gc(new SimpleClusteredVersion(0, 7));
+
+      assertEquals(4, chain.numberOfVersion());
+      assertReadVersion(chain, 7, 7L, 8);
+      assertReadVersion(chain, 6, null, 7);
+      assertTrue(chain.contains(new SimpleClusteredVersion(0, 7)));
+      assertFalse(chain.contains(new SimpleClusteredVersion(0, 6)));
+   }
+
+   public void testIndexedRead() {
+      SimpleVersionChain chain = new SimpleVersionChain(4);
+      for (int i = 1; i <= 100; i += 2) {
+         chain.add(version(i));
+      }
+      assertFalse(chain.isIndexed());
+
+      //a read traversing more than 4 versions builds the index
+      assertReadVersion(chain, 2, 1L, 3);
+      assertTrue(chain.isIndexed());
+
+      for (int i = 1; i <= 100; i += 2) {
+         assertReadVersion(chain, i, (long) i, i == 99 ? null : i + 2);
+         assertReadVersion(chain, i + 1, (long) i, i == 99 ? null : i + 2);
+      }
+      assertReadVersion(chain, 0, null, 1);
+
+      //new versions added to the top of the chain keep the index valid
+      chain.add(version(200));
+      assertTrue(chain.isIndexed());
+      assertReadVersion(chain, 150, 99L, 200);
+      assertReadVersion(chain, 50, 49L, 51);
+      assertReadVersion(chain, 201, 200L, null);
+
+      //out-of-order versions invalidate the index
+      chain.add(version(50));
+      assertFalse(chain.isIndexed());
+      assertReadVersion(chain, 50, 50L, 51);
+      assertTrue(chain.isIndexed());
+
+      chain.gc(version(49));
+      assertFalse(chain.isIndexed());
+      assertReadVersion(chain, 48, null, 49);
+      assertEquals(28, chain.numberOfVersion());
+   }
+
+   public void testConcurrentAddAndRead() throws Exception {
+      final SimpleVersionChain chain = new SimpleVersionChain();
+      final int numberOfWriters = 4;
+      final int versionsPerWriter = 1000;
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+      for (int i = 0; i < numberOfWriters; ++i) {
+         final int writerId = i;
+         futures.add(fork(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               start.await();
+               for (int j = 0; j < versionsPerWriter; ++j) {
+                  chain.add(version(j * numberOfWriters + writerId));
+               }
+               return null;
+            }
+         }));
+      }
+      futures.add(fork(new Callable<Void>() {
+         @Override
+         public Void call() throws Exception {
+            start.await();
+            for (int j = 0; j < versionsPerWriter; ++j) {
+               VersionEntry<SimpleClusteredVersion> entry = chain.get(new SimpleClusteredVersion(0, j));
+               if (entry.isFound()) {
+                  assertTrue(entry.getEntry().getVersion() <= j);
+               }
+            }
+            return null;
+         }
+      }));
+
+      start.countDown();
+      for (Future<Void> future : futures) {
+         future.get();
+      }
+
+      assertEquals(numberOfWriters * versionsPerWriter, chain.numberOfVersion());
+      for (int i = 0; i < numberOfWriters * versionsPerWriter; ++i) {
+         assertEquals(i, chain.get(new SimpleClusteredVersion(0, i)).getEntry().getVersion());
+      }
+   }
+
+   private static void assertReadVersion(SimpleVersionChain chain, long readVersion, Long expectedVersion,
+                                         Integer expectedNextVersion) {
+      VersionEntry<SimpleClusteredVersion> entry = chain.get(new SimpleClusteredVersion(0, readVersion));
+      if (expectedVersion == null) {
+         assertFalse(entry.isFound());
+         assertNull(entry.getEntry());
+      } else {
+         assertTrue(entry.isFound());
+         assertEquals((long) expectedVersion, entry.getEntry().getVersion());
+      }
+      if (expectedNextVersion == null) {
+         assertNull(entry.getNextVersion());
+      } else {
+         assertEquals((long) expectedNextVersion, ((SimpleClusteredVersion) entry.getNextVersion()).getVersion());
+      }
+   }
+
+   private static SimpleClusteredVersion version(long version) {
+      return new SimpleClusteredVersion(0, version);
+   }
+
+   /**
+    * a version chain where the value is the version itself
+    */
+   public static class SimpleVersionChain extends VersionChain<SimpleClusteredVersion> {
+
+      private final int indexThreshold;
+
+      public SimpleVersionChain() {
+         this(0);
+      }
+
+      public SimpleVersionChain(int indexThreshold) {
+         this.indexThreshold = indexThreshold;
+      }
+
+      @Override
+      protected int getIndexThreshold() {
+         return indexThreshold;
+      }
+
+      @Override
+      protected VersionBody<SimpleClusteredVersion> newValue(SimpleClusteredVersion value) {
+         return new SimpleVersionBody(value);
+      }
+
+      @Override
+      protected void writeValue(BufferedWriter writer, SimpleClusteredVersion value) throws IOException {
+         writer.write(String.valueOf(value));
+      }
+   }
+
+   private static class SimpleVersionBody extends VersionBody<SimpleClusteredVersion> {
+
+      private SimpleVersionBody(SimpleClusteredVersion value) {
+         super(value);
+      }
+
+      @Override
+      public EntryVersion getVersion() {
+         return getValue();
+      }
+
+      @Override
+      public boolean isOlder(VersionBody<SimpleClusteredVersion> otherBody) {
+         return isOlder(getValue(), otherBody.getVersion());
+      }
+
+      @Override
+      public boolean isEqual(VersionBody<SimpleClusteredVersion> otherBody) {
+         return isEqual(getValue(), otherBody.getVersion());
+      }
+
+      @Override
+      public boolean isOlderOrEquals(EntryVersion entryVersion) {
+         return isOlderOrEquals(getValue(), entryVersion);
+      }
+
+      @Override
+      public boolean isRemove() {
+         return false;
+      }
+
+      @Override
+      public void reincarnate(VersionBody<SimpleClusteredVersion> other) {
+         //no-op
+      }
+
+      @Override
+      public VersionBody<SimpleClusteredVersion> gc(EntryVersion minVersion) {
+         if (isOlderOrEquals(getValue(), minVersion)) {
+            return truncate();
+         }
+         return getPrevious();
+      }
+
+      @Override
+      protected boolean isExpired(long now) {
+         return false;
+      }
+   }
+}
@@ -0,0 +1,94 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.versioning.gmu;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import static org.infinispan.container.versioning.gmu.GMUVersion.NON_EXISTING;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the compact encoding of the {@link GMUDistributedVersion} vector clock
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "container.versioning.gmu.GMUDistributedVersionEncodingTest")
+public class GMUDistributedVersionEncodingTest extends AbstractInfinispanTest {
+
+   public void testDenseVector() throws IOException {
+      long[] versions = new long[24];
+      for (int i = 0; i < versions.length; ++i) {
+         versions[i] = 1000000 + i * 3;
+      }
+      int size = assertRoundTrip(versions);
+      log.debugf("Dense vector with %s entries encoded in %s bytes (%s bytes before)", versions.length, size,
+                 versions.length * 8);
+      assertTrue("Encoded size is " + size, size < versions.length * 2);
+   }
+
+   public void testSparseVector() throws IOException {
+      long[] versions = new long[24];
+      Arrays.fill(versions, NON_EXISTING);
+      versions[3] = 500;
+      versions[17] = 2000;
+      int size = assertRoundTrip(versions);
+      log.debugf("Sparse vector with %s entries encoded in %s bytes (%s bytes before)", versions.length, size,
+                 versions.length * 8);
+      assertTrue("Encoded size is " + size, size < 16);
+   }
+
+   public void testEdgeCases() throws IOException {
+      long[] versions = new long[9];
+      Arrays.fill(versions, NON_EXISTING);
+      assertRoundTrip(versions);
+      assertRoundTrip(new long[]{0});
+      assertRoundTrip(new long[]{NON_EXISTING, Long.MAX_VALUE, 0});
+      assertRoundTrip(new long[]{Long.MAX_VALUE, NON_EXISTING, Long.MAX_VALUE - 1});
+   }
+
+   private int assertRoundTrip(long[] versions) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream output = new ObjectOutputStream(bytes);
+      output.flush();
+      int headerSize = bytes.size();
+      GMUDistributedVersion.writeVersions(output, versions);
+      output.flush();
+      int size = bytes.size() - headerSize;
+
+      ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      long[] read = new long[versions.length];
+      GMUDistributedVersion.readVersions(input, read);
+      assertEquals(Arrays.toString(versions), Arrays.toString(read));
+      return size;
+   }
+}
@@ -0,0 +1,195 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.dataplacement;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.dataplacement.c50.C50MLObjectLookupFactory;
+import org.infinispan.dataplacement.c50.keyfeature.Feature;
+import org.infinispan.dataplacement.c50.keyfeature.FeatureValue;
+import org.infinispan.dataplacement.c50.keyfeature.NameListFeature;
+import org.infinispan.dataplacement.c50.keyfeature.NumericFeature;
+import org.infinispan.dataplacement.c50.tree.DecisionTree;
+import org.infinispan.dataplacement.c50.tree.DecisionTreeLearner;
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the decision trees learned in memory by the {@link DecisionTreeLearner}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "dataplacement.DecisionTreeLearnerTest")
+public class DecisionTreeLearnerTest extends AbstractCacheTest {
+
+   private final DummyKeyFeatureManager keyFeatureManager = new DummyKeyFeatureManager();
+
+   public void testEmpty() {
+      DecisionTree tree = new DecisionTreeLearner(keyFeatureManager.getAllKeyFeatures(), 2).learn(new int[0]);
+      assert tree.query(keyFeatureManager.getFeatures(DummyKeyFeatureManager.getKey(1))) == -1;
+   }
+
+   public void testSingleValue() {
+      DecisionTreeLearner learner = new DecisionTreeLearner(keyFeatureManager.getAllKeyFeatures(), 2);
+      int[] values = new int[100];
+      for (int i = 0; i < values.length; ++i) {
+         learner.addExample(keyFeatureManager.getFeatures(DummyKeyFeatureManager.getKey(i, i)));
+         values[i] = 7;
+      }
+      DecisionTree tree = learner.learn(values);
+      assert tree.getDeep() == 0 : "Expected a single leaf but the deep is " + tree.getDeep();
+      assert tree.query(keyFeatureManager.getFeatures(DummyKeyFeatureManager.getKey(1000))) == 7;
+   }
+
+   public void testNumericFeatures() {
+      List<Object> keys = createRandomKeys(5000);
+      DecisionTreeLearner learner = new DecisionTreeLearner(keyFeatureManager.getAllKeyFeatures(), 2);
+      int[] values = new int[keys.size()];
+      for (int i = 0; i < values.length; ++i) {
+         learner.addExample(keyFeatureManager.getFeatures(keys.get(i)));
+         values[i] = numericRule(keys.get(i));
+      }
+
+      DecisionTree tree = learner.learn(values);
+      for (int i = 0; i < values.length; ++i) {
+         int value = tree.query(keyFeatureManager.getFeatures(keys.get(i)));
+         assert value == values[i] : "Wrong value for " + keys.get(i) + ". " + value + " != " + values[i];
+      }
+   }
+
+   public void testDiscreteFeature() {
+      Feature color = new NameListFeature("color", "red", "green", "blue");
+      Feature size = new NumericFeature("size");
+      String[] colors = {"red", "green", "blue"};
+      Random random = new Random(1);
+
+      DecisionTreeLearner learner = new DecisionTreeLearner(new Feature[] {color, size}, 2);
+      List<Map<Feature, FeatureValue>> examples = new ArrayList<Map<Feature, FeatureValue>>();
+      int[] values = new int[1000];
+      for (int i = 0; i < values.length; ++i) {
+         Map<Feature, FeatureValue> example = new HashMap<Feature, FeatureValue>();
+         int colorIndex = random.nextInt(colors.length + 1);
+         example.put(size, size.createFeatureValue(random.nextInt(100)));
+         if (colorIndex < colors.length) {
+            example.put(color, color.createFeatureValue(colors[colorIndex]));
+         }
+         examples.add(example);
+         learner.addExample(example);
+         values[i] = colorIndex;
+      }
+
+      DecisionTree tree = learner.learn(values);
+      for (int i = 0; i < values.length; ++i) {
+         int value = tree.query(examples.get(i));
+         assert value == values[i] : "Wrong value for " + examples.get(i) + ". " + value + " != " + values[i];
+      }
+   }
+
+   public void testSerialization() throws Exception {
+      List<Object> keys = createRandomKeys(1000);
+      DecisionTreeLearner learner = new DecisionTreeLearner(keyFeatureManager.getAllKeyFeatures(), 2);
+      int[] values = new int[keys.size()];
+      for (int i = 0; i < values.length; ++i) {
+         learner.addExample(keyFeatureManager.getFeatures(keys.get(i)));
+         values[i] = numericRule(keys.get(i));
+      }
+      DecisionTree tree = learner.learn(values);
+
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+      objectOutputStream.writeObject(tree);
+      objectOutputStream.flush();
+      ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+      DecisionTree copy = (DecisionTree) objectInputStream.readObject();
+
+      for (Object key : keys) {
+         Map<Feature, FeatureValue> features = keyFeatureManager.getFeatures(key);
+         assert tree.query(features) == copy.query(features) : "Different values for " + key;
+      }
+   }
+
+   public void testObjectLookupFactory() {
+      ConfigurationBuilder configurationBuilder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+      configurationBuilder.dataPlacement()
+            .addProperty(C50MLObjectLookupFactory.KEY_FEATURE_MANAGER, DummyKeyFeatureManager.class.getCanonicalName());
+      C50MLObjectLookupFactory objectLookupFactory = new C50MLObjectLookupFactory();
+      objectLookupFactory.setConfiguration(configurationBuilder.build());
+
+      Map<Object, OwnersInfo> toMoveObj = new HashMap<Object, OwnersInfo>();
+      for (Object key : createRandomKeys(2000)) {
+         OwnersInfo ownersInfo = new OwnersInfo(1);
+         ownersInfo.add(numericRule(key), 0);
+         toMoveObj.put(key, ownersInfo);
+      }
+
+      ObjectLookup objectLookup = objectLookupFactory.createObjectLookup(toMoveObj, 1);
+      assert objectLookup != null;
+      for (Map.Entry<Object, OwnersInfo> entry : toMoveObj.entrySet()) {
+         List<Integer> owners = objectLookup.query(entry.getKey());
+         assert owners != null && owners.size() == 1 : "Wrong owners for " + entry.getKey() + ": " + owners;
+         assert owners.get(0) == entry.getValue().getOwner(0) : "Wrong owner for " + entry.getKey() + ". " +
+               owners.get(0) + " != " + entry.getValue().getOwner(0);
+      }
+   }
+
+   /**
+    * keys without B are split by C and keys with B are split by B and C
+    */
+   private static int numericRule(Object key) {
+      String[] split = ((String) key).split("_");
+      if (split.length == 2) {
+         return Integer.parseInt(split[1]) < 300 ? 0 : 1;
+      }
+      int b = Integer.parseInt(split[1]);
+      int c = Integer.parseInt(split[2]);
+      if (b < 50) {
+         return 2;
+      }
+      return c <= 700 ? 3 : 4;
+   }
+
+   private static List<Object> createRandomKeys(int numberOfKeys) {
+      Random random = new Random(0);
+      List<Object> keys = new ArrayList<Object>(numberOfKeys);
+      for (int i = 0; i < numberOfKeys; ++i) {
+         if (random.nextBoolean()) {
+            keys.add(DummyKeyFeatureManager.getKey(random.nextInt(1000)));
+         } else {
+            keys.add(DummyKeyFeatureManager.getKey(random.nextInt(100), random.nextInt(1000)));
+         }
+      }
+      return keys;
+   }
+}
@@ -0,0 +1,159 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.dataplacement;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.dataplacement.xor.XorFilterObjectLookup;
+import org.infinispan.dataplacement.xor.XorFilterObjectLookupFactory;
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the {@link XorFilterObjectLookup}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "dataplacement.XorFilterObjectLookupTest")
+public class XorFilterObjectLookupTest extends AbstractCacheTest {
+
+   private static final int NUMBER_OF_KEYS = 10000;
+
+   public void testMovedKeys() {
+      for (int replicationDegree = 1; replicationDegree <= 3; ++replicationDegree) {
+         Map<Object, OwnersInfo> keysToMove = createMovements(NUMBER_OF_KEYS, replicationDegree, 20);
+         ObjectLookup objectLookup = createFactory(16).createObjectLookup(keysToMove, replicationDegree);
+         assertMovedKeys(keysToMove, objectLookup);
+      }
+   }
+
+   public void testNotMovedKeys() {
+      Map<Object, OwnersInfo> keysToMove = createMovements(NUMBER_OF_KEYS, 2, 20);
+      ObjectLookup objectLookup = createFactory(24).createObjectLookup(keysToMove, 2);
+
+      int falsePositives = 0;
+      for (int i = 0; i < NUMBER_OF_KEYS; ++i) {
+         if (objectLookup.query("not-moved-" + i) != null) {
+            falsePositives++;
+         }
+      }
+      //the fingerprint has 19 bits (20 distinct owners use 5 bits)
+      assert falsePositives < 10 : "Too many false positives: " + falsePositives;
+   }
+
+   public void testMinimumFingerprint() {
+      Map<Object, OwnersInfo> keysToMove = createMovements(NUMBER_OF_KEYS, 2, 20);
+      //20 distinct owners use 5 bits, so the entries are enlarged to keep a fingerprint of 8 bits or more
+      ObjectLookup objectLookup = createFactory(8).createObjectLookup(keysToMove, 2);
+      assertMovedKeys(keysToMove, objectLookup);
+
+      int falsePositives = 0;
+      for (int i = 0; i < NUMBER_OF_KEYS; ++i) {
+         if (objectLookup.query("not-moved-" + i) != null) {
+            falsePositives++;
+         }
+      }
+      assert falsePositives < NUMBER_OF_KEYS / 100 : "Too many false positives: " + falsePositives;
+   }
+
+   public void testBitsPerEntry() {
+      Map<Object, OwnersInfo> keysToMove = createMovements(NUMBER_OF_KEYS, 1, 200);
+      XorFilterObjectLookup small = (XorFilterObjectLookup) createFactory(8).createObjectLookup(keysToMove, 1);
+      XorFilterObjectLookup large = (XorFilterObjectLookup) createFactory(32).createObjectLookup(keysToMove, 1);
+      //200 distinct owners do not fit in 8 bits with the fingerprint
+      assertMovedKeys(keysToMove, small);
+      assertMovedKeys(keysToMove, large);
+      assert small.size() < large.size();
+      assert large.size() < NUMBER_OF_KEYS * 1.23 * 4 + 10000;
+   }
+
+   public void testEmpty() {
+      Map<Object, OwnersInfo> keysToMove = Collections.emptyMap();
+      ObjectLookup objectLookup = createFactory(16).createObjectLookup(keysToMove, 1);
+      for (int i = 0; i < 100; ++i) {
+         assert objectLookup.query("key-" + i) == null;
+      }
+   }
+
+   public void testSerialization() throws Exception {
+      Map<Object, OwnersInfo> keysToMove = createMovements(NUMBER_OF_KEYS, 2, 20);
+      ObjectLookup objectLookup = createFactory(16).createObjectLookup(keysToMove, 2);
+
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+      objectOutputStream.writeObject(objectLookup);
+      objectOutputStream.flush();
+      byte[] serialized = byteArrayOutputStream.toByteArray();
+      ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(serialized));
+      ObjectLookup copy = (ObjectLookup) objectInputStream.readObject();
+
+      assertMovedKeys(keysToMove, copy);
+      //the serialized form is the byte array plus the class description
+      assert serialized.length < ((XorFilterObjectLookup) objectLookup).size() + 200 : "Serialized size is " +
+            serialized.length;
+   }
+
+   private void assertMovedKeys(Map<Object, OwnersInfo> keysToMove, ObjectLookup objectLookup) {
+      assert objectLookup != null;
+      for (Map.Entry<Object, OwnersInfo> entry : keysToMove.entrySet()) {
+         List<Integer> owners = objectLookup.query(entry.getKey());
+         assert entry.getValue().getNewOwnersIndexes().equals(owners) : "Wrong owners for " + entry.getKey() +
+               ". " + owners + " != " + entry.getValue().getNewOwnersIndexes();
+      }
+   }
+
+   private XorFilterObjectLookupFactory createFactory(int bitsPerEntry) {
+      ConfigurationBuilder configurationBuilder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+      configurationBuilder.dataPlacement()
+            .addProperty(XorFilterObjectLookupFactory.BITS_PER_ENTRY, Integer.toString(bitsPerEntry));
+      XorFilterObjectLookupFactory objectLookupFactory = new XorFilterObjectLookupFactory();
+      objectLookupFactory.setConfiguration(configurationBuilder.build());
+      return objectLookupFactory;
+   }
+
+   private Map<Object, OwnersInfo> createMovements(int numberOfKeys, int replicationDegree, int numberOfNodes) {
+      Random random = new Random(numberOfKeys);
+      Map<Object, OwnersInfo> keysToMove = new HashMap<Object, OwnersInfo>();
+      while (keysToMove.size() < numberOfKeys) {
+         int owner = random.nextInt(numberOfNodes);
+         OwnersInfo ownersInfo = new OwnersInfo(replicationDegree);
+         for (int i = 0; i < replicationDegree; ++i) {
+            ownersInfo.add((owner + i) % numberOfNodes, 0);
+         }
+         keysToMove.put("key-" + random.nextInt(), ownersInfo);
+      }
+      return keysToMove;
+   }
+}
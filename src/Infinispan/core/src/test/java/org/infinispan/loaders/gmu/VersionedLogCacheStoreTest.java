@@ -0,0 +1,223 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.gmu;
+
+import org.infinispan.Cache;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.infinispan.container.versioning.gmu.GMUVersion.NON_EXISTING;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "loaders.gmu.VersionedLogCacheStoreTest")
+public class VersionedLogCacheStoreTest extends AbstractInfinispanTest {
+
+   private String tmpDirectory;
+   private VersionedLogCacheStore store;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @BeforeMethod
+   public void setUp() throws CacheLoaderException {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+      store = newCacheStore();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() throws CacheLoaderException {
+      if (store != null) {
+         store.stop();
+      }
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+   }
+
+   public void testVersionsAreOrdered() throws Exception {
+      assertEquals(store.getMostRecentVersion(), NON_EXISTING);
+      store.storeVersion("k", version("v2", 2));
+      store.storeVersion("k", version("v1", 1));
+      store.storeVersion("k", version("v3", 3));
+      store.storeVersion("k", version("v2", 2));
+
+      assertVersions("k", 3, 2, 1);
+      assertEquals(store.getMostRecentVersion(), 3);
+      assertEquals(store.load("k").getValue(), "v3");
+      assertTrue(store.containsKey("k"));
+
+      store.storeVersion("k", VersionedValue.removed(4, 0));
+      assertVersions("k", 4, 3, 2, 1);
+      assertNull(store.load("k"));
+      assertFalse(store.containsKey("k"));
+      assertTrue(store.loadAllKeys(null).isEmpty());
+   }
+
+   public void testGarbageCollection() throws Exception {
+      for (int i = 1; i <= 5; ++i) {
+         store.storeVersion("k1", version("v" + i, i));
+      }
+      store.storeVersion("k2", version("v1", 1));
+      store.storeVersion("k2", VersionedValue.removed(2, 0));
+      store.storeVersion("k3", version("v4", 4));
+
+      //keeps the most recent version visible by the minimum version
+      assertEquals(store.gc(3), 4);
+      assertVersions("k1", 5, 4, 3);
+      assertVersions("k2");
+      assertVersions("k3", 4);
+
+      assertEquals(store.gc(3), 0);
+      assertEquals(store.gc(10), 2);
+      assertVersions("k1", 5);
+      assertEquals(store.load("k1").getValue(), "v5");
+   }
+
+   public void testRestartRebuildsIndex() throws Exception {
+      for (int i = 0; i < 50; ++i) {
+         store.storeVersion("k" + i, version("a" + i, i));
+         store.storeVersion("k" + i, version("b" + i, i + 100));
+      }
+      store.storeVersion("k0", VersionedValue.removed(200, 0));
+      assertTrue(store.remove("k1"));
+
+      store = restart();
+      assertEquals(store.getMostRecentVersion(), 200);
+      assertVersions("k0", 200, 100, 0);
+      assertVersions("k1");
+      for (int i = 2; i < 50; ++i) {
+         assertVersions("k" + i, i + 100, i);
+         assertEquals(store.load("k" + i).getValue(), "b" + i);
+      }
+      assertEquals(store.loadAll().size(), 48);
+   }
+
+   public void testCompactionKeepsLiveVersions() throws Exception {
+      for (int i = 1; i <= 20; ++i) {
+         for (int k = 0; k < 10; ++k) {
+            store.storeVersion("k" + k, version("v" + i, i));
+         }
+      }
+      long size = store.getLogSize();
+      assertEquals(store.gc(18), 170);
+      store.compact();
+      assertTrue(store.getLogSize() < size / 4, "Log not compacted: " + store.getLogSize() + " of " + size);
+      assertEquals(store.getRoot().listFiles().length, 1);
+      for (int k = 0; k < 10; ++k) {
+         assertVersions("k" + k, 20, 19, 18);
+      }
+
+      store.storeVersion("k0", version("v21", 21));
+      store = restart();
+      assertVersions("k0", 21, 20, 19, 18);
+      for (int k = 1; k < 10; ++k) {
+         assertVersions("k" + k, 20, 19, 18);
+         assertEquals(store.load("k" + k).getValue(), "v20");
+      }
+   }
+
+   public void testTornRecordIsTruncated() throws Exception {
+      store.storeVersion("k", version("v1", 1));
+      store.storeVersion("k", version("v2", 2));
+      File log = new File(store.getRoot(), VersionedLogCacheStore.LOG_FILE_NAME);
+      store.stop();
+
+      RandomAccessFile file = new RandomAccessFile(log, "rw");
+      try {
+         file.setLength(file.length() - 3);
+      } finally {
+         file.close();
+      }
+
+      store = newCacheStore();
+      assertVersions("k", 1);
+      assertEquals(store.getMostRecentVersion(), 1);
+      store.storeVersion("k", version("v3", 3));
+      store = restart();
+      assertVersions("k", 3, 1);
+   }
+
+   public void testClear() throws Exception {
+      store.storeVersion("k1", version("v1", 1));
+      store.storeVersion("k2", version("v2", 2));
+      store.clear();
+      assertVersions("k1");
+      assertVersions("k2");
+      store.storeVersion("k1", version("v3", 3));
+
+      store = restart();
+      assertVersions("k1", 3);
+      assertVersions("k2");
+   }
+
+   private VersionedLogCacheStore newCacheStore() throws CacheLoaderException {
+      Cache cache = mock(Cache.class);
+      when(cache.getName()).thenReturn("mockCache-" + getClass().getName());
+      VersionedLogCacheStore cacheStore = new VersionedLogCacheStore();
+      cacheStore.init(new VersionedLogCacheStoreConfig().location(tmpDirectory).purgeSynchronously(true), cache,
+                      new TestObjectStreamMarshaller(false));
+      cacheStore.start();
+      return cacheStore;
+   }
+
+   private VersionedLogCacheStore restart() throws CacheLoaderException {
+      store.stop();
+      store = newCacheStore();
+      return store;
+   }
+
+   private void assertVersions(Object key, long... expected) throws CacheLoaderException {
+      List<VersionedValue> versions = store.loadVersions(key);
+      assertEquals(versions.size(), expected.length, "Wrong versions of " + key + ": " + versions);
+      for (int i = 0; i < expected.length; ++i) {
+         assertEquals(versions.get(i).getVersion(), expected[i], "Wrong versions of " + key + ": " + versions);
+      }
+   }
+
+   private static VersionedValue version(Object value, long version) {
+      return new VersionedValue(value, version, 0, false, -1, -1);
+   }
+}
@@ -0,0 +1,162 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.file.FileCacheStoreConfig;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestInternalCacheEntryFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "loaders.logfile.LogFileCacheStoreTest")
+public class LogFileCacheStoreTest extends BaseCacheStoreTest {
+
+   private String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   @Override
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      return newCacheStore(16 * 1024 * 1024);
+   }
+
+   private LogFileCacheStore newCacheStore(long maxSegmentSize) throws CacheLoaderException {
+      LogFileCacheStore store = new LogFileCacheStore();
+      LogFileCacheStoreConfig cfg = new LogFileCacheStoreConfig()
+            .fetchPersistentState(true)
+            .fsyncMode(FileCacheStoreConfig.FsyncMode.PER_WRITE)
+            .maxSegmentSize(maxSegmentSize)
+            .location(tmpDirectory)
+            .purgeSynchronously(true); // for more accurate unit testing
+      store.init(cfg, getCache(), getMarshaller());
+      store.start();
+      return store;
+   }
+
+   /**
+    * Stops the current store and starts a new one over the same location.
+    */
+   private LogFileCacheStore restart(long maxSegmentSize) throws CacheLoaderException {
+      cs.stop();
+      LogFileCacheStore store = newCacheStore(maxSegmentSize);
+      cs = store;
+      return store;
+   }
+
+   public void testRestartRebuildsIndex() throws Exception {
+      LogFileCacheStore store = restart(1024);
+      for (int i = 0; i < 100; i++) {
+         store.store(TestInternalCacheEntryFactory.create("k" + i, "v" + i));
+      }
+      for (int i = 0; i < 100; i += 2) {
+         store.store(TestInternalCacheEntryFactory.create("k" + i, "v" + i + "-updated"));
+      }
+      for (int i = 0; i < 100; i += 5) {
+         assert store.remove("k" + i);
+      }
+      assert store.getSegmentCount() > 1;
+
+      store = restart(1024);
+      assert store.loadAll().size() == 80;
+      for (int i = 0; i < 100; i++) {
+         if (i % 5 == 0) {
+            assert store.load("k" + i) == null;
+         } else {
+            String expected = i % 2 == 0 ? "v" + i + "-updated" : "v" + i;
+            assert expected.equals(store.load("k" + i).getValue());
+         }
+      }
+   }
+
+   public void testCompactionKeepsLiveRecords() throws Exception {
+      LogFileCacheStore store = restart(1024);
+      for (int round = 0; round < 10; round++) {
+         for (int i = 0; i < 20; i++) {
+            store.store(TestInternalCacheEntryFactory.create("k" + i, "v" + round));
+         }
+      }
+      assert store.remove("k0");
+      store.compact();
+      assert store.getRoot().listFiles().length == store.getSegmentCount();
+      assert store.getSegmentCount() < 10 : "Segments not compacted: " + store.getSegmentCount();
+      for (int i = 1; i < 20; i++) {
+         assert "v9".equals(store.load("k" + i).getValue());
+      }
+
+      store = restart(1024);
+      assert store.load("k0") == null;
+      assert store.loadAll().size() == 19;
+      for (int i = 1; i < 20; i++) {
+         assert "v9".equals(store.load("k" + i).getValue());
+      }
+   }
+
+   public void testTornRecordIsTruncated() throws Exception {
+      LogFileCacheStore store = (LogFileCacheStore) cs;
+      store.store(TestInternalCacheEntryFactory.create("k1", "v1"));
+      store.store(TestInternalCacheEntryFactory.create("k2", "v2"));
+      File segment = store.getRoot().listFiles()[0];
+      store.stop();
+
+      RandomAccessFile file = new RandomAccessFile(segment, "rw");
+      try {
+         file.setLength(file.length() - 3);
+      } finally {
+         file.close();
+      }
+
+      store = newCacheStore(16 * 1024 * 1024);
+      cs = store;
+      assert "v1".equals(store.load("k1").getValue());
+      assert store.load("k2") == null;
+      store.store(TestInternalCacheEntryFactory.create("k3", "v3"));
+
+      store = restart(16 * 1024 * 1024);
+      assert "v1".equals(store.load("k1").getValue());
+      assert "v3".equals(store.load("k3").getValue());
+   }
+}
@@ -0,0 +1,216 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.reconfigurableprotocol;
+
+import org.infinispan.reconfigurableprotocol.protocol.PassiveReplicationCommitProtocol;
+import org.infinispan.reconfigurableprotocol.protocol.TotalOrderCommitProtocol;
+import org.infinispan.reconfigurableprotocol.protocol.TwoPhaseCommitProtocol;
+import org.infinispan.reconfigurableprotocol.selector.AutonomicProtocolSelector;
+import org.infinispan.reconfigurableprotocol.selector.DefaultProtocolSelectionPolicy;
+import org.infinispan.reconfigurableprotocol.selector.WorkloadSample;
+import org.infinispan.reconfigurableprotocol.selector.WorkloadTraceReplay;
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Tests the {@link AutonomicProtocolSelector}, the {@link DefaultProtocolSelectionPolicy} and the {@link
+ * WorkloadTraceReplay}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "reconfigurableprotocol.AutonomicProtocolSelectorTest")
+public class AutonomicProtocolSelectorTest extends AbstractCacheTest {
+
+   private static final String PB = PassiveReplicationCommitProtocol.UID;
+   private static final String TO = TotalOrderCommitProtocol.UID;
+   private static final String TWO_PC = TwoPhaseCommitProtocol.UID;
+
+   public void testPolicyHysteresis() {
+      DefaultProtocolSelectionPolicy policy = new DefaultProtocolSelectionPolicy();
+
+      //write percentage of 0.11 is above the threshold (0.1) but inside the band
+      assertEquals(policy.select(sample(0, 0.11, 0, 0), TWO_PC), TWO_PC);
+      assertEquals(policy.select(sample(0, 0.11, 0, 0), PB), PB);
+      assertEquals(policy.select(sample(0, 0.13, 0, 0), PB), TWO_PC);
+      assertEquals(policy.select(sample(0, 0.07, 0, 0), TWO_PC), PB);
+
+      //abort rate of 0.11 is above the threshold (0.1) but inside the band
+      assertEquals(policy.select(sample(0, 0.5, 0.11, 0), TWO_PC), TWO_PC);
+      assertEquals(policy.select(sample(0, 0.5, 0.11, 0), TO), TO);
+      assertEquals(policy.select(sample(0, 0.5, 0.13, 0), TWO_PC), TO);
+      assertEquals(policy.select(sample(0, 0.5, 0.07, 0), TO), TWO_PC);
+
+      //contention probability
+      assertEquals(policy.select(sample(0, 0.5, 0, 0.07), TWO_PC), TO);
+      assertEquals(policy.select(sample(0, 0.5, 0, 0.045), TO), TO);
+      assertEquals(policy.select(sample(0, 0.5, 0, 0.035), TO), TWO_PC);
+   }
+
+   public void testStableSamples() {
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(3);
+
+      assertNull(selector.onSample(sample(0, 0.5, 0.5, 0), TWO_PC, true));
+      assertNull(selector.onSample(sample(1, 0.5, 0.5, 0), TWO_PC, true));
+      //a sample selecting the current protocol discards the candidate
+      assertNull(selector.onSample(sample(2, 0.5, 0, 0), TWO_PC, true));
+      assertNull(selector.onSample(sample(3, 0.5, 0.5, 0), TWO_PC, true));
+      assertNull(selector.onSample(sample(4, 0.5, 0.5, 0), TWO_PC, true));
+      assertEquals(selector.onSample(sample(5, 0.5, 0.5, 0), TWO_PC, true), TO);
+      assertEquals(selector.getNumberOfSamples(), 6);
+      assertEquals(selector.getNumberOfSwitchRequests(), 1);
+      assertEquals(selector.getLastSelected(), TO);
+   }
+
+   public void testCandidateKeptWhileSwitchIsNotAllowed() {
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(2);
+
+      for (int i = 0; i < 5; ++i) {
+         assertNull(selector.onSample(sample(i, 0.01, 0, 0), TWO_PC, false));
+      }
+      assertEquals(selector.onSample(sample(5, 0.01, 0, 0), TWO_PC, true), PB);
+   }
+
+   public void testSamplesWithFewTransactionsAreIgnored() {
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(1);
+      selector.setMinTransactions(100);
+
+      assertNull(selector.onSample(null, TWO_PC, true));
+      assertNull(selector.onSample(new WorkloadSample(0, 99, 0.5, 0, 0.5, 100, 10), TWO_PC, true));
+      assertEquals(selector.getNumberOfSamples(), 0);
+      assertEquals(selector.onSample(new WorkloadSample(1, 100, 0.5, 0, 0.5, 100, 10), TWO_PC, true), TO);
+   }
+
+   public void testTraceLine() throws Exception {
+      WorkloadSample sample = new WorkloadSample(1234, 567, 0.125, 0.0625, 0.5, 1500.25, 890.5);
+      WorkloadSample copy = WorkloadSample.fromTraceLine(sample.toTraceLine());
+      assertEquals(copy.getTimestamp(), 1234);
+      assertEquals(copy.getNumberOfTransactions(), 567);
+      assertEquals(copy.getAbortRate(), 0.125);
+      assertEquals(copy.getContentionProbability(), 0.0625);
+      assertEquals(copy.getWritePercentage(), 0.5);
+      assertEquals(copy.getWriteTxDuration(), 1500.25);
+      assertEquals(copy.getThroughput(), 890.5);
+
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.onSample(sample, TWO_PC, false);
+      List<WorkloadSample> trace = WorkloadTraceReplay.readTrace(new BufferedReader(new StringReader(selector.printTrace())));
+      assertEquals(trace.size(), 1);
+      assertEquals(trace.get(0).toTraceLine(), sample.toTraceLine());
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testMalformedTraceLine() {
+      WorkloadSample.fromTraceLine("1234,567,abc");
+   }
+
+   public void testReplay() {
+      List<WorkloadSample> samples = new ArrayList<WorkloadSample>();
+      long timestamp = 0;
+      //read-only phase, then a high contention phase and then a phase with low contention and many writes
+      for (int i = 0; i < 20; ++i) {
+         samples.add(sample(timestamp += 10000, 0.02, 0, 0));
+      }
+      for (int i = 0; i < 20; ++i) {
+         samples.add(sample(timestamp += 10000, 0.6, 0.3, 0.2));
+      }
+      for (int i = 0; i < 20; ++i) {
+         samples.add(sample(timestamp += 10000, 0.6, 0.01, 0.01));
+      }
+
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(3);
+      WorkloadTraceReplay replay = new WorkloadTraceReplay(selector, TWO_PC, 60000);
+      List<WorkloadTraceReplay.Switch> switches = replay.replay(samples);
+
+      assertEquals(switches.size(), 3, "Wrong switches: " + switches);
+      assertSwitch(switches.get(0), 30000, TWO_PC, PB);
+      //the cool down time (60 seconds) has passed when the new workload is stable
+      assertSwitch(switches.get(1), 230000, PB, TO);
+      assertSwitch(switches.get(2), 430000, TO, TWO_PC);
+   }
+
+   public void testReplayRespectsCoolDownTime() {
+      List<WorkloadSample> samples = new ArrayList<WorkloadSample>();
+      long timestamp = 0;
+      for (int i = 0; i < 5; ++i) {
+         samples.add(sample(timestamp += 10000, 0.02, 0, 0));
+      }
+      for (int i = 0; i < 20; ++i) {
+         samples.add(sample(timestamp += 10000, 0.6, 0.3, 0.2));
+      }
+
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(2);
+      WorkloadTraceReplay replay = new WorkloadTraceReplay(selector, TWO_PC, 100000);
+      List<WorkloadTraceReplay.Switch> switches = replay.replay(samples);
+
+      assertEquals(switches.size(), 2, "Wrong switches: " + switches);
+      assertSwitch(switches.get(0), 20000, TWO_PC, PB);
+      //the workload changes at 60 seconds but the next switch is only allowed at 120 seconds
+      assertSwitch(switches.get(1), 120000, PB, TO);
+   }
+
+   public void testReplayDoesNotFlapInsideTheBand() {
+      List<WorkloadSample> samples = new ArrayList<WorkloadSample>();
+      long timestamp = 0;
+      for (int i = 0; i < 5; ++i) {
+         samples.add(sample(timestamp += 10000, 0.5, 0.3, 0));
+      }
+      //the abort rate oscillates around the threshold (0.1), inside the hysteresis band
+      for (int i = 0; i < 100; ++i) {
+         samples.add(sample(timestamp += 10000, 0.5, i % 2 == 0 ? 0.09 : 0.11, 0));
+      }
+
+      AutonomicProtocolSelector selector = new AutonomicProtocolSelector(new DefaultProtocolSelectionPolicy());
+      selector.setStableSamples(1);
+      WorkloadTraceReplay replay = new WorkloadTraceReplay(selector, TWO_PC, 0);
+      List<WorkloadTraceReplay.Switch> switches = replay.replay(samples);
+
+      assertEquals(switches.size(), 1, "Wrong switches: " + switches);
+      assertSwitch(switches.get(0), 10000, TWO_PC, TO);
+      assertEquals(replay.samplesPerProtocol(samples, switches).get(TO), Integer.valueOf(104));
+   }
+
+   private static void assertSwitch(WorkloadTraceReplay.Switch s, long timestamp, String from, String to) {
+      assertEquals(s.getTimestamp(), timestamp, "Wrong timestamp in " + s);
+      assertEquals(s.getFrom(), from, "Wrong from in " + s);
+      assertEquals(s.getTo(), to, "Wrong to in " + s);
+   }
+
+   private static WorkloadSample sample(long timestamp, double writePercentage, double abortRate,
+                                        double contentionProbability) {
+      return new WorkloadSample(timestamp, 1000, abortRate, contentionProbability, writePercentage, 1000, 100);
+   }
+}
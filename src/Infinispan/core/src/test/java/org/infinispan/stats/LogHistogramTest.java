@@ -0,0 +1,147 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.stats.percentiles.LogHistogram;
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests the {@link LogHistogram}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "stats.LogHistogramTest")
+public class LogHistogramTest extends AbstractCacheTest {
+
+   public void testSmallValuesAreExact() {
+      LogHistogram histogram = new LogHistogram();
+      for (int i = 1; i <= 100; ++i) {
+         histogram.insertSample(i);
+      }
+      assertEquals(histogram.getCount(), 100);
+      assertEquals(histogram.getKPercentile(1), 1.0);
+      assertEquals(histogram.getKPercentile(50), 50.0);
+      assertEquals(histogram.getKPercentile(99), 99.0);
+      assertEquals(histogram.getKPercentile(100), 100.0);
+      assertEquals(histogram.getPercentile(99.5), 100.0);
+   }
+
+   public void testRelativeError() {
+      for (int significantBits = 1; significantBits <= 12; ++significantBits) {
+         LogHistogram histogram = new LogHistogram(significantBits);
+         Random random = new Random(significantBits);
+         long[] values = new long[10000];
+         for (int i = 0; i < values.length; ++i) {
+            //log-uniform between 1 and 2^40
+            values[i] = (long) Math.pow(2, random.nextDouble() * 40);
+            histogram.insertValue(values[i]);
+         }
+         Arrays.sort(values);
+         double maxError = 1.0 / (1 << (significantBits - 1));
+         for (double percentile : new double[]{0.1, 1, 10, 25, 50, 75, 90, 99, 99.9, 99.99, 100}) {
+            long exact = values[Math.max(0, (int) Math.ceil(percentile * values.length / 100) - 1)];
+            double value = histogram.getPercentile(percentile);
+            assert value >= exact : "Percentile " + percentile + " is " + value + " but expected " + exact;
+            assert (value - exact) / exact <= maxError : "Percentile " + percentile + " is " + value +
+                  " but expected " + exact + " with " + significantBits + " significant bits";
+         }
+      }
+   }
+
+   public void testExtremeValues() {
+      LogHistogram histogram = new LogHistogram();
+      histogram.insertValue(-10);
+      histogram.insertValue(0);
+      histogram.insertValue(Long.MAX_VALUE);
+      histogram.insertSample(Double.MAX_VALUE);
+      assertEquals(histogram.getCount(), 4);
+      assertEquals(histogram.getKPercentile(50), 0.0);
+      assertEquals(histogram.getKPercentile(100), (double) Long.MAX_VALUE);
+      assertEquals(new LogHistogram().getKPercentile(99), 0.0);
+   }
+
+   public void testMergeAndSerialization() throws Exception {
+      LogHistogram first = new LogHistogram();
+      LogHistogram second = new LogHistogram();
+      for (int i = 0; i < 1000; ++i) {
+         first.insertValue(i);
+         second.insertValue(1000000 + i);
+      }
+
+      LogHistogram copy = serializeAndDeserialize(second);
+      assertEquals(copy.getCount(), 1000);
+      assertEquals(copy.getKPercentile(50), second.getKPercentile(50));
+
+      first.merge(copy);
+      assertEquals(first.getCount(), 2000);
+      assert first.getKPercentile(50) < 1000;
+      assert first.getKPercentile(51) >= 1000000;
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testMergeDifferentPrecision() {
+      new LogHistogram(7).merge(new LogHistogram(8));
+   }
+
+   public void testIntervalHistogram() {
+      LogHistogram histogram = new LogHistogram();
+      for (int i = 0; i < 10; ++i) {
+         histogram.insertValue(10);
+      }
+      assertEquals(histogram.getIntervalHistogram().getCount(), 10);
+
+      for (int i = 0; i < 5; ++i) {
+         histogram.insertValue(20);
+      }
+      LogHistogram interval = histogram.getIntervalHistogram();
+      assertEquals(interval.getCount(), 5);
+      assertEquals(interval.getKPercentile(1), 20.0);
+      assertEquals(histogram.getCount(), 15);
+      assertEquals(histogram.getIntervalHistogram().getCount(), 0);
+
+      histogram.reset();
+      assertEquals(histogram.getCount(), 0);
+      histogram.insertValue(30);
+      assertEquals(histogram.getIntervalHistogram().getCount(), 1);
+   }
+
+   private static LogHistogram serializeAndDeserialize(LogHistogram histogram) throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(histogram);
+      out.close();
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      return (LogHistogram) in.readObject();
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests the {@link ThreadLocalStatisticsContainer}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "stats.ThreadLocalStatisticsContainerTest")
+public class ThreadLocalStatisticsContainerTest extends AbstractCacheTest {
+
+   private static final int SIZE = 4;
+   private static final int THREADS = 8;
+   private static final int ADDS = 100000;
+
+   public void testConcurrentAdds() throws Exception {
+      final ThreadLocalStatisticsContainer container = new ThreadLocalStatisticsContainer(SIZE);
+      final CyclicBarrier barrier = new CyclicBarrier(THREADS + 1);
+      Thread[] threads = new Thread[THREADS];
+      for (int i = 0; i < THREADS; ++i) {
+         threads[i] = new Thread() {
+            @Override
+            public void run() {
+               for (int j = 0; j < ADDS; ++j) {
+                  container.addValue(j % SIZE, 2);
+               }
+               try {
+                  //keep the thread alive until the values are read
+                  barrier.await();
+                  barrier.await();
+               } catch (Exception e) {
+                  throw new RuntimeException(e);
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      barrier.await();
+      assertValues(container);
+      barrier.await();
+
+      //the counters of the dead threads are kept
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      assertValues(container);
+      assertValues(container);
+   }
+
+   public void testMergeTo() {
+      ThreadLocalStatisticsContainer container = new ThreadLocalStatisticsContainer(SIZE);
+      for (int i = 0; i < SIZE; ++i) {
+         container.addValue(i, i * 10);
+      }
+      StatisticsContainer other = new StatisticsContainerImpl(SIZE);
+      other.addValue(0, 5);
+      container.mergeTo(other);
+      assertEquals(other.getValue(0), 5);
+      for (int i = 1; i < SIZE; ++i) {
+         assertEquals(other.getValue(i), i * 10);
+      }
+   }
+
+   private void assertValues(StatisticsContainer container) {
+      StatisticsContainer snapshot = new StatisticsContainerImpl(SIZE);
+      container.mergeTo(snapshot);
+      long expected = 2L * THREADS * ADDS / SIZE;
+      for (int i = 0; i < SIZE; ++i) {
+         assertEquals(container.getValue(i), expected);
+         assertEquals(snapshot.getValue(i), expected);
+      }
+   }
+}
@@ -0,0 +1,148 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.dataplacement.DummyKeyFeatureManager;
+import org.infinispan.dataplacement.OwnersInfo;
+import org.infinispan.dataplacement.c50.C50MLObjectLookupFactory;
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.test.AbstractCacheTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the decision trees learned in memory with the ones learned by the external C5.0, on the duration of the
+ * data placement round (i.e. the time to create the object lookup) and on the accuracy of the lookup for the moved
+ * keys. The new owners of the keys follow a rule on the key features with some noise (i.e. keys moved to a random
+ * owner). The external C5.0 is only used if it is found in {@link #C_50_ML_LOCATION}.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.C50MLObjectLookupStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class C50MLObjectLookupStressTest extends AbstractCacheTest {
+
+   private static final String C_50_ML_LOCATION = "/tmp/ml";
+   private static final int[] NUMBER_OF_KEYS = {1000, 10000, 100000};
+   private static final int[] REPLICATION_DEGREES = {1, 2, 4};
+   private static final int NUMBER_OF_OWNERS = 10;
+   private static final int NOISE_PERCENTAGE = 5;
+   private static final int REPETITIONS = 3;
+
+   public void testRoundLatencyAndAccuracy() {
+      C50MLObjectLookupFactory javaFactory = createFactory(C50MLObjectLookupFactory.JAVA_MACHINE_LEARNER);
+      C50MLObjectLookupFactory c50Factory = new File(C_50_ML_LOCATION, "c5.0").canExecute() ?
+            createFactory(C50MLObjectLookupFactory.C50_MACHINE_LEARNER) : null;
+
+      if (c50Factory == null) {
+         log.warnf("C5.0 not found in %s. Only the in-memory decision trees are measured", C_50_ML_LOCATION);
+      }
+
+      for (int numberOfKeys : NUMBER_OF_KEYS) {
+         for (int replicationDegree : REPLICATION_DEGREES) {
+            Map<Object, OwnersInfo> toMoveObj = createMovements(numberOfKeys, replicationDegree);
+            measure(javaFactory, C50MLObjectLookupFactory.JAVA_MACHINE_LEARNER, toMoveObj, replicationDegree);
+            if (c50Factory != null) {
+               measure(c50Factory, C50MLObjectLookupFactory.C50_MACHINE_LEARNER, toMoveObj, replicationDegree);
+            }
+         }
+      }
+   }
+
+   private void measure(C50MLObjectLookupFactory factory, String machineLearner, Map<Object, OwnersInfo> toMoveObj,
+                        int replicationDegree) {
+      ObjectLookup objectLookup = null;
+      long duration = Long.MAX_VALUE;
+      for (int i = 0; i < REPETITIONS; ++i) {
+         long start = System.nanoTime();
+         objectLookup = factory.createObjectLookup(toMoveObj, replicationDegree);
+         duration = Math.min(duration, System.nanoTime() - start);
+         assert objectLookup != null;
+      }
+
+      int wrongOwners = 0;
+      long queryDuration = 0;
+      for (Map.Entry<Object, OwnersInfo> entry : toMoveObj.entrySet()) {
+         long start = System.nanoTime();
+         List<Integer> owners = objectLookup.query(entry.getKey());
+         queryDuration += System.nanoTime() - start;
+         //the lookup returns the owners as learned by the factory (see the hack in the factory)
+         for (int iteration = 0; iteration < owners.size(); ++iteration) {
+            if (owners.get(iteration) != (entry.getValue().getOwner(0) + iteration) % 40) {
+               wrongOwners++;
+            }
+         }
+      }
+
+      log.warnf("[%s] keys=%s, replication degree=%s: round duration=%s ms, accuracy=%.2f%%, query=%s ns/key",
+                machineLearner, toMoveObj.size(), replicationDegree, duration / 1000000,
+                100.0 - wrongOwners * 100.0 / (toMoveObj.size() * replicationDegree),
+                queryDuration / toMoveObj.size());
+   }
+
+   private C50MLObjectLookupFactory createFactory(String machineLearner) {
+      ConfigurationBuilder configurationBuilder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+      configurationBuilder.dataPlacement()
+            .addProperty(C50MLObjectLookupFactory.KEY_FEATURE_MANAGER, DummyKeyFeatureManager.class.getCanonicalName())
+            .addProperty(C50MLObjectLookupFactory.LOCATION, C_50_ML_LOCATION)
+            .addProperty(C50MLObjectLookupFactory.MACHINE_LEARNER, machineLearner);
+      C50MLObjectLookupFactory objectLookupFactory = new C50MLObjectLookupFactory();
+      objectLookupFactory.setConfiguration(configurationBuilder.build());
+      return objectLookupFactory;
+   }
+
+   private Map<Object, OwnersInfo> createMovements(int numberOfKeys, int replicationDegree) {
+      Random random = new Random(numberOfKeys);
+      Map<Object, OwnersInfo> toMoveObj = new HashMap<Object, OwnersInfo>();
+      while (toMoveObj.size() < numberOfKeys) {
+         int b = random.nextInt(100);
+         int c = random.nextInt(100000);
+         Object key;
+         int owner;
+         if (random.nextBoolean()) {
+            key = DummyKeyFeatureManager.getKey(c);
+            owner = c < 50000 ? 0 : 1;
+         } else {
+            key = DummyKeyFeatureManager.getKey(b, c);
+            owner = 2 + (b + c / 25000) % (NUMBER_OF_OWNERS - 2);
+         }
+         if (random.nextInt(100) < NOISE_PERCENTAGE) {
+            owner = random.nextInt(NUMBER_OF_OWNERS);
+         }
+         OwnersInfo ownersInfo = new OwnersInfo(replicationDegree);
+         for (int i = 0; i < replicationDegree; ++i) {
+            ownersInfo.add((owner + i) % NUMBER_OF_OWNERS, 0);
+         }
+         toMoveObj.put(key, ownersInfo);
+      }
+      return toMoveObj;
+   }
+}
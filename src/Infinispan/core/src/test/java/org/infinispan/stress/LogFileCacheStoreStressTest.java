@@ -0,0 +1,190 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.file.FileCacheStoreConfig;
+import org.infinispan.loaders.logfile.LogFileCacheStoreConfig;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.test.AbstractCacheTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.test.fwk.TestInternalCacheEntryFactory;
+import org.infinispan.util.Util;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the write throughput and the restart time (i.e. start and load all the entries) of the file based cache
+ * stores: the log-structured {@link org.infinispan.loaders.logfile.LogFileCacheStore}, the bucket based {@link
+ * org.infinispan.loaders.file.FileCacheStore} and the <tt>JdbmCacheStore</tt>, with and without an fsync per write
+ * when the store supports it. The stores that cannot be loaded (e.g. missing libraries) are skipped.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.LogFileCacheStoreStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class LogFileCacheStoreStressTest extends AbstractCacheTest {
+
+   private static final String[] STORES = {
+         "org.infinispan.loaders.logfile.LogFileCacheStore",
+         "org.infinispan.loaders.file.FileCacheStore",
+         "org.infinispan.loaders.jdbm.JdbmCacheStore"
+   };
+   private static final FileCacheStoreConfig.FsyncMode[] FSYNC_MODES = {
+         FileCacheStoreConfig.FsyncMode.DEFAULT,
+         FileCacheStoreConfig.FsyncMode.PER_WRITE
+   };
+   private static final int NUMBER_OF_KEYS = 20000;
+   private static final int NUMBER_OF_WRITES = 100000;
+   private static final int NUMBER_OF_THREADS = 8;
+   private static final int VALUE_SIZE = 256;
+
+   private EmbeddedCacheManager cacheManager;
+   private Cache<Object, Object> cache;
+   private StreamingMarshaller marshaller;
+   private String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   public void setUp(@Optional(value = "/tmp") String basedir) {
+      cacheManager = TestCacheManagerFactory.createLocalCacheManager(false);
+      cache = cacheManager.getCache();
+      marshaller = TestingUtil.extractCacheMarshaller(cache);
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+   }
+
+   public void testWriteThroughputAndRestartTime() throws Exception {
+      for (String storeClassName : STORES) {
+         for (FileCacheStoreConfig.FsyncMode fsyncMode : FSYNC_MODES) {
+            CacheStore store;
+            try {
+               store = createCacheStore(storeClassName, fsyncMode);
+            } catch (Throwable throwable) {
+               log.warnf("Skipping %s. %s", storeClassName, throwable.getMessage());
+               break;
+            }
+            if (store == null) {
+               //fsync mode not supported
+               continue;
+            }
+            store.clear();
+
+            long writeDuration = write(store);
+            store.stop();
+
+            long start = System.nanoTime();
+            store = createCacheStore(storeClassName, fsyncMode);
+            int loaded = store.loadAll().size();
+            long restartDuration = System.nanoTime() - start;
+            store.clear();
+            store.stop();
+
+            assert loaded == NUMBER_OF_KEYS : "Expected " + NUMBER_OF_KEYS + " entries but loaded " + loaded;
+            log.warnf("[%s] fsync=%s: writes=%.0f ops/s, restart=%s ms (%s entries)",
+                      store.getClass().getSimpleName(), fsyncMode, NUMBER_OF_WRITES * 1e9 / writeDuration,
+                      restartDuration / 1000000, loaded);
+         }
+      }
+   }
+
+   /**
+    * @return the store, or <tt>null</tt> if it does not support the fsync mode.
+    */
+   private CacheStore createCacheStore(String storeClassName, FileCacheStoreConfig.FsyncMode fsyncMode)
+         throws Exception {
+      CacheStore store = Util.getInstance(storeClassName, Thread.currentThread().getContextClassLoader());
+      AbstractCacheStoreConfig config = (AbstractCacheStoreConfig) Util.getInstance(store.getConfigurationClass());
+      if (config instanceof LogFileCacheStoreConfig) {
+         ((LogFileCacheStoreConfig) config).setFsyncMode(fsyncMode);
+      } else if (config instanceof FileCacheStoreConfig) {
+         ((FileCacheStoreConfig) config).setFsyncMode(fsyncMode);
+      } else if (fsyncMode != FileCacheStoreConfig.FsyncMode.DEFAULT) {
+         return null;
+      }
+      config.getClass().getMethod("setLocation", String.class).invoke(config, tmpDirectory + "/" + store.getClass().getSimpleName());
+      config.setPurgeSynchronously(true);
+      store.init(config, cache, marshaller);
+      store.start();
+      return store;
+   }
+
+   private long write(final CacheStore store) throws Exception {
+      final byte[] value = new byte[VALUE_SIZE];
+      final CountDownLatch startLatch = new CountDownLatch(1);
+      final AtomicReference<CacheLoaderException> error = new AtomicReference<CacheLoaderException>();
+      Thread[] writers = new Thread[NUMBER_OF_THREADS];
+      for (int t = 0; t < NUMBER_OF_THREADS; ++t) {
+         final int threadId = t;
+         writers[t] = new Thread("Writer-" + t) {
+            @Override
+            public void run() {
+               Random random = new Random(threadId);
+               try {
+                  startLatch.await();
+                  //each thread writes all its keys first, so that every key is present in the end
+                  for (int i = threadId; i < NUMBER_OF_WRITES; i += NUMBER_OF_THREADS) {
+                     int key = i < NUMBER_OF_KEYS ? i : random.nextInt(NUMBER_OF_KEYS);
+                     InternalCacheEntry entry = TestInternalCacheEntryFactory.create("key" + key, value);
+                     store.store(entry);
+                  }
+               } catch (CacheLoaderException e) {
+                  error.set(e);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         };
+         writers[t].start();
+      }
+      long start = System.nanoTime();
+      startLatch.countDown();
+      for (Thread writer : writers) {
+         writer.join();
+      }
+      long duration = System.nanoTime() - start;
+      if (error.get() != null) {
+         throw error.get();
+      }
+      return duration;
+   }
+}
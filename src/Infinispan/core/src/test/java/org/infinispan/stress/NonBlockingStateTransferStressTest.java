@@ -0,0 +1,187 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractCacheTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.Util;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Measures the throughput dip and the join time when a node joins a distributed cache under load, with the blocking
+ * (push-based) and the non-blocking (pull-based) state transfer. The throughput is sampled in intervals of {@link
+ * #SAMPLE_MILLIS}: the average during the join is compared with the average before the join, and the intervals with
+ * less than {@link #STALL_PERCENTAGE}% of the throughput before the join are reported as stalled.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.NonBlockingStateTransferStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class NonBlockingStateTransferStressTest extends AbstractCacheTest {
+
+   private static final int INITIAL_CLUSTER_SIZE = 3;
+   private static final int NUMBER_OF_KEYS = 50000;
+   private static final int NUMBER_OF_THREADS = 8;
+   private static final int WRITE_PERCENTAGE = 20;
+   private static final int SAMPLE_MILLIS = 100;
+   private static final int WARMUP_SECONDS = 5;
+   private static final int MAX_SAMPLES = 1200;
+   private static final int STALL_PERCENTAGE = 10;
+
+   public void testThroughputDuringJoin() throws Exception {
+      for (boolean nonBlocking : new boolean[]{false, true}) {
+         run(nonBlocking);
+      }
+   }
+
+   private void run(boolean nonBlocking) throws Exception {
+      Configuration configuration = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      configuration.fluent().clustering().stateRetrieval().nonBlocking(nonBlocking);
+
+      List<EmbeddedCacheManager> cacheManagers = new ArrayList<EmbeddedCacheManager>();
+      List<Cache<Object, Object>> caches = new ArrayList<Cache<Object, Object>>();
+      Worker[] workers = new Worker[NUMBER_OF_THREADS];
+      try {
+         for (int i = 0; i < INITIAL_CLUSTER_SIZE; ++i) {
+            EmbeddedCacheManager cacheManager = TestCacheManagerFactory.createClusteredCacheManager(configuration);
+            cacheManagers.add(cacheManager);
+            caches.add(cacheManager.<Object, Object>getCache());
+         }
+         TestingUtil.blockUntilViewsReceived(60000, caches.toArray(new Cache[caches.size()]));
+         TestingUtil.waitForRehashToComplete(caches);
+
+         for (int i = 0; i < NUMBER_OF_KEYS; ++i) {
+            caches.get(i % caches.size()).put("key" + i, "value" + i);
+         }
+
+         AtomicIntegerArray samples = new AtomicIntegerArray(MAX_SAMPLES);
+         long start = System.nanoTime();
+         for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+            workers[i] = new Worker(caches.get(i % caches.size()), samples, start, i);
+            workers[i].start();
+         }
+         Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+
+         long joinStart = System.nanoTime();
+         EmbeddedCacheManager joinerManager = TestCacheManagerFactory.createClusteredCacheManager(configuration);
+         cacheManagers.add(joinerManager);
+         caches.add(joinerManager.<Object, Object>getCache());
+         TestingUtil.waitForRehashToComplete(caches);
+         long joinEnd = System.nanoTime();
+
+         Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+         for (Worker worker : workers) {
+            worker.running = false;
+            worker.join();
+         }
+
+         int firstJoinSample = sampleIndex(start, joinStart);
+         int lastJoinSample = Math.min(sampleIndex(start, joinEnd), MAX_SAMPLES - 1);
+         long before = 0;
+         for (int i = 1; i < firstJoinSample; ++i) {
+            before += samples.get(i);
+         }
+         double averageBefore = firstJoinSample > 1 ? before / (double) (firstJoinSample - 1) : 0;
+         long during = 0;
+         int stalled = 0;
+         for (int i = firstJoinSample; i <= lastJoinSample; ++i) {
+            during += samples.get(i);
+            if (samples.get(i) * 100 < averageBefore * STALL_PERCENTAGE) {
+               stalled++;
+            }
+         }
+         double averageDuring = during / (double) (lastJoinSample - firstJoinSample + 1);
+         int errors = 0;
+         for (Worker worker : workers) {
+            errors += worker.errors;
+         }
+
+         log.warnf("%s state transfer: join took %s, %.1f ops/%dms before the join and %.1f ops/%dms during the " +
+                         "join (%.1f%% dip), stalled for %s, %d failed operations",
+                   nonBlocking ? "Non-blocking" : "Blocking",
+                   Util.prettyPrintTime(joinEnd - joinStart, TimeUnit.NANOSECONDS), averageBefore, SAMPLE_MILLIS,
+                   averageDuring, SAMPLE_MILLIS, averageBefore > 0 ? 100 * (1 - averageDuring / averageBefore) : 0,
+                   Util.prettyPrintTime(stalled * SAMPLE_MILLIS), errors);
+      } finally {
+         for (Worker worker : workers) {
+            if (worker != null) {
+               worker.running = false;
+            }
+         }
+         TestingUtil.killCacheManagers(cacheManagers);
+      }
+   }
+
+   private static int sampleIndex(long start, long now) {
+      return (int) (TimeUnit.NANOSECONDS.toMillis(now - start) / SAMPLE_MILLIS);
+   }
+
+   private static class Worker extends Thread {
+
+      private final Cache<Object, Object> cache;
+      private final AtomicIntegerArray samples;
+      private final long start;
+      private final Random random;
+      private volatile boolean running = true;
+      private int errors;
+
+      private Worker(Cache<Object, Object> cache, AtomicIntegerArray samples, long start, int id) {
+         super("StressWorker-" + id);
+         this.cache = cache;
+         this.samples = samples;
+         this.start = start;
+         this.random = new Random(id);
+      }
+
+      @Override
+      public void run() {
+         while (running) {
+            String key = "key" + random.nextInt(NUMBER_OF_KEYS);
+            try {
+               if (random.nextInt(100) < WRITE_PERCENTAGE) {
+                  cache.put(key, "value" + random.nextInt());
+               } else {
+                  cache.get(key);
+               }
+               int sample = sampleIndex(start, System.nanoTime());
+               if (sample < MAX_SAMPLES) {
+                  samples.incrementAndGet(sample);
+               }
+            } catch (Exception e) {
+               errors++;
+            }
+         }
+      }
+   }
+}
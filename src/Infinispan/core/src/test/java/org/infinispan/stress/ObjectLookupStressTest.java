@@ -0,0 +1,154 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.dataplacement.DummyKeyFeatureManager;
+import org.infinispan.dataplacement.OwnersInfo;
+import org.infinispan.dataplacement.c50.C50MLObjectLookupFactory;
+import org.infinispan.dataplacement.lookup.ObjectLookup;
+import org.infinispan.dataplacement.lookup.ObjectLookupFactory;
+import org.infinispan.test.AbstractCacheTest;
+import org.infinispan.util.Util;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the object lookups created by each {@link ObjectLookupFactory} on the duration of a query for a moved key
+ * and for a key not moved, and on the serialized size per moved key (i.e. the size sent to the other nodes in each data
+ * placement round). The factories that cannot be loaded (e.g. missing libraries) are skipped.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.ObjectLookupStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class ObjectLookupStressTest extends AbstractCacheTest {
+
+   private static final String[] FACTORIES = {
+         "org.infinispan.dataplacement.hm.HashMapObjectLookupFactory",
+         "org.infinispan.dataplacement.bloomier.BloomierFilterObjectLookupFactory",
+         "org.infinispan.dataplacement.c50.C50MLObjectLookupFactory",
+         "org.infinispan.dataplacement.xor.XorFilterObjectLookupFactory"
+   };
+   private static final int[] NUMBER_OF_KEYS = {1000, 10000, 100000};
+   private static final int REPLICATION_DEGREE = 2;
+   private static final int NUMBER_OF_NODES = 10;
+   private static final int QUERY_ROUNDS = 20;
+
+   public void testQueryDurationAndSize() {
+      ConfigurationBuilder configurationBuilder = getDefaultClusteredCacheConfig(CacheMode.DIST_SYNC, true);
+      configurationBuilder.dataPlacement()
+            .addProperty(C50MLObjectLookupFactory.KEY_FEATURE_MANAGER, DummyKeyFeatureManager.class.getCanonicalName());
+
+      for (int numberOfKeys : NUMBER_OF_KEYS) {
+         Map<Object, OwnersInfo> keysToMove = createMovements(numberOfKeys);
+         List<Object> movedKeys = new ArrayList<Object>(keysToMove.keySet());
+         List<Object> otherKeys = new ArrayList<Object>(numberOfKeys);
+         for (int i = 0; i < numberOfKeys; ++i) {
+            otherKeys.add(DummyKeyFeatureManager.getKey(100000 + i));
+         }
+
+         for (String factoryClassName : FACTORIES) {
+            ObjectLookupFactory factory;
+            try {
+               factory = Util.getInstance(factoryClassName, Thread.currentThread().getContextClassLoader());
+            } catch (Throwable throwable) {
+               log.warnf("Skipping %s. %s", factoryClassName, throwable.getMessage());
+               continue;
+            }
+            factory.setConfiguration(configurationBuilder.build());
+            ObjectLookup objectLookup = factory.createObjectLookup(keysToMove, REPLICATION_DEGREE);
+            if (objectLookup == null) {
+               log.warnf("%s could not create the object lookup for %s keys", factoryClassName, numberOfKeys);
+               continue;
+            }
+
+            //warmup
+            query(objectLookup, movedKeys);
+            query(objectLookup, otherKeys);
+            long moved = Long.MAX_VALUE;
+            long other = Long.MAX_VALUE;
+            for (int i = 0; i < QUERY_ROUNDS; ++i) {
+               moved = Math.min(moved, query(objectLookup, movedKeys));
+               other = Math.min(other, query(objectLookup, otherKeys));
+            }
+
+            log.warnf("[%s] keys=%s: moved key query=%s ns/op, other key query=%s ns/op, size=%.2f bytes/key",
+                      objectLookup.getClass().getSimpleName(), numberOfKeys, moved / numberOfKeys,
+                      other / numberOfKeys, (double) serializedSize(objectLookup) / numberOfKeys);
+         }
+      }
+   }
+
+   private long query(ObjectLookup objectLookup, List<Object> keys) {
+      int found = 0;
+      long start = System.nanoTime();
+      for (Object key : keys) {
+         if (objectLookup.query(key) != null) {
+            found++;
+         }
+      }
+      long duration = System.nanoTime() - start;
+      assert found >= 0;
+      return duration;
+   }
+
+   private int serializedSize(Object object) {
+      try {
+         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+         ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+         objectOutputStream.writeObject(object);
+         objectOutputStream.flush();
+         return byteArrayOutputStream.size();
+      } catch (IOException e) {
+         log.warnf(e, "Error calculating object size of %s", object);
+         return -1;
+      }
+   }
+
+   private Map<Object, OwnersInfo> createMovements(int numberOfKeys) {
+      Random random = new Random(numberOfKeys);
+      Map<Object, OwnersInfo> keysToMove = new HashMap<Object, OwnersInfo>();
+      while (keysToMove.size() < numberOfKeys) {
+         int b = random.nextInt(100);
+         int c = random.nextInt(100000);
+         int owner = (b + c / 25000) % NUMBER_OF_NODES;
+         OwnersInfo ownersInfo = new OwnersInfo(REPLICATION_DEGREE);
+         for (int i = 0; i < REPLICATION_DEGREE; ++i) {
+            ownersInfo.add((owner + i) % NUMBER_OF_NODES, 0);
+         }
+         keysToMove.put(DummyKeyFeatureManager.getKey(b, c), ownersInfo);
+      }
+      return keysToMove;
+   }
+}
@@ -0,0 +1,211 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.distribution.wrappers.ReplCustomStatsInterceptor;
+import org.infinispan.interceptors.InvocationContextInterceptor;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.stats.LocalTransactionStatistics;
+import org.infinispan.stats.NodeScopeStatisticCollector;
+import org.infinispan.stats.TransactionStatistics;
+import org.infinispan.stats.translations.ExposedStatistics.IspnStats;
+import org.infinispan.test.AbstractCacheTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the overhead of the statistics collected by the {@link ReplCustomStatsInterceptor}, comparing the
+ * throughput of a replicated cache with and without the interceptor, and the throughput of the {@link
+ * NodeScopeStatisticCollector} when the transactions statistics are merged by an increasing number of threads.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.StatisticsOverheadStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class StatisticsOverheadStressTest extends AbstractCacheTest {
+
+   private static final int NUMBER_OF_KEYS = 10000;
+   private static final int READS_PER_TRANSACTION = 4;
+   private static final int WRITE_PERCENTAGE = 20;
+   private static final long DURATION = 10000; //milliseconds
+   private static final int ROUNDS = 3;
+   private static final int THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+   public void testCacheThroughput() throws Exception {
+      //alternate between the two configurations, to avoid the bias of the JIT warm up
+      double[] withoutStats = new double[ROUNDS];
+      double[] withStats = new double[ROUNDS];
+      for (int round = 0; round < ROUNDS; ++round) {
+         withoutStats[round] = cacheThroughput(false);
+         withStats[round] = cacheThroughput(true);
+         log.warnf("[round %s] without statistics=%.0f tx/s, with statistics=%.0f tx/s", round,
+                   withoutStats[round], withStats[round]);
+      }
+      double without = max(withoutStats);
+      double with = max(withStats);
+      log.warnf("Best of %s rounds with %s threads: without statistics=%.0f tx/s, with statistics=%.0f tx/s, " +
+                      "overhead=%.1f%%", ROUNDS, THREADS, without, with, (without - with) * 100 / without);
+   }
+
+   public void testCollectorMergeThroughput() throws Exception {
+      NodeScopeStatisticCollector collector = new NodeScopeStatisticCollector(
+            getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true).build());
+      for (int threads = 1; threads <= THREADS; threads *= 2) {
+         collectorThroughput(collector, threads); //warm up
+         double throughput = collectorThroughput(collector, threads);
+         log.warnf("[%s threads] merged %.0f transactions statistics/s", threads, throughput);
+      }
+      log.warnf("Local commits: %s", collector.getAttribute(IspnStats.NUM_LOCAL_COMMITS));
+   }
+
+   private double cacheThroughput(boolean statistics) throws Exception {
+      ConfigurationBuilder builder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+      if (statistics) {
+         builder.customInterceptors().addInterceptor().interceptor(new ReplCustomStatsInterceptor())
+               .after(InvocationContextInterceptor.class);
+      }
+      EmbeddedCacheManager cacheManager1 = TestCacheManagerFactory.createClusteredCacheManager(builder);
+      EmbeddedCacheManager cacheManager2 = TestCacheManagerFactory.createClusteredCacheManager(builder);
+      try {
+         final Cache<Object, Object> cache = cacheManager1.getCache();
+         TestingUtil.blockUntilViewsReceived(30000, cache, cacheManager2.getCache());
+         final TransactionManager tm = cache.getAdvancedCache().getTransactionManager();
+         for (int i = 0; i < NUMBER_OF_KEYS; ++i) {
+            cache.put("key" + i, i);
+         }
+
+         return run(THREADS, new Operation() {
+            @Override
+            public void execute(Random random) throws Exception {
+               tm.begin();
+               boolean success = false;
+               try {
+                  for (int i = 0; i < READS_PER_TRANSACTION; ++i) {
+                     cache.get("key" + random.nextInt(NUMBER_OF_KEYS));
+                  }
+                  if (random.nextInt(100) < WRITE_PERCENTAGE) {
+                     cache.put("key" + random.nextInt(NUMBER_OF_KEYS), random.nextInt());
+                  }
+                  success = true;
+               } finally {
+                  if (success) {
+                     tm.commit();
+                  } else {
+                     tm.rollback();
+                  }
+               }
+            }
+         });
+      } finally {
+         TestingUtil.killCacheManagers(cacheManager1, cacheManager2);
+      }
+   }
+
+   private double collectorThroughput(final NodeScopeStatisticCollector collector, int threads) throws Exception {
+      final org.infinispan.configuration.cache.Configuration configuration =
+            getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true).build();
+      return run(threads, new Operation() {
+         @Override
+         public void execute(Random random) throws Exception {
+            TransactionStatistics statistics = new LocalTransactionStatistics(configuration);
+            for (int i = 0; i < READS_PER_TRANSACTION; ++i) {
+               statistics.incrementValue(IspnStats.NUM_GET);
+               statistics.addValue(IspnStats.ALL_GET_EXECUTION, 1000);
+            }
+            if (random.nextInt(100) < WRITE_PERCENTAGE) {
+               statistics.setUpdateTransaction();
+               statistics.incrementValue(IspnStats.NUM_PUT);
+            }
+            statistics.setCommit(true);
+            statistics.terminateTransaction();
+            collector.merge(statistics);
+         }
+      });
+   }
+
+   /**
+    * @return  the number of operations per second executed by all the threads
+    */
+   private double run(int threads, final Operation operation) throws InterruptedException {
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicLong operations = new AtomicLong();
+      final AtomicLong errors = new AtomicLong();
+      final long[] end = new long[1];
+      Thread[] workers = new Thread[threads];
+      for (int i = 0; i < threads; ++i) {
+         final Random random = new Random(i);
+         workers[i] = new Thread("Worker-" + i) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               long executed = 0;
+               while (System.currentTimeMillis() < end[0]) {
+                  try {
+                     operation.execute(random);
+                     executed++;
+                  } catch (Exception e) {
+                     errors.incrementAndGet();
+                  }
+               }
+               operations.addAndGet(executed);
+            }
+         };
+         workers[i].start();
+      }
+      end[0] = System.currentTimeMillis() + DURATION;
+      start.countDown();
+      for (Thread worker : workers) {
+         worker.join();
+      }
+      if (errors.get() > 0) {
+         log.warnf("%s operations failed", errors.get());
+      }
+      return operations.get() * 1000.0 / DURATION;
+   }
+
+   private static double max(double[] values) {
+      double max = 0;
+      for (double value : values) {
+         max = Math.max(max, value);
+      }
+      return max;
+   }
+
+   private interface Operation {
+      void execute(Random random) throws Exception;
+   }
+}
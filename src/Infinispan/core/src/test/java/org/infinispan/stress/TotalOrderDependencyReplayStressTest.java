@@ -0,0 +1,310 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.executors.ConditionalExecutorService;
+import org.infinispan.executors.DependencyAwareRunnable;
+import org.infinispan.transaction.TxDependencyLatch;
+import org.infinispan.transaction.totalorder.TxDependencyGraph;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a recorded total order delivery sequence through the dependency tracking of the parallel total order
+ * manager. Each delivered transaction computes its dependencies, waits for them in the conditional executor service
+ * and releases its dependents when it finishes. The sequences are generated with different conflict rates, i.e., the
+ * probability of a written key being a hot key, and the {@link TxDependencyGraph} is compared with the per-key
+ * concurrent map used before.
+ * <p/>
+ * {@link #testLargeWriteSets()} measures only the work done by the delivery thread to compute the dependencies, with
+ * large write sets and many distinct dependencies per transaction.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.TotalOrderDependencyReplayStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class TotalOrderDependencyReplayStressTest {
+
+   private static final Log log = LogFactory.getLog(TotalOrderDependencyReplayStressTest.class);
+   private static final int NUM_TRANSACTIONS = 200000;
+   private static final int WRITE_SET_SIZE = 20;
+   private static final int NUM_HOT_KEYS = 100;
+   private static final double[] CONFLICT_RATES = {0, 0.01, 0.1, 0.5};
+   private static final int REPETITIONS = 3;
+   private static final int LARGE_NUM_TRANSACTIONS = 5000;
+   private static final int LARGE_WRITE_SET_SIZE = 1000;
+   private static final int LARGE_NUM_HOT_KEYS = 50000;
+   //number of delivered transactions not finished yet
+   private static final int IN_FLIGHT_TRANSACTIONS = 1024;
+
+   public void testReplay() throws Exception {
+      for (double conflictRate : CONFLICT_RATES) {
+         List<Set<Object>> sequence = recordSequence(conflictRate);
+         //warmup
+         replay(sequence, new ConcurrentMapTracker());
+         replay(sequence, new GraphTracker());
+         long map = Long.MAX_VALUE;
+         long graph = Long.MAX_VALUE;
+         for (int i = 0; i < REPETITIONS; ++i) {
+            map = Math.min(map, replay(sequence, new ConcurrentMapTracker()));
+            graph = Math.min(graph, replay(sequence, new GraphTracker()));
+         }
+         log.warnf("Conflict rate %s: ConcurrentMap=%s, TxDependencyGraph=%s", conflictRate,
+                   txPerMS(map), txPerMS(graph));
+      }
+   }
+
+   public void testLargeWriteSets() throws Exception {
+      for (double conflictRate : CONFLICT_RATES) {
+         List<Set<Object>> sequence = recordSequence(conflictRate, LARGE_NUM_TRANSACTIONS, LARGE_WRITE_SET_SIZE,
+                                                     LARGE_NUM_HOT_KEYS);
+         //warmup
+         deliver(sequence, new LinearScanTracker());
+         deliver(sequence, new GraphTracker());
+         long linearScan = Long.MAX_VALUE;
+         long graph = Long.MAX_VALUE;
+         for (int i = 0; i < REPETITIONS; ++i) {
+            linearScan = Math.min(linearScan, deliver(sequence, new LinearScanTracker()));
+            graph = Math.min(graph, deliver(sequence, new GraphTracker()));
+         }
+         log.warnf("Conflict rate %s, %s keys per transaction: linear scan=%s us/tx, TxDependencyGraph=%s us/tx",
+                   conflictRate, LARGE_WRITE_SET_SIZE, microsPerTx(linearScan, sequence.size()),
+                   microsPerTx(graph, sequence.size()));
+      }
+   }
+
+   private List<Set<Object>> recordSequence(double conflictRate) {
+      return recordSequence(conflictRate, NUM_TRANSACTIONS, WRITE_SET_SIZE, NUM_HOT_KEYS);
+   }
+
+   private List<Set<Object>> recordSequence(double conflictRate, int numTransactions, int writeSetSize,
+                                            int numHotKeys) {
+      Random random = new Random(conflictRate > 0 ? (long) (1 / conflictRate) : 0);
+      List<Set<Object>> sequence = new ArrayList<Set<Object>>(numTransactions);
+      long uniqueKey = 0;
+      for (int i = 0; i < numTransactions; ++i) {
+         Set<Object> writeSet = new HashSet<Object>();
+         while (writeSet.size() < writeSetSize) {
+            writeSet.add(random.nextDouble() < conflictRate ? "hot-" + random.nextInt(numHotKeys) :
+                               "key-" + uniqueKey++);
+         }
+         sequence.add(writeSet);
+      }
+      return sequence;
+   }
+
+   /**
+    * delivers the sequence in the calling thread, finishing each transaction after {@link #IN_FLIGHT_TRANSACTIONS}
+    * deliveries
+    *
+    * @return the duration, in nanoseconds, spent computing the dependencies
+    */
+   private long deliver(List<Set<Object>> sequence, DependencyTracker tracker) {
+      TxDependencyLatch[] inFlight = new TxDependencyLatch[IN_FLIGHT_TRANSACTIONS];
+      long dependencies = 0;
+      long duration = 0;
+      for (int i = 0; i < sequence.size(); ++i) {
+         int slot = i % IN_FLIGHT_TRANSACTIONS;
+         if (inFlight[slot] != null) {
+            inFlight[slot].countDown();
+            tracker.remove(inFlight[slot], sequence.get(i - IN_FLIGHT_TRANSACTIONS));
+         }
+         TxDependencyLatch latch = new TxDependencyLatch(
+               TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction());
+         long start = System.nanoTime();
+         dependencies += tracker.add(latch, sequence.get(i)).size();
+         duration += System.nanoTime() - start;
+         inFlight[slot] = latch;
+      }
+      log.debugf("Average number of dependencies: %s", dependencies / sequence.size());
+      return duration;
+   }
+
+   private static String microsPerTx(long nanos, int numTransactions) {
+      return String.valueOf(TimeUnit.NANOSECONDS.toMicros(nanos) / numTransactions);
+   }
+
+   /**
+    * @return the duration, in nanoseconds, between the first delivery and the last transaction finished
+    */
+   private long replay(List<Set<Object>> sequence, final DependencyTracker tracker) throws Exception {
+      ConditionalExecutorService executorService = new ConditionalExecutorService();
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.conditionalExecutorService().corePoolSize(8).maxPoolSize(8);
+      executorService.inject(builder.build(), null);
+      executorService.start();
+      final CountDownLatch finished = new CountDownLatch(sequence.size());
+      try {
+         long start = System.nanoTime();
+         for (final Set<Object> writeSet : sequence) {
+            final TxDependencyLatch latch = new TxDependencyLatch(
+                  TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction());
+            ReplayedTransaction transaction = new ReplayedTransaction(tracker.add(latch, writeSet)) {
+               @Override
+               public void run() {
+                  latch.countDown();
+                  tracker.remove(latch, writeSet);
+                  finished.countDown();
+               }
+            };
+            executorService.execute(transaction);
+         }
+         finished.await();
+         return System.nanoTime() - start;
+      } finally {
+         executorService.stop();
+      }
+   }
+
+   private static String txPerMS(long nanos) {
+      long totalMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      if (totalMillis > 0) {
+         return NUM_TRANSACTIONS / totalMillis + " tx/ms";
+      } else {
+         return "NAN tx/ms";
+      }
+   }
+
+   private static interface DependencyTracker {
+      Collection<TxDependencyLatch> add(TxDependencyLatch latch, Set<Object> writeSet);
+
+      void remove(TxDependencyLatch latch, Set<Object> writeSet);
+   }
+
+   private static class ConcurrentMapTracker implements DependencyTracker {
+      private final ConcurrentMap<Object, TxDependencyLatch> keysLocked =
+            new ConcurrentHashMap<Object, TxDependencyLatch>();
+
+      @Override
+      public Collection<TxDependencyLatch> add(TxDependencyLatch latch, Set<Object> writeSet) {
+         Set<TxDependencyLatch> previousTxs = new HashSet<TxDependencyLatch>();
+         for (Object key : writeSet) {
+            TxDependencyLatch prevTx = keysLocked.put(key, latch);
+            if (prevTx != null) {
+               previousTxs.add(prevTx);
+            }
+         }
+         return previousTxs;
+      }
+
+      @Override
+      public void remove(TxDependencyLatch latch, Set<Object> writeSet) {
+         for (Object key : writeSet) {
+            keysLocked.remove(key, latch);
+         }
+      }
+   }
+
+   /**
+    * the duplicated dependencies filtered by a linear search, as done by the first version of the graph
+    */
+   private static class LinearScanTracker implements DependencyTracker {
+      private final ConcurrentMap<Object, TxDependencyLatch> lastWriter =
+            new ConcurrentHashMap<Object, TxDependencyLatch>();
+
+      @Override
+      public Collection<TxDependencyLatch> add(TxDependencyLatch latch, Set<Object> writeSet) {
+         List<TxDependencyLatch> dependencies = new ArrayList<TxDependencyLatch>(4);
+         for (Object key : writeSet) {
+            TxDependencyLatch previous = lastWriter.put(key, latch);
+            if (previous == null || dependencies.contains(previous)) {
+               continue;
+            }
+            dependencies.add(previous);
+         }
+         return dependencies;
+      }
+
+      @Override
+      public void remove(TxDependencyLatch latch, Set<Object> writeSet) {
+         for (Object key : writeSet) {
+            lastWriter.remove(key, latch);
+         }
+      }
+   }
+
+   private static class GraphTracker implements DependencyTracker {
+      private final TxDependencyGraph graph = new TxDependencyGraph(32);
+
+      @Override
+      public Collection<TxDependencyLatch> add(TxDependencyLatch latch, Set<Object> writeSet) {
+         return graph.addTransaction(latch, writeSet, null);
+      }
+
+      @Override
+      public void remove(TxDependencyLatch latch, Set<Object> writeSet) {
+         graph.removeTransaction(latch);
+      }
+   }
+
+   private static abstract class ReplayedTransaction implements DependencyAwareRunnable {
+      private final AtomicInteger pendingDependencies;
+      private volatile Runnable listener;
+
+      private ReplayedTransaction(Collection<TxDependencyLatch> dependencies) {
+         pendingDependencies = new AtomicInteger(dependencies.size());
+         for (TxDependencyLatch dependency : dependencies) {
+            dependency.addCompletionListener(new Runnable() {
+               @Override
+               public void run() {
+                  if (pendingDependencies.decrementAndGet() == 0) {
+                     Runnable current = listener;
+                     if (current != null) {
+                        current.run();
+                     }
+                  }
+               }
+            });
+         }
+      }
+
+      @Override
+      public void registerDependencyListener(Runnable listener) {
+         this.listener = listener;
+         if (pendingDependencies.get() == 0) {
+            listener.run();
+         }
+      }
+
+      @Override
+      public boolean isReady() {
+         return pendingDependencies.get() == 0;
+      }
+   }
+}
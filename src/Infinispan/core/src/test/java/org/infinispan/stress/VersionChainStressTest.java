@@ -0,0 +1,155 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.container.gmu.VersionChainTest.SimpleVersionChain;
+import org.infinispan.container.versioning.SimpleClusteredVersion;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the read throughput of the GMU version chain when a handful of very hot keys is read by a large number of
+ * threads while a writer keeps adding new versions and a garbage collector keeps trimming them.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(testName = "stress.VersionChainStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class VersionChainStressTest {
+
+   private static final Log log = LogFactory.getLog(VersionChainStressTest.class);
+   private static final int RUN_TIME_MILLIS = 45 * 1000;
+   private static final int WARMUP_TIME_MILLIS = 10 * 1000;
+   private static final int NUM_KEYS = 4;
+   private static final int NUM_READERS = 32;
+   private static final int VERSIONS_TO_KEEP = 16;
+
+   public void testHotKeysRead() throws InterruptedException {
+      doTest(true);
+      doTest(false);
+   }
+
+   private void doTest(boolean warmup) throws InterruptedException {
+      final SimpleVersionChain[] chains = new SimpleVersionChain[NUM_KEYS];
+      for (int i = 0; i < NUM_KEYS; ++i) {
+         chains[i] = new SimpleVersionChain();
+      }
+      final AtomicLong lastVersion = new AtomicLong(0);
+      final CountDownLatch latch = new CountDownLatch(1);
+      final AtomicBoolean run = new AtomicBoolean(true);
+      final Map<String, String> perf = new ConcurrentSkipListMap<String, String>();
+
+      for (long version = 1; version <= VERSIONS_TO_KEEP; ++version) {
+         for (SimpleVersionChain chain : chains) {
+            chain.add(new SimpleClusteredVersion(0, version));
+         }
+         lastVersion.set(version);
+      }
+
+      Thread[] threads = new Thread[NUM_READERS + 1];
+      for (int i = 0; i < NUM_READERS; ++i) {
+         final int readerId = i;
+         threads[i] = new Thread("Reader-" + i) {
+            @Override
+            public void run() {
+               Random random = new Random(readerId);
+               waitForStart(latch);
+               long start = System.nanoTime();
+               long runs = 0;
+               while (run.get()) {
+                  //read a random snapshot between the oldest version kept and the most recent one
+                  long snapshot = lastVersion.get() - random.nextInt(VERSIONS_TO_KEEP);
+                  chains[random.nextInt(NUM_KEYS)].get(new SimpleClusteredVersion(0, snapshot));
+                  runs++;
+               }
+               perf.put(getName(), opsPerMS(System.nanoTime() - start, runs));
+            }
+         };
+      }
+
+      threads[NUM_READERS] = new Thread("Writer") {
+         @Override
+         public void run() {
+            waitForStart(latch);
+            long start = System.nanoTime();
+            long runs = 0;
+            while (run.get()) {
+               long version = lastVersion.get() + 1;
+               for (SimpleVersionChain chain : chains) {
+                  chain.add(new SimpleClusteredVersion(0, version));
+               }
+               lastVersion.set(version);
+               if (version % VERSIONS_TO_KEEP == 0) {
+                  SimpleClusteredVersion minVersion = new SimpleClusteredVersion(0, version - VERSIONS_TO_KEEP);
+                  for (SimpleVersionChain chain : chains) {
+                     chain.gc(minVersion);
+                  }
+               }
+               runs++;
+            }
+            perf.put(getName(), opsPerMS(System.nanoTime() - start, runs));
+         }
+      };
+
+      for (Thread thread : threads) {
+         thread.start();
+      }
+      latch.countDown();
+
+      Thread.sleep(warmup ? WARMUP_TIME_MILLIS : RUN_TIME_MILLIS);
+      run.set(false);
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      if (!warmup) {
+         log.warnf("VersionChain with %s hot keys and %s readers: Performance: %s", NUM_KEYS, NUM_READERS, perf);
+      }
+   }
+
+   private static void waitForStart(CountDownLatch latch) {
+      try {
+         latch.await();
+      } catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   private static String opsPerMS(long nanos, long ops) {
+      long totalMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      if (totalMillis > 0) {
+         return ops / totalMillis + " ops/ms";
+      } else {
+         return "NAN ops/ms";
+      }
+   }
+}
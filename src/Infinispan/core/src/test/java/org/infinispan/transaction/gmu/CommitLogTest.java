@@ -0,0 +1,251 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction.gmu;
+
+import org.infinispan.cacheviews.CacheView;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.VersioningScheme;
+import org.infinispan.container.versioning.gmu.GMUVersion;
+import org.infinispan.container.versioning.gmu.ReplGMUVersionGenerator;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.RemoteTransaction;
+import org.infinispan.transaction.gmu.manager.CommittedTransaction;
+import org.infinispan.transaction.xa.TransactionFactory.TxFactoryEnum;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the lock-free {@link CommitLog}: the version waiters, the concurrent inserts and the minimum view id.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "transaction.gmu.CommitLogTest")
+public class CommitLogTest {
+
+   private static final long TIMEOUT = 10000;
+   private ReplGMUVersionGenerator versionGenerator;
+   private CommitLog commitLog;
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setUp() {
+      versionGenerator = new ReplGMUVersionGenerator();
+      installView(1);
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.locking().isolationLevel(IsolationLevel.SERIALIZABLE);
+      builder.versioning().enable().scheme(VersioningScheme.GMU);
+      commitLog = new CommitLog();
+      commitLog.inject(versionGenerator, builder.build(), null);
+      commitLog.start();
+      executor = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testWaitForVersionTimeout() throws InterruptedException {
+      long start = System.currentTimeMillis();
+      assertFalse(commitLog.waitForVersion(version(5), 100));
+      assertTrue(System.currentTimeMillis() - start >= 100, "The waiter did not wait for the timeout");
+
+      commit(1, 2);
+      assertFalse(commitLog.waitForVersion(version(5), 10));
+   }
+
+   public void testWaitForVersionReleased() throws Exception {
+      Future<Boolean> waiter = waitForVersion(3);
+      commit(1, 2);
+      Thread.sleep(100);
+      assertFalse(waiter.isDone(), "The waiter was released by an older version");
+
+      commit(3);
+      assertTrue(waiter.get(TIMEOUT, TimeUnit.MILLISECONDS));
+      //a version already committed does not wait
+      assertTrue(commitLog.waitForVersion(version(2), 0));
+   }
+
+   public void testWaitForVersionReleasedByNewerVersion() throws Exception {
+      Future<Boolean> waiter = waitForVersion(2);
+      commit(1, 2, 3);
+      assertTrue(waiter.get(TIMEOUT, TimeUnit.MILLISECONDS));
+   }
+
+   @Test(timeOut = 60000)
+   public void testWaiterRegisteringWhileVersionIsCommitted() throws Exception {
+      final CyclicBarrier barrier = new CyclicBarrier(2);
+      for (int i = 1; i <= 500; ++i) {
+         final long versionValue = i;
+         Future<Boolean> waiter = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+               barrier.await();
+               return commitLog.waitForVersion(version(versionValue), TIMEOUT);
+            }
+         });
+         final CountDownLatch listenerInvoked = new CountDownLatch(1);
+         Future<Void> listener = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               barrier.await();
+               commitLog.addVersionListener(version(versionValue), new Runnable() {
+                  @Override
+                  public void run() {
+                     listenerInvoked.countDown();
+                  }
+               });
+               return null;
+            }
+         });
+         commit(versionValue);
+         //a missed notification would block the waiter until the timeout
+         assertTrue(waiter.get(TIMEOUT / 2, TimeUnit.MILLISECONDS), "Missed the commit of version " + i);
+         listener.get(TIMEOUT, TimeUnit.MILLISECONDS);
+         assertTrue(listenerInvoked.await(TIMEOUT / 2, TimeUnit.MILLISECONDS), "Listener of version " + i +
+               " was not invoked");
+      }
+   }
+
+   @Test(timeOut = 60000)
+   public void testConcurrentInserts() throws Exception {
+      final int threads = 8;
+      final int batchesPerThread = 500;
+      final AtomicInteger nextBatch = new AtomicInteger(0);
+      final CyclicBarrier barrier = new CyclicBarrier(threads);
+      List<Future<Void>> inserters = new ArrayList<Future<Void>>(threads);
+      for (int i = 0; i < threads; ++i) {
+         inserters.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               barrier.await();
+               for (int j = 0; j < batchesPerThread; ++j) {
+                  //each batch has two consecutive versions, starting in 1
+                  long first = nextBatch.getAndIncrement() * 2 + 1;
+                  commit(first, first + 1);
+               }
+               return null;
+            }
+         }));
+      }
+      for (Future<Void> inserter : inserters) {
+         inserter.get();
+      }
+
+      List<GMUVersion> versions = commitLog.getCommittedVersions();
+      int batches = threads * batchesPerThread;
+      //the initial version plus all the inserted versions
+      assertEquals(versions.size(), batches * 2 + 1);
+      assertEquals(versions.get(versions.size() - 1).getThisNodeVersionValue(), 0);
+      boolean[] found = new boolean[batches * 2 + 1];
+      //from the most recent to the oldest, each batch is contiguous and ordered
+      for (int i = 0; i < versions.size() - 1; i += 2) {
+         long last = versions.get(i).getThisNodeVersionValue();
+         long first = versions.get(i + 1).getThisNodeVersionValue();
+         assertEquals(last % 2, 0, "Batch split at position " + i);
+         assertEquals(first, last - 1, "Batch split at position " + i);
+         assertFalse(found[(int) first] || found[(int) last], "Batch " + first + " inserted twice");
+         found[(int) first] = true;
+         found[(int) last] = true;
+      }
+      assertEquals(commitLog.getCurrentVersion().getThisNodeVersionValue(), batches * 2);
+      assertTrue(commitLog.waitForVersion(version(batches * 2), 0));
+   }
+
+   public void testSequentialInsertsAreOrdered() {
+      commit(1, 2);
+      commit(3);
+      commit(4, 5, 6);
+      List<GMUVersion> versions = commitLog.getCommittedVersions();
+      assertEquals(versions.size(), 7);
+      for (int i = 0; i < versions.size(); ++i) {
+         assertEquals(versions.get(i).getThisNodeVersionValue(), 6 - i);
+      }
+   }
+
+   @Test(timeOut = 10000)
+   public void testCalculateMinimumViewId() {
+      commit(1);
+      installView(2);
+      commit(2);
+      installView(3);
+      commit(3);
+      //iterates over all the entries, not only over the most recent one
+      assertEquals(commitLog.calculateMinimumViewId(), 1);
+
+      GMUVersion minimumVersion = commitLog.gcOlderVersions(version(2));
+      assertEquals(minimumVersion.getThisNodeVersionValue(), 2);
+      assertEquals(minimumVersion.getViewId(), 2);
+      assertEquals(commitLog.calculateMinimumViewId(), 2);
+
+      commitLog.gcOlderVersions(version(3));
+      assertEquals(commitLog.calculateMinimumViewId(), 3);
+   }
+
+   private void installView(int viewId) {
+      versionGenerator.addCacheView(new CacheView(viewId, Collections.<Address>singletonList(new TestAddress(0))));
+   }
+
+   private Future<Boolean> waitForVersion(final long versionValue) {
+      return executor.submit(new Callable<Boolean>() {
+         @Override
+         public Boolean call() throws Exception {
+            return commitLog.waitForVersion(version(versionValue), TIMEOUT);
+         }
+      });
+   }
+
+   private void commit(long... versionValues) {
+      List<CommittedTransaction> transactions = new ArrayList<CommittedTransaction>(versionValues.length);
+      for (long versionValue : versionValues) {
+         RemoteTransaction transaction = new RemoteTransaction(TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction(), 0);
+         transaction.setTransactionVersion(version(versionValue));
+         transactions.add(new CommittedTransaction(transaction, 0));
+      }
+      commitLog.insertNewCommittedVersions(transactions);
+   }
+
+   private GMUVersion version(long versionValue) {
+      return versionGenerator.setNodeVersion(versionGenerator.generateNew(), versionValue);
+   }
+}
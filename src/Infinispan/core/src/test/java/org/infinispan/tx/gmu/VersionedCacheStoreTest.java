@@ -0,0 +1,180 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.gmu;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.VersioningScheme;
+import org.infinispan.container.gmu.GMUDataContainer;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.loaders.gmu.VersionedCacheStore;
+import org.infinispan.loaders.gmu.VersionedLogCacheStore;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the GMU caches with a {@link VersionedCacheStore}: the evicted keys are activated with all their versions and
+ * the data and the commit log survive a restart of the cluster.
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "tx.gmu.VersionedCacheStoreTest")
+public class VersionedCacheStoreTest extends MultipleCacheManagersTest {
+
+   private static final int NUMBER_OF_NODES = 2;
+   private static final int MAX_ENTRIES = 16;
+   private String tmpDirectory;
+
+   public VersionedCacheStoreTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @BeforeClass(alwaysRun = true)
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass(alwaysRun = true)
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+   }
+
+   public void testReadEvictedKeys() {
+      for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+         cache(i % NUMBER_OF_NODES).put("key_" + i, "value_" + i);
+      }
+      for (int node = 0; node < NUMBER_OF_NODES; ++node) {
+         GMUDataContainer dataContainer = (GMUDataContainer) advancedCache(node).getDataContainer();
+         int inMemory = 0;
+         for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+            if (dataContainer.getVersionChain("key_" + i) != null) {
+               inMemory++;
+            }
+         }
+         assertTrue(inMemory < MAX_ENTRIES * 8, "Keys were not evicted");
+         //the evicted keys are counted from the store
+         assertEquals(dataContainer.size(null), MAX_ENTRIES * 8);
+         assertEquals(dataContainer.keySet(null).size(), MAX_ENTRIES * 8);
+         for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+            assertEquals(cache(node).get("key_" + i), "value_" + i);
+         }
+      }
+   }
+
+   public void testClearEvictedKeys() {
+      for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+         cache(i % NUMBER_OF_NODES).put("key_" + i, "value_" + i);
+      }
+      cache(0).clear();
+      for (int node = 0; node < NUMBER_OF_NODES; ++node) {
+         assertEquals(advancedCache(node).getDataContainer().size(null), 0);
+         for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+            assertFalse(cache(node).containsKey("key_" + i));
+         }
+      }
+   }
+
+   public void testSnapshotReadOfEvictedKey() throws Exception {
+      cache(0).put("key", "old_value");
+      cache(0).put("snapshot", "value");
+
+      tm(0).begin();
+      assertEquals(cache(0).get("snapshot"), "value");
+      Transaction transaction = tm(0).suspend();
+
+      cache(1).put("key", "new_value");
+      for (int i = 0; i < MAX_ENTRIES * 8; ++i) {
+         cache(1).put("other_" + i, i);
+      }
+
+      tm(0).resume(transaction);
+      assertEquals(cache(0).get("key"), "old_value");
+      tm(0).commit();
+
+      assertEquals(cache(0).get("key"), "new_value");
+      assertEquals(cache(1).get("key"), "new_value");
+   }
+
+   public void testWarmRestart() throws Throwable {
+      for (int i = 0; i < MAX_ENTRIES; ++i) {
+         cache(0).put("key_" + i, "value_" + i);
+         cache(1).put("key_" + i, "updated_" + i);
+      }
+      cache(0).remove("key_0");
+
+      TestingUtil.killCacheManagers(cacheManagers);
+      cacheManagers.clear();
+      createCluster();
+
+      for (int node = 0; node < NUMBER_OF_NODES; ++node) {
+         assertFalse(cache(node).containsKey("key_0"));
+         for (int i = 1; i < MAX_ENTRIES; ++i) {
+            assertEquals(cache(node).get("key_" + i), "updated_" + i);
+         }
+      }
+
+      //the new versions must be more recent than the stored ones
+      cache(1).put("key_0", "restarted_0");
+      cache(0).put("key_1", "restarted_1");
+      for (int node = 0; node < NUMBER_OF_NODES; ++node) {
+         assertEquals(cache(node).get("key_0"), "restarted_0");
+         assertEquals(cache(node).get("key_1"), "restarted_1");
+      }
+   }
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      createCluster();
+   }
+
+   private void createCluster() {
+      for (int node = 0; node < NUMBER_OF_NODES; ++node) {
+         ConfigurationBuilder builder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+         builder.locking().isolationLevel(IsolationLevel.SERIALIZABLE);
+         builder.versioning().enable().scheme(VersioningScheme.GMU);
+         builder.transaction().syncCommitPhase(true);
+         builder.clustering().l1().disable();
+         builder.eviction().strategy(EvictionStrategy.LRU).maxEntries(MAX_ENTRIES);
+         builder.loaders().addCacheLoader().cacheLoader(new VersionedLogCacheStore())
+               .addProperty("location", tmpDirectory + File.separator + "node" + node);
+         addClusterEnabledCacheManager(builder);
+      }
+      waitForClusterToForm();
+   }
+}
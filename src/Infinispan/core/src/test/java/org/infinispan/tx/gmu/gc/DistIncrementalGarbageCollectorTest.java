@@ -0,0 +1,113 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.gmu.gc;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.gmu.GMUDataContainer;
+import org.infinispan.transaction.gmu.manager.GarbageCollectorManager;
+import org.infinispan.tx.gmu.AbstractGMUTest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests the incremental garbage collection, triggered by the committed transactions
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "tx.gmu.gc.DistIncrementalGarbageCollectorTest")
+public class DistIncrementalGarbageCollectorTest extends AbstractGMUTest {
+
+   private static final int NUMBER_OF_WRITES = 10;
+
+   public DistIncrementalGarbageCollectorTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   public void testIncrementalGarbageCollection() {
+      assertAtLeastCaches(2);
+      rewireMagicKeyAwareConsistentHash();
+      final Object key = newKey(Arrays.asList(0, 1), Collections.<Integer>emptyList());
+      assertKeyOwners(key, Arrays.asList(0, 1), Collections.<Integer>emptyList());
+      assertCacheValuesNull(key);
+      logKeysUsedInTest("testIncrementalGarbageCollection", key);
+
+      final GarbageCollectorManager gcManager0 = getComponent(0, GarbageCollectorManager.class);
+      final GarbageCollectorManager gcManager1 = getComponent(1, GarbageCollectorManager.class);
+      final GMUDataContainer gmuDataContainer0 = (GMUDataContainer) getComponent(0, DataContainer.class);
+      final GMUDataContainer gmuDataContainer1 = (GMUDataContainer) getComponent(1, DataContainer.class);
+
+      Object previous = null;
+      for (int i = 0; i < NUMBER_OF_WRITES; ++i) {
+         put(0, key, i, previous);
+         previous = i;
+      }
+
+      assertNoTransactions();
+      //no explicit trigger: the old versions are removed by the rounds executed after each commit
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return gmuDataContainer0.getVersionChain(key).numberOfVersion() < NUMBER_OF_WRITES &&
+                  gmuDataContainer1.getVersionChain(key).numberOfVersion() < NUMBER_OF_WRITES;
+         }
+      });
+
+      assert gcManager0.getNumberOfRounds() > 0 : "No garbage collection rounds in cache 0";
+      assert gcManager1.getNumberOfRounds() > 0 : "No garbage collection rounds in cache 1";
+      assert gcManager0.getReclaimedVersions() > 0 : "No versions reclaimed in cache 0";
+      assert gcManager1.getReclaimedVersions() > 0 : "No versions reclaimed in cache 1";
+
+      assertEquals(NUMBER_OF_WRITES - 1, cache(0).get(key));
+      assertEquals(NUMBER_OF_WRITES - 1, cache(1).get(key));
+
+      assertNoTransactions();
+   }
+
+   @Override
+   protected void decorate(ConfigurationBuilder builder) {
+      builder.garbageCollector().enabled(true).transactionThreshold(1);
+      builder.clustering().l1().disable();
+   }
+
+   @Override
+   protected int initialClusterSize() {
+      return 2;
+   }
+
+   @Override
+   protected boolean syncCommitPhase() {
+      return true;
+   }
+
+   @Override
+   protected CacheMode cacheMode() {
+      return CacheMode.DIST_SYNC;
+   }
+}
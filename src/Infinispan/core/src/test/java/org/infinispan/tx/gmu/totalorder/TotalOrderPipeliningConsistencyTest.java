@@ -0,0 +1,57 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.gmu.totalorder;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.transaction.TransactionProtocol;
+import org.infinispan.transaction.totalorder.ParallelTotalOrderManager;
+import org.infinispan.transaction.totalorder.TotalOrderManager;
+import org.infinispan.tx.gmu.ConsistencyTest;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the GMU consistency tests with the transactions delivered in total order validated in parallel
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "tx.gmu.totalorder.TotalOrderPipeliningConsistencyTest")
+public class TotalOrderPipeliningConsistencyTest extends ConsistencyTest {
+
+   public void testParallelTotalOrderManager() {
+      for (int i = 0; i < cacheManagers.size(); ++i) {
+         TotalOrderManager totalOrderManager = advancedCache(i).getComponentRegistry()
+               .getComponent(TotalOrderManager.class);
+         assertTrue(totalOrderManager instanceof ParallelTotalOrderManager, "Wrong total order manager " +
+               totalOrderManager);
+      }
+   }
+
+   @Override
+   protected void decorate(ConfigurationBuilder builder) {
+      super.decorate(builder);
+      builder.transaction().transactionProtocol(TransactionProtocol.TOTAL_ORDER).totalOrderPipelining(true);
+   }
+}
@@ -0,0 +1,151 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.totalorder;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.VersioningScheme;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.transaction.TransactionProtocol;
+import org.infinispan.transaction.totalorder.TotalOrderPrepareBatcher;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.TransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the coalescing of the prepares sent in total order
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "functional", testName = "tx.totalorder.TotalOrderBatchingTest")
+public class TotalOrderBatchingTest extends MultipleCacheManagersTest {
+
+   private static final int NUMBER_OF_THREADS = 8;
+   private static final int NUMBER_OF_TRANSACTIONS = 20;
+   protected boolean writeSkew = true;
+
+   public void testNonConflictingTransactions() throws Exception {
+      prepareBatcher(0).resetStatistics();
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>(NUMBER_OF_THREADS);
+      for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+         final int threadId = i;
+         futures.add(fork(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+               start.await();
+               TransactionManager tm = tm(0);
+               for (int j = 0; j < NUMBER_OF_TRANSACTIONS; ++j) {
+                  tm.begin();
+                  cache(0).put("k-" + threadId + "-" + j, "v-" + j);
+                  tm.commit();
+               }
+               return NUMBER_OF_TRANSACTIONS;
+            }
+         }));
+      }
+      start.countDown();
+      for (Future<Integer> future : futures) {
+         assertEquals((int) future.get(), NUMBER_OF_TRANSACTIONS);
+      }
+
+      for (int node = 0; node < 3; ++node) {
+         for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+            for (int j = 0; j < NUMBER_OF_TRANSACTIONS; ++j) {
+               assertEquals(cache(node).get("k-" + i + "-" + j), "v-" + j);
+            }
+         }
+      }
+
+      TotalOrderPrepareBatcher batcher = prepareBatcher(0);
+      assertEquals(batcher.getNumberOfPreparesSent(), NUMBER_OF_THREADS * NUMBER_OF_TRANSACTIONS);
+      assertTrue(batcher.getNumberOfMessagesSent() < batcher.getNumberOfPreparesSent(), "Prepares were not batched");
+   }
+
+   public void testConflictingTransactions() throws Exception {
+      cache(0).put("counter", 0);
+      prepareBatcher(0).resetStatistics();
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>(NUMBER_OF_THREADS);
+      for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+         futures.add(fork(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+               start.await();
+               TransactionManager tm = tm(0);
+               int committed = 0;
+               for (int j = 0; j < NUMBER_OF_TRANSACTIONS; ++j) {
+                  tm.begin();
+                  Integer value = (Integer) cache(0).get("counter");
+                  cache(0).put("counter", value + 1);
+                  try {
+                     tm.commit();
+                     committed++;
+                  } catch (RollbackException e) {
+                     //write skew detected
+                  }
+               }
+               return committed;
+            }
+         }));
+      }
+      start.countDown();
+      int committed = 0;
+      for (Future<Integer> future : futures) {
+         committed += future.get();
+      }
+
+      for (int node = 0; node < 3; ++node) {
+         assertEquals(cache(node).get("counter"), writeSkew ? committed : cache(0).get("counter"));
+      }
+      assertEquals(prepareBatcher(0).getNumberOfPreparesSent(), NUMBER_OF_THREADS * NUMBER_OF_TRANSACTIONS);
+   }
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      ConfigurationBuilder builder = getDefaultClusteredCacheConfig(CacheMode.REPL_SYNC, true);
+      builder.transaction().transactionProtocol(TransactionProtocol.TOTAL_ORDER);
+      if (writeSkew) {
+         builder.locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true)
+               .versioning().enable().scheme(VersioningScheme.SIMPLE);
+      }
+      builder.totalOrderBatching().enabled(true).maxBatchSize(4).batchWindow(50000);
+      createCluster(builder, 3);
+      waitForClusterToForm();
+   }
+
+   private TotalOrderPrepareBatcher prepareBatcher(int index) {
+      return advancedCache(index).getComponentRegistry().getComponent(TotalOrderPrepareBatcher.class);
+   }
+}
@@ -0,0 +1,154 @@
+/*
+ * INESC-ID, Instituto de Engenharia de Sistemas e Computadores Investigação e Desevolvimento em Lisboa
+ * Copyright 2013 INESC-ID and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3.0 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.totalorder;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.TxDependencyLatch;
+import org.infinispan.transaction.totalorder.TxDependencyGraph;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the dependencies computed by the {@link TxDependencyGraph}
+ *
+ * @author agent <agent@local>
+ * @since 5.2
+ */
+@Test(groups = "unit", testName = "tx.totalorder.TxDependencyGraphTest")
+public class TxDependencyGraphTest extends AbstractInfinispanTest {
+
+   public void testWriteWriteDependencies() {
+      TxDependencyGraph graph = new TxDependencyGraph(4);
+      TxDependencyLatch tx1 = newLatch();
+      TxDependencyLatch tx2 = newLatch();
+      TxDependencyLatch tx3 = newLatch();
+
+      assertTrue(graph.addTransaction(tx1, Arrays.<Object>asList("a", "b", "c"), null).isEmpty());
+      assertEquals(Collections.singletonList(tx1), graph.addTransaction(tx2, Arrays.<Object>asList("c", "d"), null));
+
+      List<TxDependencyLatch> dependencies = graph.addTransaction(tx3, Arrays.<Object>asList("a", "d", "e"), null);
+      assertEquals(2, dependencies.size());
+      assertTrue(dependencies.contains(tx1));
+      assertTrue(dependencies.contains(tx2));
+      assertEquals(5, graph.size());
+   }
+
+   public void testReadDependencies() {
+      TxDependencyGraph graph = new TxDependencyGraph(4);
+      TxDependencyLatch tx1 = newLatch();
+      TxDependencyLatch tx2 = newLatch();
+
+      graph.addTransaction(tx1, Arrays.<Object>asList("a"), null);
+      assertEquals(Collections.singletonList(tx1), graph.addTransaction(tx2, Arrays.<Object>asList("b"),
+                                                                         new Object[]{"a", "b", "c"}));
+      //read only keys are not added
+      assertEquals(2, graph.size());
+   }
+
+   public void testNoDuplicatedDependencies() {
+      TxDependencyGraph graph = new TxDependencyGraph(1);
+      TxDependencyLatch tx1 = newLatch();
+      TxDependencyLatch tx2 = newLatch();
+
+      graph.addTransaction(tx1, Arrays.<Object>asList("a", "b", "c"), null);
+      assertEquals(Collections.singletonList(tx1), graph.addTransaction(tx2, Arrays.<Object>asList("a", "b", "c"),
+                                                                         new Object[]{"a", "b"}));
+   }
+
+   public void testRemove() {
+      TxDependencyGraph graph = new TxDependencyGraph(4);
+      TxDependencyLatch tx1 = newLatch();
+      TxDependencyLatch tx2 = newLatch();
+      TxDependencyLatch tx3 = newLatch();
+
+      graph.addTransaction(tx1, Arrays.<Object>asList("a", "b"), null);
+      graph.addTransaction(tx2, Arrays.<Object>asList("b"), null);
+      assertEquals(2, graph.getPendingTransactions().size());
+
+      //the key b was overwritten by tx2
+      graph.removeTransaction(tx1);
+      assertEquals(Collections.singleton(tx2), graph.getPendingTransactions());
+      assertEquals(Collections.singletonList(tx2), graph.addTransaction(tx3, Arrays.<Object>asList("a", "b"), null));
+
+      graph.removeTransaction(tx2);
+      graph.removeTransaction(tx3);
+      assertEquals(0, graph.size());
+   }
+
+   public void testHashCollisions() {
+      //"Aa" and "BB" have the same hash code
+      TxDependencyGraph graph = new TxDependencyGraph(1);
+      TxDependencyLatch tx1 = newLatch();
+      TxDependencyLatch tx2 = newLatch();
+
+      graph.addTransaction(tx1, Arrays.<Object>asList("Aa"), null);
+      assertTrue(graph.addTransaction(tx2, Arrays.<Object>asList("BB"), null).isEmpty());
+      assertEquals(2, graph.size());
+
+      graph.removeTransaction(tx1);
+      assertEquals(Collections.singletonList(tx2), graph.addTransaction(newLatch(), null, new Object[]{"Aa", "BB"}));
+      assertEquals(1, graph.size());
+   }
+
+   public void testManyKeys() {
+      TxDependencyGraph graph = new TxDependencyGraph(1);
+      int numberOfKeys = 2000;
+      TxDependencyLatch[] latches = new TxDependencyLatch[numberOfKeys];
+      for (int i = 0; i < numberOfKeys; ++i) {
+         latches[i] = newLatch();
+         graph.addTransaction(latches[i], Collections.<Object>singleton(i), null);
+      }
+      assertEquals(numberOfKeys, graph.size());
+
+      //removes the even keys
+      for (int i = 0; i < numberOfKeys; i += 2) {
+         graph.removeTransaction(latches[i]);
+      }
+      assertEquals(numberOfKeys / 2, graph.size());
+
+      for (int i = 0; i < numberOfKeys; ++i) {
+         List<TxDependencyLatch> dependencies = graph.addTransaction(newLatch(), null, new Object[]{i});
+         if (i % 2 == 0) {
+            assertTrue(dependencies.isEmpty());
+         } else {
+            assertEquals(Collections.singletonList(latches[i]), dependencies);
+         }
+      }
+
+      for (int i = 1; i < numberOfKeys; i += 2) {
+         graph.removeTransaction(latches[i]);
+      }
+      assertEquals(0, graph.size());
+   }
+
+   private static TxDependencyLatch newLatch() {
+      return new TxDependencyLatch(TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction());
+   }
+}
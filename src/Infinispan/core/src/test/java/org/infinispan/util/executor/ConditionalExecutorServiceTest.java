@@ -26,11 +26,15 @@ import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
 import org.infinispan.executors.ConditionalExecutorService;
 import org.infinispan.executors.ConditionalRunnable;
+import org.infinispan.executors.DependencyAwareRunnable;
 import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.TxDependencyLatch;
+import org.infinispan.transaction.xa.TransactionFactory;
 import org.testng.annotations.Test;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * // TODO: Document this
@@ -105,17 +109,146 @@ public class ConditionalExecutorServiceTest extends AbstractInfinispanTest {
       }
    }
 
-   private Configuration createConfiguration() {
+   public void dependencyAwareTest() throws Exception {
+      final ConditionalExecutorService executorService = createExecutorService();
+      try {
+         executorService.start();
+         List<TxDependencyLatch> latches = new LinkedList<TxDependencyLatch>();
+         List<DependentTask> tasks = new LinkedList<DependentTask>();
+
+         TxDependencyLatch previous = null;
+         for (int i = 0; i < 30; ++i) {
+            TxDependencyLatch latch = newLatch();
+            tasks.add(new DependentTask(previous, latch));
+            latches.add(latch);
+            previous = latch;
+         }
+
+         //the first task has no dependency, so it releases the next task and so on
+         for (DependentTask task : tasks) {
+            executorService.execute(task);
+         }
+
+         for (final TxDependencyLatch latch : latches) {
+            eventually(new Condition() {
+               @Override
+               public boolean isSatisfied() throws Exception {
+                  return latch.getCount() == 0;
+               }
+            });
+         }
+
+         assert executorService.getNumberOfPendingTasks() == 0;
+         eventually(new Condition() {
+            @Override
+            public boolean isSatisfied() throws Exception {
+               return executorService.getNumberOfExecutedTasks() == 30;
+            }
+         });
+         assert executorService.getMaxWakeUpLatency() >= executorService.getAvgWakeUpLatency();
+      } finally {
+         executorService.stop();
+      }
+   }
+
+   public void notReadyDependencyAwareTest() throws Exception {
+      ConditionalExecutorService executorService = createExecutorService();
+      try {
+         executorService.start();
+         TxDependencyLatch dependency = newLatch();
+         final DependentTask task = new DependentTask(dependency, newLatch());
+         executorService.execute(task);
+
+         Thread.sleep(100);
+
+         assert !task.executed;
+         assert executorService.getNumberOfPendingTasks() == 1;
+
+         dependency.countDown();
+
+         eventually(new Condition() {
+            @Override
+            public boolean isSatisfied() throws Exception {
+               return task.executed;
+            }
+         });
+         assert executorService.getNumberOfPendingTasks() == 0;
+      } finally {
+         executorService.stop();
+      }
+   }
+
+   public void overflowWhenQueueIsFullTest() throws Exception {
+      ConditionalExecutorService executorService = createExecutorService(1);
+      final CountDownLatch blocker = new CountDownLatch(1);
+      try {
+         executorService.start();
+         //occupies the only worker
+         final RecordingTask blocking = new RecordingTask(blocker);
+         executorService.execute(blocking);
+         eventually(new Condition() {
+            @Override
+            public boolean isSatisfied() throws Exception {
+               return blocking.thread != null;
+            }
+         });
+
+         List<RecordingTask> tasks = new LinkedList<RecordingTask>();
+         for (int i = 0; i < 300; ++i) {
+            RecordingTask task = new RecordingTask(null);
+            tasks.add(task);
+            executorService.execute(task);
+         }
+
+         //the tasks above the bound are executed by the overflow threads while the worker is blocked
+         final List<RecordingTask> overflow = tasks.subList(256, 300);
+         for (final RecordingTask task : overflow) {
+            eventually(new Condition() {
+               @Override
+               public boolean isSatisfied() throws Exception {
+                  return task.thread != null;
+               }
+            });
+         }
+         for (RecordingTask task : tasks.subList(0, 256)) {
+            assert task.thread == null : "Task executed while the worker is blocked";
+         }
+
+         blocker.countDown();
+         for (final RecordingTask task : tasks) {
+            eventually(new Condition() {
+               @Override
+               public boolean isSatisfied() throws Exception {
+                  return task.thread != null;
+               }
+            });
+            assert task.thread != Thread.currentThread() : "Task executed by the caller";
+         }
+      } finally {
+         blocker.countDown();
+         executorService.stop();
+      }
+   }
+
+   private TxDependencyLatch newLatch() {
+      return new TxDependencyLatch(TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction());
+   }
+
+   private Configuration createConfiguration(int maxPoolSize) {
       ConfigurationBuilder builder = new ConfigurationBuilder();
       builder.conditionalExecutorService().corePoolSize(1)
-            .maxPoolSize(8)
+            .maxPoolSize(maxPoolSize)
             .keepAliveTime(10000);
       return builder.build();
    }
 
    private ConditionalExecutorService createExecutorService() {
+      return createExecutorService(8);
+   }
+
+   private ConditionalExecutorService createExecutorService(int maxPoolSize) {
       ConditionalExecutorService executorService = new ConditionalExecutorService();
-      executorService.inject(createConfiguration(), null);
+      executorService.inject(createConfiguration(maxPoolSize), null);
       return executorService;
    }
 
@@ -142,4 +275,61 @@ public class ConditionalExecutorServiceTest extends AbstractInfinispanTest {
          return executed;
       }
    }
+
+   public class RecordingTask implements ConditionalRunnable {
+
+      private final CountDownLatch blocker;
+      private volatile Thread thread;
+
+      public RecordingTask(CountDownLatch blocker) {
+         this.blocker = blocker;
+      }
+
+      @Override
+      public final boolean isReady() {
+         return true;
+      }
+
+      @Override
+      public final void run() {
+         thread = Thread.currentThread();
+         if (blocker != null) {
+            try {
+               blocker.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      }
+   }
+
+   public class DependentTask implements DependencyAwareRunnable {
+
+      private final TxDependencyLatch dependency;
+      private final TxDependencyLatch latch;
+      private volatile boolean executed = false;
+
+      public DependentTask(TxDependencyLatch dependency, TxDependencyLatch latch) {
+         this.dependency = dependency;
+         this.latch = latch;
+      }
+
+      @Override
+      public final void registerDependencyListener(Runnable listener) {
+         if (dependency != null) {
+            dependency.addCompletionListener(listener);
+         }
+      }
+
+      @Override
+      public final boolean isReady() {
+         return dependency == null || dependency.getCount() == 0;
+      }
+
+      @Override
+      public final void run() {
+         executed = true;
+         latch.countDown();
+      }
+   }
 }
@@ -52,6 +52,11 @@ abstract class AbstractVersionedDecoder {
     */
    def readParameters(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Boolean)
 
+   /**
+    * Read the parameters and the entries of a put all operation.
+    */
+   def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])])
+
    /**
     * Read the value part of the operation.
     */
@@ -72,6 +77,11 @@ abstract class AbstractVersionedDecoder {
     */
    def createNotExistResponse(header: HotRodHeader): AnyRef
 
+   /**
+    * Create a response for a put all request.
+    */
+   def createPutAllResponse(header: HotRodHeader): AnyRef
+
    /**
     * Create a response for get a request.
     */
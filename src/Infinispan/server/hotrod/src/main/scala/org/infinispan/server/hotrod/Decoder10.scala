@@ -46,7 +46,7 @@ import transport.NettyTransport
  * @author Galder Zamarreño
  * @since 4.1
  */
-object Decoder10 extends AbstractVersionedDecoder with Log {
+class Decoder10 extends AbstractVersionedDecoder with Log {
    import OperationResponse._
    import ProtocolFlag._
    type SuitableHeader = HotRodHeader
@@ -54,7 +54,28 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
 
    override def readHeader(buffer: ChannelBuffer, version: Byte, messageId: Long): (HotRodHeader, Boolean) = {
       val streamOp = buffer.readUnsignedByte
-      val (op, endOfOp) = streamOp match {
+      val (op, endOfOp) = readOperation(streamOp, version, messageId)
+      if (isTrace) trace("Operation code: %d has been matched to %s", streamOp, op)
+      
+      val cacheName = readString(buffer)
+      val flag = readUnsignedInt(buffer) match {
+         case 0 => NoFlag
+         case 1 => ForceReturnPreviousValue
+      }
+      val clientIntelligence = buffer.readUnsignedByte
+      val topologyId = readUnsignedInt(buffer)
+      // TODO: Use these once transaction support is added
+      val txId = buffer.readByte
+      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
+
+      (new HotRodHeader(op, version, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
+   }
+
+   /**
+    * Matches the operation code to the request, and tells whether the request ends after the header.
+    */
+   protected def readOperation(streamOp: Short, version: Byte, messageId: Long): (Enumeration#Value, Boolean) = {
+      streamOp match {
          case 0x01 => (PutRequest, false)
          case 0x03 => (GetRequest, false)
          case 0x05 => (PutIfAbsentRequest, false)
@@ -71,20 +92,6 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case _ => throw new HotRodUnknownOperationException(
                "Unknown operation: " + streamOp, version, messageId)
       }
-      if (isTrace) trace("Operation code: %d has been matched to %s", streamOp, op)
-      
-      val cacheName = readString(buffer)
-      val flag = readUnsignedInt(buffer) match {
-         case 0 => NoFlag
-         case 1 => ForceReturnPreviousValue
-      }
-      val clientIntelligence = buffer.readUnsignedByte
-      val topologyId = readUnsignedInt(buffer)
-      // TODO: Use these once transaction support is added
-      val txId = buffer.readByte
-      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
-
-      (new HotRodHeader(op, version, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
    }
 
    override def readKey(h: HotRodHeader, buffer: ChannelBuffer): (ByteArrayKey, Boolean) = {
@@ -117,6 +124,14 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
       }
    }
 
+   override def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])]) = {
+      val lifespan = readLifespanOrMaxIdle(buffer)
+      val maxIdle = readLifespanOrMaxIdle(buffer)
+      val count = readUnsignedInt(buffer)
+      val entries = for (i <- 0 until count) yield (readKey(buffer), readRangedBytes(buffer))
+      (new RequestParameters(-1, lifespan, maxIdle, -1), entries)
+   }
+
    private def readLifespanOrMaxIdle(buffer: ChannelBuffer): Int = {
       val stream = readUnsignedInt(buffer)
       if (stream <= 0) -1 else stream
@@ -142,6 +157,9 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          new Response(h.version, h.messageId, h.cacheName, h.clientIntel, op, st, h.topologyId)
    }
 
+   override def createPutAllResponse(h: HotRodHeader): AnyRef =
+      new Response(h.version, h.messageId, h.cacheName, h.clientIntel, PutAllResponse, Success, h.topologyId)
+
    override def createGetResponse(h: HotRodHeader, v: CacheValue): AnyRef = {
       val op = h.op
       if (v != null && op == GetRequest)
@@ -208,6 +226,15 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
             new BulkGetResponse(h.version, h.messageId, h.cacheName, h.clientIntel,
                                 BulkGetResponse, Success, h.topologyId, count)
          }
+         case GetAllRequest => {
+            val count = readUnsignedInt(buffer)
+            val keys = for (i <- 0 until count) yield readKey(buffer)
+            if (isTrace) trace("About to create get all response, count = %d", count)
+            // Keys not found are left out of the response
+            val entries = for (k <- keys; v = cache.get(k); if v != null) yield (k, v)
+            new GetAllResponse(h.version, h.messageId, h.cacheName, h.clientIntel,
+                               GetAllResponse, Success, h.topologyId, entries)
+         }
       }
    }
 
@@ -267,11 +294,15 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case StatsRequest => StatsResponse
          case PingRequest => PingResponse
          case BulkGetRequest => BulkGetResponse
+         case PutAllRequest => PutAllResponse
+         case GetAllRequest => GetAllResponse
       }
    }
 
 }
 
+object Decoder10 extends Decoder10
+
 object OperationResponse extends Enumeration {
    type OperationResponse = Enumeration#Value
    val PutResponse = Value(0x02)
@@ -287,6 +318,8 @@ object OperationResponse extends Enumeration {
    val StatsResponse = Value(0x16)
    val PingResponse = Value(0x18)
    val BulkGetResponse = Value(0x1A)
+   val PutAllResponse = Value(0x1C)
+   val GetAllResponse = Value(0x1E)
    val ErrorResponse = Value(0x50)
 }
 
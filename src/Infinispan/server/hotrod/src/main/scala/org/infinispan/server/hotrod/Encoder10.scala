@@ -104,6 +104,14 @@ object Encoder10 extends AbstractVersionedEncoder with Constants with Log {
                buf.writeByte(0) // Done
             }
          }
+         case g: GetAllResponse => {
+            for ((key, value) <- g.entries) {
+               buf.writeByte(1) // Not done
+               writeRangedBytes(key.getData, buf)
+               writeRangedBytes(value.data, buf)
+            }
+            buf.writeByte(0) // Done
+         }
          case g: GetResponse => if (g.status == Success) writeRangedBytes(g.data.get, buf)
          case e: ErrorResponse => writeString(e.msg, buf)
          case _ => if (buf == null) throw new IllegalArgumentException("Response received is unknown: " + r);
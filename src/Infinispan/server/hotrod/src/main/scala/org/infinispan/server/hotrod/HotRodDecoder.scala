@@ -35,7 +35,9 @@ import java.io.{IOException, StreamCorruptedException}
 import org.jboss.netty.buffer.ChannelBuffer
 import org.jboss.netty.channel.Channel
 import java.lang.StringBuilder
-import java.util.HashSet
+import java.util.{HashMap, HashSet}
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import org.infinispan.context.Flag.{SKIP_CACHE_LOAD, SKIP_REMOTE_LOOKUP}
 import org.infinispan.util.concurrent.ConcurrentMapFactory
 
 /**
@@ -78,6 +80,7 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
       try {
          val decoder = version match {
             case VERSION_10 | VERSION_11 => Decoder10
+            case VERSION_12 => Decoder12
             case _ => throw new UnknownVersionException(
                "Unknown version:" + version, version, messageId)
          }
@@ -156,8 +159,23 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
    override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
 
-   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case HotRodOperation.PutAllRequest => writeResponse(ch, putAll(buffer))
+         case _ => writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+      }
+   }
+
+   private def putAll(buffer: ChannelBuffer): AnyRef = {
+      val (parameters, entries) = header.decoder.readEntries(header, buffer)
+      val values = new HashMap[ByteArrayKey, CacheValue](entries.size)
+      for ((k, rawValue) <- entries)
+         values.put(k, header.decoder.createValue(parameters, generateVersion(cache), rawValue))
+      // Previous values are never returned, so there's no need to fetch them
+      cache.getAdvancedCache.withFlags(SKIP_REMOTE_LOOKUP, SKIP_CACHE_LOAD).putAll(values,
+         toMillis(parameters.lifespan), MILLISECONDS, toMillis(parameters.maxIdle), MILLISECONDS)
+      header.decoder.createPutAllResponse(header)
+   }
 
    override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadValue(header, buffer, cache))
@@ -54,12 +54,13 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager, server: HotRodServer)
       val buf = dynamicBuffer
       val encoder = r.version match {
          case VERSION_10 => Encoder10
-         case VERSION_11 => Encoder11
+         // 1.2 only adds operations, so the headers are the same as in 1.1
+         case VERSION_11 | VERSION_12 => Encoder11
          case 0 => Encoder10 // TODO: Assume most up to date when 1.1 ready!
       }
 
       r.version match {
-         case VERSION_10 | VERSION_11 => encoder.writeHeader(r, buf, addressCache, server)
+         case VERSION_10 | VERSION_11 | VERSION_12 => encoder.writeHeader(r, buf, addressCache, server)
          // if error before reading version, don't send any topology changes
          // cos the encoding might vary from one version to the other
          case 0 => encoder.writeHeader(r, buf, null, null)
@@ -24,7 +24,8 @@ package org.infinispan.server.hotrod
 
 import OperationStatus._
 import OperationResponse._
-import org.infinispan.util.Util
+import org.infinispan.util.{ByteArrayKey, Util}
+import org.infinispan.server.core.CacheValue
 import java.lang.StringBuilder
 
 /**
@@ -94,6 +95,21 @@ class BulkGetResponse(override val version: Byte, override val messageId: Long,
    }
 }
 
+class GetAllResponse(override val version: Byte, override val messageId: Long, override val cacheName: String, override val clientIntel: Short,
+                     override val operation: OperationResponse, override val status: OperationStatus,
+                     override val topologyId: Int, val entries: Seq[(ByteArrayKey, CacheValue)])
+      extends Response(version, messageId, cacheName, clientIntel, operation, status, topologyId) {
+   override def toString = {
+      new StringBuilder().append("GetAllResponse").append("{")
+         .append("version=").append(version)
+         .append(", messageId=").append(messageId)
+         .append(", operation=").append(operation)
+         .append(", status=").append(status)
+         .append(", entries=").append(entries.size)
+         .append("}").toString
+   }
+}
+
 class GetWithVersionResponse(override val version: Byte, override val messageId: Long, override val cacheName: String,
                              override val clientIntel: Short, override val operation: OperationResponse,
                              override val status: OperationStatus,
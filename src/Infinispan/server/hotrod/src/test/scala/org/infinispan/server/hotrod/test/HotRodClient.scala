@@ -330,7 +330,7 @@ private class Decoder(client: HotRodClient) extends ReplayingDecoder[VoidEnum] w
                op.version match {
                   case 10 => read10HashDistAwareHeader(buf, topologyId,
                         numOwners, hashFunction, hashSpace, numServersInTopo)
-                  case 11 => read11HashDistAwareHeader(buf, topologyId,
+                  case 11 | 12 => read11HashDistAwareHeader(buf, topologyId,
                         numOwners, hashFunction, hashSpace, numServersInTopo)
                }
 
@@ -70,6 +70,11 @@ public final class MockTransportFactory implements TransportFactory {
       return null;
    }
 
+   @Override
+   public SocketAddress getServer(final byte[] key) {
+      return null;
+   }
+
    @Override
    public boolean isTcpNoDelay() {
       return false;
@@ -4,32 +4,60 @@ import org.jgroups.Message;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The implementation of the Delivery Manager
+ * <p/>
+ * The pending messages are kept in a concurrent skip list ordered by sequence number, so that the threads receiving
+ * the data and final messages do not contend with the delivery thread. The sequence number of an entry never changes:
+ * when the final sequence number is different from the proposed one, a new entry is inserted before the old one is
+ * removed, so the message is always in the set and no message after it can be delivered in the meantime.
+ * <p/>
+ * A message can only be delivered when no lower sequence number can be proposed anymore. A thread adding a new message
+ * may have obtained its sequence number before the sequence number manager was updated with the final sequence number
+ * of the first message, so each proposal in progress is registered with a lower bound of its sequence number and the
+ * delivery thread does not deliver past it until the message is inserted.
  *
  * @author Pedro Ruivo
  * @since 3.1
  */
 public class DeliveryManagerImpl implements DeliveryManager {
     private static final MessageInfoComparator COMPARATOR = new MessageInfoComparator();
-    private final SortedSet<MessageInfo> deliverySet= new TreeSet<MessageInfo>(COMPARATOR);
+    private final ConcurrentSkipListSet<MessageInfo> deliverySet = new ConcurrentSkipListSet<MessageInfo>(COMPARATOR);
     private final ConcurrentMap<MessageID, MessageInfo> messageCache = new ConcurrentHashMap<MessageID, MessageInfo>(8192, .75f, 64);
-    private final Set<Message> singleDestinationSet = new HashSet<Message>();
+    private final Queue<Message> singleDestinationQueue = new ConcurrentLinkedQueue<Message>();
+    private final ConcurrentSkipListSet<Proposal> proposalsInProgress = new ConcurrentSkipListSet<Proposal>();
+    private volatile Thread deliveryThread;
+    private volatile boolean waiting = false;
 
     /**
-     * Add a new group message to be deliver 
-     * @param messageID         the message ID
-     * @param message           the message (needed to be deliver later)
-     * @param sequenceNumber    the initial sequence number
+     * Add a new group message to be deliver, with the sequence number proposed by this member
+     * @param messageID                 the message ID
+     * @param message                   the message (needed to be deliver later)
+     * @param sequenceNumberManager     the sequence number manager
+     * @param receivedSequenceNumber    the sequence number received with the message, or -1 if it was sent by this
+     *                                  member
+     * @return the initial sequence number of the message
      */
-    public void addNewMessageToDeliver(MessageID messageID, Message message, long sequenceNumber) {
-        MessageInfo messageInfo = new MessageInfo(messageID, message, sequenceNumber);
-        synchronized (deliverySet) {
+    public long addNewMessageToDeliver(MessageID messageID, Message message,
+                                       SequenceNumberManager sequenceNumberManager, long receivedSequenceNumber) {
+        //the sequence number manager never decreases, so the current value is a lower bound of the proposal
+        Proposal proposal = new Proposal(messageID, sequenceNumberManager.get());
+        proposalsInProgress.add(proposal);
+        try {
+            long sequenceNumber = sequenceNumberManager.updateAndGet(receivedSequenceNumber);
+            MessageInfo messageInfo = new MessageInfo(messageID, message, sequenceNumber);
+            messageCache.put(messageID, messageInfo);
             deliverySet.add(messageInfo);
+            return sequenceNumber;
+        } finally {
+            proposalsInProgress.remove(proposal);
+            signal();
         }
-        messageCache.put(messageID, messageInfo);
     }
 
     /**
@@ -38,45 +66,6 @@ public class DeliveryManagerImpl implements DeliveryManager {
      * @param finalSequenceNumber   the final sequence number
      */
     public void markReadyToDeliver(MessageID messageID, long finalSequenceNumber) {
-        markReadyToDeliverV2(messageID, finalSequenceNumber);
-    }
-
-    @SuppressWarnings({"SuspiciousMethodCalls"})    
-    private void markReadyToDeliverV1(MessageID messageID, long finalSequenceNumber) {
-        //This is an old version. It was the bottleneck. Updated to version 2. It can be removed later
-        synchronized (deliverySet) {
-            MessageInfo messageInfo = null;
-            boolean needsUpdatePosition = false;
-            Iterator<MessageInfo> iterator = deliverySet.iterator();
-
-            while (iterator.hasNext()) {
-                MessageInfo aux = iterator.next();
-                if (aux.equals(messageID)) {
-                    messageInfo = aux;
-                    if (messageInfo.sequenceNumber != finalSequenceNumber) {
-                        needsUpdatePosition = true;
-                        iterator.remove();
-                    }
-                    break;
-                }
-            }
-
-            if (messageInfo == null) {
-                throw new IllegalStateException("Message ID not found in to deliver list. this can't happen. " +
-                        "Message ID is " + messageID);
-            }
-            messageInfo.updateAndmarkReadyToDeliver(finalSequenceNumber);
-            if (needsUpdatePosition) {
-                deliverySet.add(messageInfo);
-            }
-
-            if (!deliverySet.isEmpty() && deliverySet.first().isReadyToDeliver()) {
-                deliverySet.notify();
-            }
-        }
-    }
-
-    private void markReadyToDeliverV2(MessageID messageID, long finalSequenceNumber) {
         MessageInfo messageInfo = messageCache.remove(messageID);
 
         if (messageInfo == null) {
@@ -84,81 +73,100 @@ public class DeliveryManagerImpl implements DeliveryManager {
                     "Message ID is " + messageID);
         }
 
-        boolean needsUpdatePosition = messageInfo.isUpdatePositionNeeded(finalSequenceNumber);
-
-        synchronized (deliverySet) {
-            if (needsUpdatePosition) {
-                deliverySet.remove(messageInfo);
-                messageInfo.updateAndmarkReadyToDeliver(finalSequenceNumber);
-                deliverySet.add(messageInfo);
-            } else {
-                messageInfo.updateAndmarkReadyToDeliver(finalSequenceNumber);
-            }
-            
-            if (deliverySet.first().isReadyToDeliver()) {
-                deliverySet.notify();
-            }
+        if (messageInfo.isUpdatePositionNeeded(finalSequenceNumber)) {
+            //the final sequence number is higher than the proposed. the old entry keeps the position until the new
+            //one is inserted
+            deliverySet.add(messageInfo.readyCopy(finalSequenceNumber));
+            deliverySet.remove(messageInfo);
+        } else {
+            messageInfo.markReadyToDeliver();
         }
+        signal();
     }
 
     //see the interface javadoc
     @Override
     public List<Message> getNextMessagesToDeliver() throws InterruptedException {
+        deliveryThread = Thread.currentThread();
         LinkedList<Message> toDeliver = new LinkedList<Message>();
-        synchronized (deliverySet) {
-            while (deliverySet.isEmpty() && singleDestinationSet.isEmpty()) {
-                deliverySet.wait();
-            }
-            
-            if (!singleDestinationSet.isEmpty()) {
-                toDeliver.addAll(singleDestinationSet);
-                singleDestinationSet.clear();
+        while (true) {
+            collectReadyMessages(toDeliver);
+            if (!toDeliver.isEmpty()) {
                 return toDeliver;
             }
-
-            if (!deliverySet.first().isReadyToDeliver()) {
-                deliverySet.wait();
-            }
-
-           if (!singleDestinationSet.isEmpty()) {
-                toDeliver.addAll(singleDestinationSet);
-                singleDestinationSet.clear();                
-           }
-
-            Iterator<MessageInfo> iterator = deliverySet.iterator();
-
-            while (iterator.hasNext()) {
-                MessageInfo messageInfo = iterator.next();
-                if (messageInfo.isReadyToDeliver()) {
-                    toDeliver.add(messageInfo.getMessage());
-                    iterator.remove();
-                } else {
-                    break;
+            waiting = true;
+            try {
+                //checks again after publishing the waiting flag, otherwise a signal can be missed
+                collectReadyMessages(toDeliver);
+                if (!toDeliver.isEmpty()) {
+                    return toDeliver;
                 }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            } finally {
+                waiting = false;
             }
         }
-        return toDeliver;
     }
 
     /**
      * remove all the pending messages
      */
     public void clear() {
-        synchronized (deliverySet) {
-            deliverySet.clear();
-            messageCache.clear();
-        }
+        deliverySet.clear();
+        messageCache.clear();
+        singleDestinationQueue.clear();
     }
 
    /**
     * delivers a message that has only as destination member this node
-    * 
+    *
     * @param msg  the message
     */
     public void deliverSingleDestinationMessage(Message msg) {
-        synchronized (deliverySet) {
-            singleDestinationSet.add(msg);
-            deliverySet.notify();
+        singleDestinationQueue.add(msg);
+        signal();
+    }
+
+    private void collectReadyMessages(List<Message> toDeliver) {
+        Message message;
+        while ((message = singleDestinationQueue.poll()) != null) {
+            toDeliver.add(message);
+        }
+
+        for (MessageInfo messageInfo : deliverySet) {
+            if (!messageInfo.isReadyToDeliver() || !isProposalBelowImpossible(messageInfo.sequenceNumber)) {
+                return;
+            }
+            deliverySet.remove(messageInfo);
+            toDeliver.add(messageInfo.getMessage());
+        }
+    }
+
+    /**
+     * A proposal that starts after the final sequence number is known is higher than it, so only the proposals in
+     * progress can be lower.
+     */
+    private boolean isProposalBelowImpossible(long finalSequenceNumber) {
+        if (proposalsInProgress.isEmpty()) {
+            return true;
+        }
+        try {
+            return proposalsInProgress.first().lowerBound > finalSequenceNumber;
+        } catch (NoSuchElementException e) {
+            //finished in the meantime
+            return true;
+        }
+    }
+
+    private void signal() {
+        if (waiting) {
+            Thread thread = deliveryThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
         }
     }
 
@@ -167,9 +175,9 @@ public class DeliveryManagerImpl implements DeliveryManager {
      */
     private static class MessageInfo {
 
-        private MessageID messageID;
-        private Message message;
-        private volatile long sequenceNumber;
+        private final MessageID messageID;
+        private final Message message;
+        private final long sequenceNumber;
         private volatile boolean readyToDeliver;
 
         public MessageInfo(MessageID messageID, Message message, long sequenceNumber) {
@@ -183,13 +191,23 @@ public class DeliveryManagerImpl implements DeliveryManager {
             this.message.setSrc(messageID.getAddress());
         }
 
+        private MessageInfo(MessageInfo messageInfo, long finalSequenceNumber) {
+            this.messageID = messageInfo.messageID;
+            this.message = messageInfo.message;
+            this.sequenceNumber = finalSequenceNumber;
+            this.readyToDeliver = true;
+        }
+
         private Message getMessage() {
             return message;
         }
 
-        private void updateAndmarkReadyToDeliver(long finalSequenceNumber) {
+        private void markReadyToDeliver() {
             this.readyToDeliver = true;
-            this.sequenceNumber = finalSequenceNumber;
+        }
+
+        private MessageInfo readyCopy(long finalSequenceNumber) {
+            return new MessageInfo(this, finalSequenceNumber);
         }
 
         private boolean isReadyToDeliver() {
@@ -240,6 +258,27 @@ public class DeliveryManagerImpl implements DeliveryManager {
         }
     }
 
+    /**
+     * A sequence number being proposed, ordered by its lower bound
+     */
+    private static class Proposal implements Comparable<Proposal> {
+        private final MessageID messageID;
+        private final long lowerBound;
+
+        private Proposal(MessageID messageID, long lowerBound) {
+            this.messageID = messageID;
+            this.lowerBound = lowerBound;
+        }
+
+        @Override
+        public int compareTo(Proposal other) {
+            if (lowerBound != other.lowerBound) {
+                return lowerBound < other.lowerBound ? -1 : 1;
+            }
+            return messageID.compareTo(other.messageID);
+        }
+    }
+
     private static class MessageInfoComparator implements Comparator<MessageInfo> {
 
         @Override
@@ -250,17 +289,12 @@ public class DeliveryManagerImpl implements DeliveryManager {
                 return -1;
             }
 
-            int compareMessageID = messageInfo.messageID.compareTo(messageInfo1.messageID);
-
-            if (compareMessageID == 0) {
-                return 0;
-            }
-
+            //the entries of the same message with different sequence numbers can co-exist while the position is updated
             if (messageInfo.sequenceNumber != messageInfo1.sequenceNumber) {
-                return Long.signum(messageInfo.sequenceNumber - messageInfo1.sequenceNumber);
+                return messageInfo.sequenceNumber < messageInfo1.sequenceNumber ? -1 : 1;
             }
 
-            return compareMessageID;
+            return messageInfo.messageID.compareTo(messageInfo1.messageID);
         }
     }
 
@@ -269,8 +303,6 @@ public class DeliveryManagerImpl implements DeliveryManager {
      * @return unmodifiable set of messages
      */
     public Set<MessageInfo> getMessageSet() {
-        synchronized (deliverySet) {
-            return Collections.unmodifiableSet(deliverySet);
-        }
+        return Collections.unmodifiableSet(deliverySet);
     }
 }
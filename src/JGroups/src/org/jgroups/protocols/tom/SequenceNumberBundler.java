@@ -0,0 +1,155 @@
+package org.jgroups.protocols.tom;
+
+import org.jgroups.Address;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the sequence numbers (proposed or final) of several messages sent to the same member in a single message.
+ * <p/>
+ * There is no timer: the first thread adding a sequence number for a member sends it immediately, and the sequence
+ * numbers added by other threads while it is sending are sent by it in a single batch. So, the batches are only bigger
+ * than one when the load is high enough to have several messages in progress.
+ *
+ * @author agent <agent@local>
+ * @since 3.1
+ */
+public class SequenceNumberBundler {
+
+    private final ConcurrentMap<Address, Batch> batches = new ConcurrentHashMap<Address, Batch>();
+    private final byte singleType;
+    private final byte batchType;
+    private final Sender sender;
+    private volatile int maxBatchSize;
+
+    //stats
+    private final AtomicLong numberOfBatchesSent = new AtomicLong(0);
+    private final AtomicLong numberOfSequenceNumbersSent = new AtomicLong(0);
+
+    /**
+     * @param singleType    the header type used when only one sequence number is sent
+     * @param batchType     the header type used when more than one sequence number is sent
+     * @param maxBatchSize  the maximum number of sequence numbers in a single message
+     * @param sender        sends the header to the member
+     */
+    public SequenceNumberBundler(byte singleType, byte batchType, int maxBatchSize, Sender sender) {
+        this.singleType = singleType;
+        this.batchType = batchType;
+        this.sender = sender;
+        setMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * adds the sequence number of a message to be sent to a member
+     * @param destination       the member
+     * @param messageID         the message ID
+     * @param sequenceNumber    the sequence number
+     */
+    public void add(Address destination, MessageID messageID, long sequenceNumber) {
+        Batch batch = batches.get(destination);
+        if (batch == null) {
+            batch = new Batch();
+            Batch existing = batches.putIfAbsent(destination, batch);
+            if (existing != null) {
+                batch = existing;
+            }
+        }
+        batch.queue.add(new Entry(messageID, sequenceNumber));
+
+        //the thread sending checks again the queue after releasing it, so no entry is left behind
+        while (!batch.queue.isEmpty() && batch.sending.compareAndSet(false, true)) {
+            try {
+                sendPending(destination, batch.queue);
+            } finally {
+                batch.sending.set(false);
+            }
+        }
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The maximum batch size must be higher than zero");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * removes the pending sequence numbers of all members
+     */
+    public void clear() {
+        batches.clear();
+    }
+
+    public double getAvgBatchSize() {
+        long sent = numberOfBatchesSent.get();
+        return sent == 0 ? 0 : numberOfSequenceNumbersSent.get() * 1.0 / sent;
+    }
+
+    public void clearStats() {
+        numberOfBatchesSent.set(0);
+        numberOfSequenceNumbersSent.set(0);
+    }
+
+    private void sendPending(Address destination, Queue<Entry> queue) {
+        Entry first;
+        while ((first = queue.poll()) != null) {
+            int max = maxBatchSize;
+            List<Entry> entries = new ArrayList<Entry>(Math.min(max, 16));
+            entries.add(first);
+            Entry entry;
+            while (entries.size() < max && (entry = queue.poll()) != null) {
+                entries.add(entry);
+            }
+
+            if (entries.size() == 1) {
+                ToaHeader header = ToaHeader.createNewHeader(singleType, first.messageID);
+                header.setSequencerNumber(first.sequenceNumber);
+                send(destination, header, 1);
+                continue;
+            }
+
+            MessageID[] messageIDs = new MessageID[entries.size()];
+            long[] sequenceNumbers = new long[entries.size()];
+            for (int i = 0; i < messageIDs.length; ++i) {
+                messageIDs[i] = entries.get(i).messageID;
+                sequenceNumbers[i] = entries.get(i).sequenceNumber;
+            }
+            send(destination, ToaHeader.createBatchHeader(batchType, messageIDs, sequenceNumbers), messageIDs.length);
+        }
+    }
+
+    private void send(Address destination, ToaHeader header, int numberOfSequenceNumbers) {
+        numberOfBatchesSent.incrementAndGet();
+        numberOfSequenceNumbersSent.addAndGet(numberOfSequenceNumbers);
+        sender.send(destination, header);
+    }
+
+    /**
+     * Sends the message with the header to the member
+     */
+    public interface Sender {
+        void send(Address destination, ToaHeader header);
+    }
+
+    private static class Batch {
+        private final Queue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+    }
+
+    private static class Entry {
+        private final MessageID messageID;
+        private final long sequenceNumber;
+
+        private Entry(MessageID messageID, long sequenceNumber) {
+            this.messageID = messageID;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
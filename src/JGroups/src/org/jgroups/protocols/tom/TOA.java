@@ -5,6 +5,7 @@ import org.jgroups.annotations.Experimental;
 import org.jgroups.annotations.MBean;
 import org.jgroups.annotations.ManagedAttribute;
 import org.jgroups.annotations.ManagedOperation;
+import org.jgroups.annotations.Property;
 import org.jgroups.stack.Protocol;
 
 import java.util.Collection;
@@ -24,6 +25,14 @@ import java.util.concurrent.atomic.AtomicLong;
 @Experimental
 @MBean(description = "Implementation of Total Order Anycast based on Skeen's Algorithm")
 public class TOA extends Protocol implements DeliveryProtocol {
+    /* -----------------------------------------    Properties     -------------------------------------- */
+    @Property(description = "If true, the proposed and final sequence numbers of several messages sent to the same " +
+            "member at the same time are sent in a single message")
+    private boolean batch_sequence_numbers = true;
+
+    @Property(description = "The maximum number of sequence numbers sent in a single message")
+    private int max_batch_size = 256;
+
     //managers
     private DeliveryManagerImpl deliverManager;
     private SenderManager senderManager;
@@ -41,6 +50,10 @@ public class TOA extends Protocol implements DeliveryProtocol {
     //stats: profiling information
     private final StatsCollector statsCollector = new StatsCollector();
 
+    //coalesces the sequence numbers sent to the same member
+    private SequenceNumberBundler proposeBundler;
+    private SequenceNumberBundler finalBundler;
+
     public TOA() {
     }
 
@@ -48,6 +61,16 @@ public class TOA extends Protocol implements DeliveryProtocol {
     public void start() throws Exception {
         deliverManager = new DeliveryManagerImpl();
         senderManager = new SenderManager();
+        SequenceNumberBundler.Sender sender = new SequenceNumberBundler.Sender() {
+            @Override
+            public void send(Address destination, ToaHeader header) {
+                sendSequenceNumbers(destination, header);
+            }
+        };
+        proposeBundler = new SequenceNumberBundler(ToaHeader.PROPOSE_MESSAGE, ToaHeader.PROPOSE_BATCH_MESSAGE,
+                                                   max_batch_size, sender);
+        finalBundler = new SequenceNumberBundler(ToaHeader.FINAL_MESSAGE, ToaHeader.FINAL_BATCH_MESSAGE,
+                                                 max_batch_size, sender);
         deliverThread.start(deliverManager);
         statsCollector.setStatsEnabled(statsEnabled());
     }
@@ -92,10 +115,25 @@ public class TOA extends Protocol implements DeliveryProtocol {
                         handleDataMessage(message, header);
                         break;
                     case ToaHeader.PROPOSE_MESSAGE:
-                        handleSequenceNumberPropose(message.getSrc(), header);
+                        handleSequenceNumberPropose(message.getSrc(), header.getMessageID(),
+                                                    header.getSequencerNumber());
                         break;
                     case ToaHeader.FINAL_MESSAGE:
-                        handleFinalSequenceNumber(header);
+                        handleFinalSequenceNumber(header.getMessageID(), header.getSequencerNumber());
+                        break;
+                    case ToaHeader.PROPOSE_BATCH_MESSAGE:
+                        MessageID[] proposedIDs = header.getBatchMessageIDs();
+                        long[] proposedSequenceNumbers = header.getBatchSequenceNumbers();
+                        for (int i = 0; i < proposedIDs.length; ++i) {
+                            handleSequenceNumberPropose(message.getSrc(), proposedIDs[i], proposedSequenceNumbers[i]);
+                        }
+                        break;
+                    case ToaHeader.FINAL_BATCH_MESSAGE:
+                        MessageID[] finalIDs = header.getBatchMessageIDs();
+                        long[] finalSequenceNumbers = header.getBatchSequenceNumbers();
+                        for (int i = 0; i < finalIDs.length; ++i) {
+                            handleFinalSequenceNumber(finalIDs[i], finalSequenceNumbers[i]);
+                        }
                         break;
                     case ToaHeader.SINGLE_DESTINATION_MESSAGE:
                         if (log.isTraceEnabled()) {
@@ -187,19 +225,21 @@ public class TOA extends Protocol implements DeliveryProtocol {
 
         try {
             MessageID messageID = new MessageID(localAddress, messageIdCounter.getAndIncrement());
-            long sequenceNumber = sequenceNumberManager.getAndIncrement();
 
             ToaHeader header = ToaHeader.createNewHeader(ToaHeader.DATA_MESSAGE,
                                                          messageID);
-            header.setSequencerNumber(sequenceNumber);
             header.addDestinations(destinations);
             message.putHeader(this.id, header);
 
-            senderManager.addNewMessageToSend(messageID,destinations,sequenceNumber,deliverToMySelf);
-
+            long sequenceNumber;
             if (deliverToMySelf) {
-                deliverManager.addNewMessageToDeliver(messageID, message, sequenceNumber);
+                sequenceNumber = deliverManager.addNewMessageToDeliver(messageID, message, sequenceNumberManager, -1);
+            } else {
+                sequenceNumber = sequenceNumberManager.getAndIncrement();
             }
+            header.setSequencerNumber(sequenceNumber);
+
+            senderManager.addNewMessageToSend(messageID,destinations,sequenceNumber,deliverToMySelf);
 
             if (trace) {
                 log.trace("Sending message " + messageID + " to " + destinations + " with initial sequence number of " +
@@ -242,29 +282,23 @@ public class TOA extends Protocol implements DeliveryProtocol {
             MessageID messageID = header.getMessageID();
 
             //create the sequence number and put it in deliver manager
-            long myProposeSequenceNumber = sequenceNumberManager.updateAndGet(header.getSequencerNumber());
-            deliverManager.addNewMessageToDeliver(messageID, message, myProposeSequenceNumber);
+            long myProposeSequenceNumber = deliverManager.addNewMessageToDeliver(messageID, message,
+                                                                                 sequenceNumberManager,
+                                                                                 header.getSequencerNumber());
 
             if (log.isTraceEnabled()) {
                 log.trace("Received the message with " + header + ". The proposed sequence number is " +
                         myProposeSequenceNumber);
             }
 
-            //create a new message and send it back
-            Message proposeMessage = new Message();
-            proposeMessage.setSrc(localAddress);
-            proposeMessage.setDest(messageID.getAddress());
-
-            ToaHeader newHeader = ToaHeader.createNewHeader(
-              ToaHeader.PROPOSE_MESSAGE,messageID);
-
-            newHeader.setSequencerNumber(myProposeSequenceNumber);
-            proposeMessage.putHeader(this.id, newHeader);
-            proposeMessage.setFlag(Message.Flag.OOB);
-            proposeMessage.setFlag(Message.Flag.DONT_BUNDLE);
-
-            //multicastSenderThread.addUnicastMessage(proposeMessage);
-            down_prot.down(new Event(Event.MSG, proposeMessage));
+            //send it back
+            if (batch_sequence_numbers) {
+                proposeBundler.add(messageID.getAddress(), messageID, myProposeSequenceNumber);
+            } else {
+                ToaHeader newHeader = ToaHeader.createNewHeader(ToaHeader.PROPOSE_MESSAGE, messageID);
+                newHeader.setSequencerNumber(myProposeSequenceNumber);
+                sendSequenceNumbers(messageID.getAddress(), newHeader);
+            }
             duration = statsCollector.now() - startTime;
         } catch (Exception e) {
             logException("Exception caught while processing the data message " + header.getMessageID(), e);
@@ -273,35 +307,36 @@ public class TOA extends Protocol implements DeliveryProtocol {
         }
     }
 
-    private void handleSequenceNumberPropose(Address from, ToaHeader header) {
+    /**
+     * sends the proposed or final sequence number(s) in the header to the member
+     */
+    private void sendSequenceNumbers(Address destination, ToaHeader header) {
+        Message message = new Message();
+        message.setSrc(localAddress);
+        message.setDest(destination);
+        message.putHeader(this.id, header);
+        message.setFlag(Message.Flag.OOB);
+        message.setFlag(Message.Flag.DONT_BUNDLE);
+        down_prot.down(new Event(Event.MSG, message));
+    }
+
+    private void handleSequenceNumberPropose(Address from, MessageID messageID, long proposedSequenceNumber) {
         long startTime = statsCollector.now();
         long duration = -1;
         boolean lastProposeReceived = false;
 
         boolean trace = log.isTraceEnabled();
         try {
-            MessageID messageID = header.getMessageID();
             if (trace) {
-                log.trace("Received the proposed sequence number message with " + header + " from " +
-                        from);
+                log.trace("Received the proposed sequence number " + proposedSequenceNumber + " for message " +
+                        messageID + " from " + from);
             }
 
-            sequenceNumberManager.update(header.getSequencerNumber());
-            long finalSequenceNumber = senderManager.addPropose(messageID, from,
-                    header.getSequencerNumber());
+            sequenceNumberManager.update(proposedSequenceNumber);
+            long finalSequenceNumber = senderManager.addPropose(messageID, from, proposedSequenceNumber);
 
             if (finalSequenceNumber != SenderManager.NOT_READY) {
                 lastProposeReceived = true;
-                Message finalMessage = new Message();
-                finalMessage.setSrc(localAddress);
-
-                ToaHeader finalHeader = ToaHeader.createNewHeader(
-                  ToaHeader.FINAL_MESSAGE,messageID);
-
-                finalHeader.setSequencerNumber(finalSequenceNumber);
-                finalMessage.putHeader(this.id, finalHeader);
-                finalMessage.setFlag(Message.Flag.OOB);
-                finalMessage.setFlag(Message.Flag.DONT_BUNDLE);
 
                 Set<Address> destinations = senderManager.getDestination(messageID);
                 if (destinations.contains(localAddress)) {
@@ -313,7 +348,15 @@ public class TOA extends Protocol implements DeliveryProtocol {
                             finalSequenceNumber);
                 }
 
-                send(destinations,finalMessage, false);
+                for (Address destination : destinations) {
+                    if (batch_sequence_numbers) {
+                        finalBundler.add(destination, messageID, finalSequenceNumber);
+                    } else {
+                        ToaHeader finalHeader = ToaHeader.createNewHeader(ToaHeader.FINAL_MESSAGE, messageID);
+                        finalHeader.setSequencerNumber(finalSequenceNumber);
+                        sendSequenceNumbers(destination, finalHeader);
+                    }
+                }
                 //returns true if we are in destination set
                 if (senderManager.markSent(messageID)) {
                     deliverManager.markReadyToDeliver(messageID, finalSequenceNumber);
@@ -322,27 +365,26 @@ public class TOA extends Protocol implements DeliveryProtocol {
 
             duration = statsCollector.now() - startTime;
         } catch (Exception e) {
-            logException("Exception caught while processing the propose sequence number for " + header.getMessageID(), e);
+            logException("Exception caught while processing the propose sequence number for " + messageID, e);
         } finally {
             statsCollector.addProposeSequenceNumberDuration(duration, lastProposeReceived);
         }
     }
 
-    private void handleFinalSequenceNumber(ToaHeader header) {
+    private void handleFinalSequenceNumber(MessageID messageID, long finalSequenceNumber) {
         long startTime = statsCollector.now();
         long duration = -1;
 
         try {
-            MessageID messageID = header.getMessageID();
             if (log.isTraceEnabled()) {
-                log.trace("Received the final sequence number message with " + header);
+                log.trace("Received the final sequence number " + finalSequenceNumber + " for message " + messageID);
             }
 
-            sequenceNumberManager.update(header.getSequencerNumber());
-            deliverManager.markReadyToDeliver(messageID, header.getSequencerNumber());
+            sequenceNumberManager.update(finalSequenceNumber);
+            deliverManager.markReadyToDeliver(messageID, finalSequenceNumber);
             duration = statsCollector.now() - startTime;
         } catch (Exception e) {
-            logException("Exception caught while processing the final sequence number for " + header.getMessageID(), e);
+            logException("Exception caught while processing the final sequence number for " + messageID, e);
         } finally {
             statsCollector.addFinalSequenceNumberDuration(duration);
         }
@@ -371,6 +413,10 @@ public class TOA extends Protocol implements DeliveryProtocol {
     public void resetStats() {
         super.resetStats();
         statsCollector.clearStats();
+        if (proposeBundler != null) {
+            proposeBundler.clearStats();
+            finalBundler.clearStats();
+        }
     }
 
     @ManagedAttribute(description = "The average duration (in milliseconds) in processing and sending the anycast " +
@@ -438,6 +484,18 @@ public class TOA extends Protocol implements DeliveryProtocol {
         return statsCollector.getNumberOfProposeMessagesReceived();
     }
 
+    @ManagedAttribute(description = "The average number of proposed sequence numbers sent in a single message",
+            writable = false)
+    public double getAvgProposeBatchSize() {
+        return proposeBundler == null ? 0 : proposeBundler.getAvgBatchSize();
+    }
+
+    @ManagedAttribute(description = "The average number of final sequence numbers sent in a single message",
+            writable = false)
+    public double getAvgFinalBatchSize() {
+        return finalBundler == null ? 0 : finalBundler.getAvgBatchSize();
+    }
+
     @ManagedAttribute(description = "The average number of unicasts messages created per anycast message",
             writable = false)
     public double getAvgNumberOfUnicastSentPerAnycast() {
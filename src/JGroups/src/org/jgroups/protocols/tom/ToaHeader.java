@@ -23,11 +23,16 @@ public class ToaHeader extends Header {
     public static final byte PROPOSE_MESSAGE             = 1 << 1;
     public static final byte FINAL_MESSAGE               = 1 << 2;
     public static final byte SINGLE_DESTINATION_MESSAGE  = 1 << 3;
+    public static final byte PROPOSE_BATCH_MESSAGE       = 1 << 4;
+    public static final byte FINAL_BATCH_MESSAGE         = 1 << 5;
 
     private byte type = 0;
     private MessageID messageID; //address and sequence number
     private long sequencerNumber;
     private Collection<Address> destinations= new ArrayList<Address>();
+    //the message IDs and sequence numbers of the batch types
+    private MessageID[] batchMessageIDs;
+    private long[] batchSequenceNumbers;
 
     public ToaHeader() {
         messageID = new MessageID();
@@ -64,8 +69,23 @@ public class ToaHeader extends Header {
         return type;
     }
 
+    public MessageID[] getBatchMessageIDs() {
+        return batchMessageIDs;
+    }
+
+    public long[] getBatchSequenceNumbers() {
+        return batchSequenceNumbers;
+    }
+
     @Override
     public int size() {
+        if (isBatch(type)) {
+            int size = Global.BYTE_SIZE + Global.INT_SIZE;
+            for (int i = 0; i < batchMessageIDs.length; ++i) {
+                size += batchMessageIDs[i].serializedSize() + Util.size(batchSequenceNumbers[i]);
+            }
+            return size;
+        }
         return (int) (Global.BYTE_SIZE  + messageID.serializedSize() + Util.size(sequencerNumber) +
                 Util.size(destinations));
     }
@@ -73,6 +93,14 @@ public class ToaHeader extends Header {
     @Override
     public void writeTo(DataOutput out) throws Exception {
         out.writeByte(type);
+        if (isBatch(type)) {
+            out.writeInt(batchMessageIDs.length);
+            for (int i = 0; i < batchMessageIDs.length; ++i) {
+                batchMessageIDs[i].writeTo(out);
+                Util.writeLong(batchSequenceNumbers[i], out);
+            }
+            return;
+        }
         messageID.writeTo(out);
         Util.writeLong(sequencerNumber, out);
         Util.writeAddresses(destinations, out);
@@ -81,6 +109,17 @@ public class ToaHeader extends Header {
     @Override
     public void readFrom(DataInput in) throws Exception {
         type = in.readByte();
+        if (isBatch(type)) {
+            int size = in.readInt();
+            batchMessageIDs = new MessageID[size];
+            batchSequenceNumbers = new long[size];
+            for (int i = 0; i < size; ++i) {
+                batchMessageIDs[i] = new MessageID();
+                batchMessageIDs[i].readFrom(in);
+                batchSequenceNumbers[i] = Util.readLong(in);
+            }
+            return;
+        }
         messageID.readFrom(in);
         sequencerNumber = Util.readLong(in);
         destinations= (Collection<Address>) Util.readAddresses(in, ArrayList.class);
@@ -89,6 +128,13 @@ public class ToaHeader extends Header {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
+        if (isBatch(type)) {
+            sb.append("ToaHeader [")
+                    .append("type=").append(type2String(type))
+                    .append(", batch_size=").append(batchMessageIDs.length)
+                    .append("]");
+            return sb.toString();
+        }
         sb.append("ToaHeader [")
                 .append("type=").append(type2String(type))
                 .append(", message_id=").append(messageID)
@@ -104,6 +150,8 @@ public class ToaHeader extends Header {
             case PROPOSE_MESSAGE: return "PROPOSE_MESSAGE";
             case FINAL_MESSAGE: return "FINAL_MESSAGE";
             case SINGLE_DESTINATION_MESSAGE: return "SINGLE_DESTINATION_MESSAGE";
+            case PROPOSE_BATCH_MESSAGE: return "PROPOSE_BATCH_MESSAGE";
+            case FINAL_BATCH_MESSAGE: return "FINAL_BATCH_MESSAGE";
             default: return "UNKNOWN";
         }
     }
@@ -118,6 +166,31 @@ public class ToaHeader extends Header {
         return header;
     }
 
+    /**
+     * creates a header with the sequence numbers of several messages (proposed or final)
+     * @param type              the batch type
+     * @param messageIDs        the message IDs
+     * @param sequenceNumbers   the sequence numbers, in the same order of the message IDs
+     * @return the header
+     */
+    public static ToaHeader createBatchHeader(byte type, MessageID[] messageIDs, long[] sequenceNumbers) {
+        if (!isBatch(type)) {
+            throw new IllegalArgumentException("Not a batch type: " + type2String(type));
+        }
+        if (messageIDs.length != sequenceNumbers.length) {
+            throw new IllegalArgumentException("The number of message IDs and of sequence numbers is different");
+        }
+        ToaHeader header = new ToaHeader();
+        header.setType(type);
+        header.batchMessageIDs = messageIDs;
+        header.batchSequenceNumbers = sequenceNumbers;
+        return header;
+    }
+
+    private static boolean isBatch(byte type) {
+        return type == PROPOSE_BATCH_MESSAGE || type == FINAL_BATCH_MESSAGE;
+    }
+
    public static ToaHeader createSingleDestinationHeader() {      
       ToaHeader header = new ToaHeader();
       header.setType(SINGLE_DESTINATION_MESSAGE);      
@@ -0,0 +1,249 @@
+package org.jgroups.tests.perf;
+
+import org.jgroups.*;
+import org.jgroups.protocols.*;
+import org.jgroups.protocols.pbcast.GMS;
+import org.jgroups.protocols.pbcast.NAKACK2;
+import org.jgroups.protocols.pbcast.STABLE;
+import org.jgroups.protocols.tom.TOA;
+import org.jgroups.stack.ProtocolStack;
+import org.jgroups.util.Util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput and the latency of the Total Order Anycast protocol (TOA). A number of members is created
+ * in the same JVM, over SHARED_LOOPBACK, and every member sends anycast messages to all the members from a number of
+ * threads. Each sender thread keeps at most a window of messages not yet delivered to its own member, so that the
+ * latency is not dominated by the queuing of an unbounded load. Each receiver measures the ordered messages delivered
+ * per second and the time between the sending and the delivery of each message. At the end, the order of delivery is checked to be the same in all the members.
+ * @author agent <agent@local>
+ * @since 3.1
+ */
+public class ToaPerf {
+    protected int     num_members=4;
+    protected int     num_threads=4;
+    protected int     num_msgs=20000; // per sender thread
+    protected int     msg_size=100;
+    protected int     window=100; // max messages in progress per sender thread
+    protected boolean batch_sequence_numbers=true;
+
+    protected JChannel[]         channels;
+    protected Receiver[]         receivers;
+    protected Semaphore[]        windows;
+
+
+    public static void main(String[] args) throws Exception {
+        ToaPerf test=new ToaPerf();
+        for(int i=0; i < args.length; i++) {
+            if(args[i].equals("-members")) {
+                test.num_members=Integer.parseInt(args[++i]);
+                continue;
+            }
+            if(args[i].equals("-threads")) {
+                test.num_threads=Integer.parseInt(args[++i]);
+                continue;
+            }
+            if(args[i].equals("-msgs")) {
+                test.num_msgs=Integer.parseInt(args[++i]);
+                continue;
+            }
+            if(args[i].equals("-size")) {
+                test.msg_size=Integer.parseInt(args[++i]);
+                continue;
+            }
+            if(args[i].equals("-window")) {
+                test.window=Integer.parseInt(args[++i]);
+                continue;
+            }
+            if(args[i].equals("-batch")) {
+                test.batch_sequence_numbers=Boolean.parseBoolean(args[++i]);
+                continue;
+            }
+            help();
+            return;
+        }
+
+        try {
+            test.start();
+            test.run();
+        }
+        finally {
+            test.stop();
+        }
+    }
+
+    static void help() {
+        System.out.println("ToaPerf [-members <number of members>] [-threads <sender threads per member>] " +
+                             "[-msgs <messages per sender thread>] [-size <message size>] " +
+                             "[-window <messages in progress per sender thread>] [-batch <true|false>]");
+    }
+
+    protected void start() throws Exception {
+        channels=new JChannel[num_members];
+        receivers=new Receiver[num_members];
+        windows=new Semaphore[num_members * num_threads];
+        for(int i=0; i < windows.length; i++)
+            windows[i]=new Semaphore(window);
+        long expected=(long)num_members * num_threads * num_msgs;
+        for(int i=0; i < num_members; i++) {
+            channels[i]=createChannel();
+            receivers[i]=new Receiver(expected, i);
+            channels[i].setReceiver(receivers[i]);
+            channels[i].connect("ToaPerf");
+        }
+
+        for(int i=0; i < 20; i++) {
+            boolean done=true;
+            for(JChannel ch: channels) {
+                if(ch.getView().size() != num_members) {
+                    done=false;
+                    break;
+                }
+            }
+            if(done)
+                return;
+            Util.sleep(500);
+        }
+        throw new IllegalStateException("cluster of " + num_members + " members was not formed: " +
+                                          channels[0].getView());
+    }
+
+    protected void stop() {
+        if(channels == null)
+            return;
+        for(int i=channels.length-1; i >= 0; i--)
+            Util.close(channels[i]);
+    }
+
+    protected void run() throws Exception {
+        System.out.println("members=" + num_members + ", sender threads=" + num_threads + ", messages=" + num_msgs +
+                             ", size=" + msg_size + ", window=" + window +
+                             ", batch_sequence_numbers=" + batch_sequence_numbers);
+        final AnycastAddress destination=new AnycastAddress(channels[0].getView().getMembers());
+        final CountDownLatch latch=new CountDownLatch(1);
+        Thread[] senders=new Thread[num_members * num_threads];
+        for(int i=0; i < senders.length; i++) {
+            final JChannel ch=channels[i / num_threads];
+            final int sender_id=i;
+            senders[i]=new Thread("Sender-" + i) {
+                public void run() {
+                    try {
+                        latch.await();
+                        for(int j=0; j < num_msgs; j++) {
+                            windows[sender_id].acquire();
+                            byte[] payload=new byte[Math.max(msg_size, Global.LONG_SIZE * 2 + Global.INT_SIZE)];
+                            ByteBuffer.wrap(payload).putLong(System.nanoTime()).putInt(sender_id).putLong(j);
+                            ch.send(new Message(destination, null, payload));
+                        }
+                    }
+                    catch(Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            senders[i].start();
+        }
+
+        long start=System.nanoTime();
+        latch.countDown();
+        for(Receiver receiver: receivers)
+            if(!receiver.await(5, TimeUnit.MINUTES))
+                System.err.println("timed out waiting for the messages: received " + receiver.received.get() +
+                                     " of " + receiver.expected);
+        long duration=System.nanoTime() - start;
+        for(Thread sender: senders)
+            sender.join();
+
+        long total=0, total_latency=0, max_latency=0;
+        boolean same_order=true;
+        for(Receiver receiver: receivers) {
+            total+=receiver.received.get();
+            total_latency+=receiver.total_latency.get();
+            max_latency=Math.max(max_latency, receiver.max_latency.get());
+            same_order&=receiver.order_hash == receivers[0].order_hash && receiver.received.get() == receiver.expected;
+        }
+
+        double secs=duration / 1000000000.0;
+        System.out.println(String.format("delivered %d messages in %.2f secs: %.2f ordered msgs/sec per member",
+                                         total, secs, total / (double)num_members / secs));
+        System.out.println(String.format("delivery latency: avg=%.3f ms, max=%.3f ms",
+                                         total == 0? 0 : total_latency / (double)total / 1000000.0,
+                                         max_latency / 1000000.0));
+        for(int i=0; i < channels.length; i++) {
+            TOA toa=(TOA)channels[i].getProtocolStack().findProtocol(TOA.class);
+            System.out.println(String.format("%s: avg propose batch=%.2f, avg final batch=%.2f",
+                                             channels[i].getAddress(), toa.getAvgProposeBatchSize(),
+                                             toa.getAvgFinalBatchSize()));
+        }
+        System.out.println(same_order? "all members delivered the messages in the same order" :
+                             "** the members delivered different messages or a different order **");
+    }
+
+    protected JChannel createChannel() throws Exception {
+        JChannel ch=new JChannel(false);
+        ProtocolStack stack=new ProtocolStack();
+        ch.setProtocolStack(stack);
+        stack.addProtocol(new SHARED_LOOPBACK().setValue("oob_thread_pool_rejection_policy", "run")
+                            .setValue("thread_pool_rejection_policy", "run")
+                            .setValue("thread_pool_queue_max_size", 100000))
+          .addProtocol(new PING())
+          .addProtocol(new MERGE2())
+          .addProtocol(new FD_SOCK())
+          .addProtocol(new VERIFY_SUSPECT())
+          .addProtocol(new BARRIER())
+          .addProtocol(new NAKACK2().setValue("use_mcast_xmit", false).setValue("discard_delivered_msgs", true))
+          .addProtocol(new UNICAST2().setValue("stable_interval", 10000).setValue("max_bytes", 50000))
+          .addProtocol(new STABLE().setValue("max_bytes", 50000))
+          .addProtocol(new GMS().setValue("print_local_addr", false))
+          .addProtocol(new UFC().setValue("max_credits", 2000000))
+          .addProtocol(new MFC().setValue("max_credits", 2000000))
+          .addProtocol(new FRAG2())
+          .addProtocol(new TOA().setValue("batch_sequence_numbers", batch_sequence_numbers));
+        stack.init();
+        return ch;
+    }
+
+
+    protected class Receiver extends ReceiverAdapter {
+        protected final long           expected;
+        protected final int            member;
+        protected final AtomicLong     received=new AtomicLong(0);
+        protected final AtomicLong     total_latency=new AtomicLong(0);
+        protected final AtomicLong     max_latency=new AtomicLong(0);
+        protected final CountDownLatch done=new CountDownLatch(1);
+        // hash of the sequence of messages delivered, only updated by the TOA delivery thread
+        protected long                 order_hash=17;
+
+        public Receiver(long expected, int member) {
+            this.expected=expected;
+            this.member=member;
+        }
+
+        public void receive(Message msg) {
+            ByteBuffer buf=ByteBuffer.wrap(msg.getRawBuffer(), msg.getOffset(), msg.getLength());
+            long latency=System.nanoTime() - buf.getLong();
+            int sender_id=buf.getInt();
+            long seqno=buf.getLong();
+            if(sender_id / num_threads == member)
+                windows[sender_id].release();
+            order_hash=order_hash * 31 + sender_id;
+            order_hash=order_hash * 31 + seqno;
+
+            total_latency.addAndGet(latency);
+            long max;
+            while((max=max_latency.get()) < latency && !max_latency.compareAndSet(max, latency))
+                ;
+            if(received.incrementAndGet() == expected)
+                done.countDown();
+        }
+
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+    }
+}